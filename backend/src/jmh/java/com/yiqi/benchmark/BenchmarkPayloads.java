@@ -0,0 +1,66 @@
+package com.yiqi.benchmark;
+
+import com.yiqi.entity.Agent;
+import com.yiqi.enums.RoleType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的代表性负载
+ */
+public final class BenchmarkPayloads {
+
+    private static final String SAMPLE = "从用户体验角度看，这款智能水杯需要在提醒喝水、温度显示与续航之间取得平衡，";
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * 构造指定数量的代理，角色依次轮换
+     */
+    public static List<Agent> agents(int count) {
+        RoleType[] roles = RoleType.values();
+        List<Agent> agents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Agent agent = new Agent();
+            agent.setId((long) i + 1);
+            agent.setName("代理" + (i + 1));
+            agent.setRoleType(roles[i % roles.length].name());
+            agent.setAiModel("deepseek/deepseek-v3.1-terminus");
+            agent.setSystemPrompt("你是一名资深的" + roles[i % roles.length].getDescription()
+                + "，请结合自身经验给出具体、可执行的建议，并说明理由与风险。");
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+    /**
+     * 构造UTF-8编码后约为指定字节数的中文文本
+     */
+    public static String text(int utf8Bytes) {
+        // 常用汉字在UTF-8下占3个字节
+        int chars = Math.max(1, utf8Bytes / 3);
+        StringBuilder builder = new StringBuilder(chars);
+        while (builder.length() < chars) {
+            builder.append(SAMPLE, 0, Math.min(SAMPLE.length(), chars - builder.length()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 将文本切成OpenAI格式的SSE流，每个片段包含chunkChars个字符，以[DONE]结尾
+     */
+    public static String sseStream(String content, int chunkChars) {
+        StringBuilder builder = new StringBuilder(content.length() * 4);
+        for (int i = 0; i < content.length(); i += chunkChars) {
+            String piece = content.substring(i, Math.min(content.length(), i + chunkChars));
+            builder.append("data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,")
+                .append("\"model\":\"deepseek/deepseek-v3.1-terminus\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"")
+                .append(piece)
+                .append("\"},\"finish_reason\":null}]}\n\n");
+        }
+        builder.append("data: [DONE]\n\n");
+        return builder.toString();
+    }
+}
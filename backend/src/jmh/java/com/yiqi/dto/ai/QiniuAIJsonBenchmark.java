@@ -0,0 +1,64 @@
+package com.yiqi.dto.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yiqi.benchmark.BenchmarkPayloads;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游请求/响应的Jackson序列化基准
+ * 请求体含系统提示词与携带前序阶段结果的用户提示词，响应体为单个代理约4KB的回答
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QiniuAIJsonBenchmark {
+
+    @Param({"4096"})
+    private int responseBytes;
+
+    /** 用户提示词中携带的前序阶段结果大小：10个代理各4KB */
+    @Param({"0", "40960"})
+    private int contextBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private QiniuAIRequest request;
+    private String responseJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        request = new QiniuAIRequest("deepseek/deepseek-v3.1-terminus", Arrays.asList(
+            new AIMessage("system", BenchmarkPayloads.text(1024)),
+            new AIMessage("user", "主题：智能水杯\n" + BenchmarkPayloads.text(contextBytes))
+        ));
+
+        QiniuAIResponse response = new QiniuAIResponse();
+        response.setId("chatcmpl-1");
+        response.setObject("chat.completion");
+        response.setModel("deepseek/deepseek-v3.1-terminus");
+        QiniuAIResponse.Choice choice = new QiniuAIResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(new AIMessage("assistant", BenchmarkPayloads.text(responseBytes)));
+        choice.setFinishReason("stop");
+        response.setChoices(Collections.singletonList(choice));
+        responseJson = objectMapper.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public String serializeRequest() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public QiniuAIResponse deserializeResponse() throws JsonProcessingException {
+        return objectMapper.readValue(responseJson, QiniuAIResponse.class);
+    }
+}
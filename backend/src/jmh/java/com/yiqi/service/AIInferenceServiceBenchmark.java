@@ -0,0 +1,44 @@
+package com.yiqi.service;
+
+import com.yiqi.benchmark.BenchmarkPayloads;
+import com.yiqi.dto.ai.AgentInferenceRequest;
+import com.yiqi.entity.Agent;
+import com.yiqi.enums.PhaseType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推理请求构建基准：按代理角色与阶段模板拼装系统/用户提示词
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AIInferenceServiceBenchmark {
+
+    @Param({"1", "10"})
+    private int agentCount;
+
+    @Param({"0", "4096"})
+    private int contextBytes;
+
+    private final AIInferenceService aiInferenceService = new AIInferenceService();
+
+    private List<Agent> agents;
+    private String sessionContext;
+
+    @Setup
+    public void setup() {
+        agents = BenchmarkPayloads.agents(agentCount);
+        sessionContext = contextBytes > 0 ? BenchmarkPayloads.text(contextBytes) : null;
+    }
+
+    @Benchmark
+    public List<AgentInferenceRequest> buildInferenceRequests() {
+        return aiInferenceService.buildInferenceRequests(agents, "智能水杯", sessionContext, PhaseType.FEASIBILITY_ANALYSIS);
+    }
+}
@@ -0,0 +1,68 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 推理状态更新基准：单个阶段从开始跟踪到10个代理全部完成的状态更新开销，
+ * 多线程下同时反映状态表的竞争情况
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InferenceStatusServiceBenchmark {
+
+    private static final int AGENT_COUNT = 10;
+
+    private final InferenceStatusService inferenceStatusService = new InferenceStatusService();
+    private final AtomicLong sessionSequence = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        // 不推送事件，只衡量状态表本身的开销
+        setField("eventPublisher", (ApplicationEventPublisher) event -> { });
+        setField("aiServiceProperties", new AIServiceProperties());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public InferenceStatusService.SessionInferenceStatus trackPhase() {
+        return track();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public InferenceStatusService.SessionInferenceStatus trackPhaseContended() {
+        return track();
+    }
+
+    @Benchmark
+    public InferenceStatusService.InferenceStatistics systemStatistics() {
+        return inferenceStatusService.getSystemStatistics();
+    }
+
+    private InferenceStatusService.SessionInferenceStatus track() {
+        // 会话ID取模，使状态表保持在固定规模
+        String sessionId = String.valueOf(sessionSequence.incrementAndGet() % 10000);
+        inferenceStatusService.startTracking(sessionId, "IDEA_GENERATION", AGENT_COUNT);
+        for (int i = 0; i < AGENT_COUNT; i++) {
+            inferenceStatusService.updateAgentCompletion(sessionId, "IDEA_GENERATION", i % 5 != 0);
+        }
+        return inferenceStatusService.getInferenceStatus(sessionId, "IDEA_GENERATION");
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(InferenceStatusService.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, inferenceStatusService, value);
+    }
+}
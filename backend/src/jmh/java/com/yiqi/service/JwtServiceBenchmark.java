@@ -0,0 +1,69 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT基准：每个已认证请求在过滤器中都要完成一次校验与用户名提取
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private final JwtService jwtService = new JwtService();
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        setField("secret", "yiqi-brainstorm-platform-secret-key-2024");
+        setField("expiration", 86400000L);
+        setField("aiServiceProperties", new AIServiceProperties());
+        setField("meterRegistry", new SimpleMeterRegistry());
+        jwtService.init();
+        token = jwtService.generateToken(user());
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user());
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtService.extractUsername(token);
+    }
+
+    /**
+     * 与JwtAuthenticationFilter一致：先校验有效期，再提取用户名
+     */
+    @Benchmark
+    public String authenticateRequest() {
+        if (!jwtService.isTokenValid(token)) {
+            throw new IllegalStateException("令牌无效");
+        }
+        return jwtService.extractUsername(token);
+    }
+
+    private static User user() {
+        User user = new User("benchmark-user", "password");
+        user.setId(1L);
+        return user;
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(JwtService.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, jwtService, value);
+    }
+}
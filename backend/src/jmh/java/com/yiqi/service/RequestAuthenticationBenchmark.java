@@ -0,0 +1,84 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次请求认证开销基准：与JwtAuthenticationFilter一致，验证令牌、检查吊销并由令牌声明构建用户主体，
+ * 不经过数据库。cached为默认配置（命中已验证令牌缓存），uncached关闭已验证令牌缓存，每次验签
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestAuthenticationBenchmark {
+
+    private final JwtService cachedJwtService = new JwtService();
+    private final JwtService uncachedJwtService = new JwtService();
+    private final TokenRevocationService tokenRevocationService = new TokenRevocationService();
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        AIServiceProperties uncachedProperties = new AIServiceProperties();
+        uncachedProperties.getCache().setVerifiedTokenMaxEntries(0);
+
+        wire(cachedJwtService, new AIServiceProperties());
+        wire(uncachedJwtService, uncachedProperties);
+
+        User user = new User("benchmark-user", "password");
+        user.setId(1L);
+        token = cachedJwtService.generateToken(user);
+        // 不从数据库恢复令牌版本；另一用户的版本吊销，使吊销检查走完整路径
+        setField(tokenRevocationService, "versionsLoaded", true);
+        tokenRevocationService.revokeUserTokens(2L, 1);
+    }
+
+    @Benchmark
+    public UserDetails authenticateCached() {
+        return authenticate(cachedJwtService);
+    }
+
+    @Benchmark
+    public UserDetails authenticateUncached() {
+        return authenticate(uncachedJwtService);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UserDetails authenticateCachedContended() {
+        return authenticate(cachedJwtService);
+    }
+
+    private UserDetails authenticate(JwtService jwtService) {
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+        if (verified == null || tokenRevocationService.isRevoked(verified)) {
+            throw new IllegalStateException("令牌无效");
+        }
+        return new UserDetailsServiceImpl.UserPrincipal(verified.getUserId(), verified.getUsername());
+    }
+
+    private static void wire(JwtService jwtService, AIServiceProperties properties) {
+        setField(jwtService, "secret", "yiqi-brainstorm-platform-secret-key-2024");
+        setField(jwtService, "expiration", 86400000L);
+        setField(jwtService, "aiServiceProperties", properties);
+        setField(jwtService, "meterRegistry", new SimpleMeterRegistry());
+        jwtService.init();
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
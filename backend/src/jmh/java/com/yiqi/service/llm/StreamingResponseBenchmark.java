@@ -0,0 +1,61 @@
+package com.yiqi.service.llm;
+
+import com.yiqi.benchmark.BenchmarkPayloads;
+import com.yiqi.service.QiniuAIService;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE解析基准：逐行读取上游流式响应并分发data片段
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingResponseBenchmark {
+
+    private static final MediaType EVENT_STREAM = MediaType.get("text/event-stream; charset=utf-8");
+
+    @Param({"4096", "16384"})
+    private int contentBytes;
+
+    @Param({"2", "16"})
+    private int chunkChars;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = BenchmarkPayloads.sseStream(BenchmarkPayloads.text(contentBytes), chunkChars)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void processStreamingResponse(Blackhole blackhole) throws IOException {
+        OpenAICompatibleProvider.processStreamingResponse(ResponseBody.create(body, EVENT_STREAM),
+            new QiniuAIService.StreamingResponseHandler() {
+                @Override
+                public void onData(String data) {
+                    blackhole.consume(data);
+                }
+
+                @Override
+                public void onComplete() {
+                    blackhole.consume(true);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            });
+    }
+}
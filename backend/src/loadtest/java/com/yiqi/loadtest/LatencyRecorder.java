@@ -0,0 +1,76 @@
+package com.yiqi.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口记录请求耗时与失败次数，结束时计算分位数
+ */
+public class LatencyRecorder {
+
+    private final Map<String, Samples> endpoints = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long elapsedNanos, boolean success) {
+        endpoints.computeIfAbsent(endpoint, k -> new Samples()).add(elapsedNanos, success);
+    }
+
+    /**
+     * 汇总各接口的请求数、吞吐量与耗时分位数（毫秒）
+     */
+    public Map<String, Map<String, Object>> summarize(double elapsedSeconds) {
+        Map<String, Map<String, Object>> summary = new TreeMap<>();
+        endpoints.forEach((endpoint, samples) -> summary.put(endpoint, samples.summarize(elapsedSeconds)));
+        return summary;
+    }
+
+    private static class Samples {
+        private long[] values = new long[256];
+        private int size;
+        private long failures;
+
+        synchronized void add(long elapsedNanos, boolean success) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = elapsedNanos;
+            if (!success) {
+                failures++;
+            }
+        }
+
+        synchronized Map<String, Object> summarize(double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long value : sorted) {
+                total += value;
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", size);
+            summary.put("errors", failures);
+            summary.put("throughputPerSecond", round(size / Math.max(elapsedSeconds, 0.001)));
+            summary.put("meanMs", size == 0 ? 0.0 : round(total / (double) size / 1_000_000));
+            summary.put("p50Ms", percentile(sorted, 0.50));
+            summary.put("p95Ms", percentile(sorted, 0.95));
+            summary.put("p99Ms", percentile(sorted, 0.99));
+            summary.put("maxMs", size == 0 ? 0.0 : round(sorted[size - 1] / 1_000_000.0));
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return round(sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
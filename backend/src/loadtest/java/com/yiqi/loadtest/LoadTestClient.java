@@ -0,0 +1,130 @@
+package com.yiqi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * 压测HTTP客户端：记录每个接口的耗时，流式接口额外记录首字节时间
+ */
+public class LoadTestClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+
+    private final String baseUrl;
+    private final LatencyRecorder latencies;
+    private final LatencyRecorder timeToFirstToken;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+
+    public LoadTestClient(String baseUrl, int concurrency, LatencyRecorder latencies, LatencyRecorder timeToFirstToken) {
+        this.baseUrl = baseUrl;
+        this.latencies = latencies;
+        this.timeToFirstToken = timeToFirstToken;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newFixedThreadPool(Math.max(4, concurrency)))
+            .build();
+    }
+
+    /**
+     * 发送JSON请求并返回响应体（无响应体时返回null）
+     *
+     * @param endpoint 统计用的接口名，路径参数以占位符表示
+     */
+    public JsonNode send(String endpoint, String method, String path, Object body, String token)
+            throws IOException, InterruptedException {
+        HttpRequest request = request(method, path, body, token, "application/json");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException(endpoint + " 返回 " + response.statusCode() + ": " + response.body());
+            }
+            success = true;
+            return response.body() == null || response.body().isEmpty() ? null : objectMapper.readTree(response.body());
+        } finally {
+            latencies.record(endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * 发送流式请求并读完整个响应，返回收到的字节数
+     */
+    public long stream(String endpoint, String path, Object body, String token) throws IOException, InterruptedException {
+        HttpRequest request = request("POST", path, body, token, "text/event-stream");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream input = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IOException(endpoint + " 返回 " + response.statusCode());
+                }
+                byte[] buffer = new byte[8192];
+                long total = 0;
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    if (total == 0 && read > 0) {
+                        timeToFirstToken.record(endpoint, System.nanoTime() - start, true);
+                    }
+                    total += read;
+                }
+                success = total > 0;
+                return total;
+            }
+        } finally {
+            latencies.record(endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * 订阅SSE事件流，服务端关闭连接时返回收到的事件数；首个事件的到达时间记为首字节时间
+     */
+    public CompletableFuture<Long> subscribe(String endpoint, String path, String token) throws IOException {
+        HttpRequest request = request("GET", path, null, token, "text/event-stream");
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+            .thenApply(response -> {
+                if (response.statusCode() / 100 != 2) {
+                    latencies.record(endpoint, System.nanoTime() - start, false);
+                    throw new IllegalStateException(endpoint + " 返回 " + response.statusCode());
+                }
+                long[] events = {0};
+                response.body().forEach(line -> {
+                    if (line.startsWith("event:")) {
+                        if (events[0]++ == 0) {
+                            timeToFirstToken.record(endpoint, System.nanoTime() - start, true);
+                        }
+                    }
+                });
+                latencies.record(endpoint, System.nanoTime() - start, events[0] > 0);
+                return events[0];
+            });
+    }
+
+    private HttpRequest request(String method, String path, Object body, String token, String accept) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .header("Accept", accept);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        HttpRequest.BodyPublisher publisher = body == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body));
+        return builder.method(method, publisher).build();
+    }
+}
@@ -0,0 +1,319 @@
+package com.yiqi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.yiqi.YiQiBrainstormApplication;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.RoleType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端压测入口
+ * 在进程内以H2和模拟大模型启动应用，由多个虚拟用户并发完成“注册登录 → 创建代理与会话 → 三个阶段的执行与审核”，
+ * 输出各接口吞吐量与耗时分位数、流式首字节时间及连接池/线程池占用，写入JSON报告
+ *
+ * <p>参数（--name=value）：sessions、concurrency、agents、llm（fake|mock）、streaming、
+ * fake-latency-ms、fake-chunk-delay-ms、max-error-rate、output
+ */
+public class LoadTestRunner {
+
+    private static final String PASSWORD = "LoadTest123";
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final Map<String, String> options;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LatencyRecorder timeToFirstToken = new LatencyRecorder();
+    private final AtomicInteger completedSessions = new AtomicInteger();
+    private final AtomicInteger failedSessions = new AtomicInteger();
+    private final AtomicLong sessionEvents = new AtomicLong();
+    private final Map<String, AtomicInteger> failures = new HashMap<>();
+
+    private LoadTestClient client;
+
+    public LoadTestRunner(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("sessions", "20");
+        options.put("concurrency", "5");
+        options.put("agents", "3");
+        options.put("llm", "fake");
+        options.put("streaming", "true");
+        options.put("fake-latency-ms", "200");
+        options.put("fake-chunk-delay-ms", "20");
+        options.put("max-error-rate", "0");
+        options.put("output", "target/loadtest-report.json");
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        System.exit(new LoadTestRunner(options).run());
+    }
+
+    /**
+     * 执行压测并写出报告
+     *
+     * @return 进程退出码：会话失败率超过max-error-rate时为1
+     */
+    public int run() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        ConfigurableApplicationContext context = startApplication(port);
+        int sessions = intOption("sessions");
+        int concurrency = intOption("concurrency");
+        client = new LoadTestClient("http://localhost:" + port, concurrency, latencies, timeToFirstToken);
+        SaturationSampler sampler = new SaturationSampler(context);
+
+        AtomicInteger nextSession = new AtomicInteger();
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        sampler.start(100);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                int userIndex = i;
+                futures.add(users.submit(() -> runVirtualUser(userIndex, nextSession, sessions)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            users.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        Map<String, Object> saturation = sampler.stop();
+
+        Map<String, Object> report = buildReport(elapsedSeconds, saturation);
+        File output = new File(options.get("output"));
+        if (output.getParentFile() != null) {
+            output.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        context.close();
+
+        double errorRate = failedSessions.get() / (double) Math.max(1, sessions);
+        System.out.printf("压测完成: 会话 %d 成功 / %d 失败，耗时 %.1fs，报告: %s%n",
+            completedSessions.get(), failedSessions.get(), elapsedSeconds, output.getAbsolutePath());
+        return errorRate > Double.parseDouble(options.get("max-error-rate")) ? 1 : 0;
+    }
+
+    private ConfigurableApplicationContext startApplication(int port) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", port);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.sql.init.mode", "always");
+        properties.put("spring.sql.init.schema-locations", "classpath:loadtest/schema-h2.sql");
+        properties.put("spring.sql.init.data-locations", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("mybatis-plus.configuration.log-impl", "org.apache.ibatis.logging.nologging.NoLoggingImpl");
+        properties.put("logging.level.com.yiqi", "WARN");
+        properties.put("logging.level.org.mybatis", "WARN");
+        properties.put("logging.file.name", "target/loadtest.log");
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(YiQiBrainstormApplication.class);
+        if ("mock".equals(options.get("llm"))) {
+            // 经由HTTP访问进程内的模拟服务，覆盖OkHttp连接池与SSE解析
+            builder.profiles("mock-llm");
+        } else {
+            properties.put("yiqi.ai.fake.enabled", true);
+            properties.put("yiqi.ai.router.default-provider", "fake");
+            properties.put("yiqi.ai.fake.latency-ms", options.get("fake-latency-ms"));
+            properties.put("yiqi.ai.fake.chunk-delay-ms", options.get("fake-chunk-delay-ms"));
+        }
+        // 以命令行参数传入，优先级高于application.yml
+        return builder.run(properties.entrySet().stream()
+            .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+            .toArray(String[]::new));
+    }
+
+    private void runVirtualUser(int userIndex, AtomicInteger nextSession, int sessions) {
+        String token;
+        List<Long> agentIds;
+        try {
+            String username = "lt" + userIndex + "_" + System.nanoTime() % 1_000_000;
+            Map<String, Object> credentials = new HashMap<>();
+            credentials.put("username", username);
+            credentials.put("password", PASSWORD);
+            client.send("POST /users/register", "POST", "/users/register", credentials, null);
+            token = client.send("POST /users/login", "POST", "/users/login", credentials, null)
+                .path("accessToken").asText();
+            agentIds = createAgents(token, intOption("agents"));
+        } catch (Exception e) {
+            fail("setup", e);
+            // 该虚拟用户无法开始，其余会话由其他虚拟用户完成
+            return;
+        }
+
+        int sessionIndex;
+        while ((sessionIndex = nextSession.getAndIncrement()) < sessions) {
+            try {
+                runSession(token, agentIds, sessionIndex);
+                completedSessions.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failedSessions.incrementAndGet();
+                fail("session", e);
+            }
+        }
+    }
+
+    private List<Long> createAgents(String token, int count) throws Exception {
+        RoleType[] roles = RoleType.values();
+        List<Long> agentIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RoleType role = roles[i % (roles.length - 1)];
+            Map<String, Object> agent = new HashMap<>();
+            agent.put("name", role.getDescription() + i);
+            agent.put("roleType", role.name());
+            agent.put("systemPrompt", "你是一名资深的" + role.getDescription() + "，请结合专业经验给出具体可执行的建议。");
+            agent.put("aiModel", "qwen-plus");
+            agentIds.add(client.send("POST /api/agents", "POST", "/api/agents", agent, token).path("id").asLong());
+        }
+        return agentIds;
+    }
+
+    private void runSession(String token, List<Long> agentIds, int sessionIndex) throws Exception {
+        // 主题带序号，避免相同请求被推理合并器合并而低估上游负载
+        String topic = "面向年轻上班族的智能水杯 #" + sessionIndex;
+        Map<String, Object> session = new HashMap<>();
+        session.put("title", "压测会话" + sessionIndex);
+        session.put("description", "端到端压测");
+        session.put("agentIds", agentIds);
+        long sessionId = client.send("POST /api/sessions", "POST", "/api/sessions", session, token).path("id").asLong();
+
+        Map<String, Object> start = new HashMap<>();
+        start.put("topic", topic);
+        client.send("POST /api/sessions/{id}/start", "POST", "/api/sessions/" + sessionId + "/start", start, token);
+        // 以SSE订阅会话状态代替轮询，会话完成后服务端关闭连接
+        CompletableFuture<Long> events = client.subscribe("GET /api/sessions/{id}/events",
+            "/api/sessions/" + sessionId + "/events", token);
+
+        boolean streaming = Boolean.parseBoolean(options.get("streaming"));
+        for (PhaseType phase : PhaseType.values()) {
+            String phasePath = "/api/sessions/" + sessionId + "/phases/" + phase.name();
+            long accepted = System.nanoTime();
+            String executionId = client.send("POST /api/sessions/{id}/phases/" + phase.name() + "/execute", "POST",
+                phasePath + "/execute", start, token).path("executionId").asText();
+            awaitExecution(token, sessionId, executionId, phase, accepted);
+
+            if (streaming) {
+                Map<String, Object> streamRequest = new HashMap<>();
+                streamRequest.put("userPrompt", topic);
+                client.stream("POST /api/parallel-inference/sessions/{id}/phases/{phase}/execute/stream",
+                    "/api/parallel-inference/sessions/" + sessionId + "/phases/" + phase.name() + "/execute/stream",
+                    streamRequest, token);
+            }
+
+            client.send("GET /api/sessions/{id}/phases/{phase}/responses", "GET", phasePath + "/responses", null, token);
+            client.send("POST /api/sessions/{id}/phases/{phase}/approve", "POST", phasePath + "/approve", null, token);
+        }
+        sessionEvents.addAndGet(events.get(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 执行接口受理后立即返回，轮询执行状态直到结束；受理到结束的时长单独统计
+     */
+    private void awaitExecution(String token, long sessionId, String executionId, PhaseType phase, long accepted)
+            throws Exception {
+        String path = "/api/sessions/" + sessionId + "/executions/" + executionId;
+        long deadline = accepted + TimeUnit.MINUTES.toNanos(5);
+        while (true) {
+            JsonNode execution = client.send("GET /api/sessions/{id}/executions/{executionId}", "GET", path, null, token);
+            String status = execution.path("status").asText();
+            if ("SUCCEEDED".equals(status) || "FAILED".equals(status)) {
+                boolean success = "SUCCEEDED".equals(status);
+                latencies.record("phase execution " + phase.name(), System.nanoTime() - accepted, success);
+                if (!success) {
+                    throw new IllegalStateException("阶段执行失败: " + execution.path("errorMessage").asText());
+                }
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("阶段执行超时: executionId=" + executionId);
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private Map<String, Object> buildReport(double elapsedSeconds, Map<String, Object> saturation) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("commit", gitCommit());
+        report.put("options", options);
+        report.put("elapsedSeconds", Math.round(elapsedSeconds * 100) / 100.0);
+
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        sessions.put("completed", completedSessions.get());
+        sessions.put("failed", failedSessions.get());
+        sessions.put("throughputPerMinute", Math.round(completedSessions.get() * 6000 / elapsedSeconds) / 100.0);
+        sessions.put("statusEvents", sessionEvents.get());
+        report.put("sessions", sessions);
+
+        report.put("endpoints", latencies.summarize(elapsedSeconds));
+        report.put("timeToFirstToken", timeToFirstToken.summarize(elapsedSeconds));
+        report.put("saturation", saturation);
+        Map<String, Integer> failureCounts = new LinkedHashMap<>();
+        synchronized (failures) {
+            failures.forEach((reason, count) -> failureCounts.put(reason, count.get()));
+        }
+        report.put("failures", failureCounts);
+        return report;
+    }
+
+    private void fail(String stage, Exception e) {
+        String reason = stage + ": " + e.getClass().getSimpleName();
+        synchronized (failures) {
+            failures.computeIfAbsent(reason, k -> new AtomicInteger()).incrementAndGet();
+        }
+        System.err.println("压测" + stage + "失败: " + e.getMessage());
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static String gitCommit() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0 ? line : null;
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
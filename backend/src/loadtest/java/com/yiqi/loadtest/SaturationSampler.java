@@ -0,0 +1,109 @@
+package com.yiqi.loadtest;
+
+import com.yiqi.service.InferenceScheduler;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期采样连接池、线程池与推理调度器的占用情况，记录峰值与均值
+ */
+public class SaturationSampler {
+
+    private final ConfigurableApplicationContext context;
+    private final Map<String, Gauge> gauges = new TreeMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loadtest-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SaturationSampler(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public void start(long intervalMs) {
+        scheduler.scheduleAtFixedRate(this::sample, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Map<String, Object> stop() {
+        scheduler.shutdownNow();
+        Map<String, Object> summary = new TreeMap<>();
+        synchronized (gauges) {
+            gauges.forEach((name, gauge) -> summary.put(name, gauge.summarize()));
+        }
+        return summary;
+    }
+
+    private void sample() {
+        try {
+            DataSource dataSource = context.getBean(DataSource.class);
+            if (dataSource instanceof HikariDataSource) {
+                HikariDataSource hikari = (HikariDataSource) dataSource;
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                if (pool != null) {
+                    observe("db.pool.active", pool.getActiveConnections(), hikari.getMaximumPoolSize());
+                    observe("db.pool.pending", pool.getThreadsAwaitingConnection(), 0);
+                }
+            }
+
+            context.getBeansOfType(ThreadPoolTaskExecutor.class).forEach((name, executor) -> {
+                observe("executor." + name + ".active", executor.getActiveCount(), executor.getMaxPoolSize());
+                observe("executor." + name + ".queued",
+                    executor.getThreadPoolExecutor().getQueue().size(), 0);
+            });
+
+            InferenceScheduler.SchedulerStatistics statistics = context.getBean(InferenceScheduler.class).getStatistics();
+            observe("inference.scheduler.inFlight", statistics.getInFlight(), statistics.getMaxConcurrent());
+            int queued = statistics.getClasses().values().stream()
+                .mapToInt(InferenceScheduler.ClassStatistics::getQueued)
+                .sum();
+            observe("inference.scheduler.queued", queued, 0);
+        } catch (RuntimeException e) {
+            // 应用关闭过程中的采样失败直接忽略
+        }
+    }
+
+    private void observe(String name, int value, int capacity) {
+        synchronized (gauges) {
+            gauges.computeIfAbsent(name, k -> new Gauge(capacity)).observe(value);
+        }
+    }
+
+    private static class Gauge {
+        private final int capacity;
+        private long samples;
+        private long total;
+        private int max;
+
+        Gauge(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void observe(int value) {
+            samples++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        Map<String, Object> summarize() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("max", max);
+            summary.put("mean", samples == 0 ? 0.0 : Math.round(total * 100.0 / samples) / 100.0);
+            if (capacity > 0) {
+                summary.put("capacity", capacity);
+                summary.put("peakUtilization", Math.round(max * 100.0 / capacity) / 100.0);
+            }
+            return summary;
+        }
+    }
+}
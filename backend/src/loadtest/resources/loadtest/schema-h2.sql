@@ -0,0 +1,102 @@
+-- 压测用H2建表脚本（MySQL兼容模式），与schema.sql保持一致的表结构与查询相关索引
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_login_at TIMESTAMP NULL,
+    failed_login_attempts INT DEFAULT 0,
+    locked_until TIMESTAMP NULL,
+    token_version INT NOT NULL DEFAULT 0
+);
+CREATE TABLE IF NOT EXISTS agents (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    role_type VARCHAR(50) NOT NULL,
+    system_prompt TEXT NOT NULL,
+    ai_model VARCHAR(50) NOT NULL DEFAULT 'qwen-plus',
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS brainstorm_sessions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    title VARCHAR(200) NOT NULL,
+    description TEXT,
+    topic TEXT,
+    status VARCHAR(20) NOT NULL DEFAULT 'CREATED',
+    current_phase VARCHAR(30),
+    version INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS session_agents (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    session_id BIGINT NOT NULL,
+    agent_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_active_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS phases (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    session_id BIGINT NOT NULL,
+    phase_type VARCHAR(30) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'NOT_STARTED',
+    summary TEXT,
+    started_at TIMESTAMP NULL,
+    completed_at TIMESTAMP NULL,
+    execution_id VARCHAR(64) NULL,
+    execution_claimed_at TIMESTAMP NULL,
+    version INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS agent_responses (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    phase_id BIGINT NOT NULL,
+    agent_id BIGINT NOT NULL,
+    content TEXT,
+    status VARCHAR(20) NOT NULL DEFAULT 'PROCESSING',
+    error_message TEXT,
+    response_time_ms BIGINT,
+    model VARCHAR(100),
+    prompt_tokens BIGINT,
+    completion_tokens BIGINT,
+    total_tokens BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS reports (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    session_id BIGINT NOT NULL,
+    title VARCHAR(200) NOT NULL,
+    content LONGTEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'GENERATED',
+    file_path VARCHAR(500),
+    generated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS agent_versions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    agent_id BIGINT NOT NULL,
+    version_number INT NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    role_type VARCHAR(50) NOT NULL,
+    system_prompt TEXT NOT NULL,
+    ai_model VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_agents_user_id ON agents (user_id);
+CREATE INDEX IF NOT EXISTS idx_sessions_user_id ON brainstorm_sessions (user_id);
+CREATE INDEX IF NOT EXISTS idx_sessions_user_created ON brainstorm_sessions (user_id, created_at, id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_session_agent ON session_agents (session_id, agent_id);
+CREATE INDEX IF NOT EXISTS idx_session_agents_agent_id ON session_agents (agent_id);
+CREATE INDEX IF NOT EXISTS idx_phases_session_id ON phases (session_id);
+CREATE INDEX IF NOT EXISTS idx_agent_responses_phase_id ON agent_responses (phase_id);
+CREATE INDEX IF NOT EXISTS idx_reports_session_id ON reports (session_id);
+CREATE INDEX IF NOT EXISTS idx_agent_versions_agent_id ON agent_versions (agent_id);
@@ -1,8 +1,14 @@
 package com.yiqi.config;
 
+import com.yiqi.enums.TrafficClass;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * AI服务配置属性类
  * 用于绑定application.yml中的AI服务相关配置
@@ -13,6 +19,19 @@ public class AIServiceProperties {
 
     private QiniuConfig qiniu = new QiniuConfig();
     private AliyunConfig aliyun = new AliyunConfig();
+    private SchedulerConfig scheduler = new SchedulerConfig();
+    private FakeConfig fake = new FakeConfig();
+    private RouterConfig router = new RouterConfig();
+    private PipelineConfig pipeline = new PipelineConfig();
+    private SpeculationConfig speculation = new SpeculationConfig();
+    private TimelineConfig timeline = new TimelineConfig();
+    private PricingConfig pricing = new PricingConfig();
+    private EventsConfig events = new EventsConfig();
+    private StatusConfig status = new StatusConfig();
+    private StreamConfig stream = new StreamConfig();
+    private CacheConfig cache = new CacheConfig();
+    private LoginConfig login = new LoginConfig();
+    private PhaseExecutionConfig phaseExecution = new PhaseExecutionConfig();
 
     public QiniuConfig getQiniu() {
         return qiniu;
@@ -30,6 +49,110 @@ public class AIServiceProperties {
         this.aliyun = aliyun;
     }
 
+    public SchedulerConfig getScheduler() {
+        return scheduler;
+    }
+
+    public void setScheduler(SchedulerConfig scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public FakeConfig getFake() {
+        return fake;
+    }
+
+    public void setFake(FakeConfig fake) {
+        this.fake = fake;
+    }
+
+    public RouterConfig getRouter() {
+        return router;
+    }
+
+    public void setRouter(RouterConfig router) {
+        this.router = router;
+    }
+
+    public PipelineConfig getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(PipelineConfig pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public SpeculationConfig getSpeculation() {
+        return speculation;
+    }
+
+    public void setSpeculation(SpeculationConfig speculation) {
+        this.speculation = speculation;
+    }
+
+    public TimelineConfig getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(TimelineConfig timeline) {
+        this.timeline = timeline;
+    }
+
+    public PricingConfig getPricing() {
+        return pricing;
+    }
+
+    public void setPricing(PricingConfig pricing) {
+        this.pricing = pricing;
+    }
+
+    public EventsConfig getEvents() {
+        return events;
+    }
+
+    public void setEvents(EventsConfig events) {
+        this.events = events;
+    }
+
+    public StatusConfig getStatus() {
+        return status;
+    }
+
+    public void setStatus(StatusConfig status) {
+        this.status = status;
+    }
+
+    public StreamConfig getStream() {
+        return stream;
+    }
+
+    public void setStream(StreamConfig stream) {
+        this.stream = stream;
+    }
+
+    public CacheConfig getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheConfig cache) {
+        this.cache = cache;
+    }
+
+    public LoginConfig getLogin() {
+        return login;
+    }
+
+    public void setLogin(LoginConfig login) {
+        this.login = login;
+    }
+
+    public PhaseExecutionConfig getPhaseExecution() {
+        return phaseExecution;
+    }
+
+    public void setPhaseExecution(PhaseExecutionConfig phaseExecution) {
+        this.phaseExecution = phaseExecution;
+    }
+
     /**
      * 七牛云AI服务配置
      */
@@ -40,6 +163,9 @@ public class AIServiceProperties {
         private int timeout = 30000;
         private int retryAttempts = 3;
         private String model;
+        private String[] models = new String[0];
+        private int maxConcurrent = 16;
+        private int maxIdleConnections = 8;
 
         public String getApiKey() {
             return apiKey;
@@ -88,6 +214,30 @@ public class AIServiceProperties {
         public void setModel(String model) {
             this.model = model;
         }
+
+        public String[] getModels() {
+            return models;
+        }
+
+        public void setModels(String[] models) {
+            this.models = models;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
     }
 
     /**
@@ -99,6 +249,12 @@ public class AIServiceProperties {
         private String endpoint;
         private int timeout = 60000;
         private String[] models;
+        private boolean enabled = false;
+        private String apiKey;
+        private String chatEndpoint = "https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation";
+        private String[] chatModels = {"qwen-plus", "qwen-turbo", "qwen-max", "qwen-max-longcontext"};
+        private int maxConcurrent = 8;
+        private int maxIdleConnections = 4;
 
         public String getAccessKeyId() {
             return accessKeyId;
@@ -139,5 +295,747 @@ public class AIServiceProperties {
         public void setModels(String[] models) {
             this.models = models;
         }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getChatEndpoint() {
+            return chatEndpoint;
+        }
+
+        public void setChatEndpoint(String chatEndpoint) {
+            this.chatEndpoint = chatEndpoint;
+        }
+
+        public String[] getChatModels() {
+            return chatModels;
+        }
+
+        public void setChatModels(String[] chatModels) {
+            this.chatModels = chatModels;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+    }
+
+    /**
+     * 推理调度器配置
+     * weights为各流量类别的调度权重，max-in-flight为类别可占用的上游并发上限（0表示不限）
+     */
+    public static class SchedulerConfig {
+        private int maxConcurrent = 16;
+        private int queueCapacity = 500;
+        private Map<TrafficClass, Integer> weights = new EnumMap<>(TrafficClass.class);
+        private Map<TrafficClass, Integer> maxInFlight = new EnumMap<>(TrafficClass.class);
+        // 派发后单次上游调用的超时时间（秒），不含排队时间
+        private int executionTimeoutSeconds = 60;
+        // 各类别在队列中的最长等待时间（秒），低优先级类别允许排得更久
+        private Map<TrafficClass, Integer> queueTimeoutSeconds = new EnumMap<>(TrafficClass.class);
+
+        public SchedulerConfig() {
+            weights.put(TrafficClass.INTERACTIVE, 8);
+            weights.put(TrafficClass.REPORT, 3);
+            weights.put(TrafficClass.BATCH, 2);
+            weights.put(TrafficClass.PROBE, 1);
+            weights.put(TrafficClass.SPECULATIVE, 1);
+            maxInFlight.put(TrafficClass.BATCH, 8);
+            maxInFlight.put(TrafficClass.REPORT, 4);
+            maxInFlight.put(TrafficClass.PROBE, 2);
+            maxInFlight.put(TrafficClass.SPECULATIVE, 4);
+            queueTimeoutSeconds.put(TrafficClass.INTERACTIVE, 60);
+            queueTimeoutSeconds.put(TrafficClass.REPORT, 300);
+            queueTimeoutSeconds.put(TrafficClass.BATCH, 600);
+            queueTimeoutSeconds.put(TrafficClass.PROBE, 30);
+            queueTimeoutSeconds.put(TrafficClass.SPECULATIVE, 300);
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Map<TrafficClass, Integer> getWeights() {
+            return weights;
+        }
+
+        public void setWeights(Map<TrafficClass, Integer> weights) {
+            this.weights = weights;
+        }
+
+        public Map<TrafficClass, Integer> getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(Map<TrafficClass, Integer> maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getExecutionTimeoutSeconds() {
+            return executionTimeoutSeconds;
+        }
+
+        public void setExecutionTimeoutSeconds(int executionTimeoutSeconds) {
+            this.executionTimeoutSeconds = executionTimeoutSeconds;
+        }
+
+        public Map<TrafficClass, Integer> getQueueTimeoutSeconds() {
+            return queueTimeoutSeconds;
+        }
+
+        public void setQueueTimeoutSeconds(Map<TrafficClass, Integer> queueTimeoutSeconds) {
+            this.queueTimeoutSeconds = queueTimeoutSeconds;
+        }
+    }
+
+    /**
+     * 进程内模拟模型配置，用于本地联调与测试，不访问任何外部服务
+     */
+    public static class FakeConfig {
+        private boolean enabled = false;
+        private long latencyMs = 200;
+        private long chunkDelayMs = 20;
+        private double failureRate = 0.0;
+        private int maxConcurrent = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+
+        public void setLatencyMs(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        public long getChunkDelayMs() {
+            return chunkDelayMs;
+        }
+
+        public void setChunkDelayMs(long chunkDelayMs) {
+            this.chunkDelayMs = chunkDelayMs;
+        }
+
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        public void setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+
+    /**
+     * 模型路由配置
+     * model-groups将代理的aiModel映射到一组等价的"提供方:模型"目标，
+     * role-models为对延迟敏感的角色指定更快的模型
+     */
+    public static class RouterConfig {
+        private String defaultProvider = "qiniu";
+        private double ewmaAlpha = 0.3;
+        private Map<String, List<String>> modelGroups = new HashMap<>();
+        private Map<String, String> roleModels = new HashMap<>();
+
+        public String getDefaultProvider() {
+            return defaultProvider;
+        }
+
+        public void setDefaultProvider(String defaultProvider) {
+            this.defaultProvider = defaultProvider;
+        }
+
+        public double getEwmaAlpha() {
+            return ewmaAlpha;
+        }
+
+        public void setEwmaAlpha(double ewmaAlpha) {
+            this.ewmaAlpha = ewmaAlpha;
+        }
+
+        public Map<String, List<String>> getModelGroups() {
+            return modelGroups;
+        }
+
+        public void setModelGroups(Map<String, List<String>> modelGroups) {
+            this.modelGroups = modelGroups;
+        }
+
+        public Map<String, String> getRoleModels() {
+            return roleModels;
+        }
+
+        public void setRoleModels(Map<String, String> roleModels) {
+            this.roleModels = roleModels;
+        }
+    }
+
+    /**
+     * 批量多阶段流水线配置
+     * max-concurrent-phases为同时执行的阶段数，已结束的任务保留job-retention-minutes后清理
+     */
+    public static class PipelineConfig {
+        private int maxConcurrentPhases = 8;
+        private int maxJobs = 200;
+        private long jobRetentionMinutes = 60;
+        private long emitterTimeoutMs = 1800000;
+
+        public int getMaxConcurrentPhases() {
+            return maxConcurrentPhases;
+        }
+
+        public void setMaxConcurrentPhases(int maxConcurrentPhases) {
+            this.maxConcurrentPhases = maxConcurrentPhases;
+        }
+
+        public int getMaxJobs() {
+            return maxJobs;
+        }
+
+        public void setMaxJobs(int maxJobs) {
+            this.maxJobs = maxJobs;
+        }
+
+        public long getJobRetentionMinutes() {
+            return jobRetentionMinutes;
+        }
+
+        public void setJobRetentionMinutes(long jobRetentionMinutes) {
+            this.jobRetentionMinutes = jobRetentionMinutes;
+        }
+
+        public long getEmitterTimeoutMs() {
+            return emitterTimeoutMs;
+        }
+
+        public void setEmitterTimeoutMs(long emitterTimeoutMs) {
+            this.emitterTimeoutMs = emitterTimeoutMs;
+        }
+    }
+
+    /**
+     * 阶段预执行配置
+     * max-tokens-per-user-per-hour为每个用户一小时内可用于预执行的token数；
+     * 开始时按estimated-tokens-per-call预占，完成后按实际用量结算
+     */
+    public static class SpeculationConfig {
+        private boolean enabled = true;
+        private long maxTokensPerUserPerHour = 200000;
+        private long estimatedTokensPerCall = 2000;
+        private int maxEntries = 200;
+        private long ttlMinutes = 30;
+        private int maxConcurrentPhases = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxTokensPerUserPerHour() {
+            return maxTokensPerUserPerHour;
+        }
+
+        public void setMaxTokensPerUserPerHour(long maxTokensPerUserPerHour) {
+            this.maxTokensPerUserPerHour = maxTokensPerUserPerHour;
+        }
+
+        public long getEstimatedTokensPerCall() {
+            return estimatedTokensPerCall;
+        }
+
+        public void setEstimatedTokensPerCall(long estimatedTokensPerCall) {
+            this.estimatedTokensPerCall = estimatedTokensPerCall;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTtlMinutes() {
+            return ttlMinutes;
+        }
+
+        public void setTtlMinutes(long ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+
+        public int getMaxConcurrentPhases() {
+            return maxConcurrentPhases;
+        }
+
+        public void setMaxConcurrentPhases(int maxConcurrentPhases) {
+            this.maxConcurrentPhases = maxConcurrentPhases;
+        }
+    }
+
+    /**
+     * 阶段执行时间线配置
+     * persist-dir非空时，执行结束的时间线同时以JSON文件写入该目录，内存淘汰后仍可查询
+     */
+    public static class TimelineConfig {
+        private boolean enabled = true;
+        private int maxEntries = 500;
+        private int maxSpansPerTimeline = 2000;
+        private String persistDir = "";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getMaxSpansPerTimeline() {
+            return maxSpansPerTimeline;
+        }
+
+        public void setMaxSpansPerTimeline(int maxSpansPerTimeline) {
+            this.maxSpansPerTimeline = maxSpansPerTimeline;
+        }
+
+        public String getPersistDir() {
+            return persistDir;
+        }
+
+        public void setPersistDir(String persistDir) {
+            this.persistDir = persistDir;
+        }
+    }
+
+    /**
+     * 会话状态推送配置
+     * coalesce-ms内的多次变更合并为一次推送；每个会话的订阅连接数受max-subscribers-per-session限制
+     */
+    public static class EventsConfig {
+        private long coalesceMs = 100;
+        private long emitterTimeoutMs = 1800000;
+        private int maxSubscribersPerSession = 8;
+
+        public long getCoalesceMs() {
+            return coalesceMs;
+        }
+
+        public void setCoalesceMs(long coalesceMs) {
+            this.coalesceMs = coalesceMs;
+        }
+
+        public long getEmitterTimeoutMs() {
+            return emitterTimeoutMs;
+        }
+
+        public void setEmitterTimeoutMs(long emitterTimeoutMs) {
+            this.emitterTimeoutMs = emitterTimeoutMs;
+        }
+
+        public int getMaxSubscribersPerSession() {
+            return maxSubscribersPerSession;
+        }
+
+        public void setMaxSubscribersPerSession(int maxSubscribersPerSession) {
+            this.maxSubscribersPerSession = maxSubscribersPerSession;
+        }
+    }
+
+    /**
+     * 推理状态存储配置
+     * 结束的状态保留retention-minutes，进行中但stale-minutes未更新的状态视为已中断；
+     * 条数超过max-entries时立即淘汰到上限的90%
+     */
+    public static class StatusConfig {
+        private int maxEntries = 10000;
+        private long retentionMinutes = 60;
+        private long staleMinutes = 30;
+        private long cleanupIntervalSeconds = 60;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getRetentionMinutes() {
+            return retentionMinutes;
+        }
+
+        public void setRetentionMinutes(long retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+
+        public long getStaleMinutes() {
+            return staleMinutes;
+        }
+
+        public void setStaleMinutes(long staleMinutes) {
+            this.staleMinutes = staleMinutes;
+        }
+
+        public long getCleanupIntervalSeconds() {
+            return cleanupIntervalSeconds;
+        }
+
+        public void setCleanupIntervalSeconds(long cleanupIntervalSeconds) {
+            this.cleanupIntervalSeconds = cleanupIntervalSeconds;
+        }
+    }
+
+    /**
+     * 阶段流式推理的续传缓冲配置
+     * 每个流在内存中保留最近memory-events个事件，更早的事件写入spill-dir（为空时使用系统临时目录）；
+     * 结束的流保留retention-minutes供断线重连补发，超过max-streams时先淘汰最早结束的流
+     */
+    public static class StreamConfig {
+        private int memoryEvents = 512;
+        private String spillDir = "";
+        private long retentionMinutes = 10;
+        private int maxStreams = 200;
+        private long emitterTimeoutMs = 600000;
+
+        public int getMemoryEvents() {
+            return memoryEvents;
+        }
+
+        public void setMemoryEvents(int memoryEvents) {
+            this.memoryEvents = memoryEvents;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+
+        public long getRetentionMinutes() {
+            return retentionMinutes;
+        }
+
+        public void setRetentionMinutes(long retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+
+        public int getMaxStreams() {
+            return maxStreams;
+        }
+
+        public void setMaxStreams(int maxStreams) {
+            this.maxStreams = maxStreams;
+        }
+
+        public long getEmitterTimeoutMs() {
+            return emitterTimeoutMs;
+        }
+
+        public void setEmitterTimeoutMs(long emitterTimeoutMs) {
+            this.emitterTimeoutMs = emitterTimeoutMs;
+        }
+    }
+
+    /**
+     * 进程内读缓存配置
+     * 会话状态缓存在会话、阶段或响应写入后立即失效，代理缓存在代理变更后立即失效，
+     * 用户主体缓存在锁定状态或密码变更后立即失效，TTL只兜底其他实例的写入；TTL为0时关闭。
+     * 已验证令牌缓存到令牌过期为止，只受条数上限约束
+     */
+    public static class CacheConfig {
+        private long sessionStatusTtlMs = 2000;
+        private int sessionStatusMaxEntries = 10000;
+        private long agentTtlMs = 300000;
+        private int agentMaxEntries = 5000;
+        private int verifiedTokenMaxEntries = 10000;
+        private long userPrincipalTtlMs = 60000;
+        private int userPrincipalMaxEntries = 10000;
+
+        public long getSessionStatusTtlMs() {
+            return sessionStatusTtlMs;
+        }
+
+        public void setSessionStatusTtlMs(long sessionStatusTtlMs) {
+            this.sessionStatusTtlMs = sessionStatusTtlMs;
+        }
+
+        public int getSessionStatusMaxEntries() {
+            return sessionStatusMaxEntries;
+        }
+
+        public void setSessionStatusMaxEntries(int sessionStatusMaxEntries) {
+            this.sessionStatusMaxEntries = sessionStatusMaxEntries;
+        }
+
+        public long getAgentTtlMs() {
+            return agentTtlMs;
+        }
+
+        public void setAgentTtlMs(long agentTtlMs) {
+            this.agentTtlMs = agentTtlMs;
+        }
+
+        public int getAgentMaxEntries() {
+            return agentMaxEntries;
+        }
+
+        public void setAgentMaxEntries(int agentMaxEntries) {
+            this.agentMaxEntries = agentMaxEntries;
+        }
+
+        public int getVerifiedTokenMaxEntries() {
+            return verifiedTokenMaxEntries;
+        }
+
+        public void setVerifiedTokenMaxEntries(int verifiedTokenMaxEntries) {
+            this.verifiedTokenMaxEntries = verifiedTokenMaxEntries;
+        }
+
+        public long getUserPrincipalTtlMs() {
+            return userPrincipalTtlMs;
+        }
+
+        public void setUserPrincipalTtlMs(long userPrincipalTtlMs) {
+            this.userPrincipalTtlMs = userPrincipalTtlMs;
+        }
+
+        public int getUserPrincipalMaxEntries() {
+            return userPrincipalMaxEntries;
+        }
+
+        public void setUserPrincipalMaxEntries(int userPrincipalMaxEntries) {
+            this.userPrincipalMaxEntries = userPrincipalMaxEntries;
+        }
+    }
+
+    /**
+     * 登录配置
+     * 密码哈希在独立的有界线程池中执行，排队超过maxQueueWaitMs的请求直接拒绝（503），
+     * 不占用Tomcat线程也不与推理争抢CPU；登录失败次数在内存中累计，按flushIntervalMs批量写回
+     */
+    public static class LoginConfig {
+        private int hashThreads = 0;
+        private int queueCapacity = 64;
+        private long maxQueueWaitMs = 2000;
+        private int maxFailedAttempts = 5;
+        private int lockMinutes = 15;
+        private long flushIntervalMs = 5000;
+
+        /**
+         * 哈希线程数，0表示CPU核数的一半（至少1）
+         */
+        public int getHashThreads() {
+            return hashThreads;
+        }
+
+        public void setHashThreads(int hashThreads) {
+            this.hashThreads = hashThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getMaxQueueWaitMs() {
+            return maxQueueWaitMs;
+        }
+
+        public void setMaxQueueWaitMs(long maxQueueWaitMs) {
+            this.maxQueueWaitMs = maxQueueWaitMs;
+        }
+
+        public int getMaxFailedAttempts() {
+            return maxFailedAttempts;
+        }
+
+        public void setMaxFailedAttempts(int maxFailedAttempts) {
+            this.maxFailedAttempts = maxFailedAttempts;
+        }
+
+        public int getLockMinutes() {
+            return lockMinutes;
+        }
+
+        public void setLockMinutes(int lockMinutes) {
+            this.lockMinutes = lockMinutes;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+    }
+
+    /**
+     * 阶段异步执行配置
+     * 执行接口受理后立即返回202，阶段推理在独立的有界线程池中编排（上游调用仍经推理调度器排队）；
+     * 执行线程与队列均满时返回503。结束的执行记录保留retentionMinutes供状态接口查询。
+     * 阶段执行权以条件更新写入阶段行，持有超过claimLeaseMinutes未释放（如实例崩溃）时可被新的执行接管
+     */
+    public static class PhaseExecutionConfig {
+        private int maxConcurrentPhases = 32;
+        private int queueCapacity = 256;
+        private long retentionMinutes = 30;
+        private long claimLeaseMinutes = 10;
+        private int maxIdempotencyKeyLength = 128;
+
+        public int getMaxConcurrentPhases() {
+            return maxConcurrentPhases;
+        }
+
+        public void setMaxConcurrentPhases(int maxConcurrentPhases) {
+            this.maxConcurrentPhases = maxConcurrentPhases;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getRetentionMinutes() {
+            return retentionMinutes;
+        }
+
+        public void setRetentionMinutes(long retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+
+        public long getClaimLeaseMinutes() {
+            return claimLeaseMinutes;
+        }
+
+        public void setClaimLeaseMinutes(long claimLeaseMinutes) {
+            this.claimLeaseMinutes = claimLeaseMinutes;
+        }
+
+        public int getMaxIdempotencyKeyLength() {
+            return maxIdempotencyKeyLength;
+        }
+
+        public void setMaxIdempotencyKeyLength(int maxIdempotencyKeyLength) {
+            this.maxIdempotencyKeyLength = maxIdempotencyKeyLength;
+        }
+    }
+
+    /**
+     * 模型计价配置
+     * 价格按每千token计，键为模型名（与代理的aiModel或实际服务模型一致）；未配置的模型费用计为0
+     */
+    public static class PricingConfig {
+        private String currency = "CNY";
+        private Map<String, ModelPrice> models = new HashMap<>();
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public void setCurrency(String currency) {
+            this.currency = currency;
+        }
+
+        public Map<String, ModelPrice> getModels() {
+            return models;
+        }
+
+        public void setModels(Map<String, ModelPrice> models) {
+            this.models = models;
+        }
+    }
+
+    /**
+     * 单个模型的价格
+     */
+    public static class ModelPrice {
+        private double promptPerThousand;
+        private double completionPerThousand;
+
+        public double getPromptPerThousand() {
+            return promptPerThousand;
+        }
+
+        public void setPromptPerThousand(double promptPerThousand) {
+            this.promptPerThousand = promptPerThousand;
+        }
+
+        public double getCompletionPerThousand() {
+            return completionPerThousand;
+        }
+
+        public void setCompletionPerThousand(double completionPerThousand) {
+            this.completionPerThousand = completionPerThousand;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.yiqi.config;
+
+import com.yiqi.service.llm.DashScopeProvider;
+import com.yiqi.service.llm.FakeLlmProvider;
+import com.yiqi.service.llm.LlmProvider;
+import com.yiqi.service.llm.OpenAICompatibleProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型提供方配置
+ * 七牛云始终注册；DashScope与进程内模拟提供方按配置开启
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+@Configuration
+public class LlmProviderConfig {
+
+    @Bean
+    public LlmProvider qiniuProvider(AIServiceProperties aiServiceProperties) {
+        return new OpenAICompatibleProvider("qiniu", aiServiceProperties.getQiniu());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "yiqi.ai.aliyun", name = "enabled", havingValue = "true")
+    public LlmProvider dashScopeProvider(AIServiceProperties aiServiceProperties) {
+        return new DashScopeProvider(aiServiceProperties.getAliyun());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "yiqi.ai.fake", name = "enabled", havingValue = "true")
+    public LlmProvider fakeLlmProvider(AIServiceProperties aiServiceProperties) {
+        return new FakeLlmProvider(aiServiceProperties.getFake());
+    }
+}
@@ -0,0 +1,237 @@
+package com.yiqi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Random;
+
+/**
+ * 模拟大模型服务配置属性类
+ * 仅在mock-llm配置文件下生效，绑定yiqi.mock-llm，运行期可通过管理接口整体替换
+ */
+@Component
+@Profile("mock-llm")
+@ConfigurationProperties(prefix = "yiqi.mock-llm")
+public class MockLlmProperties {
+
+    /** 收到请求到返回响应头之间的延迟（排队、网络开销） */
+    private DistributionConfig latency = DistributionConfig.fixed(50);
+    /** 流式模式下响应头之后到首个token的延迟；非流式模式计入总耗时 */
+    private DistributionConfig timeToFirstToken = DistributionConfig.fixed(300);
+    private double tokensPerSecond = 50;
+    /** 请求未指定max_tokens时生成的token数 */
+    private int completionTokens = 200;
+    /** 每个SSE片段包含的token数 */
+    private int tokensPerChunk = 1;
+
+    /** 返回500的概率 */
+    private double errorRate = 0.0;
+    /** 返回429的概率 */
+    private double rateLimitRate = 0.0;
+    private int retryAfterSeconds = 1;
+    /** 挂起不响应的概率，挂起hangMs后返回504 */
+    private double timeoutRate = 0.0;
+    private long hangMs = 65000;
+    /** 流式输出中途断开连接的概率 */
+    private double disconnectRate = 0.0;
+    /** 流式输出中插入无法解析的片段的概率 */
+    private double malformedChunkRate = 0.0;
+
+    public DistributionConfig getLatency() {
+        return latency;
+    }
+
+    public void setLatency(DistributionConfig latency) {
+        this.latency = latency;
+    }
+
+    public DistributionConfig getTimeToFirstToken() {
+        return timeToFirstToken;
+    }
+
+    public void setTimeToFirstToken(DistributionConfig timeToFirstToken) {
+        this.timeToFirstToken = timeToFirstToken;
+    }
+
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public void setTokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public void setCompletionTokens(int completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public int getTokensPerChunk() {
+        return tokensPerChunk;
+    }
+
+    public void setTokensPerChunk(int tokensPerChunk) {
+        this.tokensPerChunk = tokensPerChunk;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public double getRateLimitRate() {
+        return rateLimitRate;
+    }
+
+    public void setRateLimitRate(double rateLimitRate) {
+        this.rateLimitRate = rateLimitRate;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    public void setTimeoutRate(double timeoutRate) {
+        this.timeoutRate = timeoutRate;
+    }
+
+    public long getHangMs() {
+        return hangMs;
+    }
+
+    public void setHangMs(long hangMs) {
+        this.hangMs = hangMs;
+    }
+
+    public double getDisconnectRate() {
+        return disconnectRate;
+    }
+
+    public void setDisconnectRate(double disconnectRate) {
+        this.disconnectRate = disconnectRate;
+    }
+
+    public double getMalformedChunkRate() {
+        return malformedChunkRate;
+    }
+
+    public void setMalformedChunkRate(double malformedChunkRate) {
+        this.malformedChunkRate = malformedChunkRate;
+    }
+
+    /**
+     * 延迟分布类型
+     */
+    public enum DistributionType {
+        FIXED,
+        UNIFORM,
+        NORMAL,
+        LOGNORMAL,
+        EXPONENTIAL
+    }
+
+    /**
+     * 延迟分布配置
+     * FIXED取meanMs；UNIFORM在[minMs, maxMs]内均匀取值；其余按meanMs/stddevMs采样后截断到[minMs, maxMs]
+     */
+    public static class DistributionConfig {
+        private DistributionType type = DistributionType.FIXED;
+        private long meanMs;
+        private long stddevMs;
+        private long minMs;
+        private long maxMs = 120000;
+
+        static DistributionConfig fixed(long meanMs) {
+            DistributionConfig config = new DistributionConfig();
+            config.setMeanMs(meanMs);
+            return config;
+        }
+
+        /**
+         * 按分布采样一个延迟（毫秒）
+         */
+        public long sample(Random random) {
+            double value;
+            switch (type) {
+                case UNIFORM:
+                    value = minMs + random.nextDouble() * (maxMs - minMs);
+                    break;
+                case NORMAL:
+                    value = meanMs + random.nextGaussian() * stddevMs;
+                    break;
+                case LOGNORMAL:
+                    if (meanMs <= 0) {
+                        value = 0;
+                        break;
+                    }
+                    double sigmaSquared = Math.log(1 + (double) stddevMs * stddevMs / ((double) meanMs * meanMs));
+                    double mu = Math.log(meanMs) - sigmaSquared / 2;
+                    value = Math.exp(mu + Math.sqrt(sigmaSquared) * random.nextGaussian());
+                    break;
+                case EXPONENTIAL:
+                    value = -meanMs * Math.log(1 - random.nextDouble());
+                    break;
+                case FIXED:
+                default:
+                    value = meanMs;
+                    break;
+            }
+            return Math.max(minMs, Math.min(maxMs, Math.round(value)));
+        }
+
+        public DistributionType getType() {
+            return type;
+        }
+
+        public void setType(DistributionType type) {
+            this.type = type;
+        }
+
+        public long getMeanMs() {
+            return meanMs;
+        }
+
+        public void setMeanMs(long meanMs) {
+            this.meanMs = meanMs;
+        }
+
+        public long getStddevMs() {
+            return stddevMs;
+        }
+
+        public void setStddevMs(long stddevMs) {
+            this.stddevMs = stddevMs;
+        }
+
+        public long getMinMs() {
+            return minMs;
+        }
+
+        public void setMinMs(long minMs) {
+            this.minMs = minMs;
+        }
+
+        public long getMaxMs() {
+            return maxMs;
+        }
+
+        public void setMaxMs(long maxMs) {
+            this.maxMs = maxMs;
+        }
+    }
+}
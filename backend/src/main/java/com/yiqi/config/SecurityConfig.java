@@ -1,6 +1,7 @@
 package com.yiqi.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -34,6 +35,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${yiqi.security.prometheus-allowed-addresses:}")
+    private String[] prometheusAllowedAddresses;
+
     /**
      * 密码编码器
      */
@@ -65,6 +69,10 @@ public class SecurityConfig {
                 .antMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
                 // 健康检查接口
                 .antMatchers("/actuator/health").permitAll()
+                // Prometheus指标抓取：需要认证，或来自配置的抓取方地址
+                .antMatchers("/actuator/prometheus").access(prometheusAccess())
+                // 模拟大模型服务（仅mock-llm配置文件下存在）
+                .antMatchers("/mock-llm/**").permitAll()
                 // 其他接口需要认证
                 .anyRequest().authenticated()
             );
@@ -74,4 +82,19 @@ public class SecurityConfig {
 
         return http.build();
     }
+
+    /**
+     * Prometheus抓取端点的访问规则
+     * 未配置抓取方地址时与其他接口一样需要认证；配置后这些地址或网段可免认证抓取。
+     * 按请求的来源地址匹配，经反向代理转发时匹配到的是代理地址，应在代理上屏蔽该路径
+     */
+    private String prometheusAccess() {
+        StringBuilder access = new StringBuilder();
+        for (String address : prometheusAllowedAddresses) {
+            if (address != null && !address.trim().isEmpty()) {
+                access.append("hasIpAddress('").append(address.trim()).append("') or ");
+            }
+        }
+        return access.append("isAuthenticated()").toString();
+    }
 }
@@ -2,9 +2,11 @@ package com.yiqi.controller;
 
 import com.yiqi.dto.ai.AgentInferenceRequest;
 import com.yiqi.dto.ai.AgentInferenceResponse;
+import com.yiqi.dto.ai.InferenceContext;
 import com.yiqi.dto.ai.ParallelInferenceResult;
 import com.yiqi.service.AIInferenceService;
 import com.yiqi.service.AIServiceHealthMonitor;
+import com.yiqi.service.InferenceMetrics;
 import com.yiqi.service.InferenceStatusService;
 import com.yiqi.service.QiniuAIService;
 import org.slf4j.Logger;
@@ -12,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
@@ -38,6 +41,9 @@ public class AIInferenceController {
     
     @Autowired
     private InferenceStatusService inferenceStatusService;
+    
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
 
     /**
      * 处理单个代理推理请求
@@ -45,7 +51,11 @@ public class AIInferenceController {
     @PostMapping("/agent")
     public Object processAgentInference(
             @RequestBody AgentInferenceRequest request,
-            @RequestParam(defaultValue = "false") boolean stream) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            Authentication authentication) {
+        
+        InferenceContext inferenceContext = InferenceContext.interactive(
+            authentication != null ? authentication.getName() : null);
         
         if (stream) {
             // 流式输出
@@ -79,6 +89,7 @@ public class AIInferenceController {
             qiniuAIService.sendStreamingInferenceRequest(
                 request.getSystemPrompt(),
                 request.getUserPrompt(),
+                inferenceContext.forAgent(request.getAiModel(), request.getRoleType()),
                 new QiniuAIService.StreamingResponseHandler() {
                     @Override
                     public void onData(String data) {
@@ -90,7 +101,7 @@ public class AIInferenceController {
                         
                         try {
                             // 发送数据片段
-                            emitter.send(data);
+                            inferenceMetrics.timeEmitterSend("/api/ai-inference/agent?stream=true", () -> emitter.send(data));
                         } catch (IllegalStateException e) {
                             logger.warn("发送流式数据时emitter已关闭: agentId={}", request.getAgentId());
                             emitterCompleted.set(true);
@@ -143,7 +154,7 @@ public class AIInferenceController {
             // 普通输出
             logger.info("收到单代理推理请求: agentId={}", request.getAgentId());
             
-            return aiInferenceService.processAgentInference(request)
+            return aiInferenceService.processAgentInference(request, inferenceContext)
                 .thenApply(response -> {
                     if (response.isSuccess()) {
                         return ResponseEntity.ok(response);
@@ -216,7 +227,8 @@ public class AIInferenceController {
      * 处理单个代理流式推理请求
      */
     @PostMapping(value = "/agent/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public ResponseBodyEmitter processAgentStreamingInference(@RequestBody AgentInferenceRequest request) {
+    public ResponseBodyEmitter processAgentStreamingInference(@RequestBody AgentInferenceRequest request,
+                                                              Authentication authentication) {
         logger.info("收到单代理流式推理请求: agentId={}", request.getAgentId());
         
         ResponseBodyEmitter emitter = new ResponseBodyEmitter();
@@ -228,6 +240,8 @@ public class AIInferenceController {
         qiniuAIService.sendStreamingInferenceRequest(
             request.getSystemPrompt(),
             request.getUserPrompt(),
+            InferenceContext.interactive(authentication != null ? authentication.getName() : null)
+                .forAgent(request.getAiModel(), request.getRoleType()),
             new QiniuAIService.StreamingResponseHandler() {
                 @Override
                 public void onData(String data) {
@@ -238,7 +252,7 @@ public class AIInferenceController {
                     
                     try {
                         // 发送数据片段
-                        emitter.send(data);
+                        inferenceMetrics.timeEmitterSend("/api/ai-inference/agent/stream", () -> emitter.send(data));
                     } catch (Exception e) {
                         logger.error("发送流式数据失败", e);
                         if (!emitterCompleted.getAndSet(true)) {
@@ -1,14 +1,24 @@
 package com.yiqi.controller;
 
+import com.yiqi.dto.UsageSummaryResponse;
+import com.yiqi.enums.UsageGroupBy;
 import com.yiqi.service.AIServiceHealthMonitor;
+import com.yiqi.service.InferenceCoalescer;
+import com.yiqi.service.InferenceScheduler;
 import com.yiqi.service.InferenceStatusService;
 import com.yiqi.service.QiniuAIService;
+import com.yiqi.service.UsageService;
+import com.yiqi.service.llm.ModelRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * AI服务管理控制器
  * 提供AI服务健康监控和管理功能
@@ -27,6 +37,18 @@ public class AIServiceAdminController {
     
     @Autowired
     private InferenceStatusService inferenceStatusService;
+    
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+    
+    @Autowired
+    private ModelRouter modelRouter;
+    
+    @Autowired
+    private InferenceCoalescer inferenceCoalescer;
+    
+    @Autowired
+    private UsageService usageService;
 
     /**
      * 获取AI服务健康状态
@@ -47,6 +69,49 @@ public class AIServiceAdminController {
         return ResponseEntity.ok(statistics);
     }
 
+    /**
+     * 获取推理调度统计（各流量类别的排队深度与排队等待时间）
+     */
+    @GetMapping("/scheduler")
+    public ResponseEntity<InferenceScheduler.SchedulerStatistics> getSchedulerStatistics() {
+        return ResponseEntity.ok(inferenceScheduler.getStatistics());
+    }
+
+    /**
+     * 获取模型路由目标的负载状态（延迟EWMA、在途请求与失败数）
+     */
+    @GetMapping("/routes")
+    public ResponseEntity<List<ModelRouter.RouteTarget>> getRouteTargets() {
+        return ResponseEntity.ok(modelRouter.getTargets());
+    }
+
+    /**
+     * 获取请求合并统计（复用在途调用的比例）
+     */
+    @GetMapping("/coalescing")
+    public ResponseEntity<InferenceCoalescer.CoalescingStatistics> getCoalescingStatistics() {
+        return ResponseEntity.ok(inferenceCoalescer.getStatistics());
+    }
+
+    /**
+     * 获取全站token用量统计
+     * 
+     * @param groupBy 统计维度：user/agent/phaseType/model，默认user
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<UsageSummaryResponse> getUsage(
+            @RequestParam(defaultValue = "user") String groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        UsageGroupBy dimension;
+        try {
+            dimension = UsageGroupBy.fromCode(groupBy);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(usageService.getUsage(dimension, null, from, to));
+    }
+
     /**
      * 手动重置熔断器
      */
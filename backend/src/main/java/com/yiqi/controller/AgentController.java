@@ -310,7 +310,7 @@ public class AgentController {
             if (authentication.getPrincipal() instanceof UserDetailsServiceImpl.UserPrincipal) {
                 UserDetailsServiceImpl.UserPrincipal userPrincipal = 
                     (UserDetailsServiceImpl.UserPrincipal) authentication.getPrincipal();
-                return userPrincipal.getUser().getId();
+                return userPrincipal.getUserId();
             }
             
             // 如果principal是字符串（用户名），需要通过用户名查找用户ID
@@ -0,0 +1,80 @@
+package com.yiqi.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yiqi.config.MockLlmProperties;
+import com.yiqi.service.MockLlmService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 模拟大模型服务控制器
+ * 仅在mock-llm配置文件下注册；将yiqi.ai.qiniu.base-url/backup-url指向/mock-llm/v1即可替代真实上游
+ */
+@RestController
+@Profile("mock-llm")
+@RequestMapping("/mock-llm")
+public class MockLlmController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockLlmController.class);
+
+    @Autowired
+    private MockLlmService mockLlmService;
+
+    @Autowired
+    private MockLlmProperties mockLlmProperties;
+
+    /**
+     * OpenAI兼容的对话补全接口，stream=true时以SSE输出
+     *
+     * @param fault 强制注入的故障：ERROR、RATE_LIMIT、TIMEOUT、DISCONNECT、MALFORMED或NONE
+     */
+    @PostMapping("/v1/chat/completions")
+    public Object chatCompletions(@RequestBody JsonNode request,
+                                  @RequestHeader(value = "X-Mock-Fault", required = false) String fault) {
+        return mockLlmService.chatCompletions(request, fault);
+    }
+
+    /**
+     * 获取当前的延迟与故障配置
+     */
+    @GetMapping("/admin/profile")
+    public ResponseEntity<MockLlmProperties> getProfile() {
+        return ResponseEntity.ok(mockLlmProperties);
+    }
+
+    /**
+     * 整体替换延迟与故障配置，对之后的请求生效
+     */
+    @PutMapping("/admin/profile")
+    public ResponseEntity<MockLlmProperties> updateProfile(@RequestBody MockLlmProperties profile) {
+        BeanUtils.copyProperties(profile, mockLlmProperties);
+        logger.info("模拟大模型配置已更新: ttftMean={}ms, tokensPerSecond={}, errorRate={}, rateLimitRate={}",
+            mockLlmProperties.getTimeToFirstToken().getMeanMs(), mockLlmProperties.getTokensPerSecond(),
+            mockLlmProperties.getErrorRate(), mockLlmProperties.getRateLimitRate());
+        return ResponseEntity.ok(mockLlmProperties);
+    }
+
+    /**
+     * 获取请求、故障与流式输出统计
+     */
+    @GetMapping("/admin/stats")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(mockLlmService.getStatistics());
+    }
+
+    /**
+     * 清空统计
+     */
+    @DeleteMapping("/admin/stats")
+    public ResponseEntity<Void> resetStatistics() {
+        mockLlmService.resetStatistics();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,32 +1,44 @@
 package com.yiqi.controller;
 
+import com.yiqi.dto.ai.InferenceContext;
 import com.yiqi.dto.ai.ParallelInferenceResult;
 import com.yiqi.dto.parallel.*;
 import com.yiqi.entity.Agent;
 import com.yiqi.entity.BrainstormSession;
 import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.StatisticsTimeRange;
 import com.yiqi.service.AIInferenceService;
 import com.yiqi.service.AgentService;
+import com.yiqi.service.BatchPipelineService;
 import com.yiqi.service.SessionService;
+import com.yiqi.service.InferenceMetrics;
 import com.yiqi.service.InferenceStatusService;
+import com.yiqi.service.PhaseStreamService;
+import com.yiqi.service.PhaseTimelineService;
 import com.yiqi.service.QiniuAIService;
+import com.yiqi.service.UserDetailsServiceImpl;
+import com.yiqi.service.UserService;
+import com.yiqi.service.stream.ReplayableStream;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.springframework.http.MediaType;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * 并行推理控制器
@@ -53,6 +65,21 @@ public class ParallelInferenceController {
     
     @Autowired
     private QiniuAIService qiniuAIService;
+    
+    @Autowired
+    private BatchPipelineService batchPipelineService;
+    
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+    
+    @Autowired
+    private PhaseTimelineService phaseTimelineService;
+
+    @Autowired
+    private PhaseStreamService phaseStreamService;
+
+    @Autowired
+    private UserService userService;
 
     /**
      * 触发会话阶段的并行推理
@@ -134,6 +161,8 @@ public class ParallelInferenceController {
                         qiniuAIService.sendStreamingInferenceRequest(
                             systemPrompt,
                             finalUserPrompt,
+                            InferenceContext.interactive(getCurrentUserKey(authentication))
+                                .forAgent(agent.getAiModel(), agent.getRoleType()),
                             new QiniuAIService.StreamingResponseHandler() {
                                 @Override
                                 public void onData(String data) {
@@ -147,7 +176,7 @@ public class ParallelInferenceController {
                                         // 发送数据片段，包含代理ID和名称
                                         String response = String.format("{\"agentId\":%d,\"agentName\":\"%s\",\"data\":%s}",
                                             agent.getId(), agent.getName(), data);
-                                        emitter.send(response);
+                                        inferenceMetrics.timeEmitterSend("/api/parallel-inference/sessions/{sessionId}/phases/{phaseType}/execute?stream=true", () -> emitter.send(response));
                                     } catch (IllegalStateException e) {
                                         logger.warn("发送流式数据时emitter已关闭: agentId={}", agent.getId());
                                         emitterCompleted.set(true);
@@ -246,7 +275,8 @@ public class ParallelInferenceController {
                         request.getUserPrompt(),
                         sessionContext,
                         sessionId.toString(),
-                        phaseType
+                        phaseType,
+                        InferenceContext.interactive(getCurrentUserKey(authentication))
                     );
                     
                     logger.info("会话阶段推理完成: sessionId={}, phaseType={}, 成功率={:.2f}%", 
@@ -333,6 +363,8 @@ public class ParallelInferenceController {
                         qiniuAIService.sendStreamingInferenceRequest(
                             agent.getSystemPrompt(),
                             request.getUserPrompt(),
+                            InferenceContext.interactive(getCurrentUserKey(authentication))
+                                .forAgent(agent.getAiModel(), agent.getRoleType()),
                             new QiniuAIService.StreamingResponseHandler() {
                                 @Override
                                 public void onData(String data) {
@@ -346,7 +378,7 @@ public class ParallelInferenceController {
                                         // 发送数据片段，包含代理ID和名称
                                         String response = String.format("{\"agentId\":%d,\"agentName\":\"%s\",\"data\":%s}",
                                             agent.getId(), agent.getName(), data);
-                                        emitter.send(response);
+                                        inferenceMetrics.timeEmitterSend("/api/parallel-inference/custom?stream=true", () -> emitter.send(response));
                                     } catch (IllegalStateException e) {
                                         logger.warn("发送流式数据时emitter已关闭: agentId={}", agent.getId());
                                         emitterCompleted.set(true);
@@ -440,7 +472,8 @@ public class ParallelInferenceController {
                         request.getUserPrompt(),
                         request.getSessionContext(),
                         request.getSessionId(),
-                        request.getPhaseType()
+                        request.getPhaseType(),
+                        InferenceContext.interactive(getCurrentUserKey(authentication))
                     );
                     
                     logger.info("自定义并行推理完成: sessionId={}, 成功率={:.2f}%", 
@@ -476,17 +509,16 @@ public class ParallelInferenceController {
             Authentication authentication) {
         
         try {
-            // 验证会话所有权（如果是数字会话ID）
-            if (sessionId.matches("\\d+")) {
-                validateSessionOwnership(Long.parseLong(sessionId), authentication);
-            }
-            
             // 获取推理状态
             InferenceStatusService.SessionInferenceStatus status = inferenceStatusService.getSessionInferenceStatus(sessionId, phaseType.name());
             
             if (status == null) {
                 return ResponseEntity.notFound().build();
             }
+            // 只有发起推理的用户可以查看，未记录发起用户的状态一律拒绝
+            if (!isOwner(inferenceStatusService.getOwnerId(sessionId, phaseType.name()), authentication)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
             
             // 构建详细结果
             ParallelInferenceResultDetail detail = new ParallelInferenceResultDetail();
@@ -510,104 +542,104 @@ public class ParallelInferenceController {
         }
     }
 
+    /**
+     * 获取阶段执行时间线
+     */
+    @GetMapping("/results/{sessionId}/{phaseType}/timeline")
+    @Operation(summary = "获取阶段执行时间线", description = "返回最近一次阶段执行的排队、重试、首字节、完成、总结与持久化区间（瀑布图格式）")
+    public ResponseEntity<PhaseTimelineView> getPhaseTimeline(
+            @Parameter(description = "会话ID") @PathVariable String sessionId,
+            @Parameter(description = "阶段类型") @PathVariable PhaseType phaseType,
+            Authentication authentication) {
+        
+        PhaseTimelineView timeline = phaseTimelineService.getTimeline(sessionId, phaseType.name());
+        if (timeline == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 时间线记录了发起执行的用户，未记录发起用户的时间线一律拒绝
+        if (!isOwner(timeline.getOwnerId(), authentication)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(timeline);
+    }
+
     /**
      * 批量执行多阶段推理
+     * 以后台任务运行，立即返回任务ID；阶段按依赖关系并发执行
      */
     @PostMapping("/batch/multi-phase")
-    @Operation(summary = "批量多阶段推理", description = "按顺序执行多个阶段的并行推理")
-    public DeferredResult<ResponseEntity<BatchInferenceResult>> executeBatchMultiPhaseInference(
+    @Operation(summary = "批量多阶段推理", description = "按阶段依赖提交批量推理任务，返回任务ID")
+    public ResponseEntity<BatchPipelineService.BatchJobStatus> executeBatchMultiPhaseInference(
             @Valid @RequestBody BatchMultiPhaseInferenceRequest request,
             Authentication authentication) {
         
         logger.info("收到批量多阶段推理请求: sessionId={}, phaseCount={}", 
                    request.getSessionId(), request.getPhases().size());
         
-        // 创建DeferredResult，设置120秒超时时间
-        DeferredResult<ResponseEntity<BatchInferenceResult>> deferredResult = new DeferredResult<>(120000L);
+        // 验证会话所有权
+        validateSessionOwnership(request.getSessionId(), authentication);
         
-        // 在新线程中执行推理任务
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                // 验证会话所有权
-                validateSessionOwnership(request.getSessionId(), authentication);
-                
-                BatchInferenceResult batchResult = new BatchInferenceResult();
-                batchResult.setSessionId(request.getSessionId());
-                batchResult.setStartTime(java.time.LocalDateTime.now());
-                
-                // 获取会话代理
-                List<Agent> agents = sessionService.getSessionAgents(request.getSessionId());
-                BrainstormSession session = sessionService.getSessionById(request.getSessionId());
-                
-                String previousResults = "";
-                
-                // 按顺序执行各个阶段
-                for (PhaseInferenceConfig phaseConfig : request.getPhases()) {
-                    logger.info("执行阶段: {}", phaseConfig.getPhaseType());
-                    
-                    // 构建阶段上下文
-                    String phaseContext = buildPhaseContext(session, phaseConfig, previousResults);
-                    
-                    // 执行阶段推理
-                    ParallelInferenceResult phaseResult = aiInferenceService.processParallelInference(
-                        agents,
-                        phaseConfig.getUserPrompt(),
-                        phaseContext,
-                        request.getSessionId().toString(),
-                        phaseConfig.getPhaseType()
-                    );
-                    
-                    // 添加到批量结果
-                    batchResult.addPhaseResult(phaseConfig.getPhaseType(), phaseResult);
-                    
-                    // 更新前一阶段结果，用于下一阶段
-                    if (phaseResult.hasSuccessfulResponses()) {
-                        previousResults = phaseResult.getPhaseSummary();
-                    }
-                    
-                    // 如果当前阶段失败且配置为失败时停止，则中断执行
-                    if (!phaseResult.hasSuccessfulResponses() && request.isStopOnFailure()) {
-                        logger.warn("阶段{}失败，停止后续阶段执行", phaseConfig.getPhaseType());
-                        break;
-                    }
-                }
-                
-                batchResult.setEndTime(java.time.LocalDateTime.now());
-                batchResult.calculateOverallStats();
-                
-                logger.info("批量多阶段推理完成: sessionId={}, 总成功率={:.2f}%", 
-                           request.getSessionId(), batchResult.getOverallSuccessRate() * 100);
-                
-                return ResponseEntity.ok(batchResult);
-                
-            } catch (Exception e) {
-                logger.error("批量多阶段推理失败: sessionId={}", request.getSessionId(), e);
-                return ResponseEntity.status(500).<BatchInferenceResult>body(null);
-            }
-        }).whenComplete((result, throwable) -> {
-            if (throwable != null) {
-                logger.error("异步处理异常", throwable);
-                deferredResult.setErrorResult(throwable);
-            } else {
-                deferredResult.setResult(result);
-            }
-        });
+        BatchPipelineService.BatchJobStatus status = batchPipelineService.submit(request, getCurrentUserKey(authentication));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+
+    /**
+     * 查询批量推理任务
+     */
+    @GetMapping("/batch/jobs/{jobId}")
+    @Operation(summary = "查询批量推理任务", description = "获取批量多阶段推理任务的阶段进度与结果")
+    public ResponseEntity<BatchPipelineService.BatchJobStatus> getBatchJob(
+            @Parameter(description = "任务ID") @PathVariable String jobId,
+            Authentication authentication) {
         
-        return deferredResult;
+        BatchPipelineService.BatchJobStatus status = batchPipelineService.getJob(jobId, getCurrentUserKey(authentication));
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 订阅批量推理任务的阶段事件
+     */
+    @GetMapping(value = "/batch/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅批量推理进度", description = "以SSE推送各阶段的开始、完成与跳过事件")
+    public ResponseEntity<SseEmitter> subscribeBatchJob(
+            @Parameter(description = "任务ID") @PathVariable String jobId,
+            Authentication authentication) {
+        
+        SseEmitter emitter = batchPipelineService.subscribe(jobId, getCurrentUserKey(authentication));
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
     }
 
     /**
      * 获取推理性能统计
      */
     @GetMapping("/statistics/performance")
-    @Operation(summary = "获取推理性能统计", description = "获取系统的推理性能统计信息")
+    @Operation(summary = "获取推理性能统计", description = "获取系统的推理性能统计信息，耗时分布按时间范围（1m/5m/1h/24h，默认5m）统计")
     public ResponseEntity<InferencePerformanceStats> getInferencePerformanceStats(
             @RequestParam(required = false) String timeRange,
             Authentication authentication) {
         
+        StatisticsTimeRange range;
+        try {
+            range = timeRange != null ? StatisticsTimeRange.fromCode(timeRange) : StatisticsTimeRange.FIVE_MINUTES;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
         try {
-            // 获取性能统计（这里需要实现具体的统计逻辑）
             InferencePerformanceStats stats = new InferencePerformanceStats();
+            stats.setTimeRange(range.getCode());
+            stats.setStatisticsTime(LocalDateTime.now());
+            
+            // 窗口内的耗时分布
+            stats.setAgentLatency(inferenceMetrics.getAgentLatency(range));
+            stats.setPhaseLatency(inferenceMetrics.getPhaseLatency(range));
+            stats.setSummaryLatency(inferenceMetrics.getSummaryLatency(range));
             
             // 从InferenceStatusService获取基础统计
             InferenceStatusService.InferenceStatistics systemStats = inferenceStatusService.getSystemStatistics();
@@ -642,6 +674,26 @@ public class ParallelInferenceController {
         }
     }
 
+    /**
+     * 获取当前用户的推理标识（用户ID字符串），与阶段服务发起推理时使用的标识一致
+     */
+    private String getCurrentUserKey(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof UserDetailsServiceImpl.UserPrincipal) {
+            return String.valueOf(((UserDetailsServiceImpl.UserPrincipal) authentication.getPrincipal()).getUserId());
+        }
+        return String.valueOf(userService.findByUsername(authentication.getName()).getId());
+    }
+
+    /**
+     * 判断当前用户是否为记录的发起用户，发起用户未知时返回false
+     */
+    private boolean isOwner(String ownerId, Authentication authentication) {
+        if (ownerId == null || authentication == null || authentication.getName() == null) {
+            return false;
+        }
+        return ownerId.equals(getCurrentUserKey(authentication));
+    }
+
     /**
      * 验证代理所有权
      */
@@ -671,34 +723,12 @@ public class ParallelInferenceController {
         return context.toString();
     }
 
-    /**
-     * 构建阶段上下文
-     */
-    private String buildPhaseContext(BrainstormSession session, PhaseInferenceConfig phaseConfig, String previousResults) {
-        StringBuilder context = new StringBuilder();
-        
-        context.append("会话标题: ").append(session.getTitle()).append("\n");
-        if (session.getDescription() != null) {
-            context.append("会话描述: ").append(session.getDescription()).append("\n");
-        }
-        
-        if (phaseConfig.getAdditionalContext() != null) {
-            context.append("阶段信息: ").append(phaseConfig.getAdditionalContext()).append("\n");
-        }
-        
-        if (previousResults != null && !previousResults.trim().isEmpty()) {
-            context.append("前面阶段结果: ").append(previousResults).append("\n");
-        }
-        
-        return context.toString();
-    }
-    
     /**
      * 触发会话阶段的流式并行推理
      */
     @PostMapping(value = "/sessions/{sessionId}/phases/{phaseType}/execute/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    @Operation(summary = "执行会话阶段流式推理", description = "触发指定会话和阶段的多代理流式并行推理")
-    public ResponseBodyEmitter executeSessionPhaseStreamingInference(
+    @Operation(summary = "执行会话阶段流式推理", description = "触发指定会话和阶段的多代理流式并行推理，事件带有递增ID，断线后可凭Last-Event-ID重连")
+    public SseEmitter executeSessionPhaseStreamingInference(
             @Parameter(description = "会话ID") @PathVariable Long sessionId,
             @Parameter(description = "阶段类型") @PathVariable PhaseType phaseType,
             @Valid @RequestBody SessionPhaseInferenceRequest request,
@@ -709,7 +739,9 @@ public class ParallelInferenceController {
         // 验证会话所有权
         validateSessionOwnership(sessionId, authentication);
         
-        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        // 事件写入续传缓冲，客户端断开后推理继续进行，重连时补发
+        ReplayableStream stream = phaseStreamService.open(sessionId, phaseType.name(), getCurrentUserKey(authentication));
+        SseEmitter emitter = phaseStreamService.subscribe(stream, 0L);
         
         // 在新线程中执行流式推理任务
         CompletableFuture.runAsync(() -> {
@@ -729,7 +761,6 @@ public class ParallelInferenceController {
                 
                 // 使用原子计数器跟踪完成的代理数量
                 java.util.concurrent.atomic.AtomicInteger completedAgents = new java.util.concurrent.atomic.AtomicInteger(0);
-                java.util.concurrent.atomic.AtomicBoolean emitterCompleted = new java.util.concurrent.atomic.AtomicBoolean(false);
                 
                 // 为每个代理创建流式推理请求
                 for (Agent agent : agents) {
@@ -751,38 +782,21 @@ public class ParallelInferenceController {
                     qiniuAIService.sendStreamingInferenceRequest(
                         systemPrompt,
                         finalUserPrompt,
+                        InferenceContext.interactive(getCurrentUserKey(authentication))
+                            .forAgent(agent.getAiModel(), agent.getRoleType()),
                         new QiniuAIService.StreamingResponseHandler() {
                             @Override
                             public void onData(String data) {
-                                // 检查emitter是否已经完成
-                                if (emitterCompleted.get()) {
-                                    return;
-                                }
-                                
-                                try {
-                                    // 发送数据片段，包含代理ID和名称
-                                    String response = String.format("{\"agentId\":%d,\"agentName\":\"%s\",\"data\":%s}",
-                                        agent.getId(), agent.getName(), data);
-                                    emitter.send(response);
-                                } catch (Exception e) {
-                                    logger.error("发送流式数据失败", e);
-                                    if (!emitterCompleted.getAndSet(true)) {
-                                        emitter.completeWithError(e);
-                                    }
-                                }
+                                // 数据片段包含代理ID和名称
+                                stream.append(null, String.format("{\"agentId\":%d,\"agentName\":\"%s\",\"data\":%s}",
+                                    agent.getId(), agent.getName(), data));
                             }
                             
                             @Override
                             public void onComplete() {
                                 // 检查是否所有代理都已完成
-                                int completed = completedAgents.incrementAndGet();
-                                if (completed == agents.size() && !emitterCompleted.getAndSet(true)) {
-                                    try {
-                                        emitter.send("[DONE]");
-                                        emitter.complete();
-                                    } catch (Exception e) {
-                                        logger.error("完成流式输出失败", e);
-                                    }
+                                if (completedAgents.incrementAndGet() == agents.size()) {
+                                    stream.finish(null, "[DONE]");
                                 }
                             }
                             
@@ -790,9 +804,8 @@ public class ParallelInferenceController {
                             public void onError(Throwable throwable) {
                                 logger.error("代理{}流式推理处理异常", agent.getId(), throwable);
                                 // 检查是否所有代理都已完成或出错
-                                int completed = completedAgents.incrementAndGet();
-                                if (completed == agents.size() && !emitterCompleted.getAndSet(true)) {
-                                    emitter.complete();
+                                if (completedAgents.incrementAndGet() == agents.size()) {
+                                    stream.finish(null, "[DONE]");
                                 }
                             }
                         }
@@ -801,18 +814,36 @@ public class ParallelInferenceController {
                 
             } catch (Exception e) {
                 logger.error("会话阶段流式推理失败: sessionId={}, phaseType={}", sessionId, phaseType, e);
-                // 确保emitter被完成
-                try {
-                    emitter.completeWithError(e);
-                } catch (Exception ex) {
-                    logger.error("完成emitter时发生异常", ex);
-                }
+                stream.finish("error", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
             }
         });
         
         return emitter;
     }
     
+    /**
+     * 会话阶段流式推理断线重连
+     */
+    @GetMapping(value = "/sessions/{sessionId}/phases/{phaseType}/execute/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "重连会话阶段流式推理", description = "补发Last-Event-ID之后的事件并接入仍在进行的推理，不重复调用模型；流不存在或已过期时返回404")
+    public ResponseEntity<SseEmitter> resumeSessionPhaseStreamingInference(
+            @Parameter(description = "会话ID") @PathVariable Long sessionId,
+            @Parameter(description = "阶段类型") @PathVariable PhaseType phaseType,
+            @Parameter(description = "最后收到的事件ID") @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @Parameter(description = "最后收到的事件ID（无法设置请求头时使用）") @RequestParam(required = false) Long lastEventId,
+            Authentication authentication) {
+        
+        validateSessionOwnership(sessionId, authentication);
+        
+        long resumeFrom = lastEventIdHeader != null ? lastEventIdHeader : (lastEventId != null ? lastEventId : 0L);
+        SseEmitter emitter = phaseStreamService.resume(sessionId, phaseType.name(), getCurrentUserKey(authentication), resumeFrom);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        logger.info("会话阶段流式推理重连: sessionId={}, phaseType={}, lastEventId={}", sessionId, phaseType, resumeFrom);
+        return ResponseEntity.ok(emitter);
+    }
+    
     /**
      * 自定义代理流式并行推理
      */
@@ -850,6 +881,8 @@ public class ParallelInferenceController {
                     qiniuAIService.sendStreamingInferenceRequest(
                         agent.getSystemPrompt(),
                         request.getUserPrompt(),
+                        InferenceContext.interactive(getCurrentUserKey(authentication))
+                            .forAgent(agent.getAiModel(), agent.getRoleType()),
                         new QiniuAIService.StreamingResponseHandler() {
                             @Override
                             public void onData(String data) {
@@ -862,7 +895,7 @@ public class ParallelInferenceController {
                                     // 发送数据片段，包含代理ID和名称
                                     String response = String.format("{\"agentId\":%d,\"agentName\":\"%s\",\"data\":%s}",
                                         agent.getId(), agent.getName(), data);
-                                    emitter.send(response);
+                                    inferenceMetrics.timeEmitterSend("/api/parallel-inference/custom/stream", () -> emitter.send(response));
                                 } catch (Exception e) {
                                     logger.error("发送流式数据失败", e);
                                     if (!emitterCompleted.getAndSet(true)) {
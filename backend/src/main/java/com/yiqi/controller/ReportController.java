@@ -13,9 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.yiqi.dto.ReportResponse;
 import com.yiqi.entity.Report;
-import com.yiqi.entity.User;
 import com.yiqi.service.ReportService;
-import com.yiqi.service.UserService;
 
 /**
  * 报告控制器
@@ -32,9 +30,6 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
-    @Autowired
-    private UserService userService;
-
     /**
      * 根据会话ID生成报告
      * 
@@ -49,9 +44,6 @@ public class ReportController {
         try {
             logger.info("用户请求生成报告，会话ID: {}", sessionId);
 
-            // 获取当前用户
-            User currentUser = getCurrentUser(authentication);
-
             // 生成报告
             Long reportId = reportService.generateReport(sessionId);
 
@@ -86,9 +78,6 @@ public class ReportController {
         try {
             logger.info("用户请求获取报告详情，报告ID: {}", reportId);
 
-            // 获取当前用户
-            User currentUser = getCurrentUser(authentication);
-
             // 获取报告
             Report report = reportService.getReportById(reportId);
 
@@ -119,9 +108,6 @@ public class ReportController {
         try {
             logger.info("用户请求获取会话报告，会话ID: {}", sessionId);
 
-            // 获取当前用户
-            User currentUser = getCurrentUser(authentication);
-
             // 获取报告
             Report report = reportService.getReportBySessionId(sessionId);
             if (report == null) {
@@ -157,9 +143,6 @@ public class ReportController {
         try {
             logger.info("用户请求重新生成报告，报告ID: {}", reportId);
 
-            // 获取当前用户
-            User currentUser = getCurrentUser(authentication);
-
             // 重新生成报告
             Long newReportId = reportService.regenerateReport(reportId);
 
@@ -181,14 +164,6 @@ public class ReportController {
 
     // 私有辅助方法
 
-    /**
-     * 获取当前用户
-     */
-    private User getCurrentUser(Authentication authentication) {
-        String username = authentication.getName();
-        return userService.findByUsername(username);
-    }
-
     /**
      * 构建报告响应
      */
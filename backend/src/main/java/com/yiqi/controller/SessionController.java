@@ -1,6 +1,8 @@
 package com.yiqi.controller;
 
 import com.yiqi.dto.CreateSessionRequest;
+import com.yiqi.dto.PhaseExecutionResponse;
+import com.yiqi.dto.SessionPage;
 import com.yiqi.dto.SessionResponse;
 import com.yiqi.dto.SessionStatusResponse;
 import com.yiqi.dto.StartSessionRequest;
@@ -8,8 +10,11 @@ import com.yiqi.dto.SubmitPhaseForApprovalRequest;
 import com.yiqi.entity.AgentResponse;
 import com.yiqi.entity.Phase;
 import com.yiqi.entity.User;
+import com.yiqi.enums.PhaseRetryMode;
 import com.yiqi.enums.PhaseType;
+import com.yiqi.service.PhaseExecutionService;
 import com.yiqi.service.PhaseService;
+import com.yiqi.service.SessionEventService;
 import com.yiqi.service.SessionService;
 import com.yiqi.service.UserDetailsServiceImpl;
 import com.yiqi.service.UserService;
@@ -19,11 +24,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.net.URI;
 import java.util.List;
 
 /**
@@ -40,6 +49,10 @@ public class SessionController {
 
     private static final Logger logger = LoggerFactory.getLogger(SessionController.class);
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     @Autowired
     private SessionService sessionService;
 
@@ -49,6 +62,12 @@ public class SessionController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SessionEventService sessionEventService;
+
+    @Autowired
+    private PhaseExecutionService phaseExecutionService;
+
     /**
      * 创建新的头脑风暴会话
      * 
@@ -169,32 +188,63 @@ public class SessionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 订阅会话状态事件
+     * 
+     * @param sessionId 会话ID
+     * @param authentication 认证信息
+     * @return SSE事件流：snapshot（订阅时的快照）、session（会话与阶段状态）、inference（阶段推理进度）
+     */
+    @GetMapping(value = "/{sessionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅会话状态", description = "以SSE推送会话、阶段状态与代理推理进度，替代轮询状态接口")
+    public ResponseEntity<SseEmitter> subscribeSessionEvents(
+            @Parameter(description = "会话ID") @PathVariable Long sessionId,
+            Authentication authentication) {
+        
+        // 验证会话所有权
+        validateSessionOwnership(sessionId, authentication);
+        
+        SseEmitter emitter = sessionEventService.subscribe(sessionId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * 获取用户的会话列表
      * 
+     * @param cursor 上一页响应头X-Next-Cursor中的游标
+     * @param limit 每页数量
      * @param authentication 认证信息
-     * @return 会话列表
+     * @return 会话列表，还有下一页时响应头带X-Next-Cursor
      */
     @GetMapping
-    @Operation(summary = "获取用户会话列表", description = "获取当前用户的所有头脑风暴会话")
-    public ResponseEntity<List<SessionResponse>> getUserSessions(Authentication authentication) {
+    @Operation(summary = "获取用户会话列表", description = "按更新时间倒序分页获取当前用户的头脑风暴会话，列表不含描述与主题")
+    public ResponseEntity<List<SessionResponse>> getUserSessions(
+            @Parameter(description = "分页游标") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量（最大200；与游标都不传时返回全部，只传游标时默认50）") @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
         Long userId = getUserIdFromAuthentication(authentication);
-        List<SessionResponse> sessions = sessionService.getUserSessions(userId);
-        return ResponseEntity.ok(sessions);
+        return pageResponse(sessionService.getUserSessions(userId, cursor, limit));
     }
 
     /**
      * 获取用户的活跃会话
      * 
+     * @param cursor 上一页响应头X-Next-Cursor中的游标
+     * @param limit 每页数量
      * @param authentication 认证信息
-     * @return 活跃会话列表
+     * @return 活跃会话列表，还有下一页时响应头带X-Next-Cursor
      */
     @GetMapping("/active")
-    @Operation(summary = "获取用户活跃会话", description = "获取当前用户正在进行或暂停的会话")
-    public ResponseEntity<List<SessionResponse>> getUserActiveSessions(Authentication authentication) {
+    @Operation(summary = "获取用户活跃会话", description = "按更新时间倒序分页获取当前用户正在进行或暂停的会话")
+    public ResponseEntity<List<SessionResponse>> getUserActiveSessions(
+            @Parameter(description = "分页游标") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量（最大200；与游标都不传时返回全部，只传游标时默认50）") @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
         Long userId = getUserIdFromAuthentication(authentication);
-        List<SessionResponse> sessions = sessionService.getUserActiveSessions(userId);
-        return ResponseEntity.ok(sessions);
+        return pageResponse(sessionService.getUserActiveSessions(userId, cursor, limit));
     }
 
     /**
@@ -246,20 +296,22 @@ public class SessionController {
      * 
      * @param sessionId 会话ID
      * @param phaseType 阶段类型
+     * @param mode 重新执行模式，默认全部重新执行
      * @param authentication 认证信息
      * @return 成功响应
      */
     @PostMapping("/{sessionId}/phases/{phaseType}/retry")
-    @Operation(summary = "重新执行阶段", description = "重新执行被拒绝的头脑风暴阶段")
+    @Operation(summary = "重新执行阶段", description = "重新执行被拒绝的头脑风暴阶段，可只重新执行失败的代理")
     public ResponseEntity<Void> retryPhase(
             @Parameter(description = "会话ID") @PathVariable Long sessionId,
             @Parameter(description = "阶段类型") @PathVariable PhaseType phaseType,
+            @Parameter(description = "重新执行模式（ALL/FAILED_ONLY）") @RequestParam(defaultValue = "ALL") PhaseRetryMode mode,
             Authentication authentication) {
         
         // 验证会话所有权
         validateSessionOwnership(sessionId, authentication);
         
-        phaseService.retryPhase(sessionId, phaseType);
+        phaseService.retryPhase(sessionId, phaseType, mode);
         return ResponseEntity.ok().build();
     }
 
@@ -334,21 +386,23 @@ public class SessionController {
      * 
      * @param sessionId 会话ID
      * @param request 启动会话请求（包含主题）
+     * @param idempotencyKey 幂等键，可选；未提供时同一阶段未结束的执行同样会被复用
      * @param authentication 认证信息
-     * @return 成功响应
+     * @return 202，响应体为已受理的执行（重复请求时为已有的执行），Location指向执行状态
      */
     @PostMapping("/{sessionId}/phases/IDEA_GENERATION/execute")
-    @Operation(summary = "执行创意生成阶段", description = "启动创意生成阶段的AI代理推理过程")
-    public ResponseEntity<Void> executeIdeaGenerationPhase(
+    @Operation(summary = "执行创意生成阶段", description = "受理创意生成阶段的AI代理推理，立即返回执行ID，进度经状态接口与SSE获取")
+    public ResponseEntity<PhaseExecutionResponse> executeIdeaGenerationPhase(
             @Parameter(description = "会话ID") @PathVariable Long sessionId,
             @Valid @RequestBody StartSessionRequest request,
+            @Parameter(description = "幂等键，相同键的重复请求返回同一执行")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
         
         // 验证会话所有权
         validateSessionOwnership(sessionId, authentication);
         
-        phaseService.executeIdeaGenerationPhase(sessionId, request.getTopic());
-        return ResponseEntity.ok().build();
+        return acceptExecution(sessionId, PhaseType.IDEA_GENERATION, request, idempotencyKey);
     }
 
     /**
@@ -356,21 +410,23 @@ public class SessionController {
      * 
      * @param sessionId 会话ID
      * @param request 启动会话请求（包含主题）
+     * @param idempotencyKey 幂等键，可选；未提供时同一阶段未结束的执行同样会被复用
      * @param authentication 认证信息
-     * @return 成功响应
+     * @return 202，响应体为已受理的执行（重复请求时为已有的执行），Location指向执行状态
      */
     @PostMapping("/{sessionId}/phases/FEASIBILITY_ANALYSIS/execute")
-    @Operation(summary = "执行技术可行性分析阶段", description = "启动技术可行性分析阶段的AI代理推理过程")
-    public ResponseEntity<Void> executeFeasibilityAnalysisPhase(
+    @Operation(summary = "执行技术可行性分析阶段", description = "受理技术可行性分析阶段的AI代理推理，立即返回执行ID，进度经状态接口与SSE获取")
+    public ResponseEntity<PhaseExecutionResponse> executeFeasibilityAnalysisPhase(
             @Parameter(description = "会话ID") @PathVariable Long sessionId,
             @Valid @RequestBody StartSessionRequest request,
+            @Parameter(description = "幂等键，相同键的重复请求返回同一执行")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
         
         // 验证会话所有权
         validateSessionOwnership(sessionId, authentication);
         
-        phaseService.executeFeasibilityAnalysisPhase(sessionId, request.getTopic());
-        return ResponseEntity.ok().build();
+        return acceptExecution(sessionId, PhaseType.FEASIBILITY_ANALYSIS, request, idempotencyKey);
     }
 
     /**
@@ -378,21 +434,48 @@ public class SessionController {
      * 
      * @param sessionId 会话ID
      * @param request 启动会话请求（包含主题）
+     * @param idempotencyKey 幂等键，可选；未提供时同一阶段未结束的执行同样会被复用
      * @param authentication 认证信息
-     * @return 成功响应
+     * @return 202，响应体为已受理的执行（重复请求时为已有的执行），Location指向执行状态
      */
     @PostMapping("/{sessionId}/phases/DRAWBACK_DISCUSSION/execute")
-    @Operation(summary = "执行缺点讨论阶段", description = "启动缺点讨论阶段的AI代理推理过程")
-    public ResponseEntity<Void> executeDrawbackDiscussionPhase(
+    @Operation(summary = "执行缺点讨论阶段", description = "受理缺点讨论阶段的AI代理推理，立即返回执行ID，进度经状态接口与SSE获取")
+    public ResponseEntity<PhaseExecutionResponse> executeDrawbackDiscussionPhase(
             @Parameter(description = "会话ID") @PathVariable Long sessionId,
             @Valid @RequestBody StartSessionRequest request,
+            @Parameter(description = "幂等键，相同键的重复请求返回同一执行")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
         
         // 验证会话所有权
         validateSessionOwnership(sessionId, authentication);
         
-        phaseService.executeDrawbackDiscussionPhase(sessionId, request.getTopic());
-        return ResponseEntity.ok().build();
+        return acceptExecution(sessionId, PhaseType.DRAWBACK_DISCUSSION, request, idempotencyKey);
+    }
+
+    /**
+     * 获取阶段执行状态
+     * 
+     * @param sessionId 会话ID
+     * @param executionId 执行ID
+     * @param authentication 认证信息
+     * @return 执行状态，不存在或已过保留期时返回404
+     */
+    @GetMapping("/{sessionId}/executions/{executionId}")
+    @Operation(summary = "获取阶段执行状态", description = "获取执行接口受理的阶段执行的状态与推理进度")
+    public ResponseEntity<PhaseExecutionResponse> getPhaseExecution(
+            @Parameter(description = "会话ID") @PathVariable Long sessionId,
+            @Parameter(description = "执行ID") @PathVariable String executionId,
+            Authentication authentication) {
+        
+        // 验证会话所有权
+        validateSessionOwnership(sessionId, authentication);
+        
+        PhaseExecutionResponse response = phaseExecutionService.getExecution(sessionId, executionId);
+        if (response == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -497,7 +580,7 @@ public class SessionController {
             if (authentication.getPrincipal() instanceof UserDetailsServiceImpl.UserPrincipal) {
                 UserDetailsServiceImpl.UserPrincipal userPrincipal = 
                     (UserDetailsServiceImpl.UserPrincipal) authentication.getPrincipal();
-                return userPrincipal.getUser().getId();
+                return userPrincipal.getUserId();
             }
             
             // 如果principal是字符串（用户名），需要通过用户名查找用户ID
@@ -529,4 +612,27 @@ public class SessionController {
         Long userId = getUserIdFromAuthentication(authentication);
         sessionService.validateSessionOwnership(sessionId, userId);
     }
-}
\ No newline at end of file
+
+    /**
+     * 会话分页响应：列表作为响应体，下一页游标放在响应头
+     */
+    private ResponseEntity<List<SessionResponse>> pageResponse(SessionPage page) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
+    /**
+     * 受理阶段执行：202响应，Location指向执行状态
+     */
+    private ResponseEntity<PhaseExecutionResponse> acceptExecution(Long sessionId, PhaseType phaseType,
+                                                                   StartSessionRequest request, String idempotencyKey) {
+        PhaseExecutionResponse execution = phaseExecutionService.submit(
+            sessionId, phaseType, request.getTopic(), request.isSpeculateNext(), idempotencyKey);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .location(URI.create("/api/sessions/" + sessionId + "/executions/" + execution.getExecutionId()))
+            .body(execution);
+    }
+}
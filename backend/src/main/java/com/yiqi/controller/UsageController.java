@@ -0,0 +1,86 @@
+package com.yiqi.controller;
+
+import com.yiqi.dto.UsageCostResponse;
+import com.yiqi.dto.UsageSummaryResponse;
+import com.yiqi.enums.UsageGroupBy;
+import com.yiqi.service.UsageService;
+import com.yiqi.service.UserDetailsServiceImpl;
+import com.yiqi.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+/**
+ * token用量控制器
+ * 统计当前用户会话中的模型用量与费用
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/api/usage")
+public class UsageController {
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * 获取当前用户的用量统计
+     * 
+     * @param groupBy 统计维度：agent/phaseType/model，默认model
+     * @param from 开始时间（含，ISO格式），可选
+     * @param to 结束时间（不含，ISO格式），可选
+     */
+    @GetMapping
+    public ResponseEntity<UsageSummaryResponse> getUsage(
+            @RequestParam(defaultValue = "model") String groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            Authentication authentication) {
+        UsageGroupBy dimension;
+        try {
+            dimension = UsageGroupBy.fromCode(groupBy);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // 按用户分组仅对管理接口开放
+        if (dimension == UsageGroupBy.USER) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(usageService.getUsage(dimension, getCurrentUserId(authentication), from, to));
+    }
+
+    /**
+     * 获取当前用户按模型的费用明细
+     * 
+     * @param from 开始时间（含，ISO格式），可选
+     * @param to 结束时间（不含，ISO格式），可选
+     */
+    @GetMapping("/cost")
+    public ResponseEntity<UsageCostResponse> getCost(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            Authentication authentication) {
+        return ResponseEntity.ok(usageService.getCost(getCurrentUserId(authentication), from, to));
+    }
+
+    /**
+     * 获取当前用户ID，优先取自令牌构建的用户主体
+     */
+    private Long getCurrentUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof UserDetailsServiceImpl.UserPrincipal) {
+            return ((UserDetailsServiceImpl.UserPrincipal) authentication.getPrincipal()).getUserId();
+        }
+        return userService.findByUsername(authentication.getName()).getId();
+    }
+}
@@ -1,5 +1,7 @@
 package com.yiqi.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.validation.Valid;
 
 import org.slf4j.Logger;
@@ -17,6 +19,8 @@ import com.yiqi.dto.LoginRequest;
 import com.yiqi.dto.LoginResponse;
 import com.yiqi.dto.RegisterRequest;
 import com.yiqi.dto.UserResponse;
+import com.yiqi.service.JwtService;
+import com.yiqi.service.TokenRevocationService;
 import com.yiqi.service.UserService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -40,6 +44,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     /**
      * 用户注册
      */
@@ -50,10 +57,9 @@ public class UserController {
         @ApiResponse(responseCode = "400", description = "请求参数错误"),
         @ApiResponse(responseCode = "409", description = "用户名已存在")
     })
-    public ResponseEntity<UserResponse> register(@Valid @RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<UserResponse>> register(@Valid @RequestBody RegisterRequest request) {
         logger.info("收到用户注册请求: {}", request.getUsername());
-        UserResponse response = userService.register(request);
-        return ResponseEntity.ok(response);
+        return userService.register(request).thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -64,13 +70,12 @@ public class UserController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "登录成功"),
         @ApiResponse(responseCode = "400", description = "请求参数错误"),
-        @ApiResponse(responseCode = "401", description = "用户名或密码错误"),
-        @ApiResponse(responseCode = "423", description = "账户已被锁定")
+        @ApiResponse(responseCode = "401", description = "用户名或密码错误或账户已被锁定"),
+        @ApiResponse(responseCode = "503", description = "登录请求过多，请稍后重试")
     })
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@Valid @RequestBody LoginRequest request) {
         logger.info("收到用户登录请求: {}", request.getUsername());
-        LoginResponse response = userService.login(request);
-        return ResponseEntity.ok(response);
+        return userService.login(request).thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -101,8 +106,10 @@ public class UserController {
     public ResponseEntity<Void> logout(Authentication authentication) {
         String username = authentication.getName();
         logger.info("用户登出请求: {}", username);
-        // JWT是无状态的，客户端删除令牌即可实现登出
-        // 这里可以添加令牌黑名单逻辑（如果需要的话）
+        // 吊销当前令牌，过期前再次使用将被拒绝
+        if (authentication.getCredentials() instanceof JwtService.VerifiedToken) {
+            tokenRevocationService.revoke((JwtService.VerifiedToken) authentication.getCredentials());
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,147 @@
+package com.yiqi.dto;
+
+import com.yiqi.enums.PhaseExecutionStatus;
+import com.yiqi.enums.PhaseType;
+
+import java.time.LocalDateTime;
+
+/**
+ * 阶段异步执行响应DTO
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class PhaseExecutionResponse {
+
+    /**
+     * 执行ID
+     */
+    private String executionId;
+
+    /**
+     * 会话ID
+     */
+    private Long sessionId;
+
+    /**
+     * 阶段类型
+     */
+    private PhaseType phaseType;
+
+    /**
+     * 执行状态
+     */
+    private PhaseExecutionStatus status;
+
+    /**
+     * 参与推理的代理数量
+     */
+    private Integer totalAgents;
+
+    /**
+     * 已完成推理的代理数量（执行中时随推理进度更新）
+     */
+    private Integer completedAgents;
+
+    /**
+     * 失败原因，仅执行失败时有值
+     */
+    private String errorMessage;
+
+    /**
+     * 受理时间
+     */
+    private LocalDateTime submittedAt;
+
+    /**
+     * 开始执行时间
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishedAt;
+
+    public PhaseExecutionResponse() {}
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public PhaseType getPhaseType() {
+        return phaseType;
+    }
+
+    public void setPhaseType(PhaseType phaseType) {
+        this.phaseType = phaseType;
+    }
+
+    public PhaseExecutionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PhaseExecutionStatus status) {
+        this.status = status;
+    }
+
+    public Integer getTotalAgents() {
+        return totalAgents;
+    }
+
+    public void setTotalAgents(Integer totalAgents) {
+        this.totalAgents = totalAgents;
+    }
+
+    public Integer getCompletedAgents() {
+        return completedAgents;
+    }
+
+    public void setCompletedAgents(Integer completedAgents) {
+        this.completedAgents = completedAgents;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,45 @@
+package com.yiqi.dto;
+
+import java.util.List;
+
+/**
+ * 会话列表的一页
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class SessionPage {
+
+    /**
+     * 本页会话
+     */
+    private List<SessionResponse> items;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    public SessionPage() {}
+
+    public SessionPage(List<SessionResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SessionResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<SessionResponse> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
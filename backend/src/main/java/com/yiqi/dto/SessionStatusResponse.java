@@ -55,9 +55,29 @@ public class SessionStatusResponse {
      */
     private LocalDateTime lastUpdated;
 
+    /**
+     * 各阶段最近一次异步执行的状态（进程内保留，没有执行记录时为null）
+     */
+    private List<PhaseExecutionResponse> executions;
+
     // 默认构造函数
     public SessionStatusResponse() {}
 
+    /**
+     * 复制会话状态（浅拷贝），用于在共享的缓存实例之外附加执行状态
+     */
+    public SessionStatusResponse(SessionStatusResponse other) {
+        this.sessionId = other.sessionId;
+        this.sessionStatus = other.sessionStatus;
+        this.currentPhase = other.currentPhase;
+        this.phases = other.phases;
+        this.agentCount = other.agentCount;
+        this.activeAgentCount = other.activeAgentCount;
+        this.progressPercentage = other.progressPercentage;
+        this.lastUpdated = other.lastUpdated;
+        this.executions = other.executions;
+    }
+
     // Getter和Setter方法
     public Long getSessionId() {
         return sessionId;
@@ -123,6 +143,14 @@ public class SessionStatusResponse {
         this.lastUpdated = lastUpdated;
     }
 
+    public List<PhaseExecutionResponse> getExecutions() {
+        return executions;
+    }
+
+    public void setExecutions(List<PhaseExecutionResponse> executions) {
+        this.executions = executions;
+    }
+
     /**
      * 阶段信息内部类
      */
@@ -273,6 +301,7 @@ public class SessionStatusResponse {
                 ", activeAgentCount=" + activeAgentCount +
                 ", progressPercentage=" + progressPercentage +
                 ", lastUpdated=" + lastUpdated +
+                ", executions=" + executions +
                 '}';
     }
 }
\ No newline at end of file
@@ -18,6 +18,11 @@ public class StartSessionRequest {
     @Size(max = 500, message = "头脑风暴主题长度不能超过500个字符")
     private String topic;
 
+    /**
+     * 阶段提交审核后是否预先执行下一阶段（仅阶段执行接口使用）
+     */
+    private boolean speculateNext;
+
     // 默认构造函数
     public StartSessionRequest() {}
 
@@ -35,6 +40,14 @@ public class StartSessionRequest {
         this.topic = topic;
     }
 
+    public boolean isSpeculateNext() {
+        return speculateNext;
+    }
+
+    public void setSpeculateNext(boolean speculateNext) {
+        this.speculateNext = speculateNext;
+    }
+
     @Override
     public String toString() {
         return "StartSessionRequest{" +
@@ -0,0 +1,149 @@
+package com.yiqi.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 调用费用明细响应DTO
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class UsageCostResponse {
+
+    /**
+     * 统计开始时间（含），为空表示不限
+     */
+    private LocalDateTime from;
+
+    /**
+     * 统计结束时间（不含），为空表示不限
+     */
+    private LocalDateTime to;
+
+    /**
+     * 计价币种
+     */
+    private String currency;
+
+    /**
+     * 费用合计
+     */
+    private double totalCost;
+
+    /**
+     * 各模型费用，按费用降序
+     */
+    private List<ModelCost> models = new ArrayList<>();
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    public void setTotalCost(double totalCost) {
+        this.totalCost = totalCost;
+    }
+
+    public List<ModelCost> getModels() {
+        return models;
+    }
+
+    public void setModels(List<ModelCost> models) {
+        this.models = models;
+    }
+
+    /**
+     * 单个模型的费用
+     * priced为false表示该模型未配置价格，费用按0计
+     */
+    public static class ModelCost {
+        private String model;
+        private long promptTokens;
+        private long completionTokens;
+        private double promptCost;
+        private double completionCost;
+        private double cost;
+        private boolean priced;
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public long getPromptTokens() {
+            return promptTokens;
+        }
+
+        public void setPromptTokens(long promptTokens) {
+            this.promptTokens = promptTokens;
+        }
+
+        public long getCompletionTokens() {
+            return completionTokens;
+        }
+
+        public void setCompletionTokens(long completionTokens) {
+            this.completionTokens = completionTokens;
+        }
+
+        public double getPromptCost() {
+            return promptCost;
+        }
+
+        public void setPromptCost(double promptCost) {
+            this.promptCost = promptCost;
+        }
+
+        public double getCompletionCost() {
+            return completionCost;
+        }
+
+        public void setCompletionCost(double completionCost) {
+            this.completionCost = completionCost;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        public void setCost(double cost) {
+            this.cost = cost;
+        }
+
+        public boolean isPriced() {
+            return priced;
+        }
+
+        public void setPriced(boolean priced) {
+            this.priced = priced;
+        }
+    }
+}
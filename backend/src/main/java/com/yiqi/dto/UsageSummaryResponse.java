@@ -0,0 +1,180 @@
+package com.yiqi.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * token用量统计响应DTO
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class UsageSummaryResponse {
+
+    /**
+     * 统计维度
+     */
+    private String groupBy;
+
+    /**
+     * 统计开始时间（含），为空表示不限
+     */
+    private LocalDateTime from;
+
+    /**
+     * 统计结束时间（不含），为空表示不限
+     */
+    private LocalDateTime to;
+
+    /**
+     * 计价币种
+     */
+    private String currency;
+
+    /**
+     * 合计
+     */
+    private UsageGroup total;
+
+    /**
+     * 各分组用量，按总token数降序
+     */
+    private List<UsageGroup> groups = new ArrayList<>();
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(String groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public UsageGroup getTotal() {
+        return total;
+    }
+
+    public void setTotal(UsageGroup total) {
+        this.total = total;
+    }
+
+    public List<UsageGroup> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<UsageGroup> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * 单个分组的用量
+     * tokensPerSecond为输出token数除以产生输出的响应耗时之和
+     */
+    public static class UsageGroup {
+        private String key;
+        private String label;
+        private long responses;
+        private long promptTokens;
+        private long completionTokens;
+        private long totalTokens;
+        private double tokensPerSecond;
+        private double cost;
+        private List<String> models = new ArrayList<>();
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        public void setResponses(long responses) {
+            this.responses = responses;
+        }
+
+        public long getPromptTokens() {
+            return promptTokens;
+        }
+
+        public void setPromptTokens(long promptTokens) {
+            this.promptTokens = promptTokens;
+        }
+
+        public long getCompletionTokens() {
+            return completionTokens;
+        }
+
+        public void setCompletionTokens(long completionTokens) {
+            this.completionTokens = completionTokens;
+        }
+
+        public long getTotalTokens() {
+            return totalTokens;
+        }
+
+        public void setTotalTokens(long totalTokens) {
+            this.totalTokens = totalTokens;
+        }
+
+        public double getTokensPerSecond() {
+            return tokensPerSecond;
+        }
+
+        public void setTokensPerSecond(double tokensPerSecond) {
+            this.tokensPerSecond = tokensPerSecond;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        public void setCost(double cost) {
+            this.cost = cost;
+        }
+
+        public List<String> getModels() {
+            return models;
+        }
+
+        public void setModels(List<String> models) {
+            this.models = models;
+        }
+    }
+}
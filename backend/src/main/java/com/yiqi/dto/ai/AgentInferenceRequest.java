@@ -12,6 +12,7 @@ public class AgentInferenceRequest {
     private String systemPrompt;
     private String userPrompt;
     private String sessionContext;
+    private String aiModel;
 
     public AgentInferenceRequest() {}
 
@@ -72,4 +73,12 @@ public class AgentInferenceRequest {
     public void setSessionContext(String sessionContext) {
         this.sessionContext = sessionContext;
     }
+
+    public String getAiModel() {
+        return aiModel;
+    }
+
+    public void setAiModel(String aiModel) {
+        this.aiModel = aiModel;
+    }
 }
\ No newline at end of file
@@ -17,6 +17,9 @@ public class AgentInferenceResponse {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Long processingTimeMs;
+    private String model;
+    private long promptTokens;
+    private long completionTokens;
 
     public AgentInferenceResponse() {}
 
@@ -28,6 +31,15 @@ public class AgentInferenceResponse {
         this.status = "PROCESSING";
     }
 
+    /**
+     * 记录本次推理的token用量与实际使用的模型
+     */
+    public void applyUsage(TokenUsage usage) {
+        this.model = usage.getModel();
+        this.promptTokens = usage.getPromptTokens();
+        this.completionTokens = usage.getCompletionTokens();
+    }
+
     /**
      * 标记为成功
      */
@@ -154,4 +166,32 @@ public class AgentInferenceResponse {
     public void setProcessingTimeMs(Long processingTimeMs) {
         this.processingTimeMs = processingTimeMs;
     }
-}
\ No newline at end of file
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public void setPromptTokens(long promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public void setCompletionTokens(long completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -0,0 +1,132 @@
+package com.yiqi.dto.ai;
+
+import com.yiqi.enums.TrafficClass;
+import com.yiqi.service.timeline.TimelineSpan;
+
+/**
+ * 推理调用上下文
+ * 描述一次上游推理调用的流量类别与发起用户（供调度器排队），
+ * 以及代理配置的模型与角色（供模型路由选择提供方）；
+ * span为调用所属的时间线区间，排队、重试与上游调用在其下记录子区间；
+ * usage非空时，上游返回的token用量累加到其中；
+ * run非空时，调用登记到该执行批次，可被统一取消并在全部上游任务结束后结算
+ */
+public class InferenceContext {
+
+    /**
+     * 系统内部发起的调用（探测、无用户归属的任务）使用的用户标识
+     */
+    public static final String SYSTEM_USER = "system";
+
+    private final TrafficClass trafficClass;
+    private final String userKey;
+    private final String model;
+    private final String roleType;
+    private final TimelineSpan span;
+    private final TokenUsage usage;
+    private final InferenceRun run;
+
+    public InferenceContext(TrafficClass trafficClass, String userKey) {
+        this(trafficClass, userKey, null, null);
+    }
+
+    public InferenceContext(TrafficClass trafficClass, String userKey, String model, String roleType) {
+        this(trafficClass, userKey, model, roleType, TimelineSpan.NOOP, null, null);
+    }
+
+    private InferenceContext(TrafficClass trafficClass, String userKey, String model, String roleType,
+                             TimelineSpan span, TokenUsage usage, InferenceRun run) {
+        this.trafficClass = trafficClass != null ? trafficClass : TrafficClass.INTERACTIVE;
+        this.userKey = userKey != null && !userKey.isEmpty() ? userKey : SYSTEM_USER;
+        this.model = model;
+        this.roleType = roleType;
+        this.span = span != null ? span : TimelineSpan.NOOP;
+        this.usage = usage;
+        this.run = run;
+    }
+
+    public static InferenceContext of(TrafficClass trafficClass, String userKey) {
+        return new InferenceContext(trafficClass, userKey);
+    }
+
+    /**
+     * 创建交互式调用上下文
+     */
+    public static InferenceContext interactive(String userKey) {
+        return new InferenceContext(TrafficClass.INTERACTIVE, userKey);
+    }
+
+    /**
+     * 创建健康探测调用上下文
+     */
+    public static InferenceContext probe() {
+        return new InferenceContext(TrafficClass.PROBE, SYSTEM_USER);
+    }
+
+    /**
+     * 派生指定代理模型与角色的上下文，流量类别与用户保持不变
+     */
+    public InferenceContext forAgent(String model, String roleType) {
+        return new InferenceContext(trafficClass, userKey, model, roleType, span, usage, run);
+    }
+
+    /**
+     * 派生记录到指定时间线区间的上下文
+     */
+    public InferenceContext withSpan(TimelineSpan span) {
+        return new InferenceContext(trafficClass, userKey, model, roleType, span, usage, run);
+    }
+
+    /**
+     * 派生将token用量累加到指定累加器的上下文
+     */
+    public InferenceContext withUsage(TokenUsage usage) {
+        return new InferenceContext(trafficClass, userKey, model, roleType, span, usage, run);
+    }
+
+    public TrafficClass getTrafficClass() {
+        return trafficClass;
+    }
+
+    /**
+     * 派生登记到指定执行批次的上下文
+     */
+    public InferenceContext withRun(InferenceRun run) {
+        return new InferenceContext(trafficClass, userKey, model, roleType, span, usage, run);
+    }
+
+    public String getUserKey() {
+        return userKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getRoleType() {
+        return roleType;
+    }
+
+    public TimelineSpan getSpan() {
+        return span;
+    }
+
+    /**
+     * token用量累加器，可为null
+     */
+    public TokenUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * 所属执行批次，可为null
+     */
+    public InferenceRun getRun() {
+        return run;
+    }
+
+    @Override
+    public String toString() {
+        return trafficClass + "/" + userKey;
+    }
+}
@@ -0,0 +1,115 @@
+package com.yiqi.dto.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * 一组推理调用的取消与结算句柄
+ * 随推理上下文传递：调用方登记的future可被统一取消（排队中的任务随之移出调度队列），
+ * 调度器记录已入队但尚未真正结束的上游任务数；发起方封口后，全部任务结束（含取消时仍在执行的上游调用）
+ * 才视为结算完成，此时{@link #getUsage()}即这组调用实际消耗的token用量
+ */
+public class InferenceRun {
+
+    private final TokenUsage usage = new TokenUsage();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final CompletableFuture<Void> settled = new CompletableFuture<>();
+    private int pendingTasks;
+    private boolean cancelled;
+    private boolean sealed;
+
+    /**
+     * 这组调用累计的token用量，取消后仍在执行的调用返回的用量同样计入
+     */
+    public TokenUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * 登记可取消的调用，已取消时立即取消
+     */
+    public void track(Future<?> future) {
+        synchronized (this) {
+            if (!cancelled) {
+                futures.removeIf(Future::isDone);
+                futures.add(future);
+                return;
+            }
+        }
+        future.cancel(false);
+    }
+
+    /**
+     * 取消全部已登记的调用，之后提交的调用直接被拒绝
+     */
+    public void cancel() {
+        List<Future<?>> tracked;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            tracked = new ArrayList<>(futures);
+            futures.clear();
+        }
+        for (Future<?> future : tracked) {
+            future.cancel(false);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 调度器在上游任务入队前调用
+     *
+     * @return 是否允许入队；已取消或已结算时返回false
+     */
+    public synchronized boolean taskStarted() {
+        if (cancelled || settled.isDone()) {
+            return false;
+        }
+        pendingTasks++;
+        return true;
+    }
+
+    /**
+     * 调度器在上游任务真正结束（执行完毕，或未派发即被移出队列）时调用
+     */
+    public void taskFinished() {
+        synchronized (this) {
+            pendingTasks--;
+        }
+        settleIfDone();
+    }
+
+    /**
+     * 发起方不再提交新的调用
+     */
+    public void seal() {
+        synchronized (this) {
+            sealed = true;
+        }
+        settleIfDone();
+    }
+
+    /**
+     * 封口且全部上游任务结束时完成
+     */
+    public CompletableFuture<Void> whenSettled() {
+        return settled;
+    }
+
+    private void settleIfDone() {
+        boolean done;
+        synchronized (this) {
+            done = sealed && pendingTasks <= 0;
+        }
+        if (done) {
+            settled.complete(null);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.yiqi.dto.ai;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.yiqi.service.timeline.PhaseTimeline;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +21,8 @@ public class ParallelInferenceResult {
     private int successfulAgents;
     private int failedAgents;
     private String phaseSummary;
+    private PhaseTimeline timeline;
+    private TokenUsage summaryUsage;
 
     public ParallelInferenceResult() {}
 
@@ -191,4 +195,41 @@ public class ParallelInferenceResult {
     public void setPhaseSummary(String phaseSummary) {
         this.phaseSummary = phaseSummary;
     }
-}
\ No newline at end of file
+
+    /**
+     * 本次执行的时间线（未开启时为null），用于在结果持久化时追加区间
+     */
+    @JsonIgnore
+    public PhaseTimeline getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(PhaseTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * 阶段总结的token用量（未生成总结时为null）
+     */
+    @JsonIgnore
+    public TokenUsage getSummaryUsage() {
+        return summaryUsage;
+    }
+
+    public void setSummaryUsage(TokenUsage summaryUsage) {
+        this.summaryUsage = summaryUsage;
+    }
+
+    /**
+     * 本阶段消耗的token总量（各代理与阶段总结）
+     */
+    public long getTotalTokens() {
+        long total = summaryUsage != null ? summaryUsage.getTotalTokens() : 0L;
+        if (agentResponses != null) {
+            for (AgentInferenceResponse response : agentResponses) {
+                total += response.getTotalTokens();
+            }
+        }
+        return total;
+    }
+}
@@ -1,5 +1,6 @@
 package com.yiqi.dto.ai;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
@@ -22,6 +23,10 @@ public class QiniuAIRequest {
     
     @JsonProperty("max_tokens")
     private Integer maxTokens;
+    
+    @JsonProperty("stream_options")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StreamOptions streamOptions;
 
     public QiniuAIRequest() {}
 
@@ -69,4 +74,34 @@ public class QiniuAIRequest {
     public void setMaxTokens(Integer maxTokens) {
         this.maxTokens = maxTokens;
     }
-}
\ No newline at end of file
+
+    public StreamOptions getStreamOptions() {
+        return streamOptions;
+    }
+
+    public void setStreamOptions(StreamOptions streamOptions) {
+        this.streamOptions = streamOptions;
+    }
+
+    /**
+     * 流式选项，include_usage为true时上游在结束前额外发送一个只含用量的片段
+     */
+    public static class StreamOptions {
+        @JsonProperty("include_usage")
+        private boolean includeUsage;
+
+        public StreamOptions() {}
+
+        public StreamOptions(boolean includeUsage) {
+            this.includeUsage = includeUsage;
+        }
+
+        public boolean isIncludeUsage() {
+            return includeUsage;
+        }
+
+        public void setIncludeUsage(boolean includeUsage) {
+            this.includeUsage = includeUsage;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.yiqi.dto.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * token用量累加器
+ * 随推理上下文传递，模型路由器在每次上游调用（含重试）返回用量后累加；
+ * 合并后的共享调用通过{@link #link}把用量转发给发起方的累加器；合并方不关联，用量记0，避免重复记账
+ */
+public class TokenUsage {
+
+    private long promptTokens;
+    private long completionTokens;
+    private String model;
+    private final List<TokenUsage> linked = new ArrayList<>();
+
+    /**
+     * 累加一次上游调用的用量，并转发给已关联的累加器
+     *
+     * @param model 实际提供服务的模型
+     */
+    public void add(String model, long prompt, long completion) {
+        List<TokenUsage> targets;
+        synchronized (this) {
+            promptTokens += Math.max(0L, prompt);
+            completionTokens += Math.max(0L, completion);
+            this.model = model;
+            targets = linked.isEmpty() ? null : new ArrayList<>(linked);
+        }
+        if (targets != null) {
+            for (TokenUsage target : targets) {
+                target.add(model, prompt, completion);
+            }
+        }
+    }
+
+    /**
+     * 关联另一个累加器：已累计的用量立即计入，之后的用量（含调用方超时后才返回的）同步转发
+     */
+    public void link(TokenUsage target) {
+        long prompt;
+        long completion;
+        String currentModel;
+        synchronized (this) {
+            linked.add(target);
+            prompt = promptTokens;
+            completion = completionTokens;
+            currentModel = model;
+        }
+        if (prompt > 0 || completion > 0) {
+            target.add(currentModel, prompt, completion);
+        }
+    }
+
+    public synchronized long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public synchronized long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public synchronized long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    public synchronized String getModel() {
+        return model;
+    }
+}
@@ -1,7 +1,10 @@
 package com.yiqi.dto.parallel;
 
+import java.time.LocalDateTime;
+
 /**
  * 推理性能统计
+ * 计数与平均值为进程启动以来的累计值；各耗时分布仅统计timeRange窗口内的样本
  */
 public class InferencePerformanceStats {
     
@@ -10,6 +13,11 @@ public class InferencePerformanceStats {
     private int failedInferences;
     private double successRate;
     private long averageResponseTime; // 毫秒
+    private String timeRange;
+    private LocalDateTime statisticsTime;
+    private LatencyWindowStats agentLatency;
+    private LatencyWindowStats phaseLatency;
+    private LatencyWindowStats summaryLatency;
     
     // Getters and Setters
     public int getTotalInferences() {
@@ -51,4 +59,44 @@ public class InferencePerformanceStats {
     public void setAverageResponseTime(long averageResponseTime) {
         this.averageResponseTime = averageResponseTime;
     }
-}
\ No newline at end of file
+    
+    public String getTimeRange() {
+        return timeRange;
+    }
+    
+    public void setTimeRange(String timeRange) {
+        this.timeRange = timeRange;
+    }
+    
+    public LocalDateTime getStatisticsTime() {
+        return statisticsTime;
+    }
+    
+    public void setStatisticsTime(LocalDateTime statisticsTime) {
+        this.statisticsTime = statisticsTime;
+    }
+    
+    public LatencyWindowStats getAgentLatency() {
+        return agentLatency;
+    }
+    
+    public void setAgentLatency(LatencyWindowStats agentLatency) {
+        this.agentLatency = agentLatency;
+    }
+    
+    public LatencyWindowStats getPhaseLatency() {
+        return phaseLatency;
+    }
+    
+    public void setPhaseLatency(LatencyWindowStats phaseLatency) {
+        this.phaseLatency = phaseLatency;
+    }
+    
+    public LatencyWindowStats getSummaryLatency() {
+        return summaryLatency;
+    }
+    
+    public void setSummaryLatency(LatencyWindowStats summaryLatency) {
+        this.summaryLatency = summaryLatency;
+    }
+}
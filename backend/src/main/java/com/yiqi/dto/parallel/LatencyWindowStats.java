@@ -0,0 +1,81 @@
+package com.yiqi.dto.parallel;
+
+/**
+ * 时间窗口内的耗时分布
+ * 分位数取所在桶的中点（相对误差约3%），不超过窗口内的最大值
+ */
+public class LatencyWindowStats {
+
+    private long count;
+    private long errors;
+    private double throughputPerSecond;
+    private double meanMs;
+    private double p50Ms;
+    private double p90Ms;
+    private double p99Ms;
+    private double maxMs;
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public double getThroughputPerSecond() {
+        return throughputPerSecond;
+    }
+
+    public void setThroughputPerSecond(double throughputPerSecond) {
+        this.throughputPerSecond = throughputPerSecond;
+    }
+
+    public double getMeanMs() {
+        return meanMs;
+    }
+
+    public void setMeanMs(double meanMs) {
+        this.meanMs = meanMs;
+    }
+
+    public double getP50Ms() {
+        return p50Ms;
+    }
+
+    public void setP50Ms(double p50Ms) {
+        this.p50Ms = p50Ms;
+    }
+
+    public double getP90Ms() {
+        return p90Ms;
+    }
+
+    public void setP90Ms(double p90Ms) {
+        this.p90Ms = p90Ms;
+    }
+
+    public double getP99Ms() {
+        return p99Ms;
+    }
+
+    public void setP99Ms(double p99Ms) {
+        this.p99Ms = p99Ms;
+    }
+
+    public double getMaxMs() {
+        return maxMs;
+    }
+
+    public void setMaxMs(double maxMs) {
+        this.maxMs = maxMs;
+    }
+}
@@ -5,6 +5,7 @@ import com.yiqi.enums.PhaseType;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.util.List;
 
 /**
  * 阶段推理配置
@@ -21,6 +22,11 @@ public class PhaseInferenceConfig {
     @Size(max = 1000, message = "附加上下文长度不能超过1000字符")
     private String additionalContext;
     
+    /**
+     * 依赖的上游阶段：未指定时依赖列表中的前一个阶段，空列表表示无依赖可立即执行
+     */
+    private List<PhaseType> dependsOn;
+    
     // Getters and Setters
     public PhaseType getPhaseType() {
         return phaseType;
@@ -45,4 +51,12 @@ public class PhaseInferenceConfig {
     public void setAdditionalContext(String additionalContext) {
         this.additionalContext = additionalContext;
     }
+    
+    public List<PhaseType> getDependsOn() {
+        return dependsOn;
+    }
+    
+    public void setDependsOn(List<PhaseType> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.yiqi.dto.parallel;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 阶段执行时间线（瀑布图格式）
+ * 区间按深度优先顺序平铺，startMs为相对阶段开始的偏移，未结束的区间durationMs为空；
+ * ownerId为发起执行的用户ID，读取时据此校验访问权限
+ */
+public class PhaseTimelineView {
+
+    private String sessionId;
+    private String phaseType;
+    private String executionId;
+    private String ownerId;
+    private LocalDateTime startedAt;
+    private boolean completed;
+    private double durationMs;
+    private boolean truncated;
+    private List<Span> spans = new ArrayList<>();
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getPhaseType() {
+        return phaseType;
+    }
+
+    public void setPhaseType(String phaseType) {
+        this.phaseType = phaseType;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public double getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(double durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    public List<Span> getSpans() {
+        return spans;
+    }
+
+    public void setSpans(List<Span> spans) {
+        this.spans = spans;
+    }
+
+    /**
+     * 时间线区间
+     */
+    public static class Span {
+        private int id;
+        private Integer parentId;
+        private int depth;
+        private String name;
+        private double startMs;
+        private Double durationMs;
+        private Map<String, Object> attributes;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public Integer getParentId() {
+            return parentId;
+        }
+
+        public void setParentId(Integer parentId) {
+            this.parentId = parentId;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public double getStartMs() {
+            return startMs;
+        }
+
+        public void setStartMs(double startMs) {
+            this.startMs = startMs;
+        }
+
+        public Double getDurationMs() {
+            return durationMs;
+        }
+
+        public void setDurationMs(Double durationMs) {
+            this.durationMs = durationMs;
+        }
+
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+    }
+}
@@ -56,6 +56,30 @@ public class AgentResponse {
     @TableField("response_time_ms")
     private Long responseTimeMs;
 
+    /**
+     * 实际提供服务的模型
+     */
+    @TableField("model")
+    private String model;
+
+    /**
+     * 输入token数
+     */
+    @TableField("prompt_tokens")
+    private Long promptTokens;
+
+    /**
+     * 输出token数
+     */
+    @TableField("completion_tokens")
+    private Long completionTokens;
+
+    /**
+     * token总数
+     */
+    @TableField("total_tokens")
+    private Long totalTokens;
+
     /**
      * 创建时间
      */
@@ -150,6 +174,38 @@ public class AgentResponse {
         this.responseTimeMs = responseTimeMs;
     }
 
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public void setPromptTokens(Long promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    public Long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public void setCompletionTokens(Long completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public Long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public void setTotalTokens(Long totalTokens) {
+        this.totalTokens = totalTokens;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -240,6 +296,20 @@ public class AgentResponse {
         this.responseTimeMs = responseTimeMs;
     }
 
+    /**
+     * 记录token用量
+     * 
+     * @param model 实际提供服务的模型
+     * @param promptTokens 输入token数
+     * @param completionTokens 输出token数
+     */
+    public void recordUsage(String model, long promptTokens, long completionTokens) {
+        this.model = model;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.totalTokens = promptTokens + completionTokens;
+    }
+
     /**
      * 检查响应内容是否为空
      * 
@@ -268,6 +338,8 @@ public class AgentResponse {
                 ", status='" + status + '\'' +
                 ", errorMessage='" + errorMessage + '\'' +
                 ", responseTimeMs=" + responseTimeMs +
+                ", model='" + model + '\'' +
+                ", totalTokens=" + totalTokens +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
@@ -57,6 +57,12 @@ public class BrainstormSession {
     @TableField("current_phase")
     private PhaseType currentPhase;
 
+    /**
+     * 乐观锁版本号，每次状态迁移或切换当前阶段时加一，只由条件更新写入，updateById不覆盖
+     */
+    @TableField(value = "version", updateStrategy = FieldStrategy.NEVER)
+    private Integer version;
+
     /**
      * 创建时间
      */
@@ -140,6 +146,14 @@ public class BrainstormSession {
         this.currentPhase = currentPhase;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -3,6 +3,7 @@ package com.yiqi.entity;
 import java.time.LocalDateTime;
 
 import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
@@ -62,6 +63,24 @@ public class Phase {
     @TableField("completed_at")
     private LocalDateTime completedAt;
 
+    /**
+     * 持有执行权的执行ID，只由条件更新写入和释放，updateById不覆盖
+     */
+    @TableField(value = "execution_id", updateStrategy = FieldStrategy.NEVER)
+    private String executionId;
+
+    /**
+     * 获得执行权的时间，超过租约时长的执行权可被接管
+     */
+    @TableField(value = "execution_claimed_at", updateStrategy = FieldStrategy.NEVER)
+    private LocalDateTime executionClaimedAt;
+
+    /**
+     * 乐观锁版本号，每次状态迁移加一，只由条件更新写入，updateById不覆盖
+     */
+    @TableField(value = "version", updateStrategy = FieldStrategy.NEVER)
+    private Integer version;
+
     /**
      * 创建时间
      */
@@ -143,6 +162,30 @@ public class Phase {
         this.completedAt = completedAt;
     }
 
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
+    public LocalDateTime getExecutionClaimedAt() {
+        return executionClaimedAt;
+    }
+
+    public void setExecutionClaimedAt(LocalDateTime executionClaimedAt) {
+        this.executionClaimedAt = executionClaimedAt;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -45,6 +45,10 @@ public class User {
     @Schema(description = "账户锁定到期时间")
     private LocalDateTime lockedUntil;
 
+    @JsonIgnore
+    @Schema(description = "令牌版本，低于该版本的已签发令牌视为吊销")
+    private Integer tokenVersion;
+
     public User() {
         this.failedLoginAttempts = 0;
     }
@@ -112,6 +116,14 @@ public class User {
         this.lockedUntil = lockedUntil;
     }
 
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Integer tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     /**
      * 检查账户是否被锁定
      */
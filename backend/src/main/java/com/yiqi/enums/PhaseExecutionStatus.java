@@ -0,0 +1,49 @@
+package com.yiqi.enums;
+
+/**
+ * 阶段异步执行状态枚举
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum PhaseExecutionStatus {
+
+    /**
+     * 排队中 - 已受理，等待执行线程
+     */
+    QUEUED("排队中"),
+
+    /**
+     * 执行中 - 代理正在推理
+     */
+    RUNNING("执行中"),
+
+    /**
+     * 已成功 - 响应已保存并提交审核
+     */
+    SUCCEEDED("已成功"),
+
+    /**
+     * 已失败 - 执行出错或没有成功的代理响应，阶段保持进行中，可重新执行
+     */
+    FAILED("已失败");
+
+    private final String description;
+
+    PhaseExecutionStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 检查执行是否已结束
+     *
+     * @return true如果已成功或已失败
+     */
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
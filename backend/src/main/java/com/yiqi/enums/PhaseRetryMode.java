@@ -0,0 +1,30 @@
+package com.yiqi.enums;
+
+/**
+ * 阶段重新执行模式枚举
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum PhaseRetryMode {
+
+    /**
+     * 全部重新执行 - 清除阶段的所有代理响应与总结，所有活跃代理重新推理
+     */
+    ALL("全部重新执行"),
+
+    /**
+     * 只重新执行失败的代理 - 保留成功的响应，只有失败、超时或新加入会话的代理重新推理
+     */
+    FAILED_ONLY("只重新执行失败的代理");
+
+    private final String description;
+
+    PhaseRetryMode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
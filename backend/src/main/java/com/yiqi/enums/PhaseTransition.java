@@ -0,0 +1,130 @@
+package com.yiqi.enums;
+
+import com.yiqi.exception.StateConflictException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 阶段状态迁移定义
+ * 每种迁移声明允许的源状态、目标状态以及需要写入的列，由PhaseMapper.transition按
+ * "id + 源状态 + 版本号"条件更新，只写入声明的列
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum PhaseTransition {
+
+    /**
+     * 开始阶段 - 记录开始时间
+     */
+    START("开始", PhaseStatus.IN_PROGRESS, EnumSet.of(PhaseStatus.NOT_STARTED, PhaseStatus.REJECTED),
+          true, false, false, false, false),
+
+    /**
+     * 提交审核 - 写入阶段总结并记录完成时间
+     */
+    SUBMIT("提交审核", PhaseStatus.WAITING_APPROVAL, EnumSet.of(PhaseStatus.IN_PROGRESS),
+           false, true, false, true, false),
+
+    /**
+     * 审核通过 - 直接完成阶段（审核通过后立即完成，不再单独写入APPROVED），有新总结时写入
+     */
+    APPROVE("审核通过", PhaseStatus.COMPLETED, EnumSet.of(PhaseStatus.WAITING_APPROVAL),
+            false, true, false, true, false),
+
+    /**
+     * 审核拒绝 - 清除完成时间
+     */
+    REJECT("审核拒绝", PhaseStatus.REJECTED, EnumSet.of(PhaseStatus.WAITING_APPROVAL),
+           false, false, true, false, false),
+
+    /**
+     * 重新执行被拒绝的阶段 - 清除总结与完成时间并重新记录开始时间
+     */
+    RETRY("重新执行", PhaseStatus.IN_PROGRESS, EnumSet.of(PhaseStatus.REJECTED),
+          true, false, true, false, true),
+
+    /**
+     * 只重新执行失败的代理 - 保留原总结（成功响应未变时无需重新生成），重新记录开始时间
+     */
+    RETRY_FAILED("重新执行失败代理", PhaseStatus.IN_PROGRESS, EnumSet.of(PhaseStatus.REJECTED),
+                 true, false, true, false, false);
+
+    private final String description;
+    private final PhaseStatus to;
+    private final Set<PhaseStatus> from;
+    private final boolean stampStartedAt;
+    private final boolean stampCompletedAt;
+    private final boolean clearCompletedAt;
+    private final boolean writeSummary;
+    private final boolean clearSummary;
+
+    PhaseTransition(String description, PhaseStatus to, Set<PhaseStatus> from, boolean stampStartedAt, boolean stampCompletedAt,
+                    boolean clearCompletedAt, boolean writeSummary, boolean clearSummary) {
+        this.description = description;
+        this.to = to;
+        this.from = from;
+        this.stampStartedAt = stampStartedAt;
+        this.stampCompletedAt = stampCompletedAt;
+        this.clearCompletedAt = clearCompletedAt;
+        this.writeSummary = writeSummary;
+        this.clearSummary = clearSummary;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public PhaseStatus getTo() {
+        return to;
+    }
+
+    public boolean isStampStartedAt() {
+        return stampStartedAt;
+    }
+
+    /**
+     * 完成时间为空时写入当前时间
+     */
+    public boolean isStampCompletedAt() {
+        return stampCompletedAt;
+    }
+
+    public boolean isClearCompletedAt() {
+        return clearCompletedAt;
+    }
+
+    /**
+     * 传入的总结不为空时写入
+     */
+    public boolean isWriteSummary() {
+        return writeSummary;
+    }
+
+    public boolean isClearSummary() {
+        return clearSummary;
+    }
+
+    /**
+     * 检查是否允许从指定状态迁移
+     * 
+     * @param status 当前状态
+     * @return true如果允许
+     */
+    public boolean allowsFrom(PhaseStatus status) {
+        return status != null && from.contains(status);
+    }
+
+    /**
+     * 校验迁移是否允许
+     * 
+     * @param status 当前状态
+     * @throws StateConflictException 如果当前状态不允许该迁移
+     */
+    public void check(PhaseStatus status) {
+        if (!allowsFrom(status)) {
+            throw new StateConflictException("阶段当前状态不允许" + description + ": " + status);
+        }
+    }
+}
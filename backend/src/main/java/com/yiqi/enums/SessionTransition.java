@@ -0,0 +1,89 @@
+package com.yiqi.enums;
+
+import com.yiqi.exception.StateConflictException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 会话状态迁移定义
+ * 每种迁移声明允许的源状态与目标状态，由BrainstormSessionMapper.transition按
+ * "id + 源状态 + 版本号"条件更新，只写入状态（启动时另写入主题）
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum SessionTransition {
+
+    /**
+     * 启动会话 - 同时写入头脑风暴主题
+     */
+    START("启动", SessionStatus.IN_PROGRESS, EnumSet.of(SessionStatus.CREATED, SessionStatus.PAUSED), true),
+
+    /**
+     * 暂停会话
+     */
+    PAUSE("暂停", SessionStatus.PAUSED, EnumSet.of(SessionStatus.IN_PROGRESS), false),
+
+    /**
+     * 恢复会话
+     */
+    RESUME("恢复", SessionStatus.IN_PROGRESS, EnumSet.of(SessionStatus.PAUSED), false),
+
+    /**
+     * 完成会话 - 最后阶段审核通过
+     */
+    COMPLETE("完成", SessionStatus.COMPLETED, EnumSet.of(SessionStatus.IN_PROGRESS, SessionStatus.PAUSED), false),
+
+    /**
+     * 取消会话 - 已完成或已取消的会话不能再取消
+     */
+    CANCEL("取消", SessionStatus.CANCELLED,
+           EnumSet.of(SessionStatus.CREATED, SessionStatus.IN_PROGRESS, SessionStatus.PAUSED), false);
+
+    private final String description;
+    private final SessionStatus to;
+    private final Set<SessionStatus> from;
+    private final boolean writeTopic;
+
+    SessionTransition(String description, SessionStatus to, Set<SessionStatus> from, boolean writeTopic) {
+        this.description = description;
+        this.to = to;
+        this.from = from;
+        this.writeTopic = writeTopic;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public SessionStatus getTo() {
+        return to;
+    }
+
+    public boolean isWriteTopic() {
+        return writeTopic;
+    }
+
+    /**
+     * 检查是否允许从指定状态迁移
+     * 
+     * @param status 当前状态
+     * @return true如果允许
+     */
+    public boolean allowsFrom(SessionStatus status) {
+        return status != null && from.contains(status);
+    }
+
+    /**
+     * 校验迁移是否允许
+     * 
+     * @param status 当前状态
+     * @throws StateConflictException 如果当前状态不允许该迁移
+     */
+    public void check(SessionStatus status) {
+        if (!allowsFrom(status)) {
+            throw new StateConflictException("会话当前状态不允许" + description + ": " + status);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.yiqi.enums;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 性能统计时间窗口枚举
+ * 每个窗口由固定数量的时间槽组成，窗口越长槽越粗，内存占用与运行时长无关
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum StatisticsTimeRange {
+
+    /**
+     * 最近1分钟，5秒一槽
+     */
+    ONE_MINUTE("1m", TimeUnit.MINUTES.toMillis(1), TimeUnit.SECONDS.toMillis(5)),
+
+    /**
+     * 最近5分钟，15秒一槽
+     */
+    FIVE_MINUTES("5m", TimeUnit.MINUTES.toMillis(5), TimeUnit.SECONDS.toMillis(15)),
+
+    /**
+     * 最近1小时，2分钟一槽
+     */
+    ONE_HOUR("1h", TimeUnit.HOURS.toMillis(1), TimeUnit.MINUTES.toMillis(2)),
+
+    /**
+     * 最近24小时，30分钟一槽
+     */
+    ONE_DAY("24h", TimeUnit.HOURS.toMillis(24), TimeUnit.MINUTES.toMillis(30));
+
+    private final String code;
+    private final long windowMillis;
+    private final long slotMillis;
+
+    StatisticsTimeRange(String code, long windowMillis, long slotMillis) {
+        this.code = code;
+        this.windowMillis = windowMillis;
+        this.slotMillis = slotMillis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public long getSlotMillis() {
+        return slotMillis;
+    }
+
+    public int getSlotCount() {
+        return (int) (windowMillis / slotMillis);
+    }
+
+    /**
+     * 根据代码获取时间窗口
+     */
+    public static StatisticsTimeRange fromCode(String code) {
+        for (StatisticsTimeRange range : values()) {
+            if (range.code.equalsIgnoreCase(code)) {
+                return range;
+            }
+        }
+        throw new IllegalArgumentException("无效的时间范围: " + code + "，可选值为 1m/5m/1h/24h");
+    }
+}
@@ -0,0 +1,46 @@
+package com.yiqi.enums;
+
+/**
+ * AI推理流量类别枚举
+ * 调度器按类别加权公平排队，决定上游连接的分配顺序
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum TrafficClass {
+
+    /**
+     * 交互式 - 用户正在等待的阶段执行与流式输出
+     */
+    INTERACTIVE("交互式"),
+
+    /**
+     * 批量 - 批量多阶段推理等后台任务
+     */
+    BATCH("批量"),
+
+    /**
+     * 报告 - 异步报告生成
+     */
+    REPORT("报告"),
+
+    /**
+     * 探测 - 健康检查与连接验证
+     */
+    PROBE("探测"),
+
+    /**
+     * 预执行 - 阶段等待审核期间对下一阶段的推测执行，结果可能被丢弃
+     */
+    SPECULATIVE("预执行");
+
+    private final String description;
+
+    TrafficClass(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
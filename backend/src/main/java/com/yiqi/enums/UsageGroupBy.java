@@ -0,0 +1,70 @@
+package com.yiqi.enums;
+
+/**
+ * token用量统计维度枚举
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public enum UsageGroupBy {
+
+    /**
+     * 按用户（会话所有者）
+     */
+    USER("user", "s.user_id", "MAX(u.username)"),
+
+    /**
+     * 按代理
+     */
+    AGENT("agent", "ar.agent_id", "MAX(a.name)"),
+
+    /**
+     * 按阶段类型
+     */
+    PHASE_TYPE("phaseType", "p.phase_type", "p.phase_type"),
+
+    /**
+     * 按实际提供服务的模型
+     */
+    MODEL("model", "ar.model", "ar.model");
+
+    private final String code;
+    private final String column;
+    private final String labelColumn;
+
+    UsageGroupBy(String code, String column, String labelColumn) {
+        this.code = code;
+        this.column = column;
+        this.labelColumn = labelColumn;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 分组列（固定的SQL片段，不含用户输入）
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * 分组显示名列（固定的SQL片段，不含用户输入）
+     */
+    public String getLabelColumn() {
+        return labelColumn;
+    }
+
+    /**
+     * 根据代码获取统计维度
+     */
+    public static UsageGroupBy fromCode(String code) {
+        for (UsageGroupBy groupBy : values()) {
+            if (groupBy.code.equalsIgnoreCase(code)) {
+                return groupBy;
+            }
+        }
+        throw new IllegalArgumentException("无效的统计维度: " + code + "，可选值为 user/agent/phaseType/model");
+    }
+}
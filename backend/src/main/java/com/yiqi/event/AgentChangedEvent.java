@@ -0,0 +1,27 @@
+package com.yiqi.event;
+
+/**
+ * 代理变更事件
+ * 在事务内发布时于提交后投递，代理缓存据此失效
+ */
+public class AgentChangedEvent {
+
+    private final Long agentId;
+    private final String reason;
+
+    public AgentChangedEvent(Long agentId, String reason) {
+        this.agentId = agentId;
+        this.reason = reason;
+    }
+
+    public Long getAgentId() {
+        return agentId;
+    }
+
+    /**
+     * 变更原因，如AGENT_UPDATED、AGENT_DELETED
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,33 @@
+package com.yiqi.event;
+
+import com.yiqi.service.InferenceStatusService;
+
+/**
+ * 阶段推理进度事件
+ * 开始跟踪、每个代理完成以及推理失败时发布，携带当时的状态副本
+ */
+public class InferenceProgressEvent {
+
+    private final String sessionId;
+    private final String phaseType;
+    private final InferenceStatusService.SessionInferenceStatus status;
+
+    public InferenceProgressEvent(String sessionId, String phaseType,
+                                  InferenceStatusService.SessionInferenceStatus status) {
+        this.sessionId = sessionId;
+        this.phaseType = phaseType;
+        this.status = status;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getPhaseType() {
+        return phaseType;
+    }
+
+    public InferenceStatusService.SessionInferenceStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,27 @@
+package com.yiqi.event;
+
+/**
+ * 会话或阶段状态变更事件
+ * 在事务内发布时于提交后投递，订阅方据此重新读取会话状态
+ */
+public class SessionStateChangedEvent {
+
+    private final Long sessionId;
+    private final String reason;
+
+    public SessionStateChangedEvent(Long sessionId, String reason) {
+        this.sessionId = sessionId;
+        this.reason = reason;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * 变更原因，如PHASE_STARTED、SESSION_PAUSED
+     */
+    public String getReason() {
+        return reason;
+    }
+}
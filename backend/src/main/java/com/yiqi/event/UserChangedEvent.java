@@ -0,0 +1,42 @@
+package com.yiqi.event;
+
+/**
+ * 用户认证相关信息变更事件（锁定状态、密码等）
+ * 在事务内发布时于提交后投递，用户主体缓存据此失效；携带令牌版本时同时吊销此前签发的令牌
+ */
+public class UserChangedEvent {
+
+    private final Long userId;
+    private final String username;
+    private final String reason;
+    private final Integer tokenVersion;
+
+    public UserChangedEvent(Long userId, String username, String reason, Integer tokenVersion) {
+        this.userId = userId;
+        this.username = username;
+        this.reason = reason;
+        this.tokenVersion = tokenVersion;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 变更原因，如USER_LOCKED、LOGIN_ATTEMPTS_RESET
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * 变更后的令牌版本，令牌版本未变时为null
+     */
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+}
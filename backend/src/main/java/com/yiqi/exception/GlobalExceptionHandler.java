@@ -2,6 +2,7 @@ package com.yiqi.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -94,6 +95,60 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).body(errorResponse);
     }
     
+    /**
+     * 处理认证异常（用户名或密码错误、账户锁定）
+     * 撞库时会大量出现，只记录简要日志
+     */
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<ErrorResponse> handleAuthenticationException(AuthenticationException e, HttpServletRequest request) {
+        logger.debug("认证失败: {}", e.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setSuccess(false);
+        errorResponse.setErrorCode(e.getErrorCode());
+        errorResponse.setMessage(e.getMessage());
+        errorResponse.setTimestamp(LocalDateTime.now());
+        errorResponse.setPath(request.getRequestURI());
+        
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+    }
+    
+    /**
+     * 处理服务繁忙异常
+     */
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<ErrorResponse> handleServiceBusyException(ServiceBusyException e, HttpServletRequest request) {
+        logger.warn("请求被拒绝: {}", e.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setSuccess(false);
+        errorResponse.setErrorCode(e.getErrorCode());
+        errorResponse.setMessage(e.getMessage());
+        errorResponse.setTimestamp(LocalDateTime.now());
+        errorResponse.setPath(request.getRequestURI());
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorResponse);
+    }
+    
+    /**
+     * 处理状态冲突异常
+     */
+    @ExceptionHandler(StateConflictException.class)
+    public ResponseEntity<ErrorResponse> handleStateConflictException(StateConflictException e, HttpServletRequest request) {
+        logger.warn("状态冲突: {}", e.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setSuccess(false);
+        errorResponse.setErrorCode(e.getErrorCode());
+        errorResponse.setMessage(e.getMessage());
+        errorResponse.setTimestamp(LocalDateTime.now());
+        errorResponse.setPath(request.getRequestURI());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+    
     /**
      * 处理非法参数异常
      */
@@ -139,6 +194,8 @@ public class GlobalExceptionHandler {
         switch (errorCode) {
             case "AI_SERVICE_UNAVAILABLE":
             case "AI_SERVICE_TIMEOUT":
+            case "AI_SCHEDULER_QUEUE_FULL":
+            case "BATCH_JOB_LIMIT_EXCEEDED":
                 return HttpStatus.SERVICE_UNAVAILABLE;
             case "AI_REQUEST_FAILED":
             case "PARALLEL_INFERENCE_FAILED":
@@ -0,0 +1,14 @@
+package com.yiqi.exception;
+
+/**
+ * 服务繁忙异常，请求因排队过长或队列已满被拒绝，客户端应稍后重试
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class ServiceBusyException extends YiQiException {
+
+    public ServiceBusyException(String message) {
+        super("SERVICE_BUSY", message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.yiqi.exception;
+
+/**
+ * 状态冲突异常，当前状态不允许请求的迁移，或读取后状态已被并发请求修改，客户端应刷新状态后重试
+ * 
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+public class StateConflictException extends YiQiException {
+
+    public StateConflictException(String message) {
+        super("STATE_CONFLICT", message);
+    }
+}
@@ -2,9 +2,11 @@ package com.yiqi.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yiqi.entity.AgentResponse;
+import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -74,6 +76,27 @@ public interface AgentResponseMapper extends BaseMapper<AgentResponse> {
     @Select("SELECT * FROM agent_responses WHERE phase_id = #{phaseId} AND status IN ('FAILED', 'TIMEOUT') ORDER BY created_at ASC")
     List<AgentResponse> findFailedResponsesByPhaseId(@Param("phaseId") Long phaseId);
 
+    /**
+     * 删除阶段的所有响应记录
+     * 
+     * @param phaseId 阶段ID
+     * @return 删除行数
+     */
+    @Delete("DELETE FROM agent_responses WHERE phase_id = #{phaseId}")
+    int deleteByPhaseId(@Param("phaseId") Long phaseId);
+
+    /**
+     * 将阶段中未成功的响应记录重置为处理中，成功的响应保持不变
+     * 
+     * @param phaseId 阶段ID
+     * @param now 当前时间
+     * @return 重置行数
+     */
+    @Update("UPDATE agent_responses SET status = 'PROCESSING', content = NULL, error_message = NULL, " +
+            "response_time_ms = NULL, updated_at = #{now} " +
+            "WHERE phase_id = #{phaseId} AND status <> 'SUCCESS'")
+    int resetUnsuccessfulByPhaseId(@Param("phaseId") Long phaseId, @Param("now") LocalDateTime now);
+
     /**
      * 统计阶段中的响应数量
      * 
@@ -168,6 +191,74 @@ public interface AgentResponseMapper extends BaseMapper<AgentResponse> {
             "ORDER BY p.created_at ASC, ar.created_at ASC")
     List<AgentResponse> findBySessionId(@Param("sessionId") Long sessionId);
 
+    /**
+     * 按维度与模型聚合token用量
+     * 
+     * @param groupColumn 分组列，仅由UsageGroupBy提供
+     * @param labelColumn 分组显示名列，仅由UsageGroupBy提供
+     * @param userId 会话所有者ID，为空时统计全部用户
+     * @param startTime 开始时间（含），可为空
+     * @param endTime 结束时间（不含），可为空
+     * @return 每个（分组，模型）一行
+     */
+    @Select("<script>" +
+            "SELECT ${groupColumn} AS group_key, ${labelColumn} AS group_label, ar.model AS model, " +
+            "COUNT(*) AS responses, " +
+            "COALESCE(SUM(ar.prompt_tokens), 0) AS prompt_tokens, " +
+            "COALESCE(SUM(ar.completion_tokens), 0) AS completion_tokens, " +
+            "COALESCE(SUM(CASE WHEN ar.completion_tokens &gt; 0 THEN ar.response_time_ms END), 0) AS generation_time_ms " +
+            "FROM agent_responses ar " +
+            "JOIN phases p ON ar.phase_id = p.id " +
+            "JOIN brainstorm_sessions s ON p.session_id = s.id " +
+            "LEFT JOIN agents a ON ar.agent_id = a.id " +
+            "LEFT JOIN users u ON s.user_id = u.id " +
+            "<where>" +
+            "<if test='userId != null'>s.user_id = #{userId}</if>" +
+            "<if test='startTime != null'>AND ar.created_at &gt;= #{startTime}</if>" +
+            "<if test='endTime != null'>AND ar.created_at &lt; #{endTime}</if>" +
+            "</where>" +
+            "GROUP BY ${groupColumn}, ar.model" +
+            "</script>")
+    List<UsageRow> aggregateUsage(@Param("groupColumn") String groupColumn,
+                                  @Param("labelColumn") String labelColumn,
+                                  @Param("userId") Long userId,
+                                  @Param("startTime") LocalDateTime startTime,
+                                  @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * token用量聚合行
+     */
+    class UsageRow {
+        private String groupKey;
+        private String groupLabel;
+        private String model;
+        private Long responses;
+        private Long promptTokens;
+        private Long completionTokens;
+        private Long generationTimeMs;
+
+        public String getGroupKey() { return groupKey; }
+        public void setGroupKey(String groupKey) { this.groupKey = groupKey; }
+
+        public String getGroupLabel() { return groupLabel; }
+        public void setGroupLabel(String groupLabel) { this.groupLabel = groupLabel; }
+
+        public String getModel() { return model; }
+        public void setModel(String model) { this.model = model; }
+
+        public Long getResponses() { return responses; }
+        public void setResponses(Long responses) { this.responses = responses; }
+
+        public Long getPromptTokens() { return promptTokens; }
+        public void setPromptTokens(Long promptTokens) { this.promptTokens = promptTokens; }
+
+        public Long getCompletionTokens() { return completionTokens; }
+        public void setCompletionTokens(Long completionTokens) { this.completionTokens = completionTokens; }
+
+        public Long getGenerationTimeMs() { return generationTimeMs; }
+        public void setGenerationTimeMs(Long generationTimeMs) { this.generationTimeMs = generationTimeMs; }
+    }
+
     /**
      * 响应统计结果类
      */
@@ -6,10 +6,14 @@ import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yiqi.entity.BrainstormSession;
+import com.yiqi.enums.PhaseStatus;
+import com.yiqi.enums.PhaseType;
 import com.yiqi.enums.SessionStatus;
+import com.yiqi.enums.SessionTransition;
 
 /**
  * 头脑风暴会话数据访问层
@@ -114,4 +118,132 @@ public interface BrainstormSessionMapper extends BaseMapper<BrainstormSession> {
      */
     @Select("SELECT * FROM brainstorm_sessions WHERE updated_at < #{beforeTime} AND status IN ('CREATED', 'PAUSED') ORDER BY updated_at ASC")
     List<BrainstormSession> findStaleSessionsBefore(@Param("beforeTime") LocalDateTime beforeTime);
-}
\ No newline at end of file
+
+    /**
+     * 按创建时间倒序分页查询用户的会话（键集分页，不含描述与主题等大字段）
+     * 创建时间不随会话更新变化，翻页期间会话不会在页之间移动
+     * 
+     * @param userId 用户ID
+     * @param activeOnly 是否只查询进行中或暂停的会话
+     * @param cursorCreatedAt 上一页最后一条的创建时间，为空时查询第一页
+     * @param cursorId 上一页最后一条的会话ID
+     * @param limit 限制数量，为空时不限制
+     * @return 会话列表
+     */
+    @Select("<script>" +
+            "SELECT id, user_id, title, status, current_phase, created_at, updated_at FROM brainstorm_sessions " +
+            "WHERE user_id = #{userId}" +
+            "<if test='activeOnly'> AND status IN ('IN_PROGRESS', 'PAUSED')</if>" +
+            "<if test='cursorCreatedAt != null'>" +
+            " AND (created_at &lt; #{cursorCreatedAt} OR (created_at = #{cursorCreatedAt} AND id &lt; #{cursorId}))" +
+            "</if>" +
+            " ORDER BY created_at DESC, id DESC" +
+            "<if test='limit != null'> LIMIT #{limit}</if>" +
+            "</script>")
+    List<BrainstormSession> findPageByUserId(@Param("userId") Long userId,
+                                             @Param("activeOnly") boolean activeOnly,
+                                             @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                             @Param("cursorId") Long cursorId,
+                                             @Param("limit") Integer limit);
+
+    /**
+     * 一次查询会话状态、代理数量与各阶段的状态和响应数量（每个阶段一行，没有阶段时返回一行会话信息）
+     * 
+     * @param sessionId 会话ID
+     * @return 会话状态行，会话不存在时为空列表
+     */
+    @Select("SELECT s.id AS session_id, s.status AS session_status, s.current_phase, s.updated_at, " +
+            "(SELECT COUNT(*) FROM session_agents sa WHERE sa.session_id = s.id) AS agent_count, " +
+            "(SELECT COUNT(*) FROM session_agents sa WHERE sa.session_id = s.id AND sa.status = 'ACTIVE') AS active_agent_count, " +
+            "p.phase_type, p.status AS phase_status, p.summary, p.started_at, p.completed_at, " +
+            "(SELECT COUNT(*) FROM agent_responses ar WHERE ar.phase_id = p.id) AS response_count, " +
+            "(SELECT COUNT(*) FROM agent_responses ar WHERE ar.phase_id = p.id AND ar.status = 'SUCCESS') AS successful_response_count " +
+            "FROM brainstorm_sessions s " +
+            "LEFT JOIN phases p ON p.session_id = s.id " +
+            "WHERE s.id = #{sessionId} " +
+            "ORDER BY p.created_at ASC, p.id ASC")
+    List<SessionStatusRow> findStatusRows(@Param("sessionId") Long sessionId);
+
+    /**
+     * 按状态迁移定义条件更新会话：仅当会话仍处于读取时的状态与版本号时成功，不改写描述等大字段
+     * 
+     * @param sessionId 会话ID
+     * @param from 读取时的状态
+     * @param version 读取时的版本号
+     * @param transition 状态迁移
+     * @param topic 头脑风暴主题，仅迁移声明写入主题时写入
+     * @param now 当前时间
+     * @return 更新行数，0表示会话已被并发修改
+     */
+    @Update("<script>" +
+            "UPDATE brainstorm_sessions SET status = #{transition.to}, version = version + 1, updated_at = #{now}" +
+            "<if test='transition.writeTopic'>, topic = #{topic}</if>" +
+            " WHERE id = #{sessionId} AND status = #{from} AND version = #{version}" +
+            "</script>")
+    int transition(@Param("sessionId") Long sessionId,
+                   @Param("from") SessionStatus from,
+                   @Param("version") Integer version,
+                   @Param("transition") SessionTransition transition,
+                   @Param("topic") String topic,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * 切换会话的当前阶段，只写入当前阶段列
+     * 
+     * @param sessionId 会话ID
+     * @param currentPhase 当前阶段
+     * @param now 当前时间
+     * @return 更新行数
+     */
+    @Update("UPDATE brainstorm_sessions SET current_phase = #{currentPhase}, version = version + 1, updated_at = #{now} " +
+            "WHERE id = #{sessionId}")
+    int updateCurrentPhase(@Param("sessionId") Long sessionId,
+                           @Param("currentPhase") PhaseType currentPhase,
+                           @Param("now") LocalDateTime now);
+
+    /**
+     * 会话状态行
+     */
+    class SessionStatusRow {
+        private Long sessionId;
+        private SessionStatus sessionStatus;
+        private PhaseType currentPhase;
+        private LocalDateTime updatedAt;
+        private Long agentCount;
+        private Long activeAgentCount;
+        private PhaseType phaseType;
+        private PhaseStatus phaseStatus;
+        private String summary;
+        private LocalDateTime startedAt;
+        private LocalDateTime completedAt;
+        private Long responseCount;
+        private Long successfulResponseCount;
+
+        public Long getSessionId() { return sessionId; }
+        public void setSessionId(Long sessionId) { this.sessionId = sessionId; }
+        public SessionStatus getSessionStatus() { return sessionStatus; }
+        public void setSessionStatus(SessionStatus sessionStatus) { this.sessionStatus = sessionStatus; }
+        public PhaseType getCurrentPhase() { return currentPhase; }
+        public void setCurrentPhase(PhaseType currentPhase) { this.currentPhase = currentPhase; }
+        public LocalDateTime getUpdatedAt() { return updatedAt; }
+        public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+        public Long getAgentCount() { return agentCount; }
+        public void setAgentCount(Long agentCount) { this.agentCount = agentCount; }
+        public Long getActiveAgentCount() { return activeAgentCount; }
+        public void setActiveAgentCount(Long activeAgentCount) { this.activeAgentCount = activeAgentCount; }
+        public PhaseType getPhaseType() { return phaseType; }
+        public void setPhaseType(PhaseType phaseType) { this.phaseType = phaseType; }
+        public PhaseStatus getPhaseStatus() { return phaseStatus; }
+        public void setPhaseStatus(PhaseStatus phaseStatus) { this.phaseStatus = phaseStatus; }
+        public String getSummary() { return summary; }
+        public void setSummary(String summary) { this.summary = summary; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+        public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+        public Long getResponseCount() { return responseCount; }
+        public void setResponseCount(Long responseCount) { this.responseCount = responseCount; }
+        public Long getSuccessfulResponseCount() { return successfulResponseCount; }
+        public void setSuccessfulResponseCount(Long successfulResponseCount) { this.successfulResponseCount = successfulResponseCount; }
+    }
+}
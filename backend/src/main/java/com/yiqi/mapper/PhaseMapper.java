@@ -3,10 +3,12 @@ package com.yiqi.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yiqi.entity.Phase;
 import com.yiqi.enums.PhaseStatus;
+import com.yiqi.enums.PhaseTransition;
 import com.yiqi.enums.PhaseType;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -133,6 +135,61 @@ public interface PhaseMapper extends BaseMapper<Phase> {
     @Select("SELECT * FROM phases WHERE status = 'IN_PROGRESS' AND started_at < #{beforeTime} ORDER BY started_at ASC")
     List<Phase> findLongRunningPhasesBefore(@Param("beforeTime") LocalDateTime beforeTime);
 
+    /**
+     * 原子地获取阶段执行权：仅当阶段进行中且没有执行持有执行权（或持有者的租约已过期）时成功
+     * 
+     * @param phaseId 阶段ID
+     * @param executionId 新执行ID
+     * @param claimedAt 获得执行权的时间
+     * @param staleBefore 早于该时间获得的执行权视为已失效
+     * @return 更新行数，0表示执行权被其他执行持有
+     */
+    @Update("UPDATE phases SET execution_id = #{executionId}, execution_claimed_at = #{claimedAt} " +
+            "WHERE id = #{phaseId} AND status = 'IN_PROGRESS' " +
+            "AND (execution_id IS NULL OR execution_claimed_at < #{staleBefore})")
+    int claimExecution(@Param("phaseId") Long phaseId,
+                       @Param("executionId") String executionId,
+                       @Param("claimedAt") LocalDateTime claimedAt,
+                       @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * 释放阶段执行权，只有持有者本身能释放
+     * 
+     * @param phaseId 阶段ID
+     * @param executionId 持有执行权的执行ID
+     * @return 更新行数，0表示执行权已不属于该执行
+     */
+    @Update("UPDATE phases SET execution_id = NULL, execution_claimed_at = NULL " +
+            "WHERE id = #{phaseId} AND execution_id = #{executionId}")
+    int releaseExecution(@Param("phaseId") Long phaseId, @Param("executionId") String executionId);
+
+    /**
+     * 按状态迁移定义条件更新阶段：仅当阶段仍处于读取时的状态与版本号时成功，只写入迁移声明的列
+     * 
+     * @param phaseId 阶段ID
+     * @param from 读取时的状态
+     * @param version 读取时的版本号
+     * @param transition 状态迁移
+     * @param summary 阶段总结，仅迁移声明写入总结且不为空时写入
+     * @param now 当前时间
+     * @return 更新行数，0表示阶段已被并发修改
+     */
+    @Update("<script>" +
+            "UPDATE phases SET status = #{transition.to}, version = version + 1, updated_at = #{now}" +
+            "<if test='transition.stampStartedAt'>, started_at = #{now}</if>" +
+            "<if test='transition.stampCompletedAt'>, completed_at = COALESCE(completed_at, #{now})</if>" +
+            "<if test='transition.clearCompletedAt'>, completed_at = NULL</if>" +
+            "<if test='transition.writeSummary and summary != null'>, summary = #{summary}</if>" +
+            "<if test='transition.clearSummary'>, summary = NULL</if>" +
+            " WHERE id = #{phaseId} AND status = #{from} AND version = #{version}" +
+            "</script>")
+    int transition(@Param("phaseId") Long phaseId,
+                   @Param("from") PhaseStatus from,
+                   @Param("version") Integer version,
+                   @Param("transition") PhaseTransition transition,
+                   @Param("summary") String summary,
+                   @Param("now") LocalDateTime now);
+
     /**
      * 查询会话的阶段进度统计
      * 
@@ -1,5 +1,6 @@
 package com.yiqi.mapper;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Delete;
@@ -136,4 +137,47 @@ public interface SessionAgentMapper extends BaseMapper<SessionAgent> {
             "WHERE sa.session_id = #{sessionId} " +
             "ORDER BY sa.joined_at ASC")
     List<SessionAgent> findSessionAgentsWithDetails(@Param("sessionId") Long sessionId);
-}
\ No newline at end of file
+
+    /**
+     * 批量查询多个会话的代理信息（一次关联查询代替逐个会话、逐个代理的查询）
+     * 
+     * @param sessionIds 会话ID列表
+     * @return 按会话与加入时间排序的代理信息
+     */
+    @Select("<script>" +
+            "SELECT sa.session_id, sa.agent_id, sa.status, sa.joined_at, a.name AS agent_name, a.role_type " +
+            "FROM session_agents sa " +
+            "LEFT JOIN agents a ON sa.agent_id = a.id " +
+            "WHERE sa.session_id IN " +
+            "<foreach item='id' collection='sessionIds' open='(' separator=',' close=')'>" +
+            "#{id}" +
+            "</foreach>" +
+            " ORDER BY sa.session_id, sa.joined_at ASC" +
+            "</script>")
+    List<SessionAgentRow> findAgentInfosBySessionIds(@Param("sessionIds") List<Long> sessionIds);
+
+    /**
+     * 会话代理信息行
+     */
+    class SessionAgentRow {
+        private Long sessionId;
+        private Long agentId;
+        private String agentName;
+        private String roleType;
+        private String status;
+        private LocalDateTime joinedAt;
+
+        public Long getSessionId() { return sessionId; }
+        public void setSessionId(Long sessionId) { this.sessionId = sessionId; }
+        public Long getAgentId() { return agentId; }
+        public void setAgentId(Long agentId) { this.agentId = agentId; }
+        public String getAgentName() { return agentName; }
+        public void setAgentName(String agentName) { this.agentName = agentName; }
+        public String getRoleType() { return roleType; }
+        public void setRoleType(String roleType) { this.roleType = roleType; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+        public LocalDateTime getJoinedAt() { return joinedAt; }
+        public void setJoinedAt(LocalDateTime joinedAt) { this.joinedAt = joinedAt; }
+    }
+}
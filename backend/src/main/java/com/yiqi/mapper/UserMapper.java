@@ -1,5 +1,7 @@
 package com.yiqi.mapper;
 
+import java.util.List;
+
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -65,4 +67,82 @@ public interface UserMapper extends BaseMapper<User> {
      */
     @Select("SELECT COUNT(1) FROM users WHERE username = #{username}")
     int existsByUsername(@Param("username") String username);
+
+    /**
+     * 登录成功：一条语句重置失败次数、解除锁定并更新最后登录时间
+     * 
+     * @param userId 用户ID
+     * @return 更新行数
+     */
+    @Update("UPDATE users SET failed_login_attempts = 0, locked_until = NULL, last_login_at = NOW() WHERE id = #{userId}")
+    int recordLoginSuccess(@Param("userId") Long userId);
+
+    /**
+     * 锁定用户并递增令牌版本，使此前签发的令牌失效
+     * 
+     * @param userId 用户ID
+     * @param attempts 失败次数
+     * @param lockedUntil 锁定到期时间
+     * @return 更新行数
+     */
+    @Update("UPDATE users SET failed_login_attempts = #{attempts}, locked_until = #{lockedUntil}, " +
+            "token_version = token_version + 1 WHERE id = #{userId}")
+    int lockUser(@Param("userId") Long userId,
+                 @Param("attempts") Integer attempts,
+                 @Param("lockedUntil") java.time.LocalDateTime lockedUntil);
+
+    /**
+     * 批量写回登录失败次数
+     * 
+     * @param rows 用户ID与失败次数
+     * @return 更新行数
+     */
+    @Update("<script>" +
+            "UPDATE users SET failed_login_attempts = CASE id " +
+            "<foreach item='row' collection='rows'>" +
+            "WHEN #{row.userId} THEN #{row.attempts} " +
+            "</foreach>" +
+            "END WHERE id IN " +
+            "<foreach item='row' collection='rows' open='(' separator=',' close=')'>" +
+            "#{row.userId}" +
+            "</foreach>" +
+            "</script>")
+    int batchUpdateFailedLoginAttempts(@Param("rows") List<FailedAttemptsRow> rows);
+
+    /**
+     * 查询用户令牌版本
+     * 
+     * @param userId 用户ID
+     * @return 令牌版本
+     */
+    @Select("SELECT token_version FROM users WHERE id = #{userId}")
+    Integer findTokenVersion(@Param("userId") Long userId);
+
+    /**
+     * 查询令牌版本大于0的用户（只含id与token_version），启动时据此恢复令牌吊销状态
+     * 
+     * @return 用户列表
+     */
+    @Select("SELECT id, token_version FROM users WHERE token_version > 0")
+    List<User> findRevokedTokenVersions();
+
+    /**
+     * 登录失败次数写回行
+     */
+    class FailedAttemptsRow {
+        private Long userId;
+        private Integer attempts;
+
+        public FailedAttemptsRow() {}
+
+        public FailedAttemptsRow(Long userId, Integer attempts) {
+            this.userId = userId;
+            this.attempts = attempts;
+        }
+
+        public Long getUserId() { return userId; }
+        public void setUserId(Long userId) { this.userId = userId; }
+        public Integer getAttempts() { return attempts; }
+        public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    }
 }
@@ -20,10 +20,13 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.yiqi.service.JwtService;
+import com.yiqi.service.TokenRevocationService;
 import com.yiqi.service.UserDetailsServiceImpl;
 
 /**
  * JWT认证过滤器
+ * 每个请求只验证一次令牌（命中已验证令牌缓存时不再验签），用户主体由令牌声明构建，
+ * 吊销检查在内存中完成，认证不查询数据库；不含用户ID的早期令牌仍经用户主体缓存加载
  * 
  * @author YiQi Team
  * @since 1.0.0
@@ -39,12 +42,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @Value("${yiqi.jwt.header}")
     private String tokenHeader;
 
     @Value("${yiqi.jwt.prefix}")
     private String tokenPrefix;
 
+    private final WebAuthenticationDetailsSource detailsSource = new WebAuthenticationDetailsSource();
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
@@ -52,17 +60,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             
-            if (StringUtils.hasText(jwt) && jwtService.isTokenValid(jwt)) {
-                String username = jwtService.extractUsername(jwt);
+            JwtService.VerifiedToken verified = StringUtils.hasText(jwt) ? jwtService.verify(jwt) : null;
+            if (verified != null && verified.getUsername() != null && !tokenRevocationService.isRevoked(verified)) {
+                UserDetails userDetails = verified.getUserId() != null
+                    ? new UserDetailsServiceImpl.UserPrincipal(verified.getUserId(), verified.getUsername())
+                    : userDetailsService.loadUserByUsername(verified.getUsername());
+                // 凭证保存已验证令牌，供登出吊销
+                UsernamePasswordAuthenticationToken authentication = 
+                    new UsernamePasswordAuthenticationToken(userDetails, verified, userDetails.getAuthorities());
+                authentication.setDetails(detailsSource.buildDetails(request));
                 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtService.validateToken(jwt, userDetails.getUsername())) {
-                    UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         } catch (Exception ex) {
             logger.error("无法设置用户认证: {}", ex.getMessage());
@@ -2,11 +2,15 @@ package com.yiqi.service;
 
 import com.yiqi.dto.ai.AgentInferenceRequest;
 import com.yiqi.dto.ai.AgentInferenceResponse;
+import com.yiqi.dto.ai.InferenceContext;
 import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.dto.ai.TokenUsage;
 import com.yiqi.entity.Agent;
 import com.yiqi.enums.PhaseType;
 import com.yiqi.enums.RoleType;
 import com.yiqi.exception.AIServiceException;
+import com.yiqi.service.timeline.PhaseTimeline;
+import com.yiqi.service.timeline.TimelineSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,9 +19,12 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -35,18 +42,36 @@ public class AIInferenceService {
     @Autowired
     private InferenceStatusService inferenceStatusService;
     
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+    
+    @Autowired
+    private PhaseTimelineService phaseTimelineService;
+    
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+    
     @Autowired
     @Qualifier("aiInferenceExecutor")
     private Executor aiInferenceExecutor;
     
-    // 推理超时时间（秒）
-    private static final int INFERENCE_TIMEOUT_SECONDS = 60;
-    private static final int TOTAL_TIMEOUT_SECONDS = 120;
+    // 推理超时由调度器从派发时开始计算，这里只在其上限之外留出收尾余量（秒）
+    private static final int RESULT_GRACE_SECONDS = 10;
 
     /**
      * 处理单个代理推理
      */
     public CompletableFuture<AgentInferenceResponse> processAgentInference(AgentInferenceRequest request) {
+        return processAgentInference(request, InferenceContext.interactive(null));
+    }
+
+    /**
+     * 处理单个代理推理
+     *
+     * @param context 调用上下文，决定调度类别与用户公平性；其时间线区间在推理结束时关闭
+     */
+    public CompletableFuture<AgentInferenceResponse> processAgentInference(AgentInferenceRequest request,
+                                                                          InferenceContext context) {
         logger.info("开始处理代理推理: agentId={}, agentName={}", request.getAgentId(), request.getAgentName());
         
         AgentInferenceResponse response = new AgentInferenceResponse(
@@ -55,35 +80,51 @@ public class AIInferenceService {
             request.getRoleType()
         );
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // 发送推理请求
-                CompletableFuture<String> inferenceResult = qiniuAIService.sendInferenceRequest(
-                    request.getSystemPrompt(), 
-                    request.getUserPrompt()
-                );
-                
-                // 等待结果，设置超时
-                String content = inferenceResult.get(INFERENCE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-                
+        TimelineSpan agentSpan = context.getSpan();
+        TokenUsage usage = new TokenUsage();
+        long agentStart = System.nanoTime();
+        CompletableFuture<String> inferenceResult;
+        try {
+            // 发送推理请求，结果由调度线程回调，等待期间不占用线程
+            inferenceResult = qiniuAIService.sendInferenceRequest(
+                request.getSystemPrompt(), 
+                request.getUserPrompt(),
+                context.forAgent(request.getAiModel(), request.getRoleType()).withUsage(usage)
+            );
+        } catch (Exception e) {
+            inferenceResult = new CompletableFuture<>();
+            inferenceResult.completeExceptionally(e);
+        }
+        // 排队与执行超时由调度器按类别控制，这里只在其上限之外兜底
+        cancelAfterDeadline(inferenceResult, context);
+        
+        return inferenceResult.handle((content, throwable) -> {
+            if (throwable == null) {
                 // 标记成功
                 response.markSuccess(content);
                 logger.info("代理推理成功: agentId={}, 处理时长={}ms", 
                            request.getAgentId(), response.getProcessingTimeMs());
-                
                 return response;
-                
-            } catch (java.util.concurrent.TimeoutException e) {
+            }
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof CancellationException) {
+                // 兜底期限已到，仍在排队的请求已移出队列，不再发往上游
                 logger.warn("代理推理超时: agentId={}", request.getAgentId());
                 response.markTimeout();
-                return response;
-                
-            } catch (Exception e) {
-                logger.error("代理推理失败: agentId={}, 错误: {}", request.getAgentId(), e.getMessage(), e);
-                response.markFailure("推理失败: " + e.getMessage());
-                return response;
+            } else if (cause instanceof TimeoutException) {
+                // 调度器判定的排队超时或执行超时
+                logger.warn("代理推理超时: agentId={}, 原因: {}", request.getAgentId(), cause.getMessage());
+                response.markTimeout();
+            } else {
+                logger.error("代理推理失败: agentId={}, 错误: {}", request.getAgentId(), cause.getMessage(), cause);
+                response.markFailure("推理失败: " + cause.getMessage());
             }
-        }, aiInferenceExecutor);
+            return response;
+        }).whenComplete((result, throwable) -> {
+            response.applyUsage(usage);
+            agentSpan.attr("status", response.getStatus()).attr("tokens", usage.getTotalTokens()).end();
+            inferenceMetrics.recordAgentInference(agentOutcome(response), System.nanoTime() - agentStart);
+        });
     }
 
     /**
@@ -95,89 +136,238 @@ public class AIInferenceService {
             String sessionContext,
             String sessionId,
             PhaseType phaseType) {
+        return processParallelInference(agents, userPrompt, sessionContext, sessionId, phaseType,
+                                        InferenceContext.interactive(null));
+    }
+
+    /**
+     * 处理多代理并行推理
+     *
+     * @param context 调用上下文，各代理请求与阶段总结共用同一调度类别
+     */
+    public ParallelInferenceResult processParallelInference(
+            List<Agent> agents,
+            String userPrompt,
+            String sessionContext,
+            String sessionId,
+            PhaseType phaseType,
+            InferenceContext context) {
+        return processParallelInference(agents, userPrompt, sessionContext, sessionId, phaseType, context, true);
+    }
+
+    /**
+     * 处理多代理并行推理
+     *
+     * @param context 调用上下文，各代理请求与阶段总结共用同一调度类别
+     * @param generateSummary 是否生成阶段总结；只重新执行部分代理时由调用方基于全部成功响应生成
+     */
+    public ParallelInferenceResult processParallelInference(
+            List<Agent> agents,
+            String userPrompt,
+            String sessionContext,
+            String sessionId,
+            PhaseType phaseType,
+            InferenceContext context,
+            boolean generateSummary) {
+        try {
+            return processParallelInferenceAsync(agents, userPrompt, sessionContext, sessionId, phaseType,
+                                                 context, generateSummary).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof AIServiceException) {
+                throw (AIServiceException) e.getCause();
+            }
+            throw new AIServiceException("PARALLEL_INFERENCE_FAILED",
+                                       "并行推理处理失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 异步处理多代理并行推理
+     * 各代理请求与阶段总结都以回调串联，排队与推理期间不占用调用方或推理线程池的线程；
+     * 失败时返回的future以AIServiceException结束
+     *
+     * @param context 调用上下文，各代理请求与阶段总结共用同一调度类别
+     * @param generateSummary 是否生成阶段总结；只重新执行部分代理时由调用方基于全部成功响应生成
+     */
+    public CompletableFuture<ParallelInferenceResult> processParallelInferenceAsync(
+            List<Agent> agents,
+            String userPrompt,
+            String sessionContext,
+            String sessionId,
+            PhaseType phaseType,
+            InferenceContext context,
+            boolean generateSummary) {
         
         logger.info("开始并行推理: sessionId={}, phaseType={}, agentCount={}", 
                    sessionId, phaseType, agents.size());
         
         // 开始状态跟踪
-        inferenceStatusService.startTracking(sessionId, phaseType.name(), agents.size());
+        inferenceStatusService.startTracking(sessionId, phaseType.name(), agents.size(), context.getUserKey());
+        long phaseStart = System.nanoTime();
+        PhaseTimeline timeline = phaseTimelineService.start(sessionId, phaseType.name(), context.getUserKey());
+        TimelineSpan phaseSpan = PhaseTimelineService.root(timeline)
+            .attr("agents", agents.size())
+            .attr("class", context.getTrafficClass().name());
         
+        CompletableFuture<ParallelInferenceResult> resultFuture;
         try {
             // 构建推理请求列表
             List<AgentInferenceRequest> requests = buildInferenceRequests(
                 agents, userPrompt, sessionContext, phaseType
             );
             
-            // 创建并行推理任务
+            // 创建并行推理任务，每个任务都已由调度器限时并有兜底期限，总会结束
             List<CompletableFuture<AgentInferenceResponse>> futures = requests.stream()
-                .map(this::processAgentInference)
+                .map(request -> processAgentInference(request, context.withSpan(phaseSpan.start("agent")
+                    .attr("agentId", request.getAgentId())
+                    .attr("agentName", request.getAgentName())
+                    .attr("roleType", request.getRoleType()))))
                 .collect(Collectors.toList());
             
-            // 等待所有任务完成
-            CompletableFuture<Void> allFutures = CompletableFuture.allOf(
-                futures.toArray(new CompletableFuture[0])
-            );
+            // 每个代理完成时立即更新进度
+            futures.forEach(future -> future.whenComplete((response, throwable) ->
+                inferenceStatusService.updateAgentCompletion(sessionId, phaseType.name(),
+                                                             response != null && response.isSuccess())));
             
-            // 设置总体超时
+            // 全部代理结束后收集结果并生成阶段总结，收尾逻辑在推理线程池上执行，不占用调度线程
+            resultFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .handleAsync((ignored, throwable) -> collectResult(futures, timeline), aiInferenceExecutor)
+                .thenCompose(result -> generateSummary && result.hasSuccessfulResponses()
+                    ? summarize(result, phaseType, phaseSpan, context, sessionId)
+                    : CompletableFuture.completedFuture(result));
+        } catch (Exception e) {
+            resultFuture = new CompletableFuture<>();
+            resultFuture.completeExceptionally(e);
+        }
+        
+        return resultFuture.handle((result, throwable) -> {
             try {
-                allFutures.get(TOTAL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            } catch (java.util.concurrent.TimeoutException e) {
-                logger.warn("并行推理总体超时: sessionId={}", sessionId);
-                // 取消未完成的任务
-                futures.forEach(future -> future.cancel(true));
-            }
-            
-            // 收集结果
-            List<AgentInferenceResponse> responses = new ArrayList<>();
-            for (CompletableFuture<AgentInferenceResponse> future : futures) {
-                try {
-                    if (future.isDone() && !future.isCancelled()) {
-                        responses.add(future.get());
-                    } else {
-                        // 创建超时响应
-                        AgentInferenceResponse timeoutResponse = new AgentInferenceResponse();
-                        timeoutResponse.markTimeout();
-                        responses.add(timeoutResponse);
-                    }
-                } catch (Exception e) {
-                    logger.error("获取推理结果失败", e);
-                    AgentInferenceResponse errorResponse = new AgentInferenceResponse();
-                    errorResponse.markFailure("获取结果失败: " + e.getMessage());
-                    responses.add(errorResponse);
+                if (throwable != null) {
+                    Throwable cause = unwrap(throwable);
+                    inferenceStatusService.markInferenceFailed(sessionId, phaseType.name(), cause.getMessage());
+                    inferenceMetrics.recordPhaseInference(phaseType.name(), InferenceMetrics.FAILURE,
+                                                          System.nanoTime() - phaseStart);
+                    phaseSpan.attr("outcome", InferenceMetrics.FAILURE);
+                    logger.error("并行推理处理失败: sessionId={}", sessionId, cause);
+                    throw new AIServiceException("PARALLEL_INFERENCE_FAILED", 
+                                               "并行推理处理失败: " + cause.getMessage(), cause);
                 }
+                
+                inferenceMetrics.recordPhaseInference(phaseType.name(), outcome(result), System.nanoTime() - phaseStart);
+                phaseSpan.attr("outcome", outcome(result));
+                
+                logger.info("并行推理完成: sessionId={}, 成功率={:.2f}%, 总时长={}ms", 
+                           sessionId, result.getSuccessRate() * 100, result.getTotalProcessingTimeMs());
+                
+                return result;
+            } finally {
+                phaseTimelineService.finish(timeline);
             }
-            
-            // 创建结果对象
-            ParallelInferenceResult result = new ParallelInferenceResult(responses);
-            result.complete();
-            
-            // 生成阶段总结
-            if (result.hasSuccessfulResponses()) {
-                try {
-                    CompletableFuture<String> summaryFuture = generatePhaseSummary(
-                        result.getSuccessfulResponses(), phaseType
-                    );
-                    String summary = summaryFuture.get(30, TimeUnit.SECONDS);
-                    result.setPhaseSummary(summary);
-                } catch (Exception e) {
-                    logger.error("生成阶段总结失败: sessionId={}", sessionId, e);
-                    result.setPhaseSummary("总结生成失败: " + e.getMessage());
-                }
+        });
+    }
+
+    /**
+     * 收集已全部结束的代理任务的结果
+     */
+    private ParallelInferenceResult collectResult(List<CompletableFuture<AgentInferenceResponse>> futures,
+                                                  PhaseTimeline timeline) {
+        List<AgentInferenceResponse> responses = new ArrayList<>();
+        for (CompletableFuture<AgentInferenceResponse> future : futures) {
+            try {
+                responses.add(future.join());
+            } catch (Exception e) {
+                logger.error("获取推理结果失败", e);
+                AgentInferenceResponse errorResponse = new AgentInferenceResponse();
+                errorResponse.markFailure("获取结果失败: " + unwrap(e).getMessage());
+                responses.add(errorResponse);
             }
-            
-            // 更新状态跟踪
-            inferenceStatusService.updateProgress(sessionId, phaseType.name(), result);
-            
-            logger.info("并行推理完成: sessionId={}, 成功率={:.2f}%, 总时长={}ms", 
-                       sessionId, result.getSuccessRate() * 100, result.getTotalProcessingTimeMs());
-            
-            return result;
-            
+        }
+        
+        // 创建结果对象
+        ParallelInferenceResult result = new ParallelInferenceResult(responses);
+        result.complete();
+        result.setTimeline(timeline);
+        return result;
+    }
+
+    /**
+     * 生成阶段总结并写入结果，总结失败时记录失败原因，不影响各代理的结果
+     */
+    private CompletableFuture<ParallelInferenceResult> summarize(ParallelInferenceResult result,
+                                                                 PhaseType phaseType,
+                                                                 TimelineSpan phaseSpan,
+                                                                 InferenceContext context,
+                                                                 String sessionId) {
+        long summaryStart = System.nanoTime();
+        TimelineSpan summarySpan = phaseSpan.start("summary");
+        TokenUsage summaryUsage = new TokenUsage();
+        result.setSummaryUsage(summaryUsage);
+        CompletableFuture<String> summaryFuture;
+        try {
+            summaryFuture = generatePhaseSummary(
+                result.getSuccessfulResponses(), phaseType, context.withSpan(summarySpan).withUsage(summaryUsage)
+            );
         } catch (Exception e) {
-            logger.error("并行推理处理失败: sessionId={}", sessionId, e);
-            throw new AIServiceException("PARALLEL_INFERENCE_FAILED", 
-                                       "并行推理处理失败: " + e.getMessage(), e);
+            summaryFuture = new CompletableFuture<>();
+            summaryFuture.completeExceptionally(e);
         }
+        cancelAfterDeadline(summaryFuture, context);
+        
+        return summaryFuture.handle((summary, throwable) -> {
+            if (throwable == null) {
+                result.setPhaseSummary(summary);
+                inferenceMetrics.recordPhaseSummary(phaseType.name(), InferenceMetrics.SUCCESS,
+                                                    System.nanoTime() - summaryStart);
+                summarySpan.attr("outcome", InferenceMetrics.SUCCESS);
+            } else {
+                Throwable cause = unwrap(throwable);
+                logger.error("生成阶段总结失败: sessionId={}", sessionId, cause);
+                result.setPhaseSummary("总结生成失败: " + cause.getMessage());
+                inferenceMetrics.recordPhaseSummary(phaseType.name(), InferenceMetrics.FAILURE,
+                                                    System.nanoTime() - summaryStart);
+                summarySpan.attr("outcome", InferenceMetrics.FAILURE);
+            }
+            summarySpan.end();
+            return result;
+        });
+    }
+
+    /**
+     * 兜底期限：超过resultTimeoutSeconds仍未结束的推理被取消，仍在排队的请求随之移出队列
+     */
+    private void cancelAfterDeadline(CompletableFuture<String> future, InferenceContext context) {
+        if (!future.isDone()) {
+            CompletableFuture.delayedExecutor(resultTimeoutSeconds(context), TimeUnit.SECONDS, aiInferenceExecutor)
+                .execute(() -> future.cancel(false));
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * 等待一次推理结果的上限：调度器的排队上限与执行超时之和，再留出收尾余量
+     */
+    public long resultTimeoutSeconds(InferenceContext context) {
+        return inferenceScheduler.getDeadlineSeconds(context.getTrafficClass()) + RESULT_GRACE_SECONDS;
+    }
+
+    private static String agentOutcome(AgentInferenceResponse response) {
+        if (response.isSuccess()) {
+            return InferenceMetrics.SUCCESS;
+        }
+        return "TIMEOUT".equals(response.getStatus()) ? "timeout" : InferenceMetrics.FAILURE;
+    }
+
+    private static String outcome(ParallelInferenceResult result) {
+        if (!result.hasSuccessfulResponses()) {
+            return InferenceMetrics.FAILURE;
+        }
+        return result.getSuccessRate() >= 1.0 ? InferenceMetrics.SUCCESS : "partial";
     }
 
     /**
@@ -186,6 +376,18 @@ public class AIInferenceService {
     public CompletableFuture<String> generatePhaseSummary(
             List<AgentInferenceResponse> responses,
             PhaseType phaseType) {
+        return generatePhaseSummary(responses, phaseType, InferenceContext.interactive(null));
+    }
+
+    /**
+     * 生成阶段总结
+     *
+     * @param context 调用上下文
+     */
+    public CompletableFuture<String> generatePhaseSummary(
+            List<AgentInferenceResponse> responses,
+            PhaseType phaseType,
+            InferenceContext context) {
         
         logger.debug("开始生成阶段总结: phaseType={}, responseCount={}", phaseType, responses.size());
         
@@ -207,7 +409,7 @@ public class AIInferenceService {
         String userPrompt = contentBuilder.toString() + 
                            "\n请为以上" + phaseType.getDisplayName() + "阶段的讨论结果生成一份总结报告。";
         
-        return qiniuAIService.sendInferenceRequest(systemPrompt, userPrompt);
+        return qiniuAIService.sendInferenceRequest(systemPrompt, userPrompt, context);
     }
 
     /**
@@ -225,9 +427,9 @@ public class AIInferenceService {
     }
 
     /**
-     * 构建推理请求列表
+     * 构建推理请求列表（包可见，供基准测试调用）
      */
-    private List<AgentInferenceRequest> buildInferenceRequests(
+    List<AgentInferenceRequest> buildInferenceRequests(
             List<Agent> agents,
             String userPrompt,
             String sessionContext,
@@ -269,6 +471,7 @@ public class AIInferenceService {
                 finalUserPrompt,
                 sessionContext
             );
+            request.setAiModel(agent.getAiModel());
             
             requests.add(request);
         }
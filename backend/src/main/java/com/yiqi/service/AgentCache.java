@@ -0,0 +1,202 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.Agent;
+import com.yiqi.event.AgentChangedEvent;
+import com.yiqi.mapper.AgentMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 代理实体读缓存
+ * 阶段执行、会话列表与上下文构建会按主键反复读取代理，代理很少变更，因此在进程内缓存（条数上限加TTL）。
+ * 代理变更提交后立即失效并通知{@link AgentCacheBroadcaster}；返回的实体为共享实例，调用方不得修改
+ */
+@Service
+public class AgentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentCache.class);
+
+    @Autowired
+    private AgentMapper agentMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectProvider<AgentCacheBroadcaster> broadcasters;
+
+    private final Map<Long, CachedAgent> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("yiqi.agent.cache")
+            .description("代理缓存的查询次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        misses = Counter.builder("yiqi.agent.cache")
+            .description("代理缓存的查询次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        evictions = Counter.builder("yiqi.agent.cache.evictions")
+            .description("因条数上限被淘汰的代理缓存条数")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.agent.cache.entries", entries, Map::size)
+            .description("缓存的代理条数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 按ID获取代理（含已软删除的代理，与selectById一致）
+     *
+     * @return 代理不存在时返回null
+     */
+    public Agent get(Long agentId) {
+        if (agentId == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Agent cached = lookup(agentId, now);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = generation.get();
+        Agent agent = agentMapper.selectById(agentId);
+        if (agent != null) {
+            store(agent, now, loadGeneration);
+        }
+        return agent;
+    }
+
+    /**
+     * 批量获取代理，只查询未命中的ID；与findByIds一致，排除已删除的代理并按创建时间倒序
+     */
+    public List<Agent> getAll(Collection<Long> agentIds) {
+        long now = System.nanoTime();
+        List<Agent> agents = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long agentId : new LinkedHashSet<>(agentIds)) {
+            Agent cached = lookup(agentId, now);
+            if (cached != null) {
+                agents.add(cached);
+            } else if (agentId != null) {
+                missing.add(agentId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+            for (Agent agent : agentMapper.selectBatchIds(missing)) {
+                store(agent, now, loadGeneration);
+                agents.add(agent);
+            }
+        }
+        agents.removeIf(agent -> "DELETED".equals(agent.getStatus()));
+        agents.sort(Comparator.comparing(Agent::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return agents;
+    }
+
+    /**
+     * 使代理缓存失效（也供跨节点通知的接收方调用）
+     */
+    public void invalidate(Long agentId) {
+        generation.incrementAndGet();
+        entries.remove(agentId);
+    }
+
+    /**
+     * 代理变更提交后失效本节点缓存并通知其他节点
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAgentChanged(AgentChangedEvent event) {
+        invalidate(event.getAgentId());
+        broadcasters.orderedStream().forEach(broadcaster -> {
+            try {
+                broadcaster.broadcastInvalidation(event.getAgentId());
+            } catch (RuntimeException e) {
+                logger.warn("广播代理缓存失效失败: agentId={}, 错误: {}", event.getAgentId(), e.getMessage());
+            }
+        });
+    }
+
+    private Agent lookup(Long agentId, long now) {
+        CachedAgent cached = entries.get(agentId);
+        if (cached != null && now - cached.loadedAtNanos < ttlNanos()) {
+            hits.increment();
+            return cached.agent;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存；加载期间发生过失效时不保留，避免缓存提交前读到的旧数据
+     */
+    private void store(Agent agent, long now, long loadGeneration) {
+        long ttlNanos = ttlNanos();
+        if (ttlNanos <= 0) {
+            return;
+        }
+        int maxEntries = Math.max(1, aiServiceProperties.getCache().getAgentMaxEntries());
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> now - entry.loadedAtNanos >= ttlNanos);
+            // 仍然超限时再淘汰上限的十分之一
+            if (entries.size() >= maxEntries) {
+                Iterator<Long> iterator = entries.keySet().iterator();
+                for (int i = entries.size() - maxEntries + 1 + maxEntries / 10; i > 0 && iterator.hasNext(); i--) {
+                    iterator.next();
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+        CachedAgent fresh = new CachedAgent(agent, now);
+        entries.put(agent.getId(), fresh);
+        if (generation.get() != loadGeneration) {
+            entries.remove(agent.getId(), fresh);
+        }
+    }
+
+    private long ttlNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(aiServiceProperties.getCache().getAgentTtlMs());
+    }
+
+    private static final class CachedAgent {
+        private final Agent agent;
+        private final long loadedAtNanos;
+
+        CachedAgent(Agent agent, long loadedAtNanos) {
+            this.agent = agent;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
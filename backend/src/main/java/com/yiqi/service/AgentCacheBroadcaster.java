@@ -0,0 +1,16 @@
+package com.yiqi.service;
+
+/**
+ * 代理缓存的跨节点失效扩展点
+ * 多实例部署时实现为Spring Bean（如基于消息队列或Redis发布订阅），本节点的代理变更提交后调用，
+ * 其他节点收到通知后调用{@link AgentCache#invalidate(Long)}。未提供实现时各节点依赖TTL收敛
+ */
+public interface AgentCacheBroadcaster {
+
+    /**
+     * 通知其他节点使代理缓存失效
+     *
+     * @param agentId 代理ID
+     */
+    void broadcastInvalidation(Long agentId);
+}
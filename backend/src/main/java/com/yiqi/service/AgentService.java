@@ -7,12 +7,14 @@ import com.yiqi.dto.UpdateAgentRequest;
 import com.yiqi.entity.Agent;
 import com.yiqi.enums.AgentStatus;
 import com.yiqi.enums.RoleType;
+import com.yiqi.event.AgentChangedEvent;
 import com.yiqi.exception.AgentNotFoundException;
 import com.yiqi.exception.ValidationException;
 import com.yiqi.mapper.AgentMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -41,6 +43,12 @@ public class AgentService {
     @Autowired
     private AgentVersionService agentVersionService;
 
+    @Autowired
+    private AgentCache agentCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 创建新的AI代理
      * 
@@ -144,6 +152,7 @@ public class AgentService {
             throw new RuntimeException("更新代理失败");
         }
 
+        publishAgentChanged(agentId, "AGENT_UPDATED");
         logger.info("成功更新AI代理，ID: {}", agentId);
         return AgentResponse.fromEntity(existingAgent);
     }
@@ -175,6 +184,7 @@ public class AgentService {
             throw new RuntimeException("删除代理失败");
         }
 
+        publishAgentChanged(agentId, "AGENT_DELETED");
         logger.info("成功删除AI代理，ID: {}", agentId);
     }
 
@@ -253,6 +263,7 @@ public class AgentService {
             throw new RuntimeException("激活代理失败");
         }
 
+        publishAgentChanged(agentId, "AGENT_ACTIVATED");
         logger.info("成功激活AI代理，ID: {}", agentId);
         return AgentResponse.fromEntity(agent);
     }
@@ -278,6 +289,7 @@ public class AgentService {
             throw new RuntimeException("停用代理失败");
         }
 
+        publishAgentChanged(agentId, "AGENT_DEACTIVATED");
         logger.info("成功停用AI代理，ID: {}", agentId);
         return AgentResponse.fromEntity(agent);
     }
@@ -315,7 +327,7 @@ public class AgentService {
             return new ArrayList<>();
         }
         
-        return agentMapper.findByIds(agentIds);
+        return agentCache.getAll(agentIds);
     }
 
     /**
@@ -327,7 +339,7 @@ public class AgentService {
      */
     @Transactional(readOnly = true)
     public Agent getAgentById(Long agentId) {
-        Agent agent = agentMapper.selectById(agentId);
+        Agent agent = agentCache.get(agentId);
         if (agent == null) {
             throw new AgentNotFoundException("代理不存在，ID: " + agentId);
         }
@@ -349,4 +361,11 @@ public class AgentService {
         }
         return agent;
     }
+
+    /**
+     * 发布代理变更事件（事务提交后使代理缓存失效）
+     */
+    private void publishAgentChanged(Long agentId, String reason) {
+        eventPublisher.publishEvent(new AgentChangedEvent(agentId, reason));
+    }
 }
@@ -2,10 +2,12 @@ package com.yiqi.service;
 
 import com.yiqi.entity.Agent;
 import com.yiqi.entity.AgentVersion;
+import com.yiqi.event.AgentChangedEvent;
 import com.yiqi.mapper.AgentVersionMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +28,9 @@ public class AgentVersionService {
     @Autowired
     private AgentVersionMapper agentVersionMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 创建代理版本记录
      * 
@@ -57,6 +62,7 @@ public class AgentVersionService {
         if (result > 0) {
             logger.info("成功创建代理版本记录，代理ID: {}, 版本号: {}, 版本记录ID: {}", 
                        agent.getId(), nextVersion, version.getId());
+            eventPublisher.publishEvent(new AgentChangedEvent(agent.getId(), "AGENT_VERSIONED"));
             return version.getId();
         } else {
             logger.error("创建代理版本记录失败，代理ID: {}", agent.getId());
@@ -0,0 +1,632 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.dto.parallel.BatchInferenceResult;
+import com.yiqi.dto.parallel.BatchMultiPhaseInferenceRequest;
+import com.yiqi.dto.parallel.PhaseInferenceConfig;
+import com.yiqi.entity.Agent;
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.TrafficClass;
+import com.yiqi.exception.AIServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量多阶段推理流水线
+ * 各阶段按声明的依赖组成DAG：无依赖关系的阶段并发执行，依赖阶段在上游总结就绪后立即开始。
+ * 批量推理作为后台任务运行，可按任务ID查询进度或通过SSE订阅阶段事件
+ */
+@Service
+public class BatchPipelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPipelineService.class);
+
+    @Autowired
+    private AIInferenceService aiInferenceService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private PhaseConcurrencyLimiter phaseLimiter;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrentPhases = Math.max(1, aiServiceProperties.getPipeline().getMaxConcurrentPhases());
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentPhases);
+        executor.setMaxPoolSize(maxConcurrentPhases);
+        executor.setThreadNamePrefix("yiqi-pipeline-");
+        executor.initialize();
+        phaseLimiter = new PhaseConcurrencyLimiter(maxConcurrentPhases, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交批量多阶段推理任务
+     *
+     * @param request 批量请求
+     * @param userKey 发起用户
+     * @return 任务初始状态
+     */
+    public BatchJobStatus submit(BatchMultiPhaseInferenceRequest request, String userKey) {
+        Map<PhaseType, List<PhaseType>> dependencies = resolveDependencies(request.getPhases());
+        List<PhaseInferenceConfig> ordered = topologicalOrder(request.getPhases(), dependencies);
+
+        evictExpiredJobs();
+        if (jobs.size() >= aiServiceProperties.getPipeline().getMaxJobs()) {
+            throw new AIServiceException("BATCH_JOB_LIMIT_EXCEEDED", "批量任务数量已达上限，请稍后重试");
+        }
+
+        BrainstormSession session = sessionService.getSessionById(request.getSessionId());
+        List<Agent> agents = sessionService.getSessionAgents(request.getSessionId());
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), request.getSessionId(), userKey, request.getPhases());
+        jobs.put(job.jobId, job);
+        logger.info("提交批量多阶段推理任务: jobId={}, sessionId={}, phaseCount={}",
+                   job.jobId, request.getSessionId(), ordered.size());
+
+        InferenceContext context = InferenceContext.of(TrafficClass.BATCH, userKey);
+        Map<PhaseType, CompletableFuture<ParallelInferenceResult>> futures = new EnumMap<>(PhaseType.class);
+        for (PhaseInferenceConfig phaseConfig : ordered) {
+            List<CompletableFuture<ParallelInferenceResult>> upstream = new ArrayList<>();
+            for (PhaseType dependency : dependencies.get(phaseConfig.getPhaseType())) {
+                upstream.add(futures.get(dependency));
+            }
+            CompletableFuture<ParallelInferenceResult> future = CompletableFuture
+                .allOf(upstream.toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> phaseLimiter.submit(() -> runPhase(job, session, agents, phaseConfig,
+                                                                           upstream, request.isStopOnFailure(),
+                                                                           context)));
+            futures.put(phaseConfig.getPhaseType(), future);
+        }
+
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+            .whenComplete((ignored, throwable) -> job.finish());
+        return job.snapshot();
+    }
+
+    /**
+     * 获取任务状态，任务不存在或不属于该用户时返回null
+     */
+    public BatchJobStatus getJob(String jobId, String userKey) {
+        BatchJob job = findJob(jobId, userKey);
+        return job != null ? job.snapshot() : null;
+    }
+
+    /**
+     * 订阅任务的阶段事件
+     * 订阅时先推送一次当前快照；任务已结束时推送结果后立即关闭
+     */
+    public SseEmitter subscribe(String jobId, String userKey) {
+        BatchJob job = findJob(jobId, userKey);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(aiServiceProperties.getPipeline().getEmitterTimeoutMs());
+        emitter.onCompletion(() -> job.detach(emitter));
+        emitter.onTimeout(() -> job.detach(emitter));
+        job.attach(emitter);
+        return emitter;
+    }
+
+    private BatchJob findJob(String jobId, String userKey) {
+        BatchJob job = jobs.get(jobId);
+        if (job == null || !job.userKey.equals(userKey)) {
+            return null;
+        }
+        return job;
+    }
+
+    private CompletableFuture<ParallelInferenceResult> runPhase(BatchJob job, BrainstormSession session,
+                                                                List<Agent> agents,
+                                                                PhaseInferenceConfig phaseConfig,
+                                                                List<CompletableFuture<ParallelInferenceResult>> upstream,
+                                                                boolean stopOnFailure, InferenceContext context) {
+        PhaseType phaseType = phaseConfig.getPhaseType();
+        StringBuilder previousResults = new StringBuilder();
+        for (CompletableFuture<ParallelInferenceResult> dependency : upstream) {
+            ParallelInferenceResult dependencyResult = dependency.join();
+            if (dependencyResult == null || !dependencyResult.hasSuccessfulResponses()) {
+                if (stopOnFailure) {
+                    logger.warn("上游阶段失败，跳过阶段: jobId={}, phaseType={}", job.jobId, phaseType);
+                    job.update(phaseType, PhaseState.SKIPPED, null, "上游阶段失败");
+                    return CompletableFuture.completedFuture(null);
+                }
+                continue;
+            }
+            if (dependencyResult.getPhaseSummary() != null) {
+                previousResults.append(dependencyResult.getPhaseSummary()).append("\n");
+            }
+        }
+
+        job.update(phaseType, PhaseState.RUNNING, null, null);
+        CompletableFuture<ParallelInferenceResult> inference;
+        try {
+            // 推理期间不占用流水线线程，阶段在推理结束时才归还并发许可
+            inference = aiInferenceService.processParallelInferenceAsync(
+                agents,
+                phaseConfig.getUserPrompt(),
+                buildPhaseContext(session, phaseConfig, previousResults.toString()),
+                String.valueOf(job.sessionId),
+                phaseType,
+                context,
+                true
+            );
+        } catch (Exception e) {
+            inference = new CompletableFuture<>();
+            inference.completeExceptionally(e);
+        }
+        return inference.handle((result, throwable) -> {
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                logger.error("批量阶段执行失败: jobId={}, phaseType={}", job.jobId, phaseType, cause);
+                job.update(phaseType, PhaseState.FAILED, null, cause.getMessage());
+                return null;
+            }
+            job.update(phaseType, result.hasSuccessfulResponses() ? PhaseState.COMPLETED : PhaseState.FAILED,
+                       result, null);
+            return result;
+        });
+    }
+
+    /**
+     * 解析各阶段依赖：未声明时依赖前一个阶段，并校验重复阶段、未知依赖与循环依赖
+     */
+    private Map<PhaseType, List<PhaseType>> resolveDependencies(List<PhaseInferenceConfig> phases) {
+        Map<PhaseType, List<PhaseType>> dependencies = new EnumMap<>(PhaseType.class);
+        PhaseType previous = null;
+        for (PhaseInferenceConfig phaseConfig : phases) {
+            PhaseType phaseType = phaseConfig.getPhaseType();
+            if (dependencies.containsKey(phaseType)) {
+                throw new IllegalArgumentException("阶段重复: " + phaseType);
+            }
+            List<PhaseType> declared = phaseConfig.getDependsOn();
+            if (declared == null) {
+                declared = previous != null ? Collections.singletonList(previous) : Collections.emptyList();
+            }
+            dependencies.put(phaseType, new ArrayList<>(declared));
+            previous = phaseType;
+        }
+        for (Map.Entry<PhaseType, List<PhaseType>> entry : dependencies.entrySet()) {
+            for (PhaseType dependency : entry.getValue()) {
+                if (!dependencies.containsKey(dependency) || dependency == entry.getKey()) {
+                    throw new IllegalArgumentException("阶段" + entry.getKey() + "的依赖无效: " + dependency);
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    private List<PhaseInferenceConfig> topologicalOrder(List<PhaseInferenceConfig> phases,
+                                                        Map<PhaseType, List<PhaseType>> dependencies) {
+        List<PhaseInferenceConfig> ordered = new ArrayList<>();
+        Set<PhaseType> scheduled = EnumSet.noneOf(PhaseType.class);
+        List<PhaseInferenceConfig> remaining = new ArrayList<>(phases);
+        while (!remaining.isEmpty()) {
+            boolean progressed = false;
+            for (Iterator<PhaseInferenceConfig> it = remaining.iterator(); it.hasNext(); ) {
+                PhaseInferenceConfig phaseConfig = it.next();
+                if (scheduled.containsAll(dependencies.get(phaseConfig.getPhaseType()))) {
+                    ordered.add(phaseConfig);
+                    scheduled.add(phaseConfig.getPhaseType());
+                    it.remove();
+                    progressed = true;
+                }
+            }
+            if (!progressed) {
+                throw new IllegalArgumentException("阶段依赖存在循环");
+            }
+        }
+        return ordered;
+    }
+
+    private String buildPhaseContext(BrainstormSession session, PhaseInferenceConfig phaseConfig, String previousResults) {
+        StringBuilder context = new StringBuilder();
+
+        context.append("会话标题: ").append(session.getTitle()).append("\n");
+        if (session.getDescription() != null) {
+            context.append("会话描述: ").append(session.getDescription()).append("\n");
+        }
+
+        if (phaseConfig.getAdditionalContext() != null) {
+            context.append("阶段信息: ").append(phaseConfig.getAdditionalContext()).append("\n");
+        }
+
+        if (previousResults != null && !previousResults.trim().isEmpty()) {
+            context.append("前面阶段结果: ").append(previousResults).append("\n");
+        }
+
+        return context.toString();
+    }
+
+    private void evictExpiredJobs() {
+        LocalDateTime threshold = LocalDateTime.now()
+            .minusMinutes(aiServiceProperties.getPipeline().getJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    /**
+     * 阶段执行状态
+     */
+    public enum PhaseState {
+        PENDING, RUNNING, COMPLETED, FAILED, SKIPPED
+    }
+
+    /**
+     * 运行中的批量任务
+     * 阶段状态变更与事件入队在同一把锁内完成，保证事件顺序；发送在锁外进行，
+     * 每个订阅方同一时间只有一个线程在发送，接收缓慢的客户端不阻塞阶段推进与其他订阅方
+     */
+    private static class BatchJob {
+        private final String jobId;
+        private final Long sessionId;
+        private final String userKey;
+        private final BatchInferenceResult result = new BatchInferenceResult();
+        private final Map<PhaseType, PhaseProgress> phases = new LinkedHashMap<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private volatile LocalDateTime finishedAt;
+
+        BatchJob(String jobId, Long sessionId, String userKey, List<PhaseInferenceConfig> phaseConfigs) {
+            this.jobId = jobId;
+            this.sessionId = sessionId;
+            this.userKey = userKey;
+            result.setSessionId(sessionId);
+            result.setStartTime(LocalDateTime.now());
+            for (PhaseInferenceConfig phaseConfig : phaseConfigs) {
+                PhaseProgress progress = new PhaseProgress();
+                progress.setPhaseType(phaseConfig.getPhaseType());
+                progress.setState(PhaseState.PENDING);
+                phases.put(phaseConfig.getPhaseType(), progress);
+            }
+        }
+
+        void update(PhaseType phaseType, PhaseState state, ParallelInferenceResult phaseResult, String message) {
+            List<Subscriber> targets;
+            synchronized (this) {
+                PhaseProgress progress = phases.get(phaseType);
+                progress.setState(state);
+                progress.setMessage(message);
+                if (state == PhaseState.RUNNING) {
+                    progress.setStartTime(LocalDateTime.now());
+                } else {
+                    progress.setEndTime(LocalDateTime.now());
+                }
+                if (phaseResult != null) {
+                    progress.setSuccessRate(phaseResult.getSuccessRate());
+                    progress.setSummary(phaseResult.getPhaseSummary());
+                    result.addPhaseResult(phaseType, phaseResult);
+                }
+                targets = enqueue(SseEmitter.event().name("phase").data(copy(progress)));
+            }
+            drainAll(targets);
+        }
+
+        void finish() {
+            List<Subscriber> targets;
+            synchronized (this) {
+                result.setEndTime(LocalDateTime.now());
+                result.calculateOverallStats();
+                finishedAt = LocalDateTime.now();
+                logger.info("批量多阶段推理任务完成: jobId={}, 总成功率={}%",
+                           jobId, String.format("%.2f", result.getOverallSuccessRate() * 100));
+                targets = enqueue(SseEmitter.event().name("job").data(snapshot()));
+                // 发送完已排队的事件后关闭
+                for (Subscriber subscriber : targets) {
+                    subscriber.closing = true;
+                }
+                subscribers.clear();
+            }
+            drainAll(targets);
+        }
+
+        /**
+         * 接入订阅方：先推送当前快照，任务已结束时推送后关闭
+         */
+        void attach(SseEmitter emitter) {
+            Subscriber subscriber = new Subscriber(emitter);
+            synchronized (this) {
+                subscriber.pending.addLast(SseEmitter.event().name("snapshot").data(snapshot()));
+                // 快照由本线程发送，期间的新事件排在快照之后
+                subscriber.draining = true;
+                if (finishedAt != null) {
+                    subscriber.closing = true;
+                } else {
+                    subscribers.add(subscriber);
+                }
+            }
+            drain(subscriber);
+        }
+
+        synchronized void detach(SseEmitter emitter) {
+            subscribers.removeIf(subscriber -> {
+                if (subscriber.emitter != emitter) {
+                    return false;
+                }
+                subscriber.closed = true;
+                subscriber.pending.clear();
+                return true;
+            });
+        }
+
+        synchronized BatchJobStatus snapshot() {
+            BatchJobStatus status = new BatchJobStatus();
+            status.setJobId(jobId);
+            status.setSessionId(sessionId);
+            status.setStatus(finishedAt != null ? "COMPLETED" : "RUNNING");
+            status.setStartTime(result.getStartTime());
+            status.setEndTime(result.getEndTime());
+            List<PhaseProgress> progressList = new ArrayList<>();
+            for (PhaseProgress progress : phases.values()) {
+                progressList.add(copy(progress));
+            }
+            status.setPhases(progressList);
+            if (finishedAt != null) {
+                status.setResult(result);
+            }
+            return status;
+        }
+
+        /**
+         * 事件加入各订阅方的待发送队列，返回需要发送的订阅方（调用方持有本对象锁）
+         */
+        private List<Subscriber> enqueue(SseEmitter.SseEventBuilder event) {
+            List<Subscriber> targets = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : targets) {
+                subscriber.pending.addLast(event);
+            }
+            return targets;
+        }
+
+        private void drainAll(List<Subscriber> targets) {
+            for (Subscriber subscriber : targets) {
+                boolean acquired;
+                synchronized (this) {
+                    acquired = !subscriber.draining && !subscriber.closed;
+                    if (acquired) {
+                        subscriber.draining = true;
+                    }
+                }
+                if (acquired) {
+                    drain(subscriber);
+                }
+            }
+        }
+
+        /**
+         * 在锁外按顺序发送订阅方的待发送事件，直到队列为空（调用方已取得该订阅方的发送权）
+         */
+        private void drain(Subscriber subscriber) {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                boolean complete = false;
+                synchronized (this) {
+                    event = subscriber.closed ? null : subscriber.pending.pollFirst();
+                    if (event == null) {
+                        subscriber.draining = false;
+                        if (subscriber.closing && !subscriber.closed) {
+                            subscriber.closed = true;
+                            complete = true;
+                        }
+                    }
+                }
+                if (event == null) {
+                    if (complete) {
+                        subscriber.emitter.complete();
+                    }
+                    return;
+                }
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // 客户端已断开，任务继续执行
+                    detach(subscriber.emitter);
+                    subscriber.emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        private static PhaseProgress copy(PhaseProgress source) {
+            PhaseProgress progress = new PhaseProgress();
+            progress.setPhaseType(source.getPhaseType());
+            progress.setState(source.getState());
+            progress.setStartTime(source.getStartTime());
+            progress.setEndTime(source.getEndTime());
+            progress.setSuccessRate(source.getSuccessRate());
+            progress.setSummary(source.getSummary());
+            progress.setMessage(source.getMessage());
+            return progress;
+        }
+    }
+
+    /**
+     * 批量任务的订阅方，待发送队列与状态由所属任务的锁保护
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closing;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * 批量任务状态DTO
+     */
+    public static class BatchJobStatus {
+        private String jobId;
+        private Long sessionId;
+        private String status;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private List<PhaseProgress> phases;
+        private BatchInferenceResult result;
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public void setJobId(String jobId) {
+            this.jobId = jobId;
+        }
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public void setStartTime(LocalDateTime startTime) {
+            this.startTime = startTime;
+        }
+
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+
+        public void setEndTime(LocalDateTime endTime) {
+            this.endTime = endTime;
+        }
+
+        public List<PhaseProgress> getPhases() {
+            return phases;
+        }
+
+        public void setPhases(List<PhaseProgress> phases) {
+            this.phases = phases;
+        }
+
+        public BatchInferenceResult getResult() {
+            return result;
+        }
+
+        public void setResult(BatchInferenceResult result) {
+            this.result = result;
+        }
+    }
+
+    /**
+     * 阶段进度DTO
+     */
+    public static class PhaseProgress {
+        private PhaseType phaseType;
+        private PhaseState state;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private Double successRate;
+        private String summary;
+        private String message;
+
+        public PhaseType getPhaseType() {
+            return phaseType;
+        }
+
+        public void setPhaseType(PhaseType phaseType) {
+            this.phaseType = phaseType;
+        }
+
+        public PhaseState getState() {
+            return state;
+        }
+
+        public void setState(PhaseState state) {
+            this.state = state;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public void setStartTime(LocalDateTime startTime) {
+            this.startTime = startTime;
+        }
+
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+
+        public void setEndTime(LocalDateTime endTime) {
+            this.endTime = endTime;
+        }
+
+        public Double getSuccessRate() {
+            return successRate;
+        }
+
+        public void setSuccessRate(Double successRate) {
+            this.successRate = successRate;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public void setSummary(String summary) {
+            this.summary = summary;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.TokenUsage;
+import com.yiqi.service.timeline.TimelineSpan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 推理请求合并器
+ * 并发中的相同（流量类别、模型、系统提示词、用户输入）请求共享同一次上游调用：
+ * 非流式请求共享结果，流式订阅者挂到同一条token流上（迟到者先补发已收到的片段）；
+ * 流量类别参与合并键，交互式请求不会挂到低优先级的在途调用上排队。
+ * 共享调用的token用量只计入发起方的累加器，合并方记0 token，只在自己的时间线上记录coalesced区间（附共享调用的用量）
+ */
+@Service
+public class InferenceCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceCoalescer.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, SharedCall> inflightCalls = new ConcurrentHashMap<>();
+    private final Map<String, SharedStream> inflightStreams = new ConcurrentHashMap<>();
+
+    private Counter upstreamCounter;
+    private Counter joinedCounter;
+
+    @PostConstruct
+    public void init() {
+        upstreamCounter = Counter.builder("yiqi.inference.coalesce.requests")
+                .description("推理请求数（按是否复用在途调用区分）")
+                .tag("outcome", "upstream")
+                .register(meterRegistry);
+        joinedCounter = Counter.builder("yiqi.inference.coalesce.requests")
+                .description("推理请求数（按是否复用在途调用区分）")
+                .tag("outcome", "joined")
+                .register(meterRegistry);
+        Gauge.builder("yiqi.inference.coalesce.dedupe.ratio", this, InferenceCoalescer::getDedupeRatio)
+                .description("被合并的请求占全部推理请求的比例")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 生成合并键
+     */
+    public String key(InferenceContext context, String systemPrompt, String userPrompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, context.getTrafficClass().name());
+            update(digest, context.getModel());
+            update(digest, context.getRoleType());
+            update(digest, systemPrompt);
+            update(digest, userPrompt);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 合并非流式请求
+     * 每个调用方拿到独立的future，取消只影响自己；全部调用方都取消后才取消上游
+     *
+     * @param key 合并键
+     * @param context 当前调用方的上下文
+     * @param upstream 以共享调用的上下文发起上游调用
+     */
+    public CompletableFuture<String> execute(String key, InferenceContext context,
+                                             Function<InferenceContext, CompletableFuture<String>> upstream) {
+        long joinedAt = System.nanoTime();
+        boolean[] created = {false};
+        SharedCall call = inflightCalls.compute(key, (k, existing) -> {
+            if (existing != null && !existing.future.isDone()) {
+                existing.waiters.incrementAndGet();
+                return existing;
+            }
+            created[0] = true;
+            return new SharedCall();
+        });
+
+        if (created[0]) {
+            // 共享调用的用量只计入发起方，合并方记0，避免同一次上游调用被重复记账与计费
+            if (context.getUsage() != null) {
+                call.usage.link(context.getUsage());
+            }
+            if (context.getRun() != null) {
+                call.usage.link(context.getRun().getUsage());
+            }
+            upstreamCounter.increment();
+            CompletableFuture<String> future;
+            try {
+                future = upstream.apply(context.withUsage(call.usage));
+            } catch (RuntimeException e) {
+                // 同步失败（如调度队列已满）时也要唤醒已加入的调用方
+                inflightCalls.remove(key, call);
+                call.future.completeExceptionally(e);
+                throw e;
+            }
+            future.whenComplete((result, throwable) -> {
+                inflightCalls.remove(key, call);
+                if (throwable != null) {
+                    call.future.completeExceptionally(throwable);
+                } else {
+                    call.future.complete(result);
+                }
+            });
+            call.upstream = future;
+        } else {
+            joinedCounter.increment();
+            logger.debug("复用在途推理请求: key={}, waiters={}", key, call.waiters.get());
+            call.future.whenComplete((result, throwable) -> recordJoined(context.getSpan(), joinedAt, call.usage,
+                    throwable == null ? InferenceMetrics.SUCCESS : InferenceMetrics.FAILURE));
+        }
+
+        CompletableFuture<String> copy = call.future.copy();
+        copy.whenComplete((result, throwable) -> {
+            if (copy.isCancelled() && call.waiters.decrementAndGet() == 0 && call.upstream != null) {
+                call.upstream.cancel(false);
+            }
+        });
+        if (context.getRun() != null) {
+            context.getRun().track(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * 合并流式请求
+     *
+     * @param key 合并键
+     * @param context 当前订阅者的上下文
+     * @param handler 当前订阅者
+     * @param upstream 以共享调用的上下文和广播处理器发起上游流式调用
+     */
+    public void stream(String key, InferenceContext context, QiniuAIService.StreamingResponseHandler handler,
+                       BiConsumer<InferenceContext, QiniuAIService.StreamingResponseHandler> upstream) {
+        long joinedAt = System.nanoTime();
+        boolean[] created = {false};
+        SharedStream stream = inflightStreams.compute(key, (k, existing) -> {
+            if (existing != null && !existing.terminated) {
+                return existing;
+            }
+            created[0] = true;
+            return new SharedStream();
+        });
+
+        if (created[0]) {
+            if (context.getUsage() != null) {
+                stream.usage.link(context.getUsage());
+            }
+            upstreamCounter.increment();
+            stream.onTerminate = () -> inflightStreams.remove(key, stream);
+            stream.subscribe(handler);
+            try {
+                upstream.accept(context.withUsage(stream.usage), stream);
+            } catch (RuntimeException e) {
+                stream.onError(e);
+            }
+        } else {
+            joinedCounter.increment();
+            logger.debug("订阅在途流式推理: key={}", key);
+            stream.subscribe(new QiniuAIService.StreamingResponseHandler() {
+                @Override
+                public void onData(String data) {
+                    handler.onData(data);
+                }
+
+                @Override
+                public void onComplete() {
+                    recordJoined(context.getSpan(), joinedAt, stream.usage, InferenceMetrics.SUCCESS);
+                    handler.onComplete();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    recordJoined(context.getSpan(), joinedAt, stream.usage, InferenceMetrics.FAILURE);
+                    handler.onError(throwable);
+                }
+            });
+        }
+    }
+
+    /**
+     * 合并方不经过调度与上游，在自己的时间线上以一个区间记录等待共享调用的时间；
+     * 区间上的tokens为共享调用的用量，仅供查看，不计入合并方的用量
+     */
+    private static void recordJoined(TimelineSpan span, long joinedAt, TokenUsage usage, String outcome) {
+        span.record("coalesced", joinedAt, System.nanoTime())
+                .attr("outcome", outcome)
+                .attr("tokens", usage.getTotalTokens());
+    }
+
+    /**
+     * 合并比例：复用在途调用的请求数 / 全部请求数
+     */
+    public double getDedupeRatio() {
+        double joined = joinedCounter.count();
+        double total = joined + upstreamCounter.count();
+        return total == 0 ? 0.0 : joined / total;
+    }
+
+    /**
+     * 获取合并统计
+     */
+    public CoalescingStatistics getStatistics() {
+        CoalescingStatistics statistics = new CoalescingStatistics();
+        statistics.setUpstreamRequests((long) upstreamCounter.count());
+        statistics.setJoinedRequests((long) joinedCounter.count());
+        statistics.setDedupeRatio(getDedupeRatio());
+        statistics.setInflightCalls(inflightCalls.size());
+        statistics.setInflightStreams(inflightStreams.size());
+        return statistics;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * 合并统计DTO
+     */
+    public static class CoalescingStatistics {
+        private long upstreamRequests;
+        private long joinedRequests;
+        private double dedupeRatio;
+        private int inflightCalls;
+        private int inflightStreams;
+
+        public long getUpstreamRequests() {
+            return upstreamRequests;
+        }
+
+        public void setUpstreamRequests(long upstreamRequests) {
+            this.upstreamRequests = upstreamRequests;
+        }
+
+        public long getJoinedRequests() {
+            return joinedRequests;
+        }
+
+        public void setJoinedRequests(long joinedRequests) {
+            this.joinedRequests = joinedRequests;
+        }
+
+        public double getDedupeRatio() {
+            return dedupeRatio;
+        }
+
+        public void setDedupeRatio(double dedupeRatio) {
+            this.dedupeRatio = dedupeRatio;
+        }
+
+        public int getInflightCalls() {
+            return inflightCalls;
+        }
+
+        public void setInflightCalls(int inflightCalls) {
+            this.inflightCalls = inflightCalls;
+        }
+
+        public int getInflightStreams() {
+            return inflightStreams;
+        }
+
+        public void setInflightStreams(int inflightStreams) {
+            this.inflightStreams = inflightStreams;
+        }
+    }
+
+    private static class SharedCall {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final TokenUsage usage = new TokenUsage();
+        private final AtomicInteger waiters = new AtomicInteger(1);
+        private volatile CompletableFuture<String> upstream;
+    }
+
+    /**
+     * 共享的token流：记录已收到的片段，供迟到的订阅者补发
+     * 补发与推送都在同一把锁内完成，保证每个订阅者看到的片段顺序与上游一致
+     */
+    private static class SharedStream implements QiniuAIService.StreamingResponseHandler {
+        private final List<String> chunks = new ArrayList<>();
+        private final List<QiniuAIService.StreamingResponseHandler> subscribers = new ArrayList<>();
+        private final TokenUsage usage = new TokenUsage();
+        private volatile boolean terminated;
+        private Throwable error;
+        private Runnable onTerminate;
+
+        synchronized void subscribe(QiniuAIService.StreamingResponseHandler subscriber) {
+            for (String chunk : chunks) {
+                safely(() -> subscriber.onData(chunk));
+            }
+            if (terminated) {
+                finish(subscriber);
+            } else {
+                subscribers.add(subscriber);
+            }
+        }
+
+        @Override
+        public synchronized void onData(String data) {
+            if (terminated) {
+                return;
+            }
+            chunks.add(data);
+            for (QiniuAIService.StreamingResponseHandler subscriber : subscribers) {
+                safely(() -> subscriber.onData(data));
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            terminate(null);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            terminate(throwable);
+        }
+
+        private synchronized void terminate(Throwable throwable) {
+            if (terminated) {
+                return;
+            }
+            error = throwable;
+            terminated = true;
+            if (onTerminate != null) {
+                onTerminate.run();
+            }
+            for (QiniuAIService.StreamingResponseHandler subscriber : subscribers) {
+                finish(subscriber);
+            }
+            subscribers.clear();
+        }
+
+        private void finish(QiniuAIService.StreamingResponseHandler subscriber) {
+            if (error != null) {
+                safely(() -> subscriber.onError(error));
+            } else {
+                safely(subscriber::onComplete);
+            }
+        }
+
+        private static void safely(Runnable callback) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                // 单个订阅者（如已断开的emitter）出错不影响其他订阅者
+                logger.warn("流式订阅者回调失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.parallel.LatencyWindowStats;
+import com.yiqi.enums.StatisticsTimeRange;
+import com.yiqi.service.metrics.RollingLatencyHistogram;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推理链路指标
+ * 统一登记上游调用、首token、生成速率、阶段推理与总结、持久化、流式推送及报告生成的耗时，
+ * 计时器均发布百分位直方图，便于在Prometheus中按阶段、模型、接口与结果聚合分位数；
+ * 代理、阶段与总结耗时另行写入进程内滚动窗口直方图，供性能统计接口按时间范围查询
+ */
+@Component
+public class InferenceMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(100_000);
+    private static final Duration MAX_EXPECTED = Duration.ofMinutes(5);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final RollingLatencyHistogram agentLatency = new RollingLatencyHistogram();
+    private final RollingLatencyHistogram phaseLatency = new RollingLatencyHistogram();
+    private final RollingLatencyHistogram summaryLatency = new RollingLatencyHistogram();
+
+    /**
+     * 记录一次上游调用（单次尝试）
+     *
+     * @param mode blocking或streaming
+     */
+    public void recordUpstream(String provider, String model, String mode, String outcome, long nanos) {
+        timer("yiqi.inference.upstream.latency", "上游模型调用耗时（单次尝试）",
+                "provider", value(provider), "model", value(model), "mode", mode, "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("yiqi.inference.upstream.attempts")
+                .description("上游模型调用次数（单次尝试）")
+                .tags("provider", value(provider), "model", value(model), "mode", mode, "outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次推理请求最终经历的尝试次数（含重试）
+     */
+    public void recordRequestAttempts(int attempts, String outcome) {
+        DistributionSummary.builder("yiqi.inference.request.attempts")
+                .description("每个推理请求的尝试次数")
+                .tags("outcome", outcome)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10.0)
+                .register(meterRegistry)
+                .record(attempts);
+    }
+
+    /**
+     * 记录流式请求的首token时间
+     */
+    public void recordTimeToFirstToken(String provider, String model, long nanos) {
+        timer("yiqi.inference.ttft", "流式请求从发出到收到首个片段的耗时",
+                "provider", value(provider), "model", value(model))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录上游返回的token用量
+     *
+     * @param trafficClass 流量类别
+     */
+    public void recordTokens(String provider, String model, String trafficClass, long promptTokens, long completionTokens) {
+        tokenCounter(provider, model, trafficClass, "prompt").increment(promptTokens);
+        tokenCounter(provider, model, trafficClass, "completion").increment(completionTokens);
+    }
+
+    /**
+     * 记录生成速率（tokens/s）
+     */
+    public void recordTokensPerSecond(String provider, String model, String mode, long tokens, long generationNanos) {
+        if (tokens <= 0 || generationNanos <= 0) {
+            return;
+        }
+        DistributionSummary.builder("yiqi.inference.tokens.rate")
+                .description("上游生成速率")
+                .baseUnit("tokens/s")
+                .tags("provider", value(provider), "model", value(model), "mode", mode)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1000.0)
+                .register(meterRegistry)
+                .record(tokens * 1e9 / generationNanos);
+    }
+
+    /**
+     * 记录单个代理推理耗时（含调度排队与重试）
+     *
+     * @param outcome success、timeout或failure
+     */
+    public void recordAgentInference(String outcome, long nanos) {
+        timer("yiqi.agent.inference", "单个代理推理耗时（含排队与重试）", "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        agentLatency.record(nanos, SUCCESS.equals(outcome));
+    }
+
+    /**
+     * 记录阶段并行推理的总耗时
+     *
+     * @param outcome success、partial或failure
+     */
+    public void recordPhaseInference(String phaseType, String outcome, long nanos) {
+        timer("yiqi.phase.inference", "阶段多代理并行推理总耗时（含总结）",
+                "phaseType", phaseType, "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        phaseLatency.record(nanos, !FAILURE.equals(outcome));
+    }
+
+    /**
+     * 记录阶段总结生成耗时
+     */
+    public void recordPhaseSummary(String phaseType, String outcome, long nanos) {
+        timer("yiqi.phase.summary", "阶段总结生成耗时",
+                "phaseType", phaseType, "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        summaryLatency.record(nanos, SUCCESS.equals(outcome));
+    }
+
+    /**
+     * 记录数据库持久化耗时
+     *
+     * @param operation 持久化操作，例如save_responses
+     */
+    public void recordPersistence(String operation, long nanos) {
+        timer("yiqi.db.persist", "推理结果与阶段状态的持久化耗时", "operation", operation)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录报告生成耗时
+     */
+    public void recordReportGeneration(String outcome, long nanos) {
+        timer("yiqi.report.generation", "报告内容生成耗时", "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 计时一次流式推送
+     *
+     * @param endpoint 接口路径模板
+     */
+    public void timeEmitterSend(String endpoint, EmitterSend send) throws IOException {
+        long start = System.nanoTime();
+        String outcome = FAILURE;
+        try {
+            send.send();
+            outcome = SUCCESS;
+        } finally {
+            timer("yiqi.stream.emitter.send", "流式片段写入响应的耗时", "endpoint", endpoint, "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 代理推理耗时在指定时间窗口内的分布
+     */
+    public LatencyWindowStats getAgentLatency(StatisticsTimeRange range) {
+        return agentLatency.snapshot(range);
+    }
+
+    /**
+     * 阶段推理耗时在指定时间窗口内的分布
+     */
+    public LatencyWindowStats getPhaseLatency(StatisticsTimeRange range) {
+        return phaseLatency.snapshot(range);
+    }
+
+    /**
+     * 阶段总结耗时在指定时间窗口内的分布
+     */
+    public LatencyWindowStats getSummaryLatency(StatisticsTimeRange range) {
+        return summaryLatency.snapshot(range);
+    }
+
+    private Counter tokenCounter(String provider, String model, String trafficClass, String type) {
+        return Counter.builder("yiqi.inference.tokens")
+                .description("上游返回的token用量")
+                .baseUnit("tokens")
+                .tags("provider", value(provider), "model", value(model), "class", trafficClass, "type", type)
+                .register(meterRegistry);
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(meterRegistry);
+    }
+
+    private static String value(String tag) {
+        return tag != null ? tag : "unknown";
+    }
+
+    /**
+     * 流式推送操作
+     */
+    @FunctionalInterface
+    public interface EmitterSend {
+        void send() throws IOException;
+    }
+}
@@ -0,0 +1,559 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.InferenceRun;
+import com.yiqi.enums.TrafficClass;
+import com.yiqi.exception.AIServiceException;
+import com.yiqi.service.timeline.TimelineSpan;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * AI推理调度器
+ * 位于QiniuAIService之前，控制上游并发并按流量类别加权公平排队：
+ * 类别之间按权重（步长调度）分配上游槽位，类别内部按用户轮转，
+ * 保证大批量任务不会饿死交互式请求；
+ * 排队与执行分别计时：排队时间按类别限制，执行超时从派发时开始计算，
+ * 派发前被取消或排队超时的任务立即移出队列，不再占用队列容量。
+ * 调用上下文带有执行批次时，任务真正结束（执行完毕或未派发即移出队列）才从批次中结清
+ */
+@Service
+public class InferenceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceScheduler.class);
+
+    // 步长调度的基准值，类别步长 = STRIDE_BASE / 权重
+    private static final long STRIDE_BASE = 1_000_000L;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<TrafficClass, ClassQueue> queues = new EnumMap<>(TrafficClass.class);
+
+    private ThreadPoolTaskExecutor executor;
+    private ThreadPoolTaskScheduler timer;
+    private int maxConcurrent;
+    private int inFlight;
+    private long virtualTime;
+
+    @PostConstruct
+    public void init() {
+        AIServiceProperties.SchedulerConfig config = aiServiceProperties.getScheduler();
+        this.maxConcurrent = Math.max(1, config.getMaxConcurrent());
+
+        for (TrafficClass trafficClass : TrafficClass.values()) {
+            int weight = Math.max(1, config.getWeights().getOrDefault(trafficClass, 1));
+            int classLimit = config.getMaxInFlight().getOrDefault(trafficClass, 0);
+            Timer waitTimer = Timer.builder("yiqi.inference.queue.wait")
+                    .description("推理请求在调度队列中的等待时间")
+                    .tag("class", trafficClass.name())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            queues.put(trafficClass, new ClassQueue(trafficClass, STRIDE_BASE / weight,
+                    classLimit > 0 ? classLimit : maxConcurrent, waitTimer));
+        }
+
+        // 槽位数即上游并发数，执行线程与之对齐，任务永远不会在执行器内部排队
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("yiqi-upstream-");
+        executor.initialize();
+
+        // 排队与执行超时的计时器，任务派发或完成时取消对应的定时
+        timer = new ThreadPoolTaskScheduler();
+        timer.setPoolSize(1);
+        timer.setRemoveOnCancelPolicy(true);
+        timer.setThreadNamePrefix("yiqi-scheduler-timer-");
+        timer.initialize();
+
+        logger.info("推理调度器初始化完成: maxConcurrent={}, weights={}, maxInFlight={}, queueTimeoutSeconds={}",
+                   maxConcurrent, config.getWeights(), config.getMaxInFlight(), config.getQueueTimeoutSeconds());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (timer != null) {
+            timer.shutdown();
+        }
+    }
+
+    /**
+     * 提交阻塞式上游调用，获得槽位后在调度线程上执行
+     * 返回的future在排队超时或派发后执行超时时以TimeoutException结束；
+     * 派发前取消future会把任务移出队列
+     *
+     * @param context 调用上下文
+     * @param task 实际的上游调用
+     * @return 异步结果
+     */
+    public <T> CompletableFuture<T> submit(InferenceContext context, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ScheduledTask scheduled = enqueue(context, release -> {
+            if (future.isDone()) {
+                // 调用方已取消，不再占用上游
+                release.run();
+                return;
+            }
+            ScheduledFuture<?> deadline = timer.schedule(() -> future.completeExceptionally(
+                    new TimeoutException("推理执行超时: " + context.getTrafficClass().getDescription())),
+                    Instant.now().plusSeconds(getExecutionTimeoutSeconds()));
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                deadline.cancel(false);
+                release.run();
+            }
+        }, future::completeExceptionally);
+        if (scheduled != null) {
+            future.whenComplete((result, throwable) -> withdraw(scheduled));
+        }
+        return future;
+    }
+
+    /**
+     * 提交异步（流式）上游调用
+     * 任务获得槽位后执行，必须在流结束或出错时调用传入的释放回调归还槽位
+     *
+     * @param context 调用上下文
+     * @param task 接收释放回调的任务
+     * @param onRejected 排队被拒绝或排队超时时的回调
+     */
+    public void submitStreaming(InferenceContext context, Consumer<Runnable> task, Consumer<Throwable> onRejected) {
+        enqueue(context, release -> {
+            try {
+                task.accept(release);
+            } catch (Throwable e) {
+                release.run();
+                throw e;
+            }
+        }, onRejected);
+    }
+
+    /**
+     * 派发后单次上游调用的超时时间（秒）
+     */
+    public long getExecutionTimeoutSeconds() {
+        return Math.max(1, aiServiceProperties.getScheduler().getExecutionTimeoutSeconds());
+    }
+
+    /**
+     * 指定类别在队列中的最长等待时间（秒）
+     */
+    public long getQueueTimeoutSeconds(TrafficClass trafficClass) {
+        return Math.max(1, aiServiceProperties.getScheduler().getQueueTimeoutSeconds()
+                .getOrDefault(trafficClass, aiServiceProperties.getScheduler().getExecutionTimeoutSeconds()));
+    }
+
+    /**
+     * 指定类别的一次调用从提交到结束的最长时间（秒）：排队上限加执行超时，
+     * 调用方等待结果时以此为上限，排队中的低优先级任务不会被调用方提前判为超时
+     */
+    public long getDeadlineSeconds(TrafficClass trafficClass) {
+        return getQueueTimeoutSeconds(trafficClass) + getExecutionTimeoutSeconds();
+    }
+
+    /**
+     * 获取调度统计信息
+     */
+    public SchedulerStatistics getStatistics() {
+        SchedulerStatistics statistics = new SchedulerStatistics();
+        statistics.setMaxConcurrent(maxConcurrent);
+        synchronized (this) {
+            statistics.setInFlight(inFlight);
+            for (ClassQueue queue : queues.values()) {
+                statistics.getClasses().put(queue.trafficClass, queue.snapshot());
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * 入队并设置排队超时
+     *
+     * @return 入队的任务，队列已满被拒绝时返回null
+     */
+    private ScheduledTask enqueue(InferenceContext context, Consumer<Runnable> body, Consumer<Throwable> onRejected) {
+        TrafficClass trafficClass = context.getTrafficClass();
+        ClassQueue queue = queues.get(trafficClass);
+        InferenceRun run = context.getRun();
+        if (run != null && !run.taskStarted()) {
+            onRejected.accept(new CancellationException("推理批次已取消"));
+            return null;
+        }
+        TimelineSpan queueSpan = context.getSpan().start("queue").attr("class", trafficClass.name());
+        ScheduledTask task = new ScheduledTask(queue, context.getUserKey(), run, body, queueSpan);
+        synchronized (this) {
+            if (queue.size >= aiServiceProperties.getScheduler().getQueueCapacity()) {
+                queue.rejected.incrementAndGet();
+                queueSpan.attr("outcome", "rejected").end();
+                if (run != null) {
+                    run.taskFinished();
+                }
+                onRejected.accept(new AIServiceException("AI_SCHEDULER_QUEUE_FULL",
+                        "推理调度队列已满: " + trafficClass.getDescription()));
+                return null;
+            }
+            if (queue.size == 0) {
+                // 空闲类别重新激活时不能带着历史积欠的虚拟时间插队
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.offer(task);
+            task.queueDeadline = timer.schedule(() -> {
+                if (remove(queue, task, "expired")) {
+                    queue.expired.incrementAndGet();
+                    onRejected.accept(new TimeoutException("推理排队超时: " + trafficClass.getDescription()));
+                }
+            }, Instant.now().plus(Duration.ofSeconds(getQueueTimeoutSeconds(trafficClass))));
+        }
+        dispatch();
+        return task;
+    }
+
+    /**
+     * 调用方在派发前取消时把任务移出队列，已派发的任务不受影响
+     */
+    private void withdraw(ScheduledTask task) {
+        remove(task.queue, task, "cancelled");
+    }
+
+    private boolean remove(ClassQueue queue, ScheduledTask task, String outcome) {
+        synchronized (this) {
+            if (!queue.remove(task)) {
+                return false;
+            }
+        }
+        if (task.queueDeadline != null) {
+            task.queueDeadline.cancel(false);
+        }
+        task.queueSpan.attr("outcome", outcome).end();
+        if (task.run != null) {
+            task.run.taskFinished();
+        }
+        return true;
+    }
+
+    /**
+     * 在槽位允许的范围内派发任务：选择虚拟时间最小且未超过类别上限的类别
+     */
+    private void dispatch() {
+        while (true) {
+            ScheduledTask task;
+            ClassQueue selected = null;
+            synchronized (this) {
+                if (inFlight >= maxConcurrent) {
+                    return;
+                }
+                for (ClassQueue queue : queues.values()) {
+                    if (queue.size > 0 && queue.inFlight < queue.maxInFlight
+                            && (selected == null || queue.pass < selected.pass)) {
+                        selected = queue;
+                    }
+                }
+                if (selected == null) {
+                    return;
+                }
+                task = selected.poll();
+                virtualTime = selected.pass;
+                selected.pass += selected.stride;
+                selected.inFlight++;
+                selected.dispatched++;
+                inFlight++;
+            }
+
+            if (task.queueDeadline != null) {
+                task.queueDeadline.cancel(false);
+            }
+            task.queueSpan.end();
+            long waitNanos = System.nanoTime() - task.enqueuedAt;
+            selected.waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            selected.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+            ClassQueue owner = selected;
+            AtomicBoolean released = new AtomicBoolean(false);
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    synchronized (this) {
+                        owner.inFlight--;
+                        inFlight--;
+                    }
+                    if (task.run != null) {
+                        task.run.taskFinished();
+                    }
+                    dispatch();
+                }
+            };
+            try {
+                executor.execute(() -> task.body.accept(release));
+            } catch (RuntimeException e) {
+                logger.error("推理任务派发失败: class={}", owner.trafficClass, e);
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * 单个流量类别的队列，内部按用户分桶轮转
+     */
+    private static class ClassQueue {
+        private final TrafficClass trafficClass;
+        private final long stride;
+        private final int maxInFlight;
+        private final Timer waitTimer;
+        private final Map<String, ArrayDeque<ScheduledTask>> userQueues = new LinkedHashMap<>();
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong expired = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private long pass;
+        private int size;
+        private int inFlight;
+        private long dispatched;
+
+        ClassQueue(TrafficClass trafficClass, long stride, int maxInFlight, Timer waitTimer) {
+            this.trafficClass = trafficClass;
+            this.stride = stride;
+            this.maxInFlight = maxInFlight;
+            this.waitTimer = waitTimer;
+        }
+
+        void offer(ScheduledTask task) {
+            ArrayDeque<ScheduledTask> userQueue = userQueues.get(task.userKey);
+            if (userQueue == null) {
+                userQueue = new ArrayDeque<>();
+                userQueues.put(task.userKey, userQueue);
+                rotation.addLast(task.userKey);
+            }
+            userQueue.addLast(task);
+            size++;
+        }
+
+        ScheduledTask poll() {
+            String userKey = rotation.pollFirst();
+            ArrayDeque<ScheduledTask> userQueue = userQueues.get(userKey);
+            ScheduledTask task = userQueue.pollFirst();
+            if (userQueue.isEmpty()) {
+                userQueues.remove(userKey);
+            } else {
+                rotation.addLast(userKey);
+            }
+            size--;
+            return task;
+        }
+
+        boolean remove(ScheduledTask task) {
+            ArrayDeque<ScheduledTask> userQueue = userQueues.get(task.userKey);
+            if (userQueue == null || !userQueue.remove(task)) {
+                return false;
+            }
+            if (userQueue.isEmpty()) {
+                userQueues.remove(task.userKey);
+                rotation.remove(task.userKey);
+            }
+            size--;
+            return true;
+        }
+
+        ClassStatistics snapshot() {
+            ClassStatistics statistics = new ClassStatistics();
+            statistics.setQueued(size);
+            statistics.setWaitingUsers(userQueues.size());
+            statistics.setInFlight(inFlight);
+            statistics.setMaxInFlight(maxInFlight);
+            statistics.setDispatched(dispatched);
+            statistics.setRejected(rejected.get());
+            statistics.setExpired(expired.get());
+            statistics.setAverageWaitMs(waitTimer.mean(TimeUnit.MILLISECONDS));
+            statistics.setMaxWaitMs(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+            Map<String, Double> percentiles = new HashMap<>();
+            for (ValueAtPercentile value : waitTimer.takeSnapshot().percentileValues()) {
+                percentiles.put("p" + Math.round(value.percentile() * 100), value.value(TimeUnit.MILLISECONDS));
+            }
+            statistics.setWaitPercentilesMs(percentiles);
+            return statistics;
+        }
+    }
+
+    private static class ScheduledTask {
+        private final ClassQueue queue;
+        private final String userKey;
+        private final InferenceRun run;
+        private final Consumer<Runnable> body;
+        private final TimelineSpan queueSpan;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile ScheduledFuture<?> queueDeadline;
+
+        ScheduledTask(ClassQueue queue, String userKey, InferenceRun run, Consumer<Runnable> body,
+                      TimelineSpan queueSpan) {
+            this.queue = queue;
+            this.userKey = userKey;
+            this.run = run;
+            this.body = body;
+            this.queueSpan = queueSpan;
+        }
+    }
+
+    /**
+     * 调度统计信息
+     */
+    public static class SchedulerStatistics {
+        private int maxConcurrent;
+        private int inFlight;
+        private Map<TrafficClass, ClassStatistics> classes = new EnumMap<>(TrafficClass.class);
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public void setInFlight(int inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        public Map<TrafficClass, ClassStatistics> getClasses() {
+            return classes;
+        }
+
+        public void setClasses(Map<TrafficClass, ClassStatistics> classes) {
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * 单个流量类别的统计信息
+     */
+    public static class ClassStatistics {
+        private int queued;
+        private int waitingUsers;
+        private int inFlight;
+        private int maxInFlight;
+        private long dispatched;
+        private long rejected;
+        private long expired;
+        private double averageWaitMs;
+        private long maxWaitMs;
+        private Map<String, Double> waitPercentilesMs;
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public void setQueued(int queued) {
+            this.queued = queued;
+        }
+
+        public int getWaitingUsers() {
+            return waitingUsers;
+        }
+
+        public void setWaitingUsers(int waitingUsers) {
+            this.waitingUsers = waitingUsers;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public void setInFlight(int inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        public void setDispatched(long dispatched) {
+            this.dispatched = dispatched;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public void setRejected(long rejected) {
+            this.rejected = rejected;
+        }
+
+        public long getExpired() {
+            return expired;
+        }
+
+        public void setExpired(long expired) {
+            this.expired = expired;
+        }
+
+        public double getAverageWaitMs() {
+            return averageWaitMs;
+        }
+
+        public void setAverageWaitMs(double averageWaitMs) {
+            this.averageWaitMs = averageWaitMs;
+        }
+
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        public Map<String, Double> getWaitPercentilesMs() {
+            return waitPercentilesMs;
+        }
+
+        public void setWaitPercentilesMs(Map<String, Double> waitPercentilesMs) {
+            this.waitPercentilesMs = waitPercentilesMs;
+        }
+    }
+}
@@ -1,20 +1,65 @@
 package com.yiqi.service;
 
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.event.InferenceProgressEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 推理状态服务
- * 用于跟踪和管理AI推理任务的状态信息
+ * 用于跟踪和管理AI推理任务的状态信息。
+ * 每条状态的代理计数为原子计数器，结束状态以CAS写入一次，对外只返回不可变快照；
+ * 状态条数有上限，结束或长时间未更新的状态由后台定期淘汰
  */
 @Service
 public class InferenceStatusService {
     
-    // 会话推理状态缓存
-    private final ConcurrentHashMap<String, SessionInferenceStatus> sessionStatusMap = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(InferenceStatusService.class);
+    
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+    
+    /**
+     * 单条状态的估算内存（对象头、计数器、时间对象与引用），不含字符串内容
+     */
+    private static final int ENTRY_BASE_BYTES = 360;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // 会话推理状态
+    private final ConcurrentHashMap<String, StatusEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
     
     // 系统统计信息
     private final AtomicInteger totalSessions = new AtomicInteger(0);
@@ -22,12 +67,63 @@ public class InferenceStatusService {
     private final AtomicInteger failedSessions = new AtomicInteger(0);
     private final AtomicLong totalProcessingTimeMs = new AtomicLong(0);
     
+    // 淘汰统计
+    private final AtomicLong expiredEvictions = new AtomicLong();
+    private final AtomicLong staleEvictions = new AtomicLong();
+    private final AtomicLong capacityEvictions = new AtomicLong();
+    
+    private ThreadPoolTaskScheduler scheduler;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("yiqi.inference.status.entries", entries, Map::size)
+            .description("内存中的推理状态条数")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.inference.status.memory", this, InferenceStatusService::estimatedBytes)
+            .description("推理状态的估算内存占用")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        registerEvictionCounter("expired", expiredEvictions);
+        registerEvictionCounter("stale", staleEvictions);
+        registerEvictionCounter("capacity", capacityEvictions);
+        
+        long interval = Math.max(1L, aiServiceProperties.getStatus().getCleanupIntervalSeconds());
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("yiqi-status-cleanup-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::cleanupExpiredStatuses, Duration.ofSeconds(interval));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+    
     /**
      * 获取会话推理状态
+     * 
+     * @return 状态快照，不存在时返回null
      */
     public SessionInferenceStatus getSessionInferenceStatus(String sessionId, String phaseType) {
-        String key = sessionId + "_" + phaseType;
-        return sessionStatusMap.get(key);
+        StatusEntry entry = entries.get(key(sessionId, phaseType));
+        return entry != null ? entry.snapshot() : null;
+    }
+
+    /**
+     * 获取会话各阶段的推理状态
+     */
+    public List<SessionInferenceStatus> getSessionInferenceStatuses(String sessionId) {
+        List<SessionInferenceStatus> statuses = new ArrayList<>();
+        for (PhaseType phaseType : PhaseType.values()) {
+            SessionInferenceStatus status = getSessionInferenceStatus(sessionId, phaseType.name());
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+        return statuses;
     }
 
     /**
@@ -38,39 +134,29 @@ public class InferenceStatusService {
     }
     
     /**
-     * 更新会话推理状态
+     * 创建新的推理状态，同一会话阶段的旧状态被替换
      */
-    public void updateSessionInferenceStatus(String sessionId, String phaseType, SessionInferenceStatus status) {
-        String key = sessionId + "_" + phaseType;
-        sessionStatusMap.put(key, status);
-        
-        // 更新系统统计
-        if ("COMPLETED".equals(status.getStatus())) {
-            completedSessions.incrementAndGet();
-            totalProcessingTimeMs.addAndGet(status.getProcessingTimeMs());
-        } else if ("FAILED".equals(status.getStatus())) {
-            failedSessions.incrementAndGet();
-        }
+    public SessionInferenceStatus createInferenceStatus(String sessionId, String phaseType, int totalAgents) {
+        return createInferenceStatus(sessionId, phaseType, totalAgents, null);
     }
-    
+
     /**
-     * 创建新的推理状态
+     * 创建推理状态并记录发起推理的用户
+     *
+     * @param ownerId 发起推理的用户ID，可为null
      */
-    public SessionInferenceStatus createInferenceStatus(String sessionId, String phaseType, int totalAgents) {
-        SessionInferenceStatus status = new SessionInferenceStatus();
-        status.setSessionId(sessionId);
-        status.setPhaseType(phaseType);
-        status.setStatus("IN_PROGRESS");
-        status.setTotalAgents(totalAgents);
-        status.setCompletedAgents(0);
-        status.setSuccessfulAgents(0);
-        status.setFailedAgents(0);
-        status.setStartTime(LocalDateTime.now());
-        
-        updateSessionInferenceStatus(sessionId, phaseType, status);
+    public SessionInferenceStatus createInferenceStatus(String sessionId, String phaseType, int totalAgents,
+                                                        String ownerId) {
+        StatusEntry entry = new StatusEntry(sessionId, phaseType, totalAgents, ownerId);
+        entries.put(key(sessionId, phaseType), entry);
         totalSessions.incrementAndGet();
+        if (entries.size() > aiServiceProperties.getStatus().getMaxEntries()) {
+            evictForCapacity();
+        }
         
-        return status;
+        SessionInferenceStatus snapshot = entry.snapshot();
+        publish(snapshot);
+        return snapshot;
     }
 
     /**
@@ -79,37 +165,40 @@ public class InferenceStatusService {
     public void startTracking(String sessionId, String phaseType, int totalAgents) {
         createInferenceStatus(sessionId, phaseType, totalAgents);
     }
+
+    /**
+     * 开始跟踪推理状态并记录发起推理的用户
+     */
+    public void startTracking(String sessionId, String phaseType, int totalAgents, String ownerId) {
+        createInferenceStatus(sessionId, phaseType, totalAgents, ownerId);
+    }
+
+    /**
+     * 获取发起推理的用户ID
+     *
+     * @return 状态不存在或未记录发起用户时返回null
+     */
+    public String getOwnerId(String sessionId, String phaseType) {
+        StatusEntry entry = entries.get(key(sessionId, phaseType));
+        return entry != null ? entry.ownerId : null;
+    }
     
     /**
      * 更新代理完成状态
+     * 各代理在各自线程完成时调用；最后一个代理完成时状态变为COMPLETED（已失败的状态不再改变）
      */
     public void updateAgentCompletion(String sessionId, String phaseType, boolean success) {
-        SessionInferenceStatus status = getSessionInferenceStatus(sessionId, phaseType);
-        if (status != null) {
-            status.setCompletedAgents(status.getCompletedAgents() + 1);
-            if (success) {
-                status.setSuccessfulAgents(status.getSuccessfulAgents() + 1);
-            } else {
-                status.setFailedAgents(status.getFailedAgents() + 1);
-            }
-            
-            // 计算成功率
-            status.setSuccessRate((double) status.getSuccessfulAgents() / status.getTotalAgents());
-            
-            // 检查是否全部完成
-            if (status.getCompletedAgents() >= status.getTotalAgents()) {
-                status.setStatus("COMPLETED");
-                status.setEndTime(LocalDateTime.now());
-                
-                // 计算处理时间
-                if (status.getStartTime() != null && status.getEndTime() != null) {
-                    long processingTime = java.time.Duration.between(status.getStartTime(), status.getEndTime()).toMillis();
-                    status.setProcessingTimeMs(processingTime);
-                }
-            }
-            
-            updateSessionInferenceStatus(sessionId, phaseType, status);
+        StatusEntry entry = entries.get(key(sessionId, phaseType));
+        if (entry == null) {
+            return;
         }
+        (success ? entry.successfulAgents : entry.failedAgents).incrementAndGet();
+        int completed = entry.completedAgents.incrementAndGet();
+        entry.touch();
+        if (completed >= entry.totalAgents) {
+            finish(entry, COMPLETED, null);
+        }
+        publish(entry.snapshot());
     }
 
     /**
@@ -128,12 +217,9 @@ public class InferenceStatusService {
      * 标记推理失败
      */
     public void markInferenceFailed(String sessionId, String phaseType, String errorMessage) {
-        SessionInferenceStatus status = getSessionInferenceStatus(sessionId, phaseType);
-        if (status != null) {
-            status.setStatus("FAILED");
-            status.setErrorMessage(errorMessage);
-            status.setEndTime(LocalDateTime.now());
-            updateSessionInferenceStatus(sessionId, phaseType, status);
+        StatusEntry entry = entries.get(key(sessionId, phaseType));
+        if (entry != null && finish(entry, FAILED, errorMessage)) {
+            publish(entry.snapshot());
         }
     }
     
@@ -159,129 +245,254 @@ public class InferenceStatusService {
     
     /**
      * 清理过期的状态记录
+     * 结束超过保留时间的状态，以及长时间未更新的进行中状态（推理线程已异常退出）
      */
     public void cleanupExpiredStatuses() {
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(24); // 保留24小时内的记录
+        AIServiceProperties.StatusConfig config = aiServiceProperties.getStatus();
+        long now = System.currentTimeMillis();
+        long retentionMs = TimeUnit.MINUTES.toMillis(config.getRetentionMinutes());
+        long staleMs = TimeUnit.MINUTES.toMillis(config.getStaleMinutes());
+        int expired = 0;
+        int stale = 0;
+        
+        for (Map.Entry<String, StatusEntry> item : entries.entrySet()) {
+            StatusEntry entry = item.getValue();
+            long idleMs = now - entry.lastUpdatedMillis;
+            boolean finished = entry.outcome.get() != Outcome.RUNNING;
+            if (finished && idleMs > retentionMs && entries.remove(item.getKey(), entry)) {
+                expired++;
+            } else if (!finished && idleMs > staleMs && entries.remove(item.getKey(), entry)) {
+                stale++;
+            }
+        }
         
-        sessionStatusMap.entrySet().removeIf(entry -> {
-            SessionInferenceStatus status = entry.getValue();
-            return status.getEndTime() != null && status.getEndTime().isBefore(cutoff);
-        });
+        expiredEvictions.addAndGet(expired);
+        staleEvictions.addAndGet(stale);
+        if (expired + stale > 0) {
+            logger.debug("清理推理状态: 过期={}, 停滞={}, 剩余={}", expired, stale, entries.size());
+        }
     }
     
     /**
-     * 会话推理状态类
+     * 超过上限时淘汰到上限的90%：优先淘汰已结束的状态，再按最近更新时间从旧到新
+     */
+    private void evictForCapacity() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = (int) (aiServiceProperties.getStatus().getMaxEntries() * 0.9);
+            int excess = entries.size() - target;
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, StatusEntry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator
+                .comparing((Map.Entry<String, StatusEntry> item) -> item.getValue().outcome.get() == Outcome.RUNNING)
+                .thenComparingLong(item -> item.getValue().lastUpdatedMillis));
+            int evicted = 0;
+            for (Map.Entry<String, StatusEntry> item : candidates) {
+                if (evicted >= excess) {
+                    break;
+                }
+                if (entries.remove(item.getKey(), item.getValue())) {
+                    evicted++;
+                }
+            }
+            capacityEvictions.addAndGet(evicted);
+            logger.warn("推理状态超过上限，已淘汰{}条", evicted);
+        } finally {
+            evicting.set(false);
+        }
+    }
+    
+    /**
+     * 以CAS写入结束状态，只有第一次结束生效并计入统计
+     */
+    private boolean finish(StatusEntry entry, String status, String errorMessage) {
+        LocalDateTime endTime = LocalDateTime.now();
+        long processingTimeMs = Duration.between(entry.startTime, endTime).toMillis();
+        Outcome outcome = new Outcome(status, endTime, processingTimeMs, errorMessage);
+        if (!entry.outcome.compareAndSet(Outcome.RUNNING, outcome)) {
+            return false;
+        }
+        entry.touch();
+        if (COMPLETED.equals(status)) {
+            completedSessions.incrementAndGet();
+            totalProcessingTimeMs.addAndGet(processingTimeMs);
+        } else {
+            failedSessions.incrementAndGet();
+        }
+        return true;
+    }
+    
+    private void publish(SessionInferenceStatus snapshot) {
+        eventPublisher.publishEvent(new InferenceProgressEvent(snapshot.getSessionId(), snapshot.getPhaseType(), snapshot));
+    }
+    
+    private double estimatedBytes() {
+        long total = 0;
+        for (Map.Entry<String, StatusEntry> item : entries.entrySet()) {
+            total += ENTRY_BASE_BYTES + 2L * item.getKey().length() + item.getValue().estimatedBytes();
+        }
+        return total;
+    }
+    
+    private void registerEvictionCounter(String reason, AtomicLong counter) {
+        FunctionCounter.builder("yiqi.inference.status.evictions", counter, AtomicLong::get)
+            .description("被淘汰的推理状态条数")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+    
+    private static String key(String sessionId, String phaseType) {
+        return sessionId + "_" + phaseType;
+    }
+    
+    /**
+     * 单个会话阶段的状态条目
+     */
+    private static final class StatusEntry {
+        private final String sessionId;
+        private final String phaseType;
+        private final int totalAgents;
+        private final String ownerId;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final AtomicInteger completedAgents = new AtomicInteger();
+        private final AtomicInteger successfulAgents = new AtomicInteger();
+        private final AtomicInteger failedAgents = new AtomicInteger();
+        private final AtomicReference<Outcome> outcome = new AtomicReference<>(Outcome.RUNNING);
+        private volatile long lastUpdatedMillis = System.currentTimeMillis();
+
+        StatusEntry(String sessionId, String phaseType, int totalAgents, String ownerId) {
+            this.sessionId = sessionId;
+            this.phaseType = phaseType;
+            this.totalAgents = totalAgents;
+            this.ownerId = ownerId;
+        }
+
+        void touch() {
+            lastUpdatedMillis = System.currentTimeMillis();
+        }
+
+        long estimatedBytes() {
+            String errorMessage = outcome.get().errorMessage;
+            return 2L * (sessionId.length() + phaseType.length() + (errorMessage != null ? errorMessage.length() : 0));
+        }
+
+        SessionInferenceStatus snapshot() {
+            Outcome current = outcome.get();
+            int successful = successfulAgents.get();
+            int failed = failedAgents.get();
+            int completed = Math.max(completedAgents.get(), successful + failed);
+            double successRate = totalAgents > 0 ? (double) successful / totalAgents : 0.0;
+            return new SessionInferenceStatus(sessionId, phaseType, current.status, totalAgents, completed,
+                                              successful, failed, successRate, startTime, current.endTime,
+                                              current.processingTimeMs, current.errorMessage);
+        }
+    }
+    
+    /**
+     * 状态的结束信息，进行中为RUNNING单例
+     */
+    private static final class Outcome {
+        private static final Outcome RUNNING = new Outcome(IN_PROGRESS, null, 0, null);
+
+        private final String status;
+        private final LocalDateTime endTime;
+        private final long processingTimeMs;
+        private final String errorMessage;
+
+        Outcome(String status, LocalDateTime endTime, long processingTimeMs, String errorMessage) {
+            this.status = status;
+            this.endTime = endTime;
+            this.processingTimeMs = processingTimeMs;
+            this.errorMessage = errorMessage;
+        }
+    }
+    
+    /**
+     * 会话推理状态快照（不可变）
      */
     public static class SessionInferenceStatus {
-        private String sessionId;
-        private String phaseType;
-        private String status; // IN_PROGRESS, COMPLETED, FAILED
-        private int totalAgents;
-        private int completedAgents;
-        private int successfulAgents;
-        private int failedAgents;
-        private double successRate;
-        private LocalDateTime startTime;
-        private LocalDateTime endTime;
-        private long processingTimeMs;
-        private String errorMessage;
+        private final String sessionId;
+        private final String phaseType;
+        private final String status; // IN_PROGRESS, COMPLETED, FAILED
+        private final int totalAgents;
+        private final int completedAgents;
+        private final int successfulAgents;
+        private final int failedAgents;
+        private final double successRate;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final long processingTimeMs;
+        private final String errorMessage;
+        
+        public SessionInferenceStatus(String sessionId, String phaseType, String status, int totalAgents,
+                                      int completedAgents, int successfulAgents, int failedAgents,
+                                      double successRate, LocalDateTime startTime, LocalDateTime endTime,
+                                      long processingTimeMs, String errorMessage) {
+            this.sessionId = sessionId;
+            this.phaseType = phaseType;
+            this.status = status;
+            this.totalAgents = totalAgents;
+            this.completedAgents = completedAgents;
+            this.successfulAgents = successfulAgents;
+            this.failedAgents = failedAgents;
+            this.successRate = successRate;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.processingTimeMs = processingTimeMs;
+            this.errorMessage = errorMessage;
+        }
         
-        // Getters and Setters
         public String getSessionId() {
             return sessionId;
         }
         
-        public void setSessionId(String sessionId) {
-            this.sessionId = sessionId;
-        }
-        
         public String getPhaseType() {
             return phaseType;
         }
         
-        public void setPhaseType(String phaseType) {
-            this.phaseType = phaseType;
-        }
-        
         public String getStatus() {
             return status;
         }
         
-        public void setStatus(String status) {
-            this.status = status;
-        }
-        
         public int getTotalAgents() {
             return totalAgents;
         }
         
-        public void setTotalAgents(int totalAgents) {
-            this.totalAgents = totalAgents;
-        }
-        
         public int getCompletedAgents() {
             return completedAgents;
         }
         
-        public void setCompletedAgents(int completedAgents) {
-            this.completedAgents = completedAgents;
-        }
-        
         public int getSuccessfulAgents() {
             return successfulAgents;
         }
         
-        public void setSuccessfulAgents(int successfulAgents) {
-            this.successfulAgents = successfulAgents;
-        }
-        
         public int getFailedAgents() {
             return failedAgents;
         }
         
-        public void setFailedAgents(int failedAgents) {
-            this.failedAgents = failedAgents;
-        }
-        
         public double getSuccessRate() {
             return successRate;
         }
         
-        public void setSuccessRate(double successRate) {
-            this.successRate = successRate;
-        }
-        
         public LocalDateTime getStartTime() {
             return startTime;
         }
         
-        public void setStartTime(LocalDateTime startTime) {
-            this.startTime = startTime;
-        }
-        
         public LocalDateTime getEndTime() {
             return endTime;
         }
         
-        public void setEndTime(LocalDateTime endTime) {
-            this.endTime = endTime;
-        }
-        
         public long getProcessingTimeMs() {
             return processingTimeMs;
         }
         
-        public void setProcessingTimeMs(long processingTimeMs) {
-            this.processingTimeMs = processingTimeMs;
-        }
-        
         public String getErrorMessage() {
             return errorMessage;
         }
-        
-        public void setErrorMessage(String errorMessage) {
-            this.errorMessage = errorMessage;
-        }
     }
     
     /**
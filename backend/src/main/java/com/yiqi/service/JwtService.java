@@ -3,33 +3,122 @@ package com.yiqi.service;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.User;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * JWT认证服务
- * 
+ * 签名密钥与解析器在启动时构建一次（解析器线程安全）；验证通过的令牌连同声明缓存到过期为止，
+ * 同一令牌的后续请求不再重复验签。令牌携带用户ID、令牌版本与令牌ID，认证时无需查询用户表
+ *
  * @author YiQi Team
  * @since 1.0.0
  */
 @Service
 public class JwtService {
 
+    /**
+     * 用户ID声明
+     */
+    public static final String CLAIM_USER_ID = "uid";
+
+    /**
+     * 令牌版本声明，低于用户当前令牌版本的令牌视为吊销
+     */
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${yiqi.jwt.secret}")
     private String secret;
 
     @Value("${yiqi.jwt.expiration}")
     private Long expiration;
 
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private Key signKey;
+    private JwtParser parser;
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        signKey = new SecretKeySpec(secret.getBytes(), SignatureAlgorithm.HS256.getJcaName());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signKey)
+                .build();
+        hits = Counter.builder("yiqi.jwt.verified.cache")
+            .description("已验证令牌缓存的查询次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        misses = Counter.builder("yiqi.jwt.verified.cache")
+            .description("已验证令牌缓存的查询次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.jwt.verified.cache.entries", verifiedTokens, Map::size)
+            .description("缓存的已验证令牌条数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 验证令牌（签名与有效期），过滤器的每次请求只需调用一次
+     *
+     * @return 令牌无效或已过期时返回null；返回的声明为共享实例，调用方不得修改
+     */
+    public VerifiedToken verify(String token) {
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (now < cached.expiresAtMillis) {
+                hits.increment();
+                return cached;
+            }
+            verifiedTokens.remove(token, cached);
+        }
+        misses.increment();
+
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        Date expiresAt = claims.getExpiration();
+        if (expiresAt == null || expiresAt.getTime() <= now) {
+            return null;
+        }
+        VerifiedToken verified = new VerifiedToken(claims, expiresAt.getTime());
+        store(token, verified, now);
+        return verified;
+    }
+
     /**
      * 从令牌中提取用户名
      */
@@ -53,29 +142,25 @@ public class JwtService {
     }
 
     /**
-     * 从令牌中提取所有声明
+     * 从令牌中提取所有声明，令牌无效时抛出解析异常
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    /**
-     * 检查令牌是否过期
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        VerifiedToken verified = verify(token);
+        if (verified != null) {
+            return verified.claims;
+        }
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
-     * 为用户生成令牌
+     * 为用户生成令牌，携带用户ID、令牌版本与唯一的令牌ID（用于登出吊销）
      */
-    public String generateToken(String username) {
+    public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, username);
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        claims.put(Claims.ID, UUID.randomUUID().toString());
+        return createToken(claims, user.getUsername());
     }
 
     /**
@@ -87,7 +172,7 @@ public class JwtService {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -95,26 +180,83 @@ public class JwtService {
      * 验证令牌
      */
     public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        VerifiedToken verified = verify(token);
+        return verified != null && verified.getUsername().equals(username);
     }
 
     /**
-     * 获取签名密钥
+     * 检查令牌是否有效（不检查用户名）
      */
-    private Key getSignKey() {
-        byte[] keyBytes = secret.getBytes();
-        return new SecretKeySpec(keyBytes, SignatureAlgorithm.HS256.getJcaName());
+    public Boolean isTokenValid(String token) {
+        return verify(token) != null;
     }
 
     /**
-     * 检查令牌是否有效（不检查用户名）
+     * 写入已验证令牌；达到条数上限时先清理已过期的令牌，仍超限时再淘汰上限的十分之一
      */
-    public Boolean isTokenValid(String token) {
-        try {
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
+    private void store(String token, VerifiedToken verified, long now) {
+        int maxEntries = aiServiceProperties.getCache().getVerifiedTokenMaxEntries();
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (verifiedTokens.size() >= maxEntries) {
+            verifiedTokens.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            if (verifiedTokens.size() >= maxEntries) {
+                Iterator<String> iterator = verifiedTokens.keySet().iterator();
+                for (int i = verifiedTokens.size() - maxEntries + 1 + maxEntries / 10; i > 0 && iterator.hasNext(); i--) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        verifiedTokens.put(token, verified);
+    }
+
+    /**
+     * 验证通过的令牌
+     */
+    public static final class VerifiedToken {
+        private final Claims claims;
+        private final long expiresAtMillis;
+
+        VerifiedToken(Claims claims, long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getUsername() {
+            return claims.getSubject();
+        }
+
+        /**
+         * 用户ID，早期签发的令牌不含该声明时为null
+         */
+        public Long getUserId() {
+            Number userId = claims.get(CLAIM_USER_ID, Number.class);
+            return userId != null ? userId.longValue() : null;
+        }
+
+        /**
+         * 令牌版本，不含该声明时为0
+         */
+        public int getTokenVersion() {
+            Number version = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+            return version != null ? version.intValue() : 0;
+        }
+
+        /**
+         * 令牌ID，早期签发的令牌不含该声明时为null
+         */
+        public String getTokenId() {
+            return claims.getId();
+        }
+
+        public Claims getClaims() {
+            return claims;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
         }
     }
 }
@@ -0,0 +1,196 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.User;
+import com.yiqi.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 登录失败计数
+ * 失败次数按用户名累计在内存中（ConcurrentHashMap按桶加锁，不同用户互不竞争），定期批量写回users表；
+ * 达到上限时由调用方立即写入锁定。锁定状态同时保留在内存中，锁定期间的登录不再查库和哈希
+ */
+@Service
+public class LoginAttemptTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptTracker.class);
+
+    // 单条批量写回语句包含的用户数
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("yiqi-login-attempts-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::flush,
+            Duration.ofMillis(Math.max(100, aiServiceProperties.getLogin().getFlushIntervalMs())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * 用户是否处于本节点记录的锁定期内
+     */
+    public boolean isLocked(String username) {
+        Attempts current = attempts.get(username);
+        return current != null && current.isLocked(LocalDateTime.now());
+    }
+
+    /**
+     * 记录一次登录失败
+     *
+     * @param user 登录时读取的用户，内存中没有记录时以其失败次数为起点
+     * @return 本次失败触发锁定时返回锁定到期时间及失败次数，否则lockedUntil为null
+     */
+    public Failure recordFailure(User user) {
+        AIServiceProperties.LoginConfig config = aiServiceProperties.getLogin();
+        LocalDateTime now = LocalDateTime.now();
+        Failure[] result = new Failure[1];
+        attempts.compute(user.getUsername(), (username, current) -> {
+            Attempts next = current;
+            if (next == null) {
+                next = new Attempts(user.getId(), initialFailures(user, now));
+            } else if (next.lockedUntil != null && !next.isLocked(now)) {
+                // 上一次锁定已过期，重新计数
+                next.failures = 0;
+                next.lockedUntil = null;
+            }
+            next.failures++;
+            if (next.failures >= Math.max(1, config.getMaxFailedAttempts())) {
+                next.lockedUntil = now.plusMinutes(config.getLockMinutes());
+                // 锁定由调用方立即写入，不再需要批量写回
+                next.dirty = false;
+                result[0] = new Failure(next.failures, next.lockedUntil);
+            } else {
+                next.dirty = true;
+                result[0] = new Failure(next.failures, null);
+            }
+            return next;
+        });
+        return result[0];
+    }
+
+    /**
+     * 登录成功，清除内存中的失败记录（数据库由登录成功的写入一并重置）
+     */
+    public void recordSuccess(String username) {
+        attempts.remove(username);
+    }
+
+    /**
+     * 批量写回失败次数，并清除已写回且不在锁定期内的记录
+     */
+    public void flush() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> usernames = new ArrayList<>();
+        List<UserMapper.FailedAttemptsRow> rows = new ArrayList<>();
+        for (String username : attempts.keySet()) {
+            attempts.computeIfPresent(username, (key, current) -> {
+                if (current.dirty) {
+                    usernames.add(key);
+                    rows.add(new UserMapper.FailedAttemptsRow(current.userId, current.failures));
+                    current.dirty = false;
+                    return current;
+                }
+                return current.isLocked(now) ? current : null;
+            });
+        }
+        for (int from = 0; from < rows.size(); from += FLUSH_BATCH_SIZE) {
+            List<UserMapper.FailedAttemptsRow> batch = rows.subList(from, Math.min(rows.size(), from + FLUSH_BATCH_SIZE));
+            try {
+                userMapper.batchUpdateFailedLoginAttempts(batch);
+            } catch (RuntimeException e) {
+                // 写回失败不影响内存计数，重新标记后下一轮再写回
+                logger.warn("写回登录失败次数失败: {} 个用户, 错误: {}", batch.size(), e.getMessage());
+                for (String username : usernames.subList(from, Math.min(usernames.size(), from + FLUSH_BATCH_SIZE))) {
+                    attempts.computeIfPresent(username, (key, current) -> {
+                        current.dirty = current.lockedUntil == null;
+                        return current;
+                    });
+                }
+            }
+        }
+    }
+
+    private static int initialFailures(User user, LocalDateTime now) {
+        if (user.getLockedUntil() != null && !user.getLockedUntil().isAfter(now)) {
+            return 0;
+        }
+        return user.getFailedLoginAttempts() != null ? user.getFailedLoginAttempts() : 0;
+    }
+
+    /**
+     * 单个用户的失败记录，只在ConcurrentHashMap的compute内修改
+     */
+    private static final class Attempts {
+        private final Long userId;
+        private int failures;
+        private volatile LocalDateTime lockedUntil;
+        private boolean dirty;
+
+        Attempts(Long userId, int failures) {
+            this.userId = userId;
+            this.failures = failures;
+        }
+
+        boolean isLocked(LocalDateTime now) {
+            LocalDateTime until = lockedUntil;
+            return until != null && until.isAfter(now);
+        }
+    }
+
+    /**
+     * 一次登录失败的结果
+     */
+    public static final class Failure {
+        private final int failures;
+        private final LocalDateTime lockedUntil;
+
+        Failure(int failures, LocalDateTime lockedUntil) {
+            this.failures = failures;
+            this.lockedUntil = lockedUntil;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * 本次失败触发锁定时为锁定到期时间，否则为null
+         */
+        public LocalDateTime getLockedUntil() {
+            return lockedUntil;
+        }
+    }
+}
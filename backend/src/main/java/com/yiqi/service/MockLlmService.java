@@ -0,0 +1,390 @@
+package com.yiqi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yiqi.config.MockLlmProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模拟大模型服务
+ * 实现OpenAI兼容的/chat/completions（非流式与SSE流式），按配置的延迟分布、首token延迟、
+ * 生成速率和故障概率响应，供本地压测与故障演练时替代真实上游
+ */
+@Service
+@Profile("mock-llm")
+public class MockLlmService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockLlmService.class);
+
+    private static final String CONTENT = "这是模拟大模型生成的回答内容，用于本地压测、流式输出联调与故障演练。";
+    private static final long RESPONSE_TIMEOUT_MARGIN_MS = 10000;
+
+    /**
+     * 注入的故障类型，可通过请求头X-Mock-Fault强制指定
+     */
+    public enum Fault {
+        NONE,
+        ERROR,
+        RATE_LIMIT,
+        TIMEOUT,
+        DISCONNECT,
+        MALFORMED
+    }
+
+    @Autowired
+    private MockLlmProperties properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, new ThreadFactory() {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "yiqi-mock-llm-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 处理一次对话补全请求
+     *
+     * @param request OpenAI格式的请求体
+     * @param forcedFault 强制注入的故障（为空时按配置概率抽取）
+     * @return 非流式或故障时为DeferredResult，流式时为SSE响应
+     */
+    public Object chatCompletions(JsonNode request, String forcedFault) {
+        Random random = ThreadLocalRandom.current();
+        boolean stream = request.path("stream").asBoolean(false);
+        Fault fault = forcedFault != null && !forcedFault.isEmpty()
+            ? Fault.valueOf(forcedFault.trim().toUpperCase(Locale.ROOT))
+            : drawFault(random, stream);
+
+        increment("requests");
+        if (fault != Fault.NONE) {
+            increment("fault." + fault.name().toLowerCase(Locale.ROOT));
+        }
+
+        long latencyMs = properties.getLatency().sample(random);
+        long ttftMs = properties.getTimeToFirstToken().sample(random);
+        int tokens = completionTokens(request);
+
+        if (stream && (fault == Fault.NONE || fault == Fault.DISCONNECT || fault == Fault.MALFORMED)) {
+            increment("streams");
+            return stream(request, tokens, latencyMs + ttftMs, fault, random);
+        }
+
+        DeferredResult<ResponseEntity<Object>> result =
+            new DeferredResult<>(properties.getHangMs() + latencyMs + RESPONSE_TIMEOUT_MARGIN_MS);
+        switch (fault) {
+            case RATE_LIMIT:
+                schedule(latencyMs, () -> result.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()))
+                    .body(error("rate_limit_exceeded", "模拟限流"))));
+                break;
+            case ERROR:
+                schedule(latencyMs, () -> result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(error("server_error", "模拟上游错误"))));
+                break;
+            case TIMEOUT:
+                schedule(properties.getHangMs(), () -> result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(error("timeout", "模拟上游超时"))));
+                break;
+            case DISCONNECT:
+                schedule(latencyMs, () -> result.setErrorResult(new IOException("模拟连接断开")));
+                break;
+            case MALFORMED:
+                schedule(latencyMs, () -> result.setResult(ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"id\":\"mock-malformed\",\"choices\":[")));
+                break;
+            default:
+                long generationMs = Math.round(tokens * 1000 / Math.max(0.001, properties.getTokensPerSecond()));
+                schedule(latencyMs + ttftMs + generationMs, () -> {
+                    increment("completed");
+                    result.setResult(ResponseEntity.ok().body(completion(request, tokens)));
+                });
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * 获取运行统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        counters.forEach((name, value) -> statistics.put(name, value.get()));
+        statistics.put("activeStreams", activeStreams.get());
+        return statistics;
+    }
+
+    /**
+     * 清空运行统计
+     */
+    public void resetStatistics() {
+        counters.clear();
+    }
+
+    private ResponseBodyEmitter stream(JsonNode request, int tokens, long firstTokenDelayMs,
+                                       Fault fault, Random random) {
+        int tokensPerChunk = Math.max(1, properties.getTokensPerChunk());
+        int chunkCount = (tokens + tokensPerChunk - 1) / tokensPerChunk;
+        long intervalMs = Math.round(tokensPerChunk * 1000 / Math.max(0.001, properties.getTokensPerSecond()));
+        long generationMs = chunkCount * intervalMs;
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(firstTokenDelayMs + generationMs + RESPONSE_TIMEOUT_MARGIN_MS) {
+            @Override
+            protected void extendResponse(ServerHttpResponse outputMessage) {
+                super.extendResponse(outputMessage);
+                outputMessage.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+            }
+        };
+
+        StreamState state = new StreamState(request, tokens, tokensPerChunk, chunkCount, intervalMs, emitter);
+        // 故障至少在首个片段之后注入，此时响应头已提交，客户端看到的是中途异常而非错误状态码
+        state.faultAt = fault == Fault.NONE ? -1 : 1 + random.nextInt(Math.max(1, chunkCount - 1));
+        state.fault = fault;
+        emitter.onCompletion(() -> state.closed = true);
+        emitter.onTimeout(() -> state.closed = true);
+        emitter.onError(e -> state.closed = true);
+
+        activeStreams.incrementAndGet();
+        schedule(firstTokenDelayMs, () -> emitNext(state));
+        return emitter;
+    }
+
+    private void emitNext(StreamState state) {
+        if (state.closed) {
+            finishStream(state, "cancelled");
+            return;
+        }
+        try {
+            if (state.emitted == state.faultAt) {
+                if (state.fault == Fault.DISCONNECT) {
+                    state.emitter.completeWithError(new IOException("模拟连接断开"));
+                    finishStream(state, "disconnected");
+                    return;
+                }
+                send(state.emitter, "data: {\"id\":\"mock-malformed\",\"choices\":[\n\n");
+            }
+
+            if (state.emitted < state.chunkCount) {
+                int from = state.emitted * state.tokensPerChunk;
+                int to = Math.min(state.tokens, from + state.tokensPerChunk);
+                send(state.emitter, "data: " + chunk(state, state.emitted == 0, text(from, to), null) + "\n\n");
+                state.emitted++;
+                schedule(state.intervalMs, () -> emitNext(state));
+                return;
+            }
+
+            send(state.emitter, "data: " + chunk(state, false, null, "stop") + "\n\n");
+            if (state.request.path("stream_options").path("include_usage").asBoolean(false)) {
+                ObjectNode usageChunk = baseChunk(state);
+                usageChunk.putArray("choices");
+                usageChunk.set("usage", usage(state.request, state.tokens));
+                send(state.emitter, "data: " + usageChunk + "\n\n");
+            }
+            send(state.emitter, "data: [DONE]\n\n");
+            state.emitter.complete();
+            finishStream(state, "completed");
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            logger.debug("模拟流式输出中止: {}", e.getMessage());
+            finishStream(state, "cancelled");
+        }
+    }
+
+    private void finishStream(StreamState state, String outcome) {
+        if (!state.finished) {
+            state.finished = true;
+            activeStreams.decrementAndGet();
+            increment(outcome);
+        }
+    }
+
+    private Fault drawFault(Random random, boolean stream) {
+        double roll = random.nextDouble();
+        double threshold = properties.getRateLimitRate();
+        if (roll < threshold) {
+            return Fault.RATE_LIMIT;
+        }
+        threshold += properties.getErrorRate();
+        if (roll < threshold) {
+            return Fault.ERROR;
+        }
+        threshold += properties.getTimeoutRate();
+        if (roll < threshold) {
+            return Fault.TIMEOUT;
+        }
+        if (!stream) {
+            return Fault.NONE;
+        }
+        threshold += properties.getDisconnectRate();
+        if (roll < threshold) {
+            return Fault.DISCONNECT;
+        }
+        threshold += properties.getMalformedChunkRate();
+        return roll < threshold ? Fault.MALFORMED : Fault.NONE;
+    }
+
+    private int completionTokens(JsonNode request) {
+        int maxTokens = request.path("max_tokens").asInt(0);
+        int configured = Math.max(1, properties.getCompletionTokens());
+        return maxTokens > 0 ? Math.min(maxTokens, configured) : configured;
+    }
+
+    private ObjectNode completion(JsonNode request, int tokens) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "chatcmpl-mock-" + UUID.randomUUID());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", request.path("model").asText("mock-model"));
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", text(0, tokens));
+        choice.put("finish_reason", "stop");
+        response.set("usage", usage(request, tokens));
+        return response;
+    }
+
+    private ObjectNode chunk(StreamState state, boolean first, String content, String finishReason) {
+        ObjectNode chunk = baseChunk(state);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode delta = choice.putObject("delta");
+        if (first) {
+            delta.put("role", "assistant");
+        }
+        if (content != null) {
+            delta.put("content", content);
+        }
+        if (finishReason != null) {
+            choice.put("finish_reason", finishReason);
+        } else {
+            choice.putNull("finish_reason");
+        }
+        return chunk;
+    }
+
+    private ObjectNode baseChunk(StreamState state) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", state.id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", state.created);
+        chunk.put("model", state.request.path("model").asText("mock-model"));
+        return chunk;
+    }
+
+    private ObjectNode usage(JsonNode request, int completionTokens) {
+        int promptChars = 0;
+        JsonNode messages = request.path("messages");
+        if (messages instanceof ArrayNode) {
+            for (JsonNode message : messages) {
+                promptChars += message.path("content").asText("").length();
+            }
+        }
+        // 粗略按每2个字符1个token估算
+        int promptTokens = Math.max(1, promptChars / 2);
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    private ObjectNode error(String code, String message) {
+        ObjectNode body = objectMapper.createObjectNode();
+        ObjectNode error = body.putObject("error");
+        error.put("message", message);
+        error.put("type", code);
+        error.put("code", code);
+        return body;
+    }
+
+    /**
+     * 生成第from到第to个token的文本（每个字符计为一个token）
+     */
+    private static String text(int from, int to) {
+        StringBuilder builder = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            builder.append(CONTENT.charAt(i % CONTENT.length()));
+        }
+        return builder.toString();
+    }
+
+    private static void send(ResponseBodyEmitter emitter, String data) throws IOException {
+        emitter.send(data, MediaType.TEXT_PLAIN);
+    }
+
+    private void schedule(long delayMs, Runnable task) {
+        scheduler.schedule(task, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void increment(String name) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static class StreamState {
+        private final String id = "chatcmpl-mock-" + UUID.randomUUID();
+        private final long created = System.currentTimeMillis() / 1000;
+        private final JsonNode request;
+        private final int tokens;
+        private final int tokensPerChunk;
+        private final int chunkCount;
+        private final long intervalMs;
+        private final ResponseBodyEmitter emitter;
+        private Fault fault;
+        private int faultAt;
+        private int emitted;
+        private volatile boolean closed;
+        private boolean finished;
+
+        StreamState(JsonNode request, int tokens, int tokensPerChunk, int chunkCount, long intervalMs,
+                    ResponseBodyEmitter emitter) {
+            this.request = request;
+            this.tokens = tokens;
+            this.tokensPerChunk = tokensPerChunk;
+            this.chunkCount = chunkCount;
+            this.intervalMs = intervalMs;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希执行器
+ * BCrypt是CPU密集操作，放在固定大小的线程池与有界队列中执行：登录洪峰只占用这几个线程，
+ * Tomcat线程立即释放。队列已满或排队超过maxQueueWaitMs的任务不再执行，以503拒绝
+ */
+@Service
+public class PasswordHashingExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+    private Timer queueWait;
+    private Counter queueFull;
+    private Counter queueTimeout;
+
+    @PostConstruct
+    public void init() {
+        AIServiceProperties.LoginConfig config = aiServiceProperties.getLogin();
+        int threads = config.getHashThreads() > 0
+            ? config.getHashThreads()
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "yiqi-password-hash-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+        queueWait = Timer.builder("yiqi.auth.hash.queue.wait")
+            .description("密码哈希任务的排队时间")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        queueFull = Counter.builder("yiqi.auth.hash.rejected")
+            .description("被拒绝的密码哈希任务数")
+            .tag("reason", "queue_full")
+            .register(meterRegistry);
+        queueTimeout = Counter.builder("yiqi.auth.hash.rejected")
+            .description("被拒绝的密码哈希任务数")
+            .tag("reason", "queue_timeout")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.auth.hash.queue.size", executor, e -> e.getQueue().size())
+            .description("排队中的密码哈希任务数")
+            .register(meterRegistry);
+
+        logger.info("密码哈希执行器初始化完成: threads={}, queueCapacity={}, maxQueueWaitMs={}",
+                   threads, config.getQueueCapacity(), config.getMaxQueueWaitMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 在哈希线程上执行任务（含密码校验或编码以及随后的少量数据库写入）
+     *
+     * @return 异步结果；被拒绝时以ServiceBusyException异常完成
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waitedNanos = System.nanoTime() - enqueuedAt;
+                queueWait.record(waitedNanos, TimeUnit.NANOSECONDS);
+                if (waitedNanos > TimeUnit.MILLISECONDS.toNanos(aiServiceProperties.getLogin().getMaxQueueWaitMs())) {
+                    // 客户端很可能已放弃等待，跳过哈希以尽快消化积压
+                    queueTimeout.increment();
+                    future.completeExceptionally(new ServiceBusyException("登录请求过多，请稍后重试"));
+                    return;
+                }
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueFull.increment();
+            future.completeExceptionally(new ServiceBusyException("登录请求过多，请稍后重试"));
+        }
+        return future;
+    }
+}
@@ -0,0 +1,79 @@
+package com.yiqi.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 异步阶段的并发上限
+ * 阶段以返回future的方式执行，许可在future结束时归还，而不是在启动线程返回时；
+ * 超出上限的阶段排队等待，等待期间不占用线程，归还许可后在启动线程池上开始下一个阶段
+ */
+class PhaseConcurrencyLimiter {
+
+    private final int maxConcurrent;
+    private final Executor executor;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int running;
+
+    PhaseConcurrencyLimiter(int maxConcurrent, Executor executor) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.executor = executor;
+    }
+
+    /**
+     * 提交一个阶段，获得许可后在启动线程池上调用phase
+     *
+     * @param phase 启动阶段并返回其结果
+     * @return 阶段结束时结束的future
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> phase) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = phase.get();
+            } catch (Throwable e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((value, throwable) -> {
+                release();
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        boolean startNow;
+        synchronized (this) {
+            startNow = running < maxConcurrent;
+            if (startNow) {
+                running++;
+            } else {
+                waiting.add(start);
+            }
+        }
+        if (startNow) {
+            executor.execute(start);
+        }
+        return result;
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            // 许可直接转给下一个阶段
+            executor.execute(next);
+        }
+    }
+}
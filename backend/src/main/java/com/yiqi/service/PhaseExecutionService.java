@@ -0,0 +1,363 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.PhaseExecutionResponse;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.enums.PhaseExecutionStatus;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.event.SessionStateChangedEvent;
+import com.yiqi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 阶段异步执行服务
+ * 执行接口只在请求线程上校验阶段状态并读取推理上下文，随即返回执行ID；多代理推理与阶段总结在
+ * 独立的有界线程池中编排（上游调用仍经推理调度器排队），结果在短事务中保存并提交审核。
+ * 执行状态保存在进程内，经会话状态接口查询，开始与结束时发布会话状态变更事件由SSE推送。
+ * 推理前以条件更新获取阶段行上的执行权，重复请求返回已有的执行而不是再次发起推理
+ */
+@Service
+public class PhaseExecutionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhaseExecutionService.class);
+
+    @Autowired
+    private PhaseService phaseService;
+
+    @Autowired
+    private InferenceStatusService inferenceStatusService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, Execution> executions = new ConcurrentHashMap<>();
+    private final Map<String, Execution> latestExecutions = new ConcurrentHashMap<>();
+    private final Map<String, Execution> idempotentExecutions = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolTaskScheduler scheduler;
+    private Counter rejected;
+    private Counter deduplicated;
+
+    @PostConstruct
+    public void init() {
+        AIServiceProperties.PhaseExecutionConfig config = aiServiceProperties.getPhaseExecution();
+        int threads = Math.max(1, config.getMaxConcurrentPhases());
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "yiqi-phase-execution-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("yiqi-phase-execution-cleanup-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::evictFinished, Duration.ofMinutes(1));
+
+        rejected = Counter.builder("yiqi.phase.execution.rejected")
+            .description("因执行线程与队列已满被拒绝的阶段执行数")
+            .register(meterRegistry);
+        deduplicated = Counter.builder("yiqi.phase.execution.deduplicated")
+            .description("返回已有执行、未发起新推理的重复阶段执行请求数")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.phase.execution.running", executor, ThreadPoolExecutor::getActiveCount)
+            .description("正在执行的阶段数")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.phase.execution.queue.size", executor, e -> e.getQueue().size())
+            .description("排队中的阶段执行数")
+            .register(meterRegistry);
+
+        logger.info("阶段执行服务初始化完成: maxConcurrentPhases={}, queueCapacity={}",
+                   threads, config.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 受理阶段执行
+     * 重复请求（相同的Idempotency-Key，或同一阶段已有执行未结束）不会发起新的推理，而是返回已有的执行；
+     * 跨实例的重复请求由阶段行上的条件更新（执行权）拦截
+     *
+     * @param speculateNext 提交审核后是否预先执行下一阶段
+     * @param idempotencyKey 客户端提供的幂等键，可为null（此时按会话与阶段去重）
+     * @return 已受理的执行，重复请求时为已有的执行
+     * @throws IllegalStateException 如果阶段状态不允许执行
+     * @throws ServiceBusyException 如果执行线程与队列均已满
+     */
+    public PhaseExecutionResponse submit(Long sessionId, PhaseType phaseType, String topic, boolean speculateNext,
+                                         String idempotencyKey) {
+        AIServiceProperties.PhaseExecutionConfig config = aiServiceProperties.getPhaseExecution();
+        String requestKey = null;
+        if (idempotencyKey != null && !idempotencyKey.trim().isEmpty()) {
+            if (idempotencyKey.length() > config.getMaxIdempotencyKeyLength()) {
+                throw new IllegalArgumentException("Idempotency-Key长度不能超过" + config.getMaxIdempotencyKeyLength());
+            }
+            requestKey = key(sessionId, phaseType) + ":" + idempotencyKey;
+            Execution keyed = idempotentExecutions.get(requestKey);
+            if (keyed != null) {
+                return deduplicated(keyed, "idempotency_key");
+            }
+        }
+
+        String key = key(sessionId, phaseType);
+        Execution running = latestExecutions.get(key);
+        if (running != null && !running.status.isFinished()) {
+            return remember(requestKey, deduplicated(running, "running"), running);
+        }
+
+        PhaseService.PhaseExecutionPlan plan = phaseService.preparePhaseExecution(sessionId, phaseType, topic);
+        Execution execution = new Execution(UUID.randomUUID().toString(), sessionId, phaseType, plan.getAgents().size());
+        Execution current = latestExecutions.compute(key, (k, previous) ->
+            previous != null && !previous.status.isFinished() ? previous : execution);
+        if (current != execution) {
+            // 本实例上的并发请求已先一步受理
+            return remember(requestKey, deduplicated(current, "running"), current);
+        }
+
+        if (!phaseService.claimExecution(plan.getPhaseId(), execution.executionId, config.getClaimLeaseMinutes())) {
+            latestExecutions.remove(key, execution);
+            return attachToHolder(plan, requestKey);
+        }
+        executions.put(execution.executionId, execution);
+
+        try {
+            executor.execute(() -> run(execution, plan, speculateNext));
+        } catch (RejectedExecutionException e) {
+            executions.remove(execution.executionId);
+            latestExecutions.remove(key, execution);
+            releaseQuietly(plan, execution);
+            rejected.increment();
+            throw new ServiceBusyException("阶段执行请求过多，请稍后重试");
+        }
+
+        logger.info("已受理阶段执行: sessionId={}, phaseType={}, executionId={}",
+                   sessionId, phaseType, execution.executionId);
+        publishStateChanged(sessionId, "PHASE_EXECUTION_ACCEPTED");
+        return remember(requestKey, toResponse(execution), execution);
+    }
+
+    /**
+     * 获取会话的指定执行
+     *
+     * @return 执行不存在、已过保留期或不属于该会话时返回null
+     */
+    public PhaseExecutionResponse getExecution(Long sessionId, String executionId) {
+        Execution execution = executions.get(executionId);
+        if (execution == null || !execution.sessionId.equals(sessionId)) {
+            return null;
+        }
+        return toResponse(execution);
+    }
+
+    /**
+     * 获取会话各阶段最近一次执行
+     */
+    public List<PhaseExecutionResponse> getSessionExecutions(Long sessionId) {
+        List<PhaseExecutionResponse> responses = new ArrayList<>();
+        for (PhaseType phaseType : PhaseType.values()) {
+            Execution execution = latestExecutions.get(key(sessionId, phaseType));
+            if (execution != null) {
+                responses.add(toResponse(execution));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 执行权被其他执行持有：本实例的执行直接返回，其他实例的执行以执行中状态返回其执行ID
+     */
+    private PhaseExecutionResponse attachToHolder(PhaseService.PhaseExecutionPlan plan, String requestKey) {
+        PhaseType phaseType = plan.getPhaseType();
+        String holder = phaseService.findExecutionHolder(plan.getPhaseId());
+        if (holder == null) {
+            // 条件更新失败且没有持有者：阶段已不在进行中，或持有者恰好结束
+            throw new IllegalStateException(phaseType.getDisplayName() + "阶段当前状态不允许执行");
+        }
+        Execution local = executions.get(holder);
+        if (local != null) {
+            return remember(requestKey, deduplicated(local, "claimed"), local);
+        }
+        deduplicated.increment();
+        logger.info("阶段执行权由其他实例持有: sessionId={}, phaseType={}, executionId={}",
+                   plan.getSession().getId(), phaseType, holder);
+        PhaseExecutionResponse response = new PhaseExecutionResponse();
+        response.setExecutionId(holder);
+        response.setSessionId(plan.getSession().getId());
+        response.setPhaseType(phaseType);
+        response.setStatus(PhaseExecutionStatus.RUNNING);
+        response.setTotalAgents(plan.getAgents().size());
+        response.setCompletedAgents(0);
+        return response;
+    }
+
+    private PhaseExecutionResponse deduplicated(Execution execution, String reason) {
+        deduplicated.increment();
+        logger.debug("重复的阶段执行请求，返回已有执行: executionId={}, reason={}", execution.executionId, reason);
+        return toResponse(execution);
+    }
+
+    /**
+     * 记录幂等键对应的执行，同一幂等键的后续请求直接返回该执行（包括已结束的执行）
+     */
+    private PhaseExecutionResponse remember(String requestKey, PhaseExecutionResponse response, Execution execution) {
+        if (requestKey != null) {
+            idempotentExecutions.putIfAbsent(requestKey, execution);
+        }
+        return response;
+    }
+
+    private void run(Execution execution, PhaseService.PhaseExecutionPlan plan, boolean speculateNext) {
+        execution.startedAt = LocalDateTime.now();
+        execution.status = PhaseExecutionStatus.RUNNING;
+        String displayName = execution.phaseType.getDisplayName();
+        try {
+            ParallelInferenceResult result = phaseService.executePhaseInference(plan);
+            execution.completedAgents = result.getAgentResponses().size();
+            if (phaseService.completePhaseExecution(plan, execution.executionId, result, speculateNext)) {
+                finish(execution, PhaseExecutionStatus.SUCCEEDED, null);
+            } else {
+                finish(execution, PhaseExecutionStatus.FAILED, displayName + "阶段没有成功的代理响应");
+            }
+        } catch (Exception e) {
+            logger.error("阶段执行失败: sessionId={}, phaseType={}, executionId={}",
+                        execution.sessionId, execution.phaseType, execution.executionId, e);
+            releaseQuietly(plan, execution);
+            finish(execution, PhaseExecutionStatus.FAILED, displayName + "阶段执行失败: " + e.getMessage());
+        }
+        publishStateChanged(execution.sessionId, execution.status == PhaseExecutionStatus.SUCCEEDED
+            ? "PHASE_EXECUTION_SUCCEEDED" : "PHASE_EXECUTION_FAILED");
+    }
+
+    /**
+     * 释放执行权，失败时等待租约过期后由新的执行接管
+     */
+    private void releaseQuietly(PhaseService.PhaseExecutionPlan plan, Execution execution) {
+        try {
+            phaseService.releaseExecution(plan.getPhaseId(), execution.executionId);
+        } catch (RuntimeException e) {
+            logger.warn("释放阶段执行权失败: executionId={}, 错误: {}", execution.executionId, e.getMessage());
+        }
+    }
+
+    private void finish(Execution execution, PhaseExecutionStatus status, String errorMessage) {
+        execution.errorMessage = errorMessage;
+        execution.finishedAt = LocalDateTime.now();
+        execution.status = status;
+    }
+
+    private PhaseExecutionResponse toResponse(Execution execution) {
+        PhaseExecutionResponse response = new PhaseExecutionResponse();
+        response.setExecutionId(execution.executionId);
+        response.setSessionId(execution.sessionId);
+        response.setPhaseType(execution.phaseType);
+        response.setStatus(execution.status);
+        response.setTotalAgents(execution.totalAgents);
+        response.setErrorMessage(execution.errorMessage);
+        response.setSubmittedAt(execution.submittedAt);
+        response.setStartedAt(execution.startedAt);
+        response.setFinishedAt(execution.finishedAt);
+
+        Integer completedAgents = execution.completedAgents;
+        if (completedAgents == null && execution.status == PhaseExecutionStatus.RUNNING) {
+            // 执行中的进度取自推理状态，忽略同一阶段此前执行留下的状态
+            InferenceStatusService.SessionInferenceStatus inference = inferenceStatusService.getSessionInferenceStatus(
+                String.valueOf(execution.sessionId), execution.phaseType.name());
+            if (inference != null && inference.getStartTime() != null
+                && !inference.getStartTime().isBefore(execution.startedAt)) {
+                completedAgents = inference.getCompletedAgents();
+            }
+        }
+        response.setCompletedAgents(completedAgents != null ? completedAgents : 0);
+        return response;
+    }
+
+    /**
+     * 清除超过保留期的已结束执行
+     */
+    private void evictFinished() {
+        LocalDateTime expiredBefore = LocalDateTime.now()
+            .minusMinutes(aiServiceProperties.getPhaseExecution().getRetentionMinutes());
+        executions.values().removeIf(execution -> {
+            LocalDateTime finishedAt = execution.finishedAt;
+            if (finishedAt == null || !finishedAt.isBefore(expiredBefore)) {
+                return false;
+            }
+            latestExecutions.remove(key(execution.sessionId, execution.phaseType), execution);
+            return true;
+        });
+        idempotentExecutions.values().removeIf(execution -> !executions.containsKey(execution.executionId));
+    }
+
+    private void publishStateChanged(Long sessionId, String reason) {
+        eventPublisher.publishEvent(new SessionStateChangedEvent(sessionId, reason));
+    }
+
+    private static String key(Long sessionId, PhaseType phaseType) {
+        return sessionId + ":" + phaseType.name();
+    }
+
+    /**
+     * 单次阶段执行，状态只由执行线程写入
+     */
+    private static final class Execution {
+        private final String executionId;
+        private final Long sessionId;
+        private final PhaseType phaseType;
+        private final int totalAgents;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile PhaseExecutionStatus status = PhaseExecutionStatus.QUEUED;
+        private volatile Integer completedAgents;
+        private volatile String errorMessage;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        Execution(String executionId, Long sessionId, PhaseType phaseType, int totalAgents) {
+            this.executionId = executionId;
+            this.sessionId = sessionId;
+            this.phaseType = phaseType;
+            this.totalAgents = totalAgents;
+        }
+    }
+}
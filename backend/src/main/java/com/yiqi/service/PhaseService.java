@@ -1,18 +1,28 @@
 package com.yiqi.service;
 
+import com.yiqi.config.AIServiceProperties;
 import com.yiqi.dto.ai.AgentInferenceResponse;
+import com.yiqi.dto.ai.InferenceContext;
 import com.yiqi.dto.ai.ParallelInferenceResult;
 import com.yiqi.entity.*;
 import com.yiqi.enums.*;
+import com.yiqi.event.SessionStateChangedEvent;
 import com.yiqi.exception.*;
 import com.yiqi.mapper.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 阶段服务类
@@ -24,6 +34,8 @@ import java.util.List;
 @Service
 public class PhaseService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PhaseService.class);
+
     @Autowired
     private PhaseMapper phaseMapper;
 
@@ -42,232 +54,189 @@ public class PhaseService {
     @Autowired
     private AgentService agentService;
 
+    @Autowired
+    private SpeculativeExecutionService speculativeExecutionService;
+
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+    
+    @Autowired
+    private PhaseTimelineService phaseTimelineService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StateTransitionService stateTransitionService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
     /**
-     * 执行创意生成阶段
+     * 准备阶段执行：校验阶段状态与活跃代理，并构建推理上下文
+     * 只做读取，不开启事务，校验失败时由调用方同步返回错误。
+     * 阶段中已成功的代理响应保留，只有尚未成功（失败、超时或新加入会话）的代理参与推理
      * 
      * @param sessionId 会话ID
+     * @param phaseType 阶段类型
      * @param topic 头脑风暴主题
+     * @return 阶段执行计划
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
      * @throws IllegalStateException 如果阶段状态不允许执行
      */
-    @Transactional
-    public void executeIdeaGenerationPhase(Long sessionId, String topic) {
+    public PhaseExecutionPlan preparePhaseExecution(Long sessionId, PhaseType phaseType, String topic) {
         // 验证会话存在
         BrainstormSession session = getSessionById(sessionId);
         
-        // 获取创意生成阶段
-        Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, PhaseType.IDEA_GENERATION);
+        // 获取阶段
+        Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, phaseType);
         if (phase == null) {
-            throw new PhaseNotFoundException("创意生成阶段不存在");
+            throw new PhaseNotFoundException(phaseType.getDisplayName() + "阶段不存在");
         }
         
         // 检查阶段是否正在进行
         if (!phase.isInProgress()) {
-            throw new IllegalStateException("创意生成阶段当前状态不允许执行: " + phase.getStatus());
+            throw new IllegalStateException(phaseType.getDisplayName() + "阶段当前状态不允许执行: " + phase.getStatus());
         }
         
         // 获取会话的活跃代理
-        List<SessionAgent> sessionAgents = sessionAgentMapper.findActiveAgentsBySessionId(sessionId);
-        if (sessionAgents.isEmpty()) {
-            throw new IllegalStateException("会话没有活跃的代理");
+        List<Agent> activeAgents = loadActiveAgents(sessionId);
+        if (activeAgents.isEmpty()) {
+            throw new IllegalStateException("会话没有有效的活跃代理");
         }
         
-        // 获取代理详细信息
+        // 已成功的响应保留，其代理不再推理
+        List<AgentInferenceResponse> keptResponses = new ArrayList<>();
+        Set<Long> succeededAgentIds = new HashSet<>();
+        for (AgentResponse response : agentResponseMapper.findSuccessfulResponsesByPhaseId(phase.getId())) {
+            succeededAgentIds.add(response.getAgentId());
+            keptResponses.add(toInferenceResponse(response));
+        }
         List<Agent> agents = new ArrayList<>();
-        for (SessionAgent sessionAgent : sessionAgents) {
-            Agent agent = agentService.getAgentById(sessionAgent.getAgentId());
-            if (agent != null) {
+        for (Agent agent : activeAgents) {
+            if (!succeededAgentIds.contains(agent.getId())) {
                 agents.add(agent);
             }
         }
         
-        if (agents.isEmpty()) {
-            throw new IllegalStateException("无法获取有效的代理信息");
-        }
-        
-        // 构建会话上下文
-        String sessionContext = buildSessionContext(session, topic);
+        // 构建会话上下文，后续阶段包含前面阶段的结果
+        String sessionContext = phaseType.isFirst()
+            ? buildSessionContext(session, topic)
+            : buildSessionContextWithPreviousResults(session, topic, getPreviousPhaseResults(sessionId, phaseType));
         
-        try {
-            // 执行并行推理
-            ParallelInferenceResult result = aiInferenceService.processParallelInference(
-                agents, topic, sessionContext, sessionId.toString(), PhaseType.IDEA_GENERATION
-            );
-            
-            // 保存代理响应结果
-            saveAgentResponses(phase.getId(), result);
-            
-            // 如果有成功的响应，自动提交审核
-            if (result.hasSuccessfulResponses()) {
-                String summary = result.getPhaseSummary() != null ? 
-                    result.getPhaseSummary() : 
-                    generateDefaultSummary(result, PhaseType.IDEA_GENERATION);
-                
-                submitPhaseForApproval(sessionId, PhaseType.IDEA_GENERATION, summary);
-            } else {
-                // 如果没有成功的响应，标记阶段失败
-                throw new IllegalStateException("创意生成阶段没有成功的代理响应");
-            }
-            
-        } catch (Exception e) {
-            // 处理执行失败的情况
-            throw new IllegalStateException("创意生成阶段执行失败: " + e.getMessage(), e);
-        }
+        return new PhaseExecutionPlan(session, phase.getId(), phaseType, topic, agents, activeAgents,
+                                      keptResponses, sessionContext);
     }
 
     /**
-     * 执行技术可行性分析阶段
-     * 
-     * @param sessionId 会话ID
-     * @param topic 头脑风暴主题
-     * @throws SessionNotFoundException 如果会话不存在
-     * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许执行
+     * 执行阶段推理（输入未变时直接采用预执行结果）
+     * 不开启事务，推理期间不占用数据库连接。
+     * 保留了成功响应时只推理其余代理；有新的成功响应时才基于全部成功响应重新生成总结
      */
-    @Transactional
-    public void executeFeasibilityAnalysisPhase(Long sessionId, String topic) {
-        // 验证会话存在
-        BrainstormSession session = getSessionById(sessionId);
-        
-        // 获取技术可行性分析阶段
-        Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, PhaseType.FEASIBILITY_ANALYSIS);
-        if (phase == null) {
-            throw new PhaseNotFoundException("技术可行性分析阶段不存在");
-        }
-        
-        // 检查阶段是否正在进行
-        if (!phase.isInProgress()) {
-            throw new IllegalStateException("技术可行性分析阶段当前状态不允许执行: " + phase.getStatus());
+    public ParallelInferenceResult executePhaseInference(PhaseExecutionPlan plan) {
+        if (!plan.isPartial()) {
+            return runPhaseInference(plan.getSession(), plan.getPhaseType(), plan.getAgents(),
+                plan.getTopic(), plan.getSessionContext());
         }
         
-        // 获取会话的活跃代理
-        List<SessionAgent> sessionAgents = sessionAgentMapper.findActiveAgentsBySessionId(sessionId);
-        if (sessionAgents.isEmpty()) {
-            throw new IllegalStateException("会话没有活跃的代理");
-        }
-        
-        // 获取代理详细信息
-        List<Agent> agents = new ArrayList<>();
-        for (SessionAgent sessionAgent : sessionAgents) {
-            Agent agent = agentService.getAgentById(sessionAgent.getAgentId());
-            if (agent != null) {
-                agents.add(agent);
-            }
-        }
-        
-        if (agents.isEmpty()) {
-            throw new IllegalStateException("无法获取有效的代理信息");
+        BrainstormSession session = plan.getSession();
+        InferenceContext context = InferenceContext.interactive(String.valueOf(session.getUserId()));
+        ParallelInferenceResult result;
+        if (plan.getAgents().isEmpty()) {
+            result = new ParallelInferenceResult(new ArrayList<>());
+            result.complete();
+        } else {
+            result = aiInferenceService.processParallelInference(plan.getAgents(), plan.getTopic(),
+                plan.getSessionContext(), session.getId().toString(), plan.getPhaseType(), context, false);
         }
+        logger.info("部分重新执行阶段: sessionId={}, phaseType={}, 保留响应={}, 重新推理代理={}, 新成功={}",
+                   session.getId(), plan.getPhaseType(), plan.getKeptResponses().size(),
+                   plan.getAgents().size(), result.getSuccessfulAgents());
         
-        // 获取前面阶段的结果
-        String previousResults = getPreviousPhaseResults(sessionId, PhaseType.FEASIBILITY_ANALYSIS);
-        
-        // 构建会话上下文，包含前面阶段的结果
-        String sessionContext = buildSessionContextWithPreviousResults(session, topic, previousResults);
-        
-        try {
-            // 执行并行推理
-            ParallelInferenceResult result = aiInferenceService.processParallelInference(
-                agents, topic, sessionContext, sessionId.toString(), PhaseType.FEASIBILITY_ANALYSIS
-            );
-            
-            // 保存代理响应结果
-            saveAgentResponses(phase.getId(), result);
-            
-            // 如果有成功的响应，自动提交审核
-            if (result.hasSuccessfulResponses()) {
-                String summary = result.getPhaseSummary() != null ? 
-                    result.getPhaseSummary() : 
-                    generateDefaultSummary(result, PhaseType.FEASIBILITY_ANALYSIS);
-                
-                submitPhaseForApproval(sessionId, PhaseType.FEASIBILITY_ANALYSIS, summary);
-            } else {
-                // 如果没有成功的响应，标记阶段失败
-                throw new IllegalStateException("技术可行性分析阶段没有成功的代理响应");
-            }
-            
-        } catch (Exception e) {
-            // 处理执行失败的情况
-            throw new IllegalStateException("技术可行性分析阶段执行失败: " + e.getMessage(), e);
+        if (result.hasSuccessfulResponses()) {
+            List<AgentInferenceResponse> allSuccessful = new ArrayList<>(plan.getKeptResponses());
+            allSuccessful.addAll(result.getSuccessfulResponses());
+            result.setPhaseSummary(generatePhaseSummary(allSuccessful, plan.getPhaseType(), context));
         }
+        return result;
     }
 
     /**
-     * 执行缺点讨论阶段
+     * 获取阶段执行权
+     * 以条件更新原子地占用阶段行，同一阶段同时只有一个执行能进行推理（跨实例同样有效）
      * 
-     * @param sessionId 会话ID
-     * @param topic 头脑风暴主题
-     * @throws SessionNotFoundException 如果会话不存在
-     * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许执行
+     * @param leaseMinutes 执行权租约时长，持有者超过该时长未释放时视为已失效，可被接管
+     * @return 是否获得执行权；阶段不在进行中或执行权被其他执行持有时返回false
+     */
+    public boolean claimExecution(Long phaseId, String executionId, long leaseMinutes) {
+        LocalDateTime now = LocalDateTime.now();
+        return phaseMapper.claimExecution(phaseId, executionId, now, now.minusMinutes(leaseMinutes)) > 0;
+    }
+
+    /**
+     * 释放阶段执行权（执行权已被接管时不做任何修改）
+     */
+    public void releaseExecution(Long phaseId, String executionId) {
+        phaseMapper.releaseExecution(phaseId, executionId);
+    }
+
+    /**
+     * 获取当前持有阶段执行权的执行ID，没有持有者时返回null
+     */
+    public String findExecutionHolder(Long phaseId) {
+        Phase phase = phaseMapper.selectById(phaseId);
+        return phase != null ? phase.getExecutionId() : null;
+    }
+
+    /**
+     * 保存阶段推理结果，有成功的响应时自动提交审核，并释放执行权
+     * 
+     * @param executionId 持有执行权的执行ID
+     * @param speculateNext 提交审核后是否预先执行下一阶段
+     * @return 是否已提交审核；阶段没有任何成功的响应时只保存各代理的失败状态，阶段保持进行中
+     * @throws IllegalStateException 如果推理期间阶段状态已变更或执行权已被接管
      */
     @Transactional
-    public void executeDrawbackDiscussionPhase(Long sessionId, String topic) {
-        // 验证会话存在
-        BrainstormSession session = getSessionById(sessionId);
-        
-        // 获取缺点讨论阶段
-        Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, PhaseType.DRAWBACK_DISCUSSION);
-        if (phase == null) {
-            throw new PhaseNotFoundException("缺点讨论阶段不存在");
-        }
-        
-        // 检查阶段是否正在进行
-        if (!phase.isInProgress()) {
-            throw new IllegalStateException("缺点讨论阶段当前状态不允许执行: " + phase.getStatus());
+    public boolean completePhaseExecution(PhaseExecutionPlan plan, String executionId,
+                                          ParallelInferenceResult result, boolean speculateNext) {
+        Long sessionId = plan.getSession().getId();
+        PhaseType phaseType = plan.getPhaseType();
+        
+        // 推理期间阶段可能已被其他操作变更，执行权也可能因租约过期被接管
+        Phase phase = phaseMapper.selectById(plan.getPhaseId());
+        if (phase == null || !phase.isInProgress()) {
+            throw new IllegalStateException(phaseType.getDisplayName() + "阶段状态已变更，放弃保存推理结果");
         }
-        
-        // 获取会话的活跃代理
-        List<SessionAgent> sessionAgents = sessionAgentMapper.findActiveAgentsBySessionId(sessionId);
-        if (sessionAgents.isEmpty()) {
-            throw new IllegalStateException("会话没有活跃的代理");
+        if (!executionId.equals(phase.getExecutionId())) {
+            throw new IllegalStateException(phaseType.getDisplayName() + "阶段执行权已被其他执行接管，放弃保存推理结果");
         }
         
-        // 获取代理详细信息
-        List<Agent> agents = new ArrayList<>();
-        for (SessionAgent sessionAgent : sessionAgents) {
-            Agent agent = agentService.getAgentById(sessionAgent.getAgentId());
-            if (agent != null) {
-                agents.add(agent);
-            }
+        // 保存代理响应结果
+        saveAgentResponses(sessionId, phase.getId(), result);
+        releaseExecution(phase.getId(), executionId);
+        if (!result.hasSuccessfulResponses() && !plan.isPartial()) {
+            return false;
         }
         
-        if (agents.isEmpty()) {
-            throw new IllegalStateException("无法获取有效的代理信息");
+        // 有成功的响应，自动提交审核
+        String summary;
+        if (result.getPhaseSummary() != null) {
+            summary = result.getPhaseSummary();
+        } else if (!plan.isPartial()) {
+            summary = generateDefaultSummary(result, phaseType);
+        } else if (phase.getSummary() == null) {
+            summary = buildApprovedSummary(phaseType, agentResponseMapper.findSuccessfulResponsesByPhaseId(phase.getId()));
+        } else {
+            // 成功响应没有变化，保留原总结
+            summary = null;
         }
+        submitPhaseForApproval(sessionId, phaseType, summary);
         
-        // 获取前面阶段的结果
-        String previousResults = getPreviousPhaseResults(sessionId, PhaseType.DRAWBACK_DISCUSSION);
-        
-        // 构建会话上下文，包含前面阶段的结果
-        String sessionContext = buildSessionContextWithPreviousResults(session, topic, previousResults);
-        
-        try {
-            // 执行并行推理
-            ParallelInferenceResult result = aiInferenceService.processParallelInference(
-                agents, topic, sessionContext, sessionId.toString(), PhaseType.DRAWBACK_DISCUSSION
-            );
-            
-            // 保存代理响应结果
-            saveAgentResponses(phase.getId(), result);
-            
-            // 如果有成功的响应，自动提交审核
-            if (result.hasSuccessfulResponses()) {
-                String summary = result.getPhaseSummary() != null ? 
-                    result.getPhaseSummary() : 
-                    generateDefaultSummary(result, PhaseType.DRAWBACK_DISCUSSION);
-                
-                submitPhaseForApproval(sessionId, PhaseType.DRAWBACK_DISCUSSION, summary);
-            } else {
-                // 如果没有成功的响应，标记阶段失败
-                throw new IllegalStateException("缺点讨论阶段没有成功的代理响应");
-            }
-            
-        } catch (Exception e) {
-            // 处理执行失败的情况
-            throw new IllegalStateException("缺点讨论阶段执行失败: " + e.getMessage(), e);
+        if (speculateNext) {
+            speculateNextPhase(plan.getSession(), phaseType, plan.getTopic(), plan.getActiveAgents());
         }
+        return true;
     }
 
     /**
@@ -277,12 +246,13 @@ public class PhaseService {
      * @param phaseType 阶段类型
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许开始
+     * @throws StateConflictException 如果阶段状态不允许开始或已被并发修改
+     * @throws IllegalStateException 如果前置阶段未完成
      */
     @Transactional
     public void startPhase(Long sessionId, PhaseType phaseType) {
         // 验证会话存在
-        BrainstormSession session = getSessionById(sessionId);
+        getSessionById(sessionId);
         
         // 获取阶段
         Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, phaseType);
@@ -291,9 +261,19 @@ public class PhaseService {
         }
         
         // 检查阶段是否可以开始
-        if (!phase.canStart()) {
-            throw new IllegalStateException("阶段当前状态不允许开始: " + phase.getStatus());
+        PhaseTransition.START.check(phase.getStatus());
+        if (phase.getStatus() == PhaseStatus.REJECTED) {
+            // 被拒绝的阶段直接开始时全部重新执行
+            clearPhaseResponses(phase.getId());
         }
+        startPhase(sessionId, phase, PhaseTransition.START);
+    }
+
+    /**
+     * 以指定迁移开始阶段：校验前置阶段，条件更新阶段状态并切换会话的当前阶段
+     */
+    private void startPhase(Long sessionId, Phase phase, PhaseTransition transition) {
+        PhaseType phaseType = phase.getPhaseType();
         
         // 检查前置阶段是否已完成（除了第一个阶段）
         if (!phaseType.isFirst()) {
@@ -307,12 +287,10 @@ public class PhaseService {
         }
         
         // 开始阶段
-        phase.start();
-        phaseMapper.updateById(phase);
+        stateTransitionService.transition(phase, transition, null);
         
         // 更新会话的当前阶段
-        session.setCurrentPhase(phaseType);
-        sessionMapper.updateById(session);
+        sessionMapper.updateCurrentPhase(sessionId, phaseType, LocalDateTime.now());
         
         // 为所有活跃代理创建响应记录
         createAgentResponseRecords(phase.getId(), sessionId);
@@ -322,33 +300,7 @@ public class PhaseService {
             // 创意生成阶段需要在启动后立即执行推理
             // 这里只是标记阶段已开始，实际的推理执行需要调用executeIdeaGenerationPhase方法
         }
-    }
-
-    /**
-     * 执行指定阶段的推理处理
-     * 
-     * @param sessionId 会话ID
-     * @param phaseType 阶段类型
-     * @param topic 头脑风暴主题
-     * @throws SessionNotFoundException 如果会话不存在
-     * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许执行
-     */
-    @Transactional
-    public void executePhase(Long sessionId, PhaseType phaseType, String topic) {
-        switch (phaseType) {
-            case IDEA_GENERATION:
-                executeIdeaGenerationPhase(sessionId, topic);
-                break;
-            case FEASIBILITY_ANALYSIS:
-                executeFeasibilityAnalysisPhase(sessionId, topic);
-                break;
-            case DRAWBACK_DISCUSSION:
-                executeDrawbackDiscussionPhase(sessionId, topic);
-                break;
-            default:
-                throw new IllegalArgumentException("不支持的阶段类型: " + phaseType);
-        }
+        publishStateChanged(sessionId, "PHASE_STARTED");
     }
 
     /**
@@ -359,7 +311,8 @@ public class PhaseService {
      * @param summary 阶段总结
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许提交审核
+     * @throws StateConflictException 如果阶段状态不允许提交审核或已被并发修改
+     * @throws IllegalStateException 如果阶段没有成功的代理响应
      */
     @Transactional
     public void submitPhaseForApproval(Long sessionId, PhaseType phaseType, String summary) {
@@ -373,9 +326,7 @@ public class PhaseService {
         }
         
         // 检查阶段是否可以提交审核
-        if (!phase.canSubmitForApproval()) {
-            throw new IllegalStateException("阶段当前状态不允许提交审核: " + phase.getStatus());
-        }
+        PhaseTransition.SUBMIT.check(phase.getStatus());
         
         // 检查是否有足够的成功响应
         Long successfulResponses = agentResponseMapper.countByPhaseIdAndStatus(phase.getId(), AgentResponse.STATUS_SUCCESS);
@@ -384,8 +335,8 @@ public class PhaseService {
         }
         
         // 提交审核
-        phase.submitForApproval(summary);
-        phaseMapper.updateById(phase);
+        stateTransitionService.transition(phase, PhaseTransition.SUBMIT, summary);
+        publishStateChanged(sessionId, "PHASE_SUBMITTED");
     }
 
     /**
@@ -395,7 +346,7 @@ public class PhaseService {
      * @param phaseType 阶段类型
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许审核
+     * @throws StateConflictException 如果阶段状态不允许审核或已被并发修改
      */
     @Transactional
     public void approvePhase(Long sessionId, PhaseType phaseType) {
@@ -409,53 +360,31 @@ public class PhaseService {
         }
         
         // 检查阶段是否可以审核
-        if (!phase.canReview()) {
-            throw new IllegalStateException("阶段当前状态不允许审核: " + phase.getStatus());
-        }
+        PhaseTransition.APPROVE.check(phase.getStatus());
         
         // 查询该阶段下所有状态为SUCCESS的agent响应记录
         List<AgentResponse> successfulResponses = agentResponseMapper.findSuccessfulResponsesByPhaseId(phase.getId());
         
-        // 将所有agent成功生成的content内容收集并存储在phases表的summary字段当中
-        if (!successfulResponses.isEmpty()) {
-            StringBuilder summary = new StringBuilder();
-            summary.append("=== ").append(phaseType.getDisplayName()).append("阶段所有代理响应 ===\n\n");
-            
-            // 按顺序添加每个成功代理的响应内容
-            for (AgentResponse response : successfulResponses) {
-                // 获取代理信息
-                Agent agent = agentService.getAgentById(response.getAgentId());
-                if (agent != null) {
-                    summary.append("【").append(agent.getRoleType()).append(" - ")
-                           .append(agent.getName()).append("】\n");
-                }
-                summary.append(response.getContent()).append("\n\n");
-            }
-            
-            // 更新阶段的summary字段
-            phase.setSummary(summary.toString());
-            phaseMapper.updateById(phase);
-        }
-        
-        // 审核通过
-        phase.approve();
-        phaseMapper.updateById(phase);
-        
-        // 标记阶段为完成
-        phase.complete();
-        phaseMapper.updateById(phase);
+        // 将所有agent成功生成的content内容收集并存储在phases表的summary字段当中，
+        // 与审核通过、完成在同一条条件更新中写入
+        String approvedSummary = successfulResponses.isEmpty() ? null :
+            buildApprovedSummary(phaseType, successfulResponses);
+        stateTransitionService.transition(phase, PhaseTransition.APPROVE, approvedSummary);
+        publishStateChanged(sessionId, "PHASE_APPROVED");
         
         // 检查是否为最后阶段
         if (phaseType.isLast()) {
             // 完成整个会话
-            session.complete();
-            sessionMapper.updateById(session);
+            stateTransitionService.transition(session, SessionTransition.COMPLETE, null);
         } else {
             // 准备下一阶段
             PhaseType nextPhaseType = phaseType.getNext();
             if (nextPhaseType != null) {
                 // 自动开始下一阶段
                 startPhase(sessionId, nextPhaseType);
+                
+                // 下一阶段已预执行且输入未变时，直接提交其结果
+                commitSpeculativeResult(session, nextPhaseType);
             }
         }
     }
@@ -467,7 +396,7 @@ public class PhaseService {
      * @param phaseType 阶段类型
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许审核
+     * @throws StateConflictException 如果阶段状态不允许审核或已被并发修改
      */
     @Transactional
     public void rejectPhase(Long sessionId, PhaseType phaseType) {
@@ -480,17 +409,14 @@ public class PhaseService {
             throw new PhaseNotFoundException("阶段不存在: " + phaseType);
         }
         
-        // 检查阶段是否可以审核
-        if (!phase.canReview()) {
-            throw new IllegalStateException("阶段当前状态不允许审核: " + phase.getStatus());
-        }
-        
         // 审核拒绝
-        phase.reject();
-        phaseMapper.updateById(phase);
+        stateTransitionService.transition(phase, PhaseTransition.REJECT, null);
         
-        // 清除该阶段的所有代理响应，准备重新执行
-        clearPhaseResponses(phase.getId());
+        // 基于被拒绝结果的下一阶段预执行作废
+        speculativeExecutionService.discard(sessionId, phaseType.getNext());
+        
+        // 代理响应保留，重新执行时按模式清除全部或只清除未成功的响应
+        publishStateChanged(sessionId, "PHASE_REJECTED");
     }
 
     /**
@@ -498,12 +424,14 @@ public class PhaseService {
      * 
      * @param sessionId 会话ID
      * @param phaseType 阶段类型
+     * @param mode 重新执行模式：ALL清除所有响应与总结；FAILED_ONLY保留成功的响应与总结，
+     *             之后的执行只推理失败、超时或新加入会话的代理
      * @throws SessionNotFoundException 如果会话不存在
      * @throws PhaseNotFoundException 如果阶段不存在
-     * @throws IllegalStateException 如果阶段状态不允许重新执行
+     * @throws StateConflictException 如果阶段状态不允许重新执行或已被并发修改
      */
     @Transactional
-    public void retryPhase(Long sessionId, PhaseType phaseType) {
+    public void retryPhase(Long sessionId, PhaseType phaseType, PhaseRetryMode mode) {
         // 验证会话存在
         getSessionById(sessionId);
         
@@ -514,16 +442,20 @@ public class PhaseService {
         }
         
         // 检查阶段是否可以重新执行
-        if (phase.getStatus() != PhaseStatus.REJECTED) {
-            throw new IllegalStateException("只有被拒绝的阶段才能重新执行: " + phase.getStatus());
+        PhaseTransition transition = mode == PhaseRetryMode.FAILED_ONLY
+            ? PhaseTransition.RETRY_FAILED : PhaseTransition.RETRY;
+        transition.check(phase.getStatus());
+        speculativeExecutionService.discard(sessionId, phaseType.getNext());
+        
+        if (mode == PhaseRetryMode.FAILED_ONLY) {
+            // 未成功的响应重置为处理中，成功的响应保留
+            agentResponseMapper.resetUnsuccessfulByPhaseId(phase.getId(), LocalDateTime.now());
+        } else {
+            clearPhaseResponses(phase.getId());
         }
         
-        // 重置阶段状态
-        phase.reset();
-        phaseMapper.updateById(phase);
-        
-        // 重新开始阶段
-        startPhase(sessionId, phaseType);
+        // 重置并重新开始阶段，一次条件更新完成
+        startPhase(sessionId, phase, transition);
     }
 
     /**
@@ -682,10 +614,13 @@ public class PhaseService {
     private void createAgentResponseRecords(Long phaseId, Long sessionId) {
         List<SessionAgent> activeAgents = sessionAgentMapper.findActiveAgentsBySessionId(sessionId);
         
+        // 已有响应记录的代理（重新执行失败代理时保留的记录）不再创建
+        Set<Long> existingAgentIds = new HashSet<>();
+        for (AgentResponse response : agentResponseMapper.findByPhaseId(phaseId)) {
+            existingAgentIds.add(response.getAgentId());
+        }
         for (SessionAgent sessionAgent : activeAgents) {
-            // 检查是否已存在响应记录
-            AgentResponse existingResponse = agentResponseMapper.findByPhaseIdAndAgentId(phaseId, sessionAgent.getAgentId());
-            if (existingResponse == null) {
+            if (!existingAgentIds.contains(sessionAgent.getAgentId())) {
                 AgentResponse response = new AgentResponse(phaseId, sessionAgent.getAgentId());
                 agentResponseMapper.insert(response);
             }
@@ -693,13 +628,41 @@ public class PhaseService {
     }
 
     /**
-     * 清除阶段的所有响应记录
+     * 清除阶段的所有响应记录（单条语句删除）
      */
     private void clearPhaseResponses(Long phaseId) {
-        List<AgentResponse> responses = agentResponseMapper.findByPhaseId(phaseId);
-        for (AgentResponse response : responses) {
-            agentResponseMapper.deleteById(response.getId());
+        agentResponseMapper.deleteByPhaseId(phaseId);
+    }
+
+    /**
+     * 将保留的成功响应还原为推理响应，用于与新响应一起生成阶段总结
+     */
+    private AgentInferenceResponse toInferenceResponse(AgentResponse response) {
+        Agent agent = agentService.getAgentById(response.getAgentId());
+        AgentInferenceResponse inferenceResponse = new AgentInferenceResponse(response.getAgentId(),
+            agent != null ? agent.getName() : "未知代理",
+            agent != null ? agent.getRoleType() : "UNKNOWN");
+        inferenceResponse.setStatus(AgentResponse.STATUS_SUCCESS);
+        inferenceResponse.setContent(response.getContent());
+        inferenceResponse.setProcessingTimeMs(response.getResponseTimeMs());
+        return inferenceResponse;
+    }
+
+    /**
+     * 基于全部成功响应生成阶段总结，生成失败时退回为各代理响应的拼接
+     */
+    private String generatePhaseSummary(List<AgentInferenceResponse> successfulResponses, PhaseType phaseType,
+                                        InferenceContext context) {
+        try {
+            return aiInferenceService.generatePhaseSummary(successfulResponses, phaseType, context)
+                .get(aiInferenceService.resultTimeoutSeconds(context), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("生成阶段总结被中断: phaseType={}", phaseType);
+        } catch (Exception e) {
+            logger.warn("生成阶段总结失败: phaseType={}, 错误: {}", phaseType, e.getMessage());
         }
+        return generateDefaultSummary(new ParallelInferenceResult(successfulResponses), phaseType);
     }
 
     /**
@@ -719,7 +682,8 @@ public class PhaseService {
     /**
      * 保存代理响应结果
      */
-    private void saveAgentResponses(Long phaseId, ParallelInferenceResult result) {
+    private void saveAgentResponses(Long sessionId, Long phaseId, ParallelInferenceResult result) {
+        long start = System.nanoTime();
         for (AgentInferenceResponse response : result.getAgentResponses()) {
             // 查找现有的响应记录
             AgentResponse agentResponse = agentResponseMapper.findByPhaseIdAndAgentId(
@@ -735,6 +699,7 @@ public class PhaseService {
                 } else {
                     agentResponse.markFailed(response.getErrorMessage(), response.getProcessingTimeMs());
                 }
+                agentResponse.recordUsage(response.getModel(), response.getPromptTokens(), response.getCompletionTokens());
                 agentResponseMapper.updateById(agentResponse);
             } else {
                 // 创建新记录
@@ -746,9 +711,14 @@ public class PhaseService {
                 } else {
                     agentResponse.markFailed(response.getErrorMessage(), response.getProcessingTimeMs());
                 }
+                agentResponse.recordUsage(response.getModel(), response.getPromptTokens(), response.getCompletionTokens());
                 agentResponseMapper.insert(agentResponse);
             }
         }
+        long end = System.nanoTime();
+        inferenceMetrics.recordPersistence("save_responses", end - start);
+        phaseTimelineService.recordPersistence(result.getTimeline(), "save_responses", start, end);
+        publishStateChanged(sessionId, "RESPONSES_SAVED");
     }
 
     /**
@@ -782,6 +752,15 @@ public class PhaseService {
      * @return 前面阶段的结果文本
      */
     private String getPreviousPhaseResults(Long sessionId, PhaseType currentPhaseType) {
+        return getPreviousPhaseResults(sessionId, currentPhaseType, null);
+    }
+
+    /**
+     * 获取前面阶段的结果
+     * 
+     * @param assumeApproved 视为已审核通过的待审核阶段（预执行时使用），其总结按审核通过时的规则生成
+     */
+    private String getPreviousPhaseResults(Long sessionId, PhaseType currentPhaseType, PhaseType assumeApproved) {
         StringBuilder results = new StringBuilder();
         
         // 根据当前阶段获取需要的前面阶段
@@ -796,16 +775,20 @@ public class PhaseService {
         
         for (PhaseType phaseType : previousPhases) {
             Phase phase = phaseMapper.findBySessionIdAndPhaseType(sessionId, phaseType);
-            if (phase != null && phase.isCompleted()) {
+            boolean pendingApproval = phase != null && phaseType == assumeApproved
+                && phase.getStatus() == PhaseStatus.WAITING_APPROVAL;
+            if (phase != null && (phase.isCompleted() || pendingApproval)) {
                 results.append("=== ").append(phaseType.getDisplayName()).append("阶段结果 ===\n");
                 
+                List<AgentResponse> responses = agentResponseMapper.findSuccessfulResponsesByPhaseId(phase.getId());
+                
                 // 添加阶段总结
-                if (phase.getSummary() != null && !phase.getSummary().trim().isEmpty()) {
-                    results.append("阶段总结：\n").append(phase.getSummary()).append("\n\n");
+                String summary = pendingApproval ? buildApprovedSummary(phaseType, responses) : phase.getSummary();
+                if (summary != null && !summary.trim().isEmpty()) {
+                    results.append("阶段总结：\n").append(summary).append("\n\n");
                 }
                 
                 // 添加成功的代理响应
-                List<AgentResponse> responses = agentResponseMapper.findSuccessfulResponsesByPhaseId(phase.getId());
                 for (AgentResponse response : responses) {
                     // 获取代理信息
                     Agent agent = agentService.getAgentById(response.getAgentId());
@@ -823,6 +806,118 @@ public class PhaseService {
         return results.toString();
     }
 
+    /**
+     * 执行阶段推理，输入与预执行一致时直接采用预执行结果
+     */
+    private ParallelInferenceResult runPhaseInference(BrainstormSession session, PhaseType phaseType,
+                                                      List<Agent> agents, String topic, String sessionContext) {
+        ParallelInferenceResult speculative = speculativeExecutionService.take(session.getId(), phaseType,
+            SpeculativeExecutionService.inputHash(topic, sessionContext, agents), true);
+        if (speculative != null) {
+            return speculative;
+        }
+        return aiInferenceService.processParallelInference(
+            agents, topic, sessionContext, session.getId().toString(), phaseType,
+            InferenceContext.interactive(String.valueOf(session.getUserId()))
+        );
+    }
+
+    /**
+     * 以待审核阶段的结果预先执行下一阶段，失败不影响当前阶段
+     */
+    private void speculateNextPhase(BrainstormSession session, PhaseType phaseType, String topic, List<Agent> agents) {
+        PhaseType nextPhaseType = phaseType.getNext();
+        if (nextPhaseType == null) {
+            return;
+        }
+        try {
+            String sessionContext = buildSessionContextWithPreviousResults(session, topic,
+                getPreviousPhaseResults(session.getId(), nextPhaseType, phaseType));
+            speculativeExecutionService.speculate(session.getId(), nextPhaseType,
+                String.valueOf(session.getUserId()), topic, agents, sessionContext);
+        } catch (Exception e) {
+            logger.warn("启动预执行失败: sessionId={}, phaseType={}", session.getId(), nextPhaseType, e);
+        }
+    }
+
+    /**
+     * 提交下一阶段的预执行结果：结果已就绪、输入未变且全部代理成功时保存响应并直接提交审核
+     * 与阶段执行一样先获取阶段行上的执行权，执行权被并发的执行请求持有时交由该执行处理
+     */
+    private void commitSpeculativeResult(BrainstormSession session, PhaseType phaseType) {
+        String topic = speculativeExecutionService.getSpeculatedTopic(session.getId(), phaseType);
+        if (topic == null) {
+            return;
+        }
+        Phase phase = phaseMapper.findBySessionIdAndPhaseType(session.getId(), phaseType);
+        String executionId = "speculative-" + UUID.randomUUID();
+        if (!claimExecution(phase.getId(), executionId,
+                            aiServiceProperties.getPhaseExecution().getClaimLeaseMinutes())) {
+            logger.info("阶段执行权已被占用，不提交预执行结果: sessionId={}, phaseType={}", session.getId(), phaseType);
+            return;
+        }
+        
+        ParallelInferenceResult result;
+        List<Agent> agents;
+        try {
+            agents = loadActiveAgents(session.getId());
+            String sessionContext = buildSessionContextWithPreviousResults(session, topic,
+                getPreviousPhaseResults(session.getId(), phaseType));
+            result = speculativeExecutionService.take(session.getId(), phaseType,
+                SpeculativeExecutionService.inputHash(topic, sessionContext, agents), false);
+            if (result != null) {
+                saveAgentResponses(session.getId(), phase.getId(), result);
+            }
+        } finally {
+            releaseExecution(phase.getId(), executionId);
+        }
+        if (result == null) {
+            return;
+        }
+        
+        String summary = result.getPhaseSummary() != null ?
+            result.getPhaseSummary() :
+            generateDefaultSummary(result, phaseType);
+        submitPhaseForApproval(session.getId(), phaseType, summary);
+
+        // 继续预执行后续阶段
+        speculateNextPhase(session, phaseType, topic, agents);
+    }
+
+    /**
+     * 获取会话活跃代理的详细信息
+     */
+    private List<Agent> loadActiveAgents(Long sessionId) {
+        List<Agent> agents = new ArrayList<>();
+        for (SessionAgent sessionAgent : sessionAgentMapper.findActiveAgentsBySessionId(sessionId)) {
+            Agent agent = agentService.getAgentById(sessionAgent.getAgentId());
+            if (agent != null) {
+                agents.add(agent);
+            }
+        }
+        return agents;
+    }
+
+    /**
+     * 生成审核通过时写入的阶段总结（所有成功代理的响应）
+     */
+    private String buildApprovedSummary(PhaseType phaseType, List<AgentResponse> successfulResponses) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("=== ").append(phaseType.getDisplayName()).append("阶段所有代理响应 ===\n\n");
+        
+        // 按顺序添加每个成功代理的响应内容
+        for (AgentResponse response : successfulResponses) {
+            // 获取代理信息
+            Agent agent = agentService.getAgentById(response.getAgentId());
+            if (agent != null) {
+                summary.append("【").append(agent.getRoleType()).append(" - ")
+                       .append(agent.getName()).append("】\n");
+            }
+            summary.append(response.getContent()).append("\n\n");
+        }
+        return summary.toString();
+    }
+
     /**
      * 构建包含前面阶段结果的会话上下文
      * 
@@ -846,4 +941,86 @@ public class PhaseService {
         
         return context.toString();
     }
+
+    /**
+     * 发布会话状态变更事件（事务提交后推送给订阅方）
+     */
+    private void publishStateChanged(Long sessionId, String reason) {
+        eventPublisher.publishEvent(new SessionStateChangedEvent(sessionId, reason));
+    }
+
+    /**
+     * 阶段执行计划：执行前读取的会话、代理与推理上下文
+     */
+    public static final class PhaseExecutionPlan {
+        private final BrainstormSession session;
+        private final Long phaseId;
+        private final PhaseType phaseType;
+        private final String topic;
+        private final List<Agent> agents;
+        private final List<Agent> activeAgents;
+        private final List<AgentInferenceResponse> keptResponses;
+        private final String sessionContext;
+
+        PhaseExecutionPlan(BrainstormSession session, Long phaseId, PhaseType phaseType, String topic,
+                           List<Agent> agents, List<Agent> activeAgents,
+                           List<AgentInferenceResponse> keptResponses, String sessionContext) {
+            this.session = session;
+            this.phaseId = phaseId;
+            this.phaseType = phaseType;
+            this.topic = topic;
+            this.agents = agents;
+            this.activeAgents = activeAgents;
+            this.keptResponses = keptResponses;
+            this.sessionContext = sessionContext;
+        }
+
+        public BrainstormSession getSession() {
+            return session;
+        }
+
+        public Long getPhaseId() {
+            return phaseId;
+        }
+
+        public PhaseType getPhaseType() {
+            return phaseType;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        /**
+         * 本次参与推理的代理（已有成功响应的代理除外）
+         */
+        public List<Agent> getAgents() {
+            return agents;
+        }
+
+        /**
+         * 会话的全部活跃代理
+         */
+        public List<Agent> getActiveAgents() {
+            return activeAgents;
+        }
+
+        /**
+         * 之前执行中保留的成功响应
+         */
+        public List<AgentInferenceResponse> getKeptResponses() {
+            return keptResponses;
+        }
+
+        /**
+         * 是否只重新执行部分代理（保留了成功的响应）
+         */
+        public boolean isPartial() {
+            return !keptResponses.isEmpty();
+        }
+
+        public String getSessionContext() {
+            return sessionContext;
+        }
+    }
 }
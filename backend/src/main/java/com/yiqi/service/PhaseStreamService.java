@@ -0,0 +1,141 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.service.stream.ReplayableStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阶段流式推理的续传服务
+ * 按会话与阶段保留最近一次流式推理的事件缓冲，客户端断线后凭Last-Event-ID重连，
+ * 补发缺失的事件并接入仍在进行的推理，不再重复调用上游模型
+ */
+@Service
+public class PhaseStreamService {
+
+    private static final String ENDPOINT = "/api/parallel-inference/sessions/{sessionId}/phases/{phaseType}/execute/stream";
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+
+    private final Map<String, ReplayableStream> streams = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("yiqi-stream-cleanup-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::evictExpiredStreams, Duration.ofMinutes(1));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        for (ReplayableStream stream : streams.values()) {
+            stream.discard();
+        }
+        streams.clear();
+    }
+
+    /**
+     * 为会话阶段开始一个新的流，替换该阶段上一次的流
+     */
+    public ReplayableStream open(Long sessionId, String phaseType, String userKey) {
+        evictExpiredStreams();
+        AIServiceProperties.StreamConfig config = aiServiceProperties.getStream();
+        String key = key(sessionId, phaseType);
+        ReplayableStream stream = new ReplayableStream(key, userKey, config.getMemoryEvents(), spillFile(key),
+            (emitter, event) -> inferenceMetrics.timeEmitterSend(ENDPOINT, () -> emitter.send(event)));
+        ReplayableStream previous = streams.put(key, stream);
+        if (previous != null) {
+            previous.retire();
+        }
+        return stream;
+    }
+
+    /**
+     * 订阅流，先补发ID大于lastEventId的事件
+     */
+    public SseEmitter subscribe(ReplayableStream stream, long lastEventId) {
+        SseEmitter emitter = new SseEmitter(aiServiceProperties.getStream().getEmitterTimeoutMs());
+        emitter.onCompletion(() -> stream.detach(emitter));
+        emitter.onTimeout(() -> stream.detach(emitter));
+        emitter.onError(e -> stream.detach(emitter));
+        stream.attach(emitter, lastEventId);
+        return emitter;
+    }
+
+    /**
+     * 断线重连：接入会话阶段最近一次的流
+     *
+     * @return 流不存在、已过期或不属于该用户时返回null
+     */
+    public SseEmitter resume(Long sessionId, String phaseType, String userKey, long lastEventId) {
+        ReplayableStream stream = streams.get(key(sessionId, phaseType));
+        if (stream == null || !stream.getUserKey().equals(userKey)) {
+            return null;
+        }
+        return subscribe(stream, lastEventId);
+    }
+
+    /**
+     * 淘汰超过保留时间的已结束流；数量仍超过上限时按结束时间淘汰最早的已结束流
+     */
+    private void evictExpiredStreams() {
+        AIServiceProperties.StreamConfig config = aiServiceProperties.getStream();
+        long threshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.getRetentionMinutes());
+        streams.values().removeIf(stream -> {
+            if (stream.isFinished() && stream.getFinishedAtMillis() < threshold) {
+                stream.discard();
+                return true;
+            }
+            return false;
+        });
+
+        int excess = streams.size() - Math.max(1, config.getMaxStreams());
+        if (excess > 0) {
+            streams.values().stream()
+                .filter(ReplayableStream::isFinished)
+                .sorted(Comparator.comparingLong(ReplayableStream::getFinishedAtMillis))
+                .limit(excess)
+                .forEach(stream -> {
+                    if (streams.remove(stream.getKey(), stream)) {
+                        stream.discard();
+                    }
+                });
+        }
+    }
+
+    private Path spillFile(String key) {
+        String dir = aiServiceProperties.getStream().getSpillDir();
+        Path base = dir == null || dir.trim().isEmpty()
+            ? Paths.get(System.getProperty("java.io.tmpdir"), "yiqi-streams")
+            : Paths.get(dir);
+        return base.resolve(key.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + UUID.randomUUID() + ".bin");
+    }
+
+    private static String key(Long sessionId, String phaseType) {
+        return sessionId + ":" + phaseType;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yiqi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.parallel.PhaseTimelineView;
+import com.yiqi.service.timeline.PhaseTimeline;
+import com.yiqi.service.timeline.TimelineSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 阶段执行时间线服务
+ * 按会话与阶段保留最近一次执行的区间树（LRU，有上限），可选地把结束的时间线写入磁盘；
+ * 时间线记录发起执行的用户，读取方据此校验访问权限
+ */
+@Service
+public class PhaseTimelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhaseTimelineService.class);
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, PhaseTimeline> timelines = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 开始记录一次阶段执行，同一会话阶段的上一次记录被替换
+     *
+     * @param ownerId 发起执行的用户ID
+     * @return 未开启时返回null
+     */
+    public PhaseTimeline start(String sessionId, String phaseType, String ownerId) {
+        AIServiceProperties.TimelineConfig config = aiServiceProperties.getTimeline();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        PhaseTimeline timeline = new PhaseTimeline(sessionId, phaseType, UUID.randomUUID().toString(), ownerId,
+                                                   config.getMaxSpansPerTimeline());
+        synchronized (timelines) {
+            timelines.put(key(sessionId, phaseType), timeline);
+            while (timelines.size() > Math.max(1, config.getMaxEntries())) {
+                String eldest = timelines.keySet().iterator().next();
+                timelines.remove(eldest);
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * 结束阶段执行的根区间
+     */
+    public void finish(PhaseTimeline timeline) {
+        if (timeline == null) {
+            return;
+        }
+        timeline.getRoot().end();
+        persist(timeline);
+    }
+
+    /**
+     * 记录阶段结果的持久化区间（发生在阶段推理结束之后）
+     */
+    public void recordPersistence(PhaseTimeline timeline, String operation, long startNanos, long endNanos) {
+        if (timeline == null) {
+            return;
+        }
+        timeline.getRoot().record("persist", startNanos, endNanos).attr("operation", operation);
+        persist(timeline);
+    }
+
+    /**
+     * 获取会话阶段最近一次执行的时间线
+     *
+     * @return 不存在时返回null
+     */
+    public PhaseTimelineView getTimeline(String sessionId, String phaseType) {
+        PhaseTimeline timeline;
+        synchronized (timelines) {
+            timeline = timelines.get(key(sessionId, phaseType));
+        }
+        if (timeline != null) {
+            return timeline.toView();
+        }
+
+        Path file = file(sessionId, phaseType);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), PhaseTimelineView.class);
+        } catch (IOException e) {
+            logger.warn("读取阶段时间线失败: file={}, 错误: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 时间线的根区间，未开启时为空区间
+     */
+    public static TimelineSpan root(PhaseTimeline timeline) {
+        return timeline != null ? timeline.getRoot() : TimelineSpan.NOOP;
+    }
+
+    private void persist(PhaseTimeline timeline) {
+        Path file = file(timeline.getSessionId(), timeline.getPhaseType());
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), timeline.toView());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("写入阶段时间线失败: sessionId={}, phaseType={}, 错误: {}",
+                       timeline.getSessionId(), timeline.getPhaseType(), e.getMessage());
+        }
+    }
+
+    private Path file(String sessionId, String phaseType) {
+        String dir = aiServiceProperties.getTimeline().getPersistDir();
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        return Paths.get(dir, safeName(sessionId), safeName(phaseType) + ".json");
+    }
+
+    private static String safeName(String value) {
+        return String.valueOf(value).replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    private static String key(String sessionId, String phaseType) {
+        return sessionId + ":" + phaseType;
+    }
+}
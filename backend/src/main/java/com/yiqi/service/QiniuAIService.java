@@ -1,36 +1,32 @@
 package com.yiqi.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.yiqi.config.AIServiceProperties;
 import com.yiqi.dto.ai.AIMessage;
+import com.yiqi.dto.ai.InferenceContext;
 import com.yiqi.dto.ai.QiniuAIRequest;
 import com.yiqi.dto.ai.QiniuAIResponse;
 import com.yiqi.exception.AIServiceException;
-import okhttp3.*;
+import com.yiqi.service.llm.ModelRouter;
+import com.yiqi.service.timeline.TimelineSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 七牛云AI推理服务
- * 负责与七牛云AI推理API的集成，提供AI推理功能
+ * 推理调用的统一入口：相同请求先合并，再经调度器排队、重试与熔断保护，由模型路由器选择具体的提供方
  */
 @Service
 public class QiniuAIService {
     
     private static final Logger logger = LoggerFactory.getLogger(QiniuAIService.class);
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
-    
-    @Autowired
-    private AIServiceProperties aiServiceProperties;
     
     @Autowired
     private RetryService retryService;
@@ -38,33 +34,45 @@ public class QiniuAIService {
     @Autowired
     private AIServiceHealthMonitor healthMonitor;
     
-    private OkHttpClient httpClient;
-    private ObjectMapper objectMapper;
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
     
-    @PostConstruct
-    public void init() {
-        // 初始化HTTP客户端
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(aiServiceProperties.getQiniu().getTimeout(), TimeUnit.MILLISECONDS)
-                .readTimeout(aiServiceProperties.getQiniu().getTimeout(), TimeUnit.MILLISECONDS)
-                .writeTimeout(aiServiceProperties.getQiniu().getTimeout(), TimeUnit.MILLISECONDS)
-                .build();
-        
-        this.objectMapper = new ObjectMapper();
-        
-        logger.info("QiniuAIService initialized with base URL: {}", 
-                   aiServiceProperties.getQiniu().getBaseUrl());
+    @Autowired
+    private ModelRouter modelRouter;
+    
+    @Autowired
+    private InferenceCoalescer inferenceCoalescer;
+    
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+    
+    /**
+     * 发送AI推理请求（按系统交互式流量调度）
+     * 
+     * @param systemPrompt 系统提示词
+     * @param userPrompt 用户输入
+     * @return 异步返回AI响应内容
+     */
+    public CompletableFuture<String> sendInferenceRequest(String systemPrompt, String userPrompt) {
+        return sendInferenceRequest(systemPrompt, userPrompt, InferenceContext.interactive(null));
     }
     
     /**
      * 发送AI推理请求
+     * 与在途的相同请求（流量类别、模型、角色与提示词均一致）共享一次上游调用
      * 
      * @param systemPrompt 系统提示词
      * @param userPrompt 用户输入
+     * @param context 调用上下文，决定调度类别与用户公平性
      * @return 异步返回AI响应内容
      */
-    public CompletableFuture<String> sendInferenceRequest(String systemPrompt, String userPrompt) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<String> sendInferenceRequest(String systemPrompt, String userPrompt, InferenceContext context) {
+        return inferenceCoalescer.execute(inferenceCoalescer.key(context, systemPrompt, userPrompt), context,
+                sharedContext -> doSendInferenceRequest(systemPrompt, userPrompt, sharedContext));
+    }
+    
+    private CompletableFuture<String> doSendInferenceRequest(String systemPrompt, String userPrompt, InferenceContext context) {
+        return inferenceScheduler.submit(context, () -> {
             // 检查服务是否可用
             if (!healthMonitor.isServiceAvailable()) {
                 throw new AIServiceException("AI_SERVICE_UNAVAILABLE", "AI服务当前不可用，熔断器已开启");
@@ -72,13 +80,14 @@ public class QiniuAIService {
             
             // 使用重试服务执行推理请求
             RetryService.RetryConfig retryConfig = retryService.createAIInferenceConfig();
+            AtomicInteger attempts = new AtomicInteger();
             
             try {
                 String result = retryService.executeWithRetry(() -> {
+                    TimelineSpan attemptSpan = context.getSpan().start("attempt").attr("attempt", attempts.incrementAndGet());
                     try {
                         // 构建请求消息
                         QiniuAIRequest request = new QiniuAIRequest();
-                        request.setModel(aiServiceProperties.getQiniu().getModel());
                         request.setMessages(Arrays.asList(
                             AIMessage.system(systemPrompt),
                             AIMessage.user(userPrompt)
@@ -88,7 +97,7 @@ public class QiniuAIService {
                         // 发送请求并获取响应
                         QiniuAIResponse response;
                         try {
-                            response = sendSingleRequestWithFallback(request);
+                            response = modelRouter.complete(request, context.withSpan(attemptSpan));
                         } catch (IOException e) {
                             throw new AIServiceException("AI_IO_ERROR", "网络请求失败: " + e.getMessage(), e);
                         }
@@ -100,121 +109,94 @@ public class QiniuAIService {
                         }
                         
                         logger.debug("AI推理成功，响应长度: {}", content.length());
+                        attemptSpan.attr("outcome", InferenceMetrics.SUCCESS);
                         return content;
                         
                     } catch (Exception e) {
                         logger.error("AI推理请求失败", e);
+                        attemptSpan.attr("outcome", InferenceMetrics.FAILURE).attr("error", e.getMessage());
                         if (e instanceof AIServiceException) {
                             throw e;
                         }
                         throw new AIServiceException("AI_REQUEST_FAILED", "AI推理请求失败: " + e.getMessage(), e);
+                    } finally {
+                        attemptSpan.end();
                     }
                 }, retryConfig, "AI推理请求");
                 
                 // 记录成功
                 healthMonitor.recordSuccess();
+                inferenceMetrics.recordRequestAttempts(attempts.get(), InferenceMetrics.SUCCESS);
                 return result;
                 
             } catch (Exception e) {
                 // 记录失败
                 healthMonitor.recordFailure();
+                inferenceMetrics.recordRequestAttempts(attempts.get(), InferenceMetrics.FAILURE);
                 throw e;
             }
         });
     }
     
     /**
-     * 发送流式AI推理请求
+     * 发送流式AI推理请求（按系统交互式流量调度）
      * 
      * @param systemPrompt 系统提示词
      * @param userPrompt 用户输入
      * @param responseHandler 响应处理回调
      */
     public void sendStreamingInferenceRequest(String systemPrompt, String userPrompt, StreamingResponseHandler responseHandler) {
+        sendStreamingInferenceRequest(systemPrompt, userPrompt, InferenceContext.interactive(null), responseHandler);
+    }
+    
+    /**
+     * 发送流式AI推理请求
+     * 相同请求订阅同一条上游token流；调度槽位在流结束或出错时归还
+     * 
+     * @param systemPrompt 系统提示词
+     * @param userPrompt 用户输入
+     * @param context 调用上下文，决定调度类别与用户公平性
+     * @param responseHandler 响应处理回调
+     */
+    public void sendStreamingInferenceRequest(String systemPrompt, String userPrompt, InferenceContext context,
+                                              StreamingResponseHandler responseHandler) {
         // 检查服务是否可用
         if (!healthMonitor.isServiceAvailable()) {
             responseHandler.onError(new AIServiceException("AI_SERVICE_UNAVAILABLE", "AI服务当前不可用，熔断器已开启"));
             return;
         }
         
-        try {
-            // 构建请求消息
-            QiniuAIRequest request = new QiniuAIRequest();
-            request.setModel(aiServiceProperties.getQiniu().getModel());
-            request.setMessages(Arrays.asList(
-                AIMessage.system(systemPrompt),
-                AIMessage.user(userPrompt)
-            ));
-            request.setStream(true);
-            
-            // 发送流式请求
-            sendStreamingRequestWithFallback(request, responseHandler);
-            
-            // 记录成功
-            healthMonitor.recordSuccess();
-            
-        } catch (Exception e) {
-            logger.error("流式AI推理请求失败", e);
-            // 记录失败
-            healthMonitor.recordFailure();
-            responseHandler.onError(e);
-        }
+        inferenceCoalescer.stream(inferenceCoalescer.key(context, systemPrompt, userPrompt), context, responseHandler,
+                (sharedContext, sharedHandler) -> doSendStreamingInferenceRequest(systemPrompt, userPrompt, sharedContext, sharedHandler));
     }
     
-    /**
-     * 带备用URL的请求发送
-     */
-    private QiniuAIResponse sendSingleRequestWithFallback(QiniuAIRequest request) throws IOException {
-        // 首先尝试主URL
-        try {
-            String primaryUrl = aiServiceProperties.getQiniu().getBaseUrl() + "/chat/completions";
-            return sendSingleRequest(request, primaryUrl);
-        } catch (IOException e) {
-            logger.warn("主URL请求失败，尝试备用URL: {}", e.getMessage());
-            
-            // 如果主URL失败，尝试备用URL
-            String backupUrl = aiServiceProperties.getQiniu().getBackupUrl() + "/chat/completions";
-            return sendSingleRequest(request, backupUrl);
-        }
-    }
-    
-    /**
-     * 发送单次请求
-     */
-    private QiniuAIResponse sendSingleRequest(QiniuAIRequest request, String url) throws IOException {
-        // 序列化请求体
-        String requestBody = objectMapper.writeValueAsString(request);
-        logger.debug("发送AI推理请求到: {}", url);
-        
-        // 构建HTTP请求
-        Request httpRequest = new Request.Builder()
-                .url(url)
-                .post(RequestBody.create(requestBody, JSON))
-                .addHeader("Authorization", "Bearer " + aiServiceProperties.getQiniu().getApiKey())
-                .addHeader("Content-Type", "application/json")
-                .build();
-        
-        // 发送请求
-        try (Response response = httpClient.newCall(httpRequest).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "无响应体";
-                throw new IOException("HTTP请求失败: " + response.code() + " " + response.message() + 
-                                    ", 响应体: " + errorBody);
-            }
-            
-            String responseBody = response.body().string();
-            logger.debug("收到AI推理响应，长度: {}", responseBody.length());
-            
-            // 解析响应
-            QiniuAIResponse aiResponse = objectMapper.readValue(responseBody, QiniuAIResponse.class);
-            
-            // 验证响应
-            if (aiResponse.getChoices() == null || aiResponse.getChoices().isEmpty()) {
-                throw new IOException("AI响应格式错误：缺少choices字段");
+    private void doSendStreamingInferenceRequest(String systemPrompt, String userPrompt, InferenceContext context,
+                                                 StreamingResponseHandler responseHandler) {
+        inferenceScheduler.submitStreaming(context, release -> {
+            StreamingResponseHandler handler = new SlotReleasingHandler(responseHandler, release);
+            try {
+                // 构建请求消息
+                QiniuAIRequest request = new QiniuAIRequest();
+                request.setMessages(Arrays.asList(
+                    AIMessage.system(systemPrompt),
+                    AIMessage.user(userPrompt)
+                ));
+                request.setStream(true);
+                request.setStreamOptions(new QiniuAIRequest.StreamOptions(true));
+                
+                // 发送流式请求
+                modelRouter.stream(request, context, handler);
+                
+                // 记录成功
+                healthMonitor.recordSuccess();
+                
+            } catch (Exception e) {
+                logger.error("流式AI推理请求失败", e);
+                // 记录失败
+                healthMonitor.recordFailure();
+                handler.onError(e);
             }
-            
-            return aiResponse;
-        }
+        }, responseHandler::onError);
     }
     
     /**
@@ -224,7 +206,8 @@ public class QiniuAIService {
         try {
             CompletableFuture<String> future = sendInferenceRequest(
                 "You are a helpful assistant.", 
-                "Hello, this is a connection test."
+                "Hello, this is a connection test.",
+                InferenceContext.probe()
             );
             
             String response = future.get(30, TimeUnit.SECONDS);
@@ -270,97 +253,39 @@ public class QiniuAIService {
     }
     
     /**
-     * 带备用URL的流式请求发送
+     * 在流结束时归还调度槽位的处理器包装，保证只回调一次终止事件
      */
-    private void sendStreamingRequestWithFallback(QiniuAIRequest request, StreamingResponseHandler responseHandler) {
-        // 首先尝试主URL
-        try {
-            String primaryUrl = aiServiceProperties.getQiniu().getBaseUrl() + "/chat/completions";
-            sendStreamingRequest(request, primaryUrl, responseHandler);
-            return;
-        } catch (Exception e) {
-            logger.warn("主URL流式请求失败，尝试备用URL: {}", e.getMessage());
-        }
+    private static class SlotReleasingHandler implements StreamingResponseHandler {
+        private final StreamingResponseHandler delegate;
+        private final Runnable release;
+        private final AtomicBoolean terminated = new AtomicBoolean(false);
         
-        // 如果主URL失败，尝试备用URL
-        try {
-            String backupUrl = aiServiceProperties.getQiniu().getBackupUrl() + "/chat/completions";
-            sendStreamingRequest(request, backupUrl, responseHandler);
-        } catch (Exception e) {
-            logger.error("备用URL流式请求失败", e);
-            responseHandler.onError(e);
+        SlotReleasingHandler(StreamingResponseHandler delegate, Runnable release) {
+            this.delegate = delegate;
+            this.release = release;
         }
-    }
-    
-    /**
-     * 发送流式请求
-     */
-    private void sendStreamingRequest(QiniuAIRequest request, String url, StreamingResponseHandler responseHandler) throws IOException {
-        // 序列化请求体
-        String requestBody = objectMapper.writeValueAsString(request);
-        logger.debug("发送流式AI推理请求到: {}", url);
         
-        // 构建HTTP请求
-        Request httpRequest = new Request.Builder()
-                .url(url)
-                .post(RequestBody.create(requestBody, JSON))
-                .addHeader("Authorization", "Bearer " + aiServiceProperties.getQiniu().getApiKey())
-                .addHeader("Content-Type", "application/json")
-                .build();
-        
-        // 发送流式请求
-        httpClient.newCall(httpRequest).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                responseHandler.onError(e);
+        @Override
+        public void onData(String data) {
+            if (!terminated.get()) {
+                delegate.onData(data);
             }
-            
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "无响应体";
-                    responseHandler.onError(new IOException("HTTP请求失败: " + response.code() + " " + response.message() + 
-                                    ", 响应体: " + errorBody));
-                    return;
-                }
-                
-                try (ResponseBody responseBody = response.body()) {
-                    if (responseBody == null) {
-                        responseHandler.onError(new IOException("响应体为空"));
-                        return;
-                    }
-                    
-                    // 处理流式响应
-                    processStreamingResponse(responseBody, responseHandler);
-                }
+        }
+        
+        @Override
+        public void onComplete() {
+            if (terminated.compareAndSet(false, true)) {
+                release.run();
+                delegate.onComplete();
             }
-        });
-    }
-    
-    /**
-     * 处理流式响应
-     */
-    private void processStreamingResponse(ResponseBody responseBody, StreamingResponseHandler responseHandler) throws IOException {
-        // 根据七牛云AI API的流式响应格式来解析数据
-        // 七牛云AI的流式响应格式是SSE（Server-Sent Events）格式
-        // 每行以"data: "开头，结束时发送"[DONE]"
+        }
         
-        // 读取响应流
-        java.io.BufferedReader reader = new java.io.BufferedReader(responseBody.charStream());
-        String line;
-        while ((line = reader.readLine()) != null) {
-            // 解析流式响应数据
-            if (line.startsWith("data: ")) {
-                String data = line.substring(6);
-                if ("[DONE]".equals(data)) {
-                    // 流结束
-                    responseHandler.onComplete();
-                    break;
-                } else {
-                    // 处理数据片段
-                    responseHandler.onData(data);
-                }
+        @Override
+        public void onError(Throwable throwable) {
+            if (terminated.compareAndSet(false, true)) {
+                release.run();
+                delegate.onError(throwable);
             }
         }
     }
-}
+}
\ No newline at end of file
@@ -15,6 +15,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.enums.TrafficClass;
 
 /**
  * 七牛云AI推理服务 - 专门用于报告生成
@@ -38,10 +40,13 @@ public class ReportQiniuService {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final InferenceScheduler inferenceScheduler;
 
-    public ReportQiniuService(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public ReportQiniuService(RestTemplate restTemplate, ObjectMapper objectMapper,
+                              InferenceScheduler inferenceScheduler) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.inferenceScheduler = inferenceScheduler;
     }
 
     /**
@@ -51,13 +56,28 @@ public class ReportQiniuService {
      * @return 最终报告总结
      */
     public String generateReportSummary(List<String> phaseSummaries) {
+        return generateReportSummary(phaseSummaries, null);
+    }
+
+    /**
+     * 生成报告总结
+     * 
+     * @param phaseSummaries 三个阶段的总结
+     * @param userKey 报告所属用户，用于调度公平性
+     * @return 最终报告总结
+     */
+    public String generateReportSummary(List<String> phaseSummaries, String userKey) {
         try {
             logger.info("开始生成报告总结，阶段数量: {}", phaseSummaries.size());
 
             String systemPrompt = buildReportSystemPrompt();
             String userPrompt = buildReportUserPrompt(phaseSummaries);
 
-            String response = callQiniuApi(systemPrompt, userPrompt);
+            // 经调度器排队，与交互式推理共享上游并发
+            String response = inferenceScheduler.submit(
+                InferenceContext.of(TrafficClass.REPORT, userKey),
+                () -> callQiniuApi(systemPrompt, userPrompt)
+            ).join();
             
             logger.info("报告总结生成成功");
             return response;
@@ -58,6 +58,9 @@ public class ReportService {
     @Autowired
     private BrainstormSessionMapper sessionMapper;
 
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+
     /**
      * 根据会话ID生成报告
      * 
@@ -107,6 +110,7 @@ public class ReportService {
      */
     @Async
     public CompletableFuture<Void> generateReportContentAsync(Long reportId) {
+        long start = System.nanoTime();
         try {
             logger.info("开始异步生成报告内容，报告ID: {}", reportId);
 
@@ -118,8 +122,10 @@ public class ReportService {
             // 获取三个阶段的总结
             List<String> phaseSummaries = getPhaseSummaries(report.getSessionId());
 
-            // 使用七牛云生成报告总结
-            String reportSummary = qiniuService.generateReportSummary(phaseSummaries);
+            // 使用七牛云生成报告总结（报告流量类别，按会话所属用户公平排队）
+            BrainstormSession session = sessionMapper.selectById(report.getSessionId());
+            String userKey = session != null ? String.valueOf(session.getUserId()) : null;
+            String reportSummary = qiniuService.generateReportSummary(phaseSummaries, userKey);
 
             // 构建完整报告内容（仅文本，不包含图像）
             Map<String, Object> reportContent = buildReportContent(
@@ -130,9 +136,11 @@ public class ReportService {
             report.markAsGenerated();
             reportMapper.updateById(report);
 
+            inferenceMetrics.recordReportGeneration(InferenceMetrics.SUCCESS, System.nanoTime() - start);
             logger.info("报告内容生成完成，报告ID: {}", reportId);
 
         } catch (Exception e) {
+            inferenceMetrics.recordReportGeneration(InferenceMetrics.FAILURE, System.nanoTime() - start);
             logger.error("异步生成报告内容失败，报告ID: {}", reportId, e);
             
             // 标记报告生成失败
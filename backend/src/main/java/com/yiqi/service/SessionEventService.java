@@ -0,0 +1,427 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.SessionStatusResponse;
+import com.yiqi.event.InferenceProgressEvent;
+import com.yiqi.event.SessionStateChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话状态推送服务
+ * 订阅会话、阶段与代理推理进度的变更事件，以SSE推送给该会话的订阅方，替代客户端轮询。
+ * 合并窗口内的多次变更只推送一次（会话状态只查询一次数据库，推理进度只推送各阶段的最新值）；
+ * 订阅时先推送当前快照。没有订阅方的会话不做任何处理
+ */
+@Service
+public class SessionEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventService.class);
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private InferenceStatusService inferenceStatusService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    // 单个订阅方允许积压的待发送事件数，超过时断开
+    private static final int MAX_PENDING_EVENTS = 100;
+
+    private final Map<Long, SessionChannel> channels = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("yiqi-session-events-");
+        scheduler.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        for (SessionChannel channel : channels.values()) {
+            List<Subscriber> subscribers;
+            synchronized (channel) {
+                subscribers = new ArrayList<>(channel.subscribers);
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        channels.clear();
+    }
+
+    /**
+     * 订阅会话状态事件
+     * 订阅时先推送一次快照；会话已结束时推送快照后立即关闭
+     *
+     * @return 订阅数已达上限时返回null
+     */
+    public SseEmitter subscribe(Long sessionId) {
+        AIServiceProperties.EventsConfig config = aiServiceProperties.getEvents();
+        SseEmitter emitter = new SseEmitter(config.getEmitterTimeoutMs());
+        while (true) {
+            SessionChannel channel = channels.computeIfAbsent(sessionId, SessionChannel::new);
+            if (isFull(channel, config)) {
+                return null;
+            }
+            Subscriber subscriber = new Subscriber(emitter);
+            // 快照的读取与订阅方的登记在刷新锁内完成：之前的推送已包含在快照中，之后的推送排在快照之后
+            synchronized (channel.refresh) {
+                SessionEventSnapshot snapshot;
+                try {
+                    snapshot = snapshot(channel);
+                } catch (RuntimeException e) {
+                    detachIfEmpty(channel);
+                    throw e;
+                }
+                synchronized (channel) {
+                    if (channel.closed) {
+                        continue;
+                    }
+                    if (channel.subscribers.size() >= config.getMaxSubscribersPerSession()) {
+                        return null;
+                    }
+                    subscriber.pending.addLast(SseEmitter.event().name("snapshot").data(snapshot));
+                    // 快照由本线程发送，期间的新事件排在快照之后
+                    subscriber.draining = true;
+                    if (snapshot.getSession().getSessionStatus() != null
+                        && snapshot.getSession().getSessionStatus().isTerminated()) {
+                        subscriber.closing = true;
+                    }
+                    channel.subscribers.add(subscriber);
+                }
+            }
+            emitter.onCompletion(() -> detach(channel, emitter));
+            emitter.onTimeout(() -> detach(channel, emitter));
+            emitter.onError(e -> detach(channel, emitter));
+            drain(channel, subscriber);
+            return emitter;
+        }
+    }
+
+    /**
+     * 会话或阶段状态变更（事务内发布的事件在提交后处理）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionStateChanged(SessionStateChangedEvent event) {
+        SessionChannel channel = channels.get(event.getSessionId());
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel.pending) {
+            channel.sessionDirty = true;
+            scheduleFlush(channel);
+        }
+    }
+
+    /**
+     * 阶段推理进度变更
+     */
+    @EventListener
+    public void onInferenceProgress(InferenceProgressEvent event) {
+        Long sessionId = parseSessionId(event.getSessionId());
+        SessionChannel channel = sessionId != null ? channels.get(sessionId) : null;
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel.pending) {
+            channel.pendingInference.put(event.getPhaseType(), event.getStatus());
+            scheduleFlush(channel);
+        }
+    }
+
+    /**
+     * 当前订阅连接数
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (SessionChannel channel : channels.values()) {
+            synchronized (channel) {
+                count += channel.subscribers.size();
+            }
+        }
+        return count;
+    }
+
+    private void scheduleFlush(SessionChannel channel) {
+        if (!channel.flushScheduled) {
+            channel.flushScheduled = true;
+            long delay = Math.max(0L, aiServiceProperties.getEvents().getCoalesceMs());
+            scheduler.schedule(() -> flush(channel), Instant.now().plusMillis(delay));
+        }
+    }
+
+    /**
+     * 推送合并窗口内积累的变更
+     * 同一通道同一时间只有一次推送在执行（推送结束后才允许安排下一次）；
+     * 状态在刷新锁内读取并加入各订阅方的待发送队列，与订阅时的快照互斥，保证每个订阅方看到的状态不回退；
+     * 发送在锁外进行，接收缓慢的客户端不阻塞其他会话的推送
+     */
+    private void flush(SessionChannel channel) {
+        List<Subscriber> targets = new ArrayList<>();
+        try {
+            synchronized (channel.refresh) {
+                boolean sessionDirty;
+                List<InferenceStatusService.SessionInferenceStatus> inference;
+                synchronized (channel.pending) {
+                    sessionDirty = channel.sessionDirty;
+                    inference = new ArrayList<>(channel.pendingInference.values());
+                    channel.sessionDirty = false;
+                    channel.pendingInference.clear();
+                }
+                synchronized (channel) {
+                    if (channel.closed || channel.subscribers.isEmpty()) {
+                        return;
+                    }
+                }
+
+                List<SseEmitter.SseEventBuilder> events = new ArrayList<>();
+                for (InferenceStatusService.SessionInferenceStatus status : inference) {
+                    events.add(SseEmitter.event().name("inference").data(status));
+                }
+                boolean terminated = false;
+                if (sessionDirty) {
+                    try {
+                        SessionStatusResponse status = sessionService.getSessionStatus(channel.sessionId);
+                        events.add(SseEmitter.event().name("session").data(status));
+                        terminated = status.getSessionStatus() != null && status.getSessionStatus().isTerminated();
+                    } catch (Exception e) {
+                        logger.warn("推送会话状态失败: sessionId={}, 错误: {}", channel.sessionId, e.getMessage());
+                    }
+                }
+                targets = enqueue(channel, events, terminated);
+            }
+        } finally {
+            synchronized (channel.pending) {
+                channel.flushScheduled = false;
+                if (channel.sessionDirty || !channel.pendingInference.isEmpty()) {
+                    scheduleFlush(channel);
+                }
+            }
+        }
+        drainAll(channel, targets);
+    }
+
+    /**
+     * 读取订阅快照
+     */
+    private SessionEventSnapshot snapshot(SessionChannel channel) {
+        SessionEventSnapshot snapshot = new SessionEventSnapshot();
+        snapshot.setSession(sessionService.getSessionStatus(channel.sessionId));
+        snapshot.setInference(inferenceStatusService.getSessionInferenceStatuses(String.valueOf(channel.sessionId)));
+        return snapshot;
+    }
+
+    /**
+     * 事件加入各订阅方的待发送队列，积压过多的订阅方直接断开（重连后以快照恢复）
+     *
+     * @param close 发送完这些事件后是否关闭订阅方
+     * @return 需要发送的订阅方
+     */
+    private List<Subscriber> enqueue(SessionChannel channel, List<SseEmitter.SseEventBuilder> events, boolean close) {
+        List<Subscriber> dropped = new ArrayList<>();
+        List<Subscriber> targets;
+        synchronized (channel) {
+            targets = new ArrayList<>(channel.subscribers);
+            for (Subscriber subscriber : targets) {
+                subscriber.pending.addAll(events);
+                if (close) {
+                    subscriber.closing = true;
+                }
+                if (subscriber.pending.size() > MAX_PENDING_EVENTS) {
+                    logger.debug("会话事件订阅方积压过多，断开连接: sessionId={}, pending={}",
+                                 channel.sessionId, subscriber.pending.size());
+                    remove(channel, subscriber);
+                    dropped.add(subscriber);
+                }
+            }
+            targets.removeAll(dropped);
+        }
+        for (Subscriber subscriber : dropped) {
+            subscriber.emitter.complete();
+        }
+        return targets;
+    }
+
+    private void drainAll(SessionChannel channel, List<Subscriber> targets) {
+        for (Subscriber subscriber : targets) {
+            boolean acquired;
+            synchronized (channel) {
+                acquired = !subscriber.draining && !subscriber.closed;
+                if (acquired) {
+                    subscriber.draining = true;
+                }
+            }
+            if (acquired) {
+                drain(channel, subscriber);
+            }
+        }
+    }
+
+    /**
+     * 在锁外按顺序发送订阅方的待发送事件，直到队列为空（调用方已取得该订阅方的发送权）
+     */
+    private void drain(SessionChannel channel, Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            boolean complete = false;
+            synchronized (channel) {
+                event = subscriber.closed ? null : subscriber.pending.pollFirst();
+                if (event == null) {
+                    subscriber.draining = false;
+                    if (subscriber.closing && !subscriber.closed) {
+                        remove(channel, subscriber);
+                        complete = true;
+                    }
+                }
+            }
+            if (event == null) {
+                if (complete) {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                detach(channel, subscriber.emitter);
+                return;
+            }
+        }
+    }
+
+    private boolean isFull(SessionChannel channel, AIServiceProperties.EventsConfig config) {
+        synchronized (channel) {
+            return !channel.closed && channel.subscribers.size() >= config.getMaxSubscribersPerSession();
+        }
+    }
+
+    private void detach(SessionChannel channel, SseEmitter emitter) {
+        synchronized (channel) {
+            for (Subscriber subscriber : new ArrayList<>(channel.subscribers)) {
+                if (subscriber.emitter == emitter) {
+                    remove(channel, subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照读取失败时，为本次订阅新建的空通道随之移除
+     */
+    private void detachIfEmpty(SessionChannel channel) {
+        synchronized (channel) {
+            if (channel.subscribers.isEmpty() && !channel.closed) {
+                channel.closed = true;
+                channels.remove(channel.sessionId, channel);
+            }
+        }
+    }
+
+    /**
+     * 移除订阅方，最后一个订阅方离开时关闭通道（调用方持有通道锁）
+     */
+    private void remove(SessionChannel channel, Subscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.pending.clear();
+        channel.subscribers.remove(subscriber);
+        if (channel.subscribers.isEmpty() && !channel.closed) {
+            channel.closed = true;
+            channels.remove(channel.sessionId, channel);
+        }
+    }
+
+    /**
+     * 推理状态中的会话ID为字符串，预执行等内部调用带有后缀，不对外推送
+     */
+    private static Long parseSessionId(String sessionId) {
+        try {
+            return sessionId != null ? Long.valueOf(sessionId) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个会话的订阅通道
+     * 待推送的变更由pending锁保护；状态读取与入队由refresh锁串行；订阅方列表与各自的待发送队列由通道锁保护
+     */
+    private static class SessionChannel {
+        private final Long sessionId;
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final Object pending = new Object();
+        private final Object refresh = new Object();
+        private final Map<String, InferenceStatusService.SessionInferenceStatus> pendingInference = new LinkedHashMap<>();
+        private boolean sessionDirty;
+        private boolean flushScheduled;
+        private boolean closed;
+
+        SessionChannel(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * 会话事件的订阅方，待发送队列与状态由所属通道的锁保护
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closing;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * 订阅快照DTO
+     */
+    public static class SessionEventSnapshot {
+        private SessionStatusResponse session;
+        private List<InferenceStatusService.SessionInferenceStatus> inference;
+
+        public SessionStatusResponse getSession() {
+            return session;
+        }
+
+        public void setSession(SessionStatusResponse session) {
+            this.session = session;
+        }
+
+        public List<InferenceStatusService.SessionInferenceStatus> getInference() {
+            return inference;
+        }
+
+        public void setInference(List<InferenceStatusService.SessionInferenceStatus> inference) {
+            this.inference = inference;
+        }
+    }
+}
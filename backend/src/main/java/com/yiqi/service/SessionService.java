@@ -2,20 +2,30 @@ package com.yiqi.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.yiqi.dto.CreateSessionRequest;
+import com.yiqi.dto.PhaseExecutionResponse;
+import com.yiqi.dto.SessionPage;
 import com.yiqi.dto.SessionResponse;
 import com.yiqi.dto.SessionStatusResponse;
 import com.yiqi.dto.StartSessionRequest;
 import com.yiqi.entity.*;
 import com.yiqi.enums.*;
+import com.yiqi.event.SessionStateChangedEvent;
 import com.yiqi.exception.*;
 import com.yiqi.mapper.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +38,12 @@ import java.util.stream.Collectors;
 @Service
 public class SessionService {
 
+    /**
+     * 会话列表默认与最大每页数量
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private BrainstormSessionMapper sessionMapper;
 
@@ -38,10 +54,19 @@ public class SessionService {
     private PhaseMapper phaseMapper;
 
     @Autowired
-    private AgentResponseMapper agentResponseMapper;
+    private AgentCache agentCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SessionStatusCache sessionStatusCache;
+
+    @Autowired
+    private PhaseExecutionService phaseExecutionService;
 
     @Autowired
-    private AgentMapper agentMapper;
+    private StateTransitionService stateTransitionService;
 
     /**
      * 创建新的头脑风暴会话
@@ -84,16 +109,15 @@ public class SessionService {
      * @param sessionId 会话ID
      * @param request 启动会话请求
      * @throws SessionNotFoundException 如果会话不存在
-     * @throws IllegalStateException 如果会话状态不允许启动
+     * @throws StateConflictException 如果会话状态不允许启动或已被并发修改
+     * @throws IllegalStateException 如果会话中没有活跃的代理
      */
     @Transactional
     public void startSession(Long sessionId, StartSessionRequest request) {
         BrainstormSession session = getSessionById(sessionId);
         
         // 检查会话是否可以启动
-        if (!session.canStart()) {
-            throw new IllegalStateException("会话当前状态不允许启动: " + session.getStatus());
-        }
+        SessionTransition.START.check(session.getStatus());
         
         // 检查是否有活跃的代理
         List<SessionAgent> activeAgents = sessionAgentMapper.findActiveAgentsBySessionId(sessionId);
@@ -102,16 +126,14 @@ public class SessionService {
         }
         
         // 更新会话状态和主题
-        session.setTopic(request.getTopic());
-        session.start();
-        sessionMapper.updateById(session);
+        stateTransitionService.transition(session, SessionTransition.START, request.getTopic());
         
         // 启动第一个阶段（创意生成）
         Phase firstPhase = phaseMapper.findBySessionIdAndPhaseType(sessionId, PhaseType.IDEA_GENERATION);
-        if (firstPhase != null && firstPhase.canStart()) {
-            firstPhase.start();
-            phaseMapper.updateById(firstPhase);
+        if (firstPhase != null && PhaseTransition.START.allowsFrom(firstPhase.getStatus())) {
+            stateTransitionService.transition(firstPhase, PhaseTransition.START, null);
         }
+        publishStateChanged(sessionId, "SESSION_STARTED");
     }
 
     /**
@@ -119,20 +141,14 @@ public class SessionService {
      * 
      * @param sessionId 会话ID
      * @throws SessionNotFoundException 如果会话不存在
-     * @throws IllegalStateException 如果会话状态不允许暂停
+     * @throws StateConflictException 如果会话状态不允许暂停或已被并发修改
      */
     @Transactional
     public void pauseSession(Long sessionId) {
         BrainstormSession session = getSessionById(sessionId);
         
-        // 检查会话是否可以暂停
-        if (!session.canPause()) {
-            throw new IllegalStateException("会话当前状态不允许暂停: " + session.getStatus());
-        }
-        
         // 暂停会话
-        session.pause();
-        sessionMapper.updateById(session);
+        stateTransitionService.transition(session, SessionTransition.PAUSE, null);
         
         // 暂停当前进行中的阶段
         Phase currentPhase = phaseMapper.findCurrentPhaseBySessionId(sessionId);
@@ -140,6 +156,7 @@ public class SessionService {
             // 注意：这里不改变阶段状态，只是暂停会话
             // 阶段状态保持IN_PROGRESS，恢复时可以继续
         }
+        publishStateChanged(sessionId, "SESSION_PAUSED");
     }
 
     /**
@@ -147,20 +164,15 @@ public class SessionService {
      * 
      * @param sessionId 会话ID
      * @throws SessionNotFoundException 如果会话不存在
-     * @throws IllegalStateException 如果会话状态不允许恢复
+     * @throws StateConflictException 如果会话状态不允许恢复或已被并发修改
      */
     @Transactional
     public void resumeSession(Long sessionId) {
         BrainstormSession session = getSessionById(sessionId);
         
-        // 检查会话是否可以恢复（从暂停状态）
-        if (session.getStatus() != SessionStatus.PAUSED) {
-            throw new IllegalStateException("只有暂停状态的会话才能恢复: " + session.getStatus());
-        }
-        
-        // 恢复会话
-        session.start(); // 设置为进行中状态
-        sessionMapper.updateById(session);
+        // 恢复会话（只允许从暂停状态）
+        stateTransitionService.transition(session, SessionTransition.RESUME, null);
+        publishStateChanged(sessionId, "SESSION_RESUMED");
     }
 
     /**
@@ -168,84 +180,166 @@ public class SessionService {
      * 
      * @param sessionId 会话ID
      * @throws SessionNotFoundException 如果会话不存在
+     * @throws StateConflictException 如果会话已完成或已取消，或已被并发修改
      */
     @Transactional
     public void cancelSession(Long sessionId) {
         BrainstormSession session = getSessionById(sessionId);
         
         // 取消会话
-        session.cancel();
-        sessionMapper.updateById(session);
+        stateTransitionService.transition(session, SessionTransition.CANCEL, null);
+        publishStateChanged(sessionId, "SESSION_CANCELLED");
     }
 
     /**
      * 获取会话状态
      * 
      * @param sessionId 会话ID
-     * @return 会话状态响应
+     * @return 会话状态响应，附带各阶段最近一次异步执行的状态
      * @throws SessionNotFoundException 如果会话不存在
      */
     public SessionStatusResponse getSessionStatus(Long sessionId) {
-        BrainstormSession session = getSessionById(sessionId);
-        
-        // 获取阶段信息
-        List<Phase> phases = phaseMapper.findBySessionId(sessionId);
-        
-        // 获取代理统计
-        Long totalAgents = sessionAgentMapper.countBySessionId(sessionId);
-        Long activeAgents = sessionAgentMapper.countBySessionIdAndStatus(sessionId, AgentStatus.ACTIVE);
+        SessionStatusResponse status = sessionStatusCache.get(sessionId, () -> loadSessionStatus(sessionId));
+        List<PhaseExecutionResponse> executions = phaseExecutionService.getSessionExecutions(sessionId);
+        if (executions.isEmpty()) {
+            return status;
+        }
+        // 缓存实例为共享对象，执行状态附加在副本上
+        SessionStatusResponse response = new SessionStatusResponse(status);
+        response.setExecutions(executions);
+        return response;
+    }
+
+    /**
+     * 一次查询加载会话状态：会话、代理数量与各阶段的状态和响应数量
+     */
+    private SessionStatusResponse loadSessionStatus(Long sessionId) {
+        List<BrainstormSessionMapper.SessionStatusRow> rows = sessionMapper.findStatusRows(sessionId);
+        if (rows.isEmpty()) {
+            throw new SessionNotFoundException("会话不存在: " + sessionId);
+        }
+        BrainstormSessionMapper.SessionStatusRow first = rows.get(0);
         
         // 构建响应
         SessionStatusResponse response = new SessionStatusResponse();
         response.setSessionId(sessionId);
-        response.setSessionStatus(session.getStatus());
-        response.setCurrentPhase(session.getCurrentPhase());
-        response.setAgentCount(totalAgents.intValue());
-        response.setActiveAgentCount(activeAgents.intValue());
-        response.setLastUpdated(session.getUpdatedAt());
-        
-        // 构建阶段信息
-        List<SessionStatusResponse.PhaseInfo> phaseInfos = phases.stream()
-                .map(this::buildPhaseInfo)
-                .collect(Collectors.toList());
+        response.setSessionStatus(first.getSessionStatus());
+        response.setCurrentPhase(first.getCurrentPhase());
+        response.setAgentCount(first.getAgentCount().intValue());
+        response.setActiveAgentCount(first.getActiveAgentCount().intValue());
+        response.setLastUpdated(first.getUpdatedAt());
+        
+        // 构建阶段信息（会话没有阶段时只有一行，阶段字段为空）
+        List<SessionStatusResponse.PhaseInfo> phaseInfos = new ArrayList<>();
+        for (BrainstormSessionMapper.SessionStatusRow row : rows) {
+            if (row.getPhaseType() != null) {
+                phaseInfos.add(buildPhaseInfo(row));
+            }
+        }
         response.setPhases(phaseInfos);
         
         // 计算进度百分比
-        response.setProgressPercentage(calculateProgressPercentage(phases));
+        response.setProgressPercentage(calculateProgressPercentage(phaseInfos));
         
         return response;
     }
 
     /**
-     * 获取用户的会话列表
+     * 获取用户的会话列表（按创建时间倒序的键集分页）
      * 
      * @param userId 用户ID
-     * @return 会话列表
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param limit 每页数量，与游标都为空时返回全部会话，只带游标时使用默认值
+     * @return 会话列表的一页
      */
-    public List<SessionResponse> getUserSessions(Long userId) {
-        List<BrainstormSession> sessions = sessionMapper.findByUserId(userId);
-        return sessions.stream()
-                .map(session -> {
-                    List<SessionAgent> sessionAgents = sessionAgentMapper.findBySessionId(session.getId());
-                    return buildSessionResponse(session, sessionAgents);
-                })
-                .collect(Collectors.toList());
+    public SessionPage getUserSessions(Long userId, String cursor, Integer limit) {
+        return getSessionPage(userId, false, cursor, limit);
     }
 
     /**
-     * 获取用户的活跃会话
+     * 获取用户的活跃会话（按创建时间倒序的键集分页）
      * 
      * @param userId 用户ID
-     * @return 活跃会话列表
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param limit 每页数量，与游标都为空时返回全部会话，只带游标时使用默认值
+     * @return 活跃会话列表的一页
      */
-    public List<SessionResponse> getUserActiveSessions(Long userId) {
-        List<BrainstormSession> sessions = sessionMapper.findActiveSessionsByUserId(userId);
-        return sessions.stream()
-                .map(session -> {
-                    List<SessionAgent> sessionAgents = sessionAgentMapper.findBySessionId(session.getId());
-                    return buildSessionResponse(session, sessionAgents);
-                })
-                .collect(Collectors.toList());
+    public SessionPage getUserActiveSessions(Long userId, String cursor, Integer limit) {
+        return getSessionPage(userId, true, cursor, limit);
+    }
+
+    /**
+     * 查询一页会话及其代理：会话与代理各一次查询，列表中不含描述与主题
+     * 未指定游标与每页数量的请求（不分页的旧客户端）返回全部会话
+     */
+    private SessionPage getSessionPage(Long userId, boolean activeOnly, String cursor, Integer limit) {
+        boolean paged = limit != null || (cursor != null && !cursor.isEmpty());
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = decodeCursor(cursor);
+            cursorCreatedAt = LocalDateTime.parse(parts[0]);
+            cursorId = Long.valueOf(parts[1]);
+        }
+
+        List<BrainstormSession> sessions = sessionMapper.findPageByUserId(
+                userId, activeOnly, cursorCreatedAt, cursorId, paged ? pageSize + 1 : null);
+        boolean hasMore = paged && sessions.size() > pageSize;
+        if (hasMore) {
+            sessions = sessions.subList(0, pageSize);
+        }
+
+        Map<Long, List<SessionResponse.SessionAgentInfo>> agentsBySession = new HashMap<>();
+        if (!sessions.isEmpty()) {
+            List<Long> sessionIds = sessions.stream().map(BrainstormSession::getId).collect(Collectors.toList());
+            for (SessionAgentMapper.SessionAgentRow row : sessionAgentMapper.findAgentInfosBySessionIds(sessionIds)) {
+                agentsBySession.computeIfAbsent(row.getSessionId(), id -> new ArrayList<>())
+                        .add(new SessionResponse.SessionAgentInfo(
+                                row.getAgentId(),
+                                row.getAgentName() != null ? row.getAgentName() : "未知代理",
+                                row.getRoleType() != null ? row.getRoleType() : "UNKNOWN",
+                                row.getStatus(),
+                                row.getJoinedAt()));
+            }
+        }
+
+        List<SessionResponse> items = new ArrayList<>(sessions.size());
+        for (BrainstormSession session : sessions) {
+            SessionResponse response = buildSessionResponse(session, Collections.emptyList());
+            response.setAgents(agentsBySession.getOrDefault(session.getId(), Collections.emptyList()));
+            items.add(response);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            BrainstormSession last = sessions.get(sessions.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return new SessionPage(items, nextCursor);
+    }
+
+    /**
+     * 游标为“创建时间|会话ID”的URL安全Base64编码
+     */
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
     }
 
     /**
@@ -263,7 +357,7 @@ public class SessionService {
         BrainstormSession session = getSessionById(sessionId);
         
         // 验证代理存在
-        Agent agent = agentMapper.selectById(agentId);
+        Agent agent = agentCache.get(agentId);
         if (agent == null) {
             throw new AgentNotFoundException("代理不存在: " + agentId);
         }
@@ -277,6 +371,7 @@ public class SessionService {
         // 添加代理到会话
         SessionAgent sessionAgent = new SessionAgent(sessionId, agentId);
         sessionAgentMapper.insert(sessionAgent);
+        publishStateChanged(sessionId, "AGENT_ADDED");
     }
 
     /**
@@ -301,6 +396,7 @@ public class SessionService {
         // 软删除代理（标记为已删除）
         sessionAgent.remove();
         sessionAgentMapper.updateById(sessionAgent);
+        publishStateChanged(sessionId, "AGENT_REMOVED");
     }
 
     // 私有辅助方法
@@ -325,7 +421,7 @@ public class SessionService {
      */
     private void validateAgentsExistAndBelongToUser(Long userId, List<Long> agentIds) {
         for (Long agentId : agentIds) {
-            Agent agent = agentMapper.selectById(agentId);
+            Agent agent = agentCache.get(agentId);
             if (agent == null) {
                 throw new AgentNotFoundException("代理不存在: " + agentId);
             }
@@ -378,7 +474,7 @@ public class SessionService {
      * 构建会话代理信息
      */
     private SessionResponse.SessionAgentInfo buildSessionAgentInfo(SessionAgent sessionAgent) {
-        Agent agent = agentMapper.selectById(sessionAgent.getAgentId());
+        Agent agent = agentCache.get(sessionAgent.getAgentId());
         return new SessionResponse.SessionAgentInfo(
                 sessionAgent.getAgentId(),
                 agent != null ? agent.getName() : "未知代理",
@@ -391,20 +487,14 @@ public class SessionService {
     /**
      * 构建阶段信息
      */
-    private SessionStatusResponse.PhaseInfo buildPhaseInfo(Phase phase) {
+    private SessionStatusResponse.PhaseInfo buildPhaseInfo(BrainstormSessionMapper.SessionStatusRow row) {
         SessionStatusResponse.PhaseInfo phaseInfo = new SessionStatusResponse.PhaseInfo(
-                phase.getPhaseType(), phase.getStatus());
-        phaseInfo.setSummary(phase.getSummary());
-        phaseInfo.setStartedAt(phase.getStartedAt());
-        phaseInfo.setCompletedAt(phase.getCompletedAt());
-        
-        // 获取响应统计
-        Long totalResponses = agentResponseMapper.countByPhaseId(phase.getId());
-        Long successfulResponses = agentResponseMapper.countByPhaseIdAndStatus(phase.getId(), com.yiqi.entity.AgentResponse.STATUS_SUCCESS);
-        
-        phaseInfo.setResponseCount(totalResponses.intValue());
-        phaseInfo.setSuccessfulResponseCount(successfulResponses.intValue());
-        
+                row.getPhaseType(), row.getPhaseStatus());
+        phaseInfo.setSummary(row.getSummary());
+        phaseInfo.setStartedAt(row.getStartedAt());
+        phaseInfo.setCompletedAt(row.getCompletedAt());
+        phaseInfo.setResponseCount(row.getResponseCount().intValue());
+        phaseInfo.setSuccessfulResponseCount(row.getSuccessfulResponseCount().intValue());
         return phaseInfo;
     }
 
@@ -461,13 +551,13 @@ public class SessionService {
             return new ArrayList<>();
         }
         
-        return agentMapper.findByIds(agentIds);
+        return agentCache.getAll(agentIds);
     }
 
     /**
      * 计算会话进度百分比
      */
-    private Integer calculateProgressPercentage(List<Phase> phases) {
+    private Integer calculateProgressPercentage(List<SessionStatusResponse.PhaseInfo> phases) {
         if (phases.isEmpty()) {
             return 0;
         }
@@ -475,7 +565,7 @@ public class SessionService {
         int totalPhases = phases.size();
         int completedPhases = 0;
         
-        for (Phase phase : phases) {
+        for (SessionStatusResponse.PhaseInfo phase : phases) {
             if (phase.getStatus() == PhaseStatus.COMPLETED) {
                 completedPhases++;
             } else if (phase.getStatus() == PhaseStatus.APPROVED) {
@@ -485,4 +575,11 @@ public class SessionService {
         
         return (completedPhases * 100) / totalPhases;
     }
+
+    /**
+     * 发布会话状态变更事件（事务提交后推送给订阅方）
+     */
+    private void publishStateChanged(Long sessionId, String reason) {
+        eventPublisher.publishEvent(new SessionStateChangedEvent(sessionId, reason));
+    }
 }
@@ -0,0 +1,118 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.SessionStatusResponse;
+import com.yiqi.event.SessionStateChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 会话状态读缓存
+ * 会话状态是被轮询最多的接口之一，短TTL内直接返回缓存；会话、阶段或响应写入提交后立即失效。
+ * 加载期间发生过任何失效时，加载结果不写入缓存，避免把提交前读到的旧状态缓存下来
+ */
+@Service
+public class SessionStatusCache {
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, CachedStatus> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("yiqi.session.status.cache")
+            .description("会话状态缓存的查询次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        misses = Counter.builder("yiqi.session.status.cache")
+            .description("会话状态缓存的查询次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.session.status.cache.entries", entries, Map::size)
+            .description("缓存的会话状态条数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 获取会话状态，缓存未命中或已过期时调用loader加载
+     */
+    public SessionStatusResponse get(Long sessionId, Supplier<SessionStatusResponse> loader) {
+        AIServiceProperties.CacheConfig config = aiServiceProperties.getCache();
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getSessionStatusTtlMs());
+        if (ttlNanos <= 0) {
+            return loader.get();
+        }
+
+        long now = System.nanoTime();
+        CachedStatus cached = entries.get(sessionId);
+        if (cached != null && now - cached.loadedAtNanos < ttlNanos) {
+            hits.increment();
+            return cached.status;
+        }
+        misses.increment();
+
+        long loadGeneration = generation.get();
+        SessionStatusResponse status = loader.get();
+        if (entries.size() >= config.getSessionStatusMaxEntries()) {
+            entries.values().removeIf(entry -> now - entry.loadedAtNanos >= ttlNanos);
+            if (entries.size() >= config.getSessionStatusMaxEntries()) {
+                return status;
+            }
+        }
+        CachedStatus fresh = new CachedStatus(status, now);
+        entries.put(sessionId, fresh);
+        // 先写入再检查，与失效并发时由失效方或本方删除
+        if (generation.get() != loadGeneration) {
+            entries.remove(sessionId, fresh);
+        }
+        return status;
+    }
+
+    /**
+     * 使会话状态失效
+     */
+    public void invalidate(Long sessionId) {
+        generation.incrementAndGet();
+        entries.remove(sessionId);
+    }
+
+    /**
+     * 会话、阶段或响应写入提交后失效，先于状态推送处理
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionStateChanged(SessionStateChangedEvent event) {
+        invalidate(event.getSessionId());
+    }
+
+    private static final class CachedStatus {
+        private final SessionStatusResponse status;
+        private final long loadedAtNanos;
+
+        CachedStatus(SessionStatusResponse status, long loadedAtNanos) {
+            this.status = status;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
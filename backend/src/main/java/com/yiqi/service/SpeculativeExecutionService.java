@@ -0,0 +1,322 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.InferenceRun;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.entity.Agent;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.TrafficClass;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 阶段预执行服务
+ * 阶段等待审核期间，以最低优先级按待审核结果预先执行下一阶段并暂存结果；
+ * 审核通过或执行下一阶段时，若输入（主题、上下文与代理）未变且全部代理成功则直接采用，拒绝或重试时丢弃。
+ * 丢弃时取消整个执行批次（排队中的上游调用移出调度队列）；
+ * 每个用户的预执行token用量受滑动窗口预算限制，预占在全部上游调用真正结束后按实际用量结算
+ */
+@Service
+public class SpeculativeExecutionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeculativeExecutionService.class);
+
+    private static final long BUDGET_WINDOW_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long TAKE_TIMEOUT_SECONDS = 150;
+
+    @Autowired
+    private AIInferenceService aiInferenceService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+    private final Map<String, Deque<long[]>> userSpend = new ConcurrentHashMap<>();
+    private final AtomicLong tokensPerCall = new AtomicLong();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private PhaseConcurrencyLimiter phaseLimiter;
+
+    @PostConstruct
+    public void init() {
+        int maxConcurrentPhases = Math.max(1, aiServiceProperties.getSpeculation().getMaxConcurrentPhases());
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentPhases);
+        executor.setMaxPoolSize(maxConcurrentPhases);
+        executor.setThreadNamePrefix("yiqi-speculative-");
+        executor.initialize();
+        phaseLimiter = new PhaseConcurrencyLimiter(maxConcurrentPhases, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 计算阶段推理输入的摘要，用于判断预执行结果是否仍然有效
+     */
+    public static String inputHash(String topic, String sessionContext, List<Agent> agents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, topic);
+            update(digest, sessionContext);
+            for (Agent agent : agents) {
+                update(digest, String.valueOf(agent.getId()));
+                update(digest, agent.getAiModel());
+                update(digest, agent.getRoleType());
+                update(digest, agent.getSystemPrompt());
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 以预执行流量类别开始执行阶段推理
+     *
+     * @return 是否已开始（未启用、预算不足或暂存已满时返回false）
+     */
+    public boolean speculate(Long sessionId, PhaseType phaseType, String userKey, String topic,
+                             List<Agent> agents, String sessionContext) {
+        AIServiceProperties.SpeculationConfig config = aiServiceProperties.getSpeculation();
+        if (!config.isEnabled() || agents.isEmpty()) {
+            return false;
+        }
+
+        evictExpired(config);
+        if (speculations.size() >= config.getMaxEntries()) {
+            record("rejected");
+            logger.debug("预执行暂存已满，跳过: sessionId={}, phaseType={}", sessionId, phaseType);
+            return false;
+        }
+        long[] reservation = reserveBudget(userKey, agents.size(), config);
+        if (reservation == null) {
+            record("over_budget");
+            logger.info("用户预执行预算不足，跳过: userKey={}, sessionId={}, phaseType={}", userKey, sessionId, phaseType);
+            return false;
+        }
+
+        // 取消只作用于执行批次：已派发的上游调用仍会返回并计入用量，批次结清后才结算预占
+        InferenceRun run = new InferenceRun();
+        run.whenSettled().thenRun(() ->
+            settleBudget(userKey, reservation, agents.size(), run.getUsage().getTotalTokens()));
+        // 推理期间不占用预执行线程，阶段在推理结束时才归还并发许可
+        CompletableFuture<ParallelInferenceResult> future = phaseLimiter.submit(() -> {
+            if (run.isCancelled()) {
+                // 尚未开始就被丢弃
+                run.seal();
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<ParallelInferenceResult> inference;
+            try {
+                inference = aiInferenceService.processParallelInferenceAsync(
+                    agents, topic, sessionContext, sessionId + ":speculative", phaseType,
+                    InferenceContext.of(TrafficClass.SPECULATIVE, userKey).withRun(run), true
+                );
+            } catch (RuntimeException e) {
+                inference = new CompletableFuture<>();
+                inference.completeExceptionally(e);
+            }
+            return inference.whenComplete((result, throwable) -> run.seal());
+        });
+        Speculation previous = speculations.put(key(sessionId, phaseType),
+            new Speculation(inputHash(topic, sessionContext, agents), topic, run, future));
+        if (previous != null) {
+            previous.run.cancel();
+        }
+
+        record("started");
+        logger.info("开始预执行阶段: sessionId={}, phaseType={}, agentCount={}", sessionId, phaseType, agents.size());
+        return true;
+    }
+
+    /**
+     * 获取预执行所用的主题，无预执行时返回null
+     */
+    public String getSpeculatedTopic(Long sessionId, PhaseType phaseType) {
+        Speculation speculation = speculations.get(key(sessionId, phaseType));
+        return speculation != null ? speculation.topic : null;
+    }
+
+    /**
+     * 取出与当前输入一致的预执行结果
+     * 输入不一致时丢弃预执行；只有全部代理都成功的结果才会被采用，
+     * 部分代理失败（低优先级排队中超时最为常见）或结果不可用时返回null，由调用方正常执行
+     *
+     * @param waitIfRunning 预执行尚未完成时是否等待其完成
+     */
+    public ParallelInferenceResult take(Long sessionId, PhaseType phaseType, String inputHash, boolean waitIfRunning) {
+        String key = key(sessionId, phaseType);
+        Speculation speculation = speculations.get(key);
+        if (speculation == null) {
+            return null;
+        }
+        if (!speculation.inputHash.equals(inputHash)) {
+            discard(sessionId, phaseType);
+            record("stale");
+            return null;
+        }
+        if (!speculation.future.isDone() && !waitIfRunning) {
+            return null;
+        }
+        if (!speculations.remove(key, speculation)) {
+            return null;
+        }
+
+        try {
+            ParallelInferenceResult result = speculation.future.get(TAKE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result == null || !result.hasSuccessfulResponses()) {
+                record("failed");
+                return null;
+            }
+            if (!result.isAllSuccess()) {
+                record("partial");
+                logger.info("预执行结果不完整，改为正常执行: sessionId={}, phaseType={}, 成功={}/{}",
+                           sessionId, phaseType, result.getSuccessfulAgents(), result.getTotalAgents());
+                return null;
+            }
+            record("committed");
+            logger.info("采用预执行结果: sessionId={}, phaseType={}", sessionId, phaseType);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            speculation.run.cancel();
+            return null;
+        } catch (Exception e) {
+            logger.warn("预执行结果不可用: sessionId={}, phaseType={}, error={}", sessionId, phaseType, e.getMessage());
+            // 等待超时时预执行可能仍在排队，取消后由调用方正常执行
+            speculation.run.cancel();
+            record("failed");
+            return null;
+        }
+    }
+
+    /**
+     * 丢弃阶段的预执行结果
+     */
+    public void discard(Long sessionId, PhaseType phaseType) {
+        if (phaseType == null) {
+            return;
+        }
+        Speculation speculation = speculations.remove(key(sessionId, phaseType));
+        if (speculation != null) {
+            speculation.run.cancel();
+            record("discarded");
+            logger.info("丢弃预执行结果: sessionId={}, phaseType={}", sessionId, phaseType);
+        }
+    }
+
+    /**
+     * 按每次调用token数的估算预占预算（已有实际用量时采用其平滑值，否则采用配置值）
+     *
+     * @return 预占记录{时间, token数}，预算不足时返回null
+     */
+    private long[] reserveBudget(String userKey, int calls, AIServiceProperties.SpeculationConfig config) {
+        long now = System.currentTimeMillis();
+        long learned = tokensPerCall.get();
+        long estimated = calls * Math.max(1L, learned > 0 ? learned : config.getEstimatedTokensPerCall());
+        Deque<long[]> spend = userSpend.computeIfAbsent(userKey, k -> new ArrayDeque<>());
+        synchronized (spend) {
+            long used = 0;
+            while (!spend.isEmpty() && now - spend.peekFirst()[0] > BUDGET_WINDOW_MS) {
+                spend.pollFirst();
+            }
+            for (long[] entry : spend) {
+                used += entry[1];
+            }
+            if (used + estimated > config.getMaxTokensPerUserPerHour()) {
+                return null;
+            }
+            long[] reservation = {now, estimated};
+            spend.addLast(reservation);
+            return reservation;
+        }
+    }
+
+    /**
+     * 预执行批次结清（全部上游调用结束）后按实际用量结算预占，并更新每次调用token数的估算
+     * 取消时仍在执行的调用返回的用量同样计入，排队中即被取消的调用不产生用量
+     */
+    private void settleBudget(String userKey, long[] reservation, int calls, long actualTokens) {
+        Deque<long[]> spend = userSpend.get(userKey);
+        if (spend != null) {
+            synchronized (spend) {
+                reservation[1] = actualTokens;
+            }
+        }
+        if (actualTokens > 0) {
+            long perCall = actualTokens / Math.max(1, calls);
+            tokensPerCall.updateAndGet(previous -> previous == 0 ? perCall : (previous * 3 + perCall) / 4);
+        }
+    }
+
+    private void evictExpired(AIServiceProperties.SpeculationConfig config) {
+        long threshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.getTtlMinutes());
+        speculations.values().removeIf(speculation -> {
+            if (speculation.createdAt < threshold) {
+                speculation.run.cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("yiqi.inference.speculation", "outcome", outcome).increment();
+    }
+
+    private static String key(Long sessionId, PhaseType phaseType) {
+        return sessionId + ":" + phaseType.name();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static class Speculation {
+        private final String inputHash;
+        private final String topic;
+        private final long createdAt = System.currentTimeMillis();
+        private final InferenceRun run;
+        private final CompletableFuture<ParallelInferenceResult> future;
+
+        Speculation(String inputHash, String topic, InferenceRun run, CompletableFuture<ParallelInferenceResult> future) {
+            this.inputHash = inputHash;
+            this.topic = topic;
+            this.run = run;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.yiqi.service;
+
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.entity.Phase;
+import com.yiqi.enums.PhaseTransition;
+import com.yiqi.enums.SessionTransition;
+import com.yiqi.exception.StateConflictException;
+import com.yiqi.mapper.BrainstormSessionMapper;
+import com.yiqi.mapper.PhaseMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 阶段与会话的状态机
+ * 迁移规则由PhaseTransition/SessionTransition声明，这里按读取时的状态与版本号做比较并设置（CAS），
+ * 只写入迁移涉及的列；并发请求先写入时更新行数为0，以StateConflictException（409）返回
+ *
+ * @author YiQi Team
+ * @since 1.0.0
+ */
+@Service
+public class StateTransitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateTransitionService.class);
+
+    @Autowired
+    private PhaseMapper phaseMapper;
+
+    @Autowired
+    private BrainstormSessionMapper sessionMapper;
+
+    /**
+     * 迁移阶段状态，成功后同步更新传入实体的状态、版本号与写入的列
+     *
+     * @param phase 读取到的阶段
+     * @param transition 状态迁移
+     * @param summary 阶段总结，仅迁移声明写入总结时使用，可为空
+     * @throws StateConflictException 如果当前状态不允许迁移，或阶段已被并发修改
+     */
+    public void transition(Phase phase, PhaseTransition transition, String summary) {
+        transition.check(phase.getStatus());
+        LocalDateTime now = LocalDateTime.now();
+        int updated = phaseMapper.transition(phase.getId(), phase.getStatus(), versionOf(phase.getVersion()),
+                                             transition, summary, now);
+        if (updated == 0) {
+            logger.info("阶段状态迁移冲突: phaseId={}, transition={}, from={}, version={}",
+                       phase.getId(), transition, phase.getStatus(), phase.getVersion());
+            throw new StateConflictException(phase.getPhaseType().getDisplayName() + "阶段已被其他请求修改，请刷新后重试");
+        }
+        phase.setStatus(transition.getTo());
+        phase.setVersion(versionOf(phase.getVersion()) + 1);
+        if (transition.isStampStartedAt()) {
+            phase.setStartedAt(now);
+        }
+        if (transition.isStampCompletedAt() && phase.getCompletedAt() == null) {
+            phase.setCompletedAt(now);
+        }
+        if (transition.isClearCompletedAt()) {
+            phase.setCompletedAt(null);
+        }
+        if (transition.isWriteSummary() && summary != null) {
+            phase.setSummary(summary);
+        }
+        if (transition.isClearSummary()) {
+            phase.setSummary(null);
+        }
+    }
+
+    /**
+     * 迁移会话状态，成功后同步更新传入实体的状态与版本号
+     *
+     * @param session 读取到的会话
+     * @param transition 状态迁移
+     * @param topic 头脑风暴主题，仅迁移声明写入主题时使用
+     * @throws StateConflictException 如果当前状态不允许迁移，或会话已被并发修改
+     */
+    public void transition(BrainstormSession session, SessionTransition transition, String topic) {
+        transition.check(session.getStatus());
+        int updated = sessionMapper.transition(session.getId(), session.getStatus(), versionOf(session.getVersion()),
+                                               transition, topic, LocalDateTime.now());
+        if (updated == 0) {
+            logger.info("会话状态迁移冲突: sessionId={}, transition={}, from={}, version={}",
+                       session.getId(), transition, session.getStatus(), session.getVersion());
+            throw new StateConflictException("会话已被其他请求修改，请刷新后重试");
+        }
+        session.setStatus(transition.getTo());
+        session.setVersion(versionOf(session.getVersion()) + 1);
+        if (transition.isWriteTopic()) {
+            session.setTopic(topic);
+        }
+    }
+
+    // 迁移前创建、尚未写入版本号的行按0处理
+    private static int versionOf(Integer version) {
+        return version != null ? version : 0;
+    }
+}
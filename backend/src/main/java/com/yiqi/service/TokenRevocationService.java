@@ -0,0 +1,139 @@
+package com.yiqi.service;
+
+import com.yiqi.entity.User;
+import com.yiqi.event.UserChangedEvent;
+import com.yiqi.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 令牌吊销服务
+ * 认证只做内存检查：登出的令牌按令牌ID加入吊销表直到过期；锁定等操作递增用户的令牌版本，
+ * 低于该版本的令牌全部失效。令牌版本持久化在users表，首次检查时恢复；吊销表只在本进程内有效
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    /**
+     * 吊销表条数上限，超过后登出改为提升该用户的内存令牌版本（吊销该用户当前版本的全部令牌）
+     */
+    private static final int MAX_REVOKED_TOKENS = 100000;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> minTokenVersions = new ConcurrentHashMap<>();
+
+    private volatile boolean versionsLoaded;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("yiqi-token-revocation-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::evictExpiredTokens, Duration.ofMinutes(1));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 检查令牌是否已被吊销
+     */
+    public boolean isRevoked(JwtService.VerifiedToken token) {
+        String tokenId = token.getTokenId();
+        if (tokenId != null && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        Long userId = token.getUserId();
+        if (userId == null) {
+            return false;
+        }
+        if (!versionsLoaded) {
+            loadTokenVersions();
+        }
+        Integer minVersion = minTokenVersions.get(userId);
+        return minVersion != null && token.getTokenVersion() < minVersion;
+    }
+
+    /**
+     * 吊销单个令牌（登出）
+     */
+    public void revoke(JwtService.VerifiedToken token) {
+        String tokenId = token.getTokenId();
+        if (tokenId == null) {
+            return;
+        }
+        if (revokedTokens.size() >= MAX_REVOKED_TOKENS) {
+            evictExpiredTokens();
+        }
+        if (revokedTokens.size() < MAX_REVOKED_TOKENS || token.getUserId() == null) {
+            revokedTokens.put(tokenId, token.getExpiresAtMillis());
+        } else {
+            revokeUserTokens(token.getUserId(), token.getTokenVersion() + 1);
+        }
+    }
+
+    /**
+     * 吊销用户低于指定版本的全部令牌
+     */
+    public void revokeUserTokens(Long userId, int tokenVersion) {
+        minTokenVersions.merge(userId, tokenVersion, Math::max);
+    }
+
+    /**
+     * 用户令牌版本变更提交后生效
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() != null && event.getTokenVersion() != null) {
+            revokeUserTokens(event.getUserId(), event.getTokenVersion());
+        }
+    }
+
+    /**
+     * 从users表恢复令牌版本；过滤器先于数据库初始化创建，因此在首次检查时加载，失败时下次检查重试
+     */
+    private synchronized void loadTokenVersions() {
+        if (versionsLoaded) {
+            return;
+        }
+        try {
+            for (User user : userMapper.findRevokedTokenVersions()) {
+                revokeUserTokens(user.getId(), user.getTokenVersion());
+            }
+            versionsLoaded = true;
+            logger.info("已恢复令牌版本: {} 个用户", minTokenVersions.size());
+        } catch (RuntimeException e) {
+            logger.warn("恢复令牌版本失败: {}", e.getMessage());
+        }
+    }
+
+    private void evictExpiredTokens() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAtMillis -> expiresAtMillis <= now);
+    }
+}
@@ -0,0 +1,150 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.UsageCostResponse;
+import com.yiqi.dto.UsageSummaryResponse;
+import com.yiqi.enums.UsageGroupBy;
+import com.yiqi.mapper.AgentResponseMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * token用量统计服务
+ * 基于代理响应上记录的用量按用户、代理、阶段类型或模型聚合，并按配置的模型价格计算费用
+ */
+@Service
+public class UsageService {
+
+    private static final String UNKNOWN_MODEL = "unknown";
+
+    @Autowired
+    private AgentResponseMapper agentResponseMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    /**
+     * 按维度统计用量
+     *
+     * @param userId 会话所有者ID，为空时统计全部用户
+     */
+    public UsageSummaryResponse getUsage(UsageGroupBy groupBy, Long userId, LocalDateTime from, LocalDateTime to) {
+        List<AgentResponseMapper.UsageRow> rows = agentResponseMapper.aggregateUsage(
+            groupBy.getColumn(), groupBy.getLabelColumn(), userId, from, to);
+
+        Map<String, UsageSummaryResponse.UsageGroup> groups = new LinkedHashMap<>();
+        Map<String, Long> generationMs = new LinkedHashMap<>();
+        UsageSummaryResponse.UsageGroup total = new UsageSummaryResponse.UsageGroup();
+        total.setKey("total");
+        total.setLabel("合计");
+        long totalGenerationMs = 0;
+
+        for (AgentResponseMapper.UsageRow row : rows) {
+            String key = row.getGroupKey() != null ? row.getGroupKey() : UNKNOWN_MODEL;
+            UsageSummaryResponse.UsageGroup group = groups.computeIfAbsent(key, k -> {
+                UsageSummaryResponse.UsageGroup created = new UsageSummaryResponse.UsageGroup();
+                created.setKey(k);
+                created.setLabel(row.getGroupLabel() != null ? row.getGroupLabel() : k);
+                return created;
+            });
+            double cost = cost(row.getModel(), value(row.getPromptTokens()), value(row.getCompletionTokens()));
+            accumulate(group, row, cost);
+            accumulate(total, row, cost);
+            generationMs.merge(key, value(row.getGenerationTimeMs()), Long::sum);
+            totalGenerationMs += value(row.getGenerationTimeMs());
+        }
+
+        List<UsageSummaryResponse.UsageGroup> sorted = new ArrayList<>(groups.values());
+        for (UsageSummaryResponse.UsageGroup group : sorted) {
+            finish(group, generationMs.get(group.getKey()));
+        }
+        finish(total, totalGenerationMs);
+        sorted.sort(Comparator.comparingLong(UsageSummaryResponse.UsageGroup::getTotalTokens).reversed());
+
+        UsageSummaryResponse response = new UsageSummaryResponse();
+        response.setGroupBy(groupBy.getCode());
+        response.setFrom(from);
+        response.setTo(to);
+        response.setCurrency(aiServiceProperties.getPricing().getCurrency());
+        response.setTotal(total);
+        response.setGroups(sorted);
+        return response;
+    }
+
+    /**
+     * 按模型统计费用
+     *
+     * @param userId 会话所有者ID，为空时统计全部用户
+     */
+    public UsageCostResponse getCost(Long userId, LocalDateTime from, LocalDateTime to) {
+        List<AgentResponseMapper.UsageRow> rows = agentResponseMapper.aggregateUsage(
+            UsageGroupBy.MODEL.getColumn(), UsageGroupBy.MODEL.getLabelColumn(), userId, from, to);
+        Map<String, AIServiceProperties.ModelPrice> prices = aiServiceProperties.getPricing().getModels();
+
+        UsageCostResponse response = new UsageCostResponse();
+        response.setFrom(from);
+        response.setTo(to);
+        response.setCurrency(aiServiceProperties.getPricing().getCurrency());
+        double totalCost = 0;
+        for (AgentResponseMapper.UsageRow row : rows) {
+            UsageCostResponse.ModelCost item = new UsageCostResponse.ModelCost();
+            item.setModel(row.getModel() != null ? row.getModel() : UNKNOWN_MODEL);
+            item.setPromptTokens(value(row.getPromptTokens()));
+            item.setCompletionTokens(value(row.getCompletionTokens()));
+            AIServiceProperties.ModelPrice price = row.getModel() != null ? prices.get(row.getModel()) : null;
+            if (price != null) {
+                item.setPriced(true);
+                item.setPromptCost(round(item.getPromptTokens() / 1000.0 * price.getPromptPerThousand()));
+                item.setCompletionCost(round(item.getCompletionTokens() / 1000.0 * price.getCompletionPerThousand()));
+            }
+            item.setCost(round(item.getPromptCost() + item.getCompletionCost()));
+            totalCost += item.getCost();
+            response.getModels().add(item);
+        }
+        response.getModels().sort(Comparator.comparingDouble(UsageCostResponse.ModelCost::getCost).reversed());
+        response.setTotalCost(round(totalCost));
+        return response;
+    }
+
+    private void accumulate(UsageSummaryResponse.UsageGroup group, AgentResponseMapper.UsageRow row, double cost) {
+        group.setResponses(group.getResponses() + value(row.getResponses()));
+        group.setPromptTokens(group.getPromptTokens() + value(row.getPromptTokens()));
+        group.setCompletionTokens(group.getCompletionTokens() + value(row.getCompletionTokens()));
+        group.setCost(group.getCost() + cost);
+        String model = row.getModel() != null ? row.getModel() : UNKNOWN_MODEL;
+        if (!group.getModels().contains(model)) {
+            group.getModels().add(model);
+        }
+    }
+
+    private static void finish(UsageSummaryResponse.UsageGroup group, Long generationMs) {
+        group.setTotalTokens(group.getPromptTokens() + group.getCompletionTokens());
+        group.setCost(round(group.getCost()));
+        long millis = generationMs != null ? generationMs : 0L;
+        group.setTokensPerSecond(millis > 0 ? round(group.getCompletionTokens() * 1000.0 / millis) : 0.0);
+    }
+
+    private double cost(String model, long promptTokens, long completionTokens) {
+        AIServiceProperties.ModelPrice price = model != null ? aiServiceProperties.getPricing().getModels().get(model) : null;
+        if (price == null) {
+            return 0.0;
+        }
+        return promptTokens / 1000.0 * price.getPromptPerThousand()
+            + completionTokens / 1000.0 * price.getCompletionPerThousand();
+    }
+
+    private static long value(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10000) / 10000.0;
+    }
+}
@@ -1,7 +1,8 @@
 package com.yiqi.service;
 
-import java.util.ArrayList;
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
@@ -11,7 +12,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import com.yiqi.entity.User;
-import com.yiqi.mapper.UserMapper;
 
 /**
  * Spring Security用户详情服务实现
@@ -23,42 +23,63 @@ import com.yiqi.mapper.UserMapper;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
-    private UserMapper userMapper;
+    private UserPrincipalCache userPrincipalCache;
 
+    /**
+     * 加载用户主体，经由用户主体缓存
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userMapper.findByUsername(username);
-        if (user == null) {
+        UserPrincipal principal = userPrincipalCache.get(username);
+        if (principal == null) {
             throw new UsernameNotFoundException("用户不存在: " + username);
         }
-
-        return new UserPrincipal(user);
+        return principal;
     }
 
     /**
      * 用户主体类
+     * 由令牌声明构建时不含密码，锁定由令牌版本吊销处理
      */
     public static class UserPrincipal implements UserDetails {
-        private final User user;
+        private static final Collection<? extends GrantedAuthority> AUTHORITIES = Collections.emptyList();
+
+        private final Long userId;
+        private final String username;
+        private final String password;
+        private final LocalDateTime lockedUntil;
 
         public UserPrincipal(User user) {
-            this.user = user;
+            this.userId = user.getId();
+            this.username = user.getUsername();
+            this.password = user.getPassword();
+            this.lockedUntil = user.getLockedUntil();
+        }
+
+        /**
+         * 由已验证令牌中的用户ID与用户名构建
+         */
+        public UserPrincipal(Long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+            this.password = null;
+            this.lockedUntil = null;
         }
 
         @Override
         public Collection<? extends GrantedAuthority> getAuthorities() {
             // 暂时返回空权限列表，后续可以根据需要添加角色权限
-            return new ArrayList<>();
+            return AUTHORITIES;
         }
 
         @Override
         public String getPassword() {
-            return user.getPassword();
+            return password;
         }
 
         @Override
         public String getUsername() {
-            return user.getUsername();
+            return username;
         }
 
         @Override
@@ -68,7 +89,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         @Override
         public boolean isAccountNonLocked() {
-            return !user.isAccountLocked();
+            return lockedUntil == null || !lockedUntil.isAfter(LocalDateTime.now());
         }
 
         @Override
@@ -81,8 +102,8 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             return true;
         }
 
-        public User getUser() {
-            return user;
+        public Long getUserId() {
+            return userId;
         }
     }
 }
@@ -0,0 +1,139 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.entity.User;
+import com.yiqi.event.UserChangedEvent;
+import com.yiqi.mapper.UserMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户主体读缓存
+ * 每个已认证请求都要按用户名加载用户主体，缓存后请求不再查询users表（条数上限加TTL）。
+ * 锁定状态或密码变更提交后立即失效。令牌携带用户ID后过滤器直接由令牌构建主体，此缓存只服务早期签发的令牌
+ */
+@Service
+public class UserPrincipalCache {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, CachedPrincipal> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("yiqi.user.principal.cache")
+            .description("用户主体缓存的查询次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        misses = Counter.builder("yiqi.user.principal.cache")
+            .description("用户主体缓存的查询次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("yiqi.user.principal.cache.entries", entries, Map::size)
+            .description("缓存的用户主体条数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 按用户名获取用户主体
+     *
+     * @return 用户不存在时返回null
+     */
+    public UserDetailsServiceImpl.UserPrincipal get(String username) {
+        long ttlNanos = ttlNanos();
+        long now = System.nanoTime();
+        CachedPrincipal cached = entries.get(username);
+        if (cached != null && now - cached.loadedAtNanos < ttlNanos) {
+            hits.increment();
+            return cached.principal;
+        }
+        misses.increment();
+
+        long loadGeneration = generation.get();
+        User user = userMapper.findByUsername(username);
+        if (user == null) {
+            return null;
+        }
+        UserDetailsServiceImpl.UserPrincipal principal = new UserDetailsServiceImpl.UserPrincipal(user);
+        if (ttlNanos > 0) {
+            store(username, new CachedPrincipal(principal, now), now, ttlNanos, loadGeneration);
+        }
+        return principal;
+    }
+
+    /**
+     * 使用户主体失效
+     */
+    public void invalidate(String username) {
+        generation.incrementAndGet();
+        entries.remove(username);
+    }
+
+    /**
+     * 用户锁定状态或密码变更提交后失效
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUsername());
+    }
+
+    /**
+     * 写入缓存；加载期间发生过失效时不保留，避免缓存提交前读到的旧数据
+     */
+    private void store(String username, CachedPrincipal fresh, long now, long ttlNanos, long loadGeneration) {
+        int maxEntries = Math.max(1, aiServiceProperties.getCache().getUserPrincipalMaxEntries());
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> now - entry.loadedAtNanos >= ttlNanos);
+            if (entries.size() >= maxEntries) {
+                Iterator<String> iterator = entries.keySet().iterator();
+                for (int i = entries.size() - maxEntries + 1 + maxEntries / 10; i > 0 && iterator.hasNext(); i--) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        entries.put(username, fresh);
+        if (generation.get() != loadGeneration) {
+            entries.remove(username, fresh);
+        }
+    }
+
+    private long ttlNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(aiServiceProperties.getCache().getUserPrincipalTtlMs());
+    }
+
+    private static final class CachedPrincipal {
+        private final UserDetailsServiceImpl.UserPrincipal principal;
+        private final long loadedAtNanos;
+
+        CachedPrincipal(UserDetailsServiceImpl.UserPrincipal principal, long loadedAtNanos) {
+            this.principal = principal;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
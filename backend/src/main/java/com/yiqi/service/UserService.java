@@ -1,12 +1,15 @@
 package com.yiqi.service;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.yiqi.dto.LoginRequest;
@@ -14,6 +17,7 @@ import com.yiqi.dto.LoginResponse;
 import com.yiqi.dto.RegisterRequest;
 import com.yiqi.dto.UserResponse;
 import com.yiqi.entity.User;
+import com.yiqi.event.UserChangedEvent;
 import com.yiqi.exception.AuthenticationException;
 import com.yiqi.exception.UserNotFoundException;
 import com.yiqi.exception.ValidationException;
@@ -40,10 +44,21 @@ public class UserService {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private LoginAttemptTracker loginAttemptTracker;
+
     /**
      * 用户注册
+     * 密码编码在哈希执行器上进行
      */
-    public UserResponse register(RegisterRequest request) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<UserResponse> register(RegisterRequest request) {
         logger.info("用户注册请求: {}", request.getUsername());
 
         // 检查用户名是否已存在
@@ -51,58 +66,81 @@ public class UserService {
             throw new ValidationException("用户名已存在");
         }
 
-        // 创建新用户
-        User user = new User();
-        user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setCreatedAt(LocalDateTime.now());
-
-        // 保存用户
-        int result = userMapper.insert(user);
-        if (result <= 0) {
-            throw new RuntimeException("用户注册失败");
-        }
-
-        logger.info("用户注册成功: {}", user.getUsername());
-        return convertToUserResponse(user);
+        return passwordHashingExecutor.submit(() -> passwordEncoder.encode(request.getPassword()))
+            .thenApply(encodedPassword -> {
+                // 创建新用户
+                User user = new User();
+                user.setUsername(request.getUsername());
+                user.setPassword(encodedPassword);
+                user.setCreatedAt(LocalDateTime.now());
+
+                // 保存用户
+                int result = userMapper.insert(user);
+                if (result <= 0) {
+                    throw new RuntimeException("用户注册失败");
+                }
+
+                logger.info("用户注册成功: {}", user.getUsername());
+                return convertToUserResponse(user);
+            });
     }
 
     /**
      * 用户登录
+     * 本节点记录的锁定期内直接拒绝；否则在哈希执行器上校验密码，调用线程立即返回。
+     * 失败次数由LoginAttemptTracker批量写回，触发锁定与登录成功各只写一条语句，不开启事务
      */
-    public LoginResponse login(LoginRequest request) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
         logger.info("用户登录请求: {}", request.getUsername());
 
+        if (loginAttemptTracker.isLocked(request.getUsername())) {
+            return CompletableFuture.failedFuture(new AuthenticationException("账户已被锁定，请稍后再试"));
+        }
+        return passwordHashingExecutor.submit(() -> authenticate(request));
+    }
+
+    /**
+     * 校验用户名与密码并签发令牌（在哈希线程上执行）
+     */
+    private LoginResponse authenticate(LoginRequest request) {
         // 查找用户
         User user = userMapper.findByUsername(request.getUsername());
         if (user == null) {
             throw new AuthenticationException("用户名或密码错误");
         }
 
-        // 检查账户是否被锁定
+        // 检查账户是否被锁定（含其他节点写入的锁定）
         if (user.isAccountLocked()) {
             throw new AuthenticationException("账户已被锁定，请稍后再试");
         }
 
         // 验证密码
         if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            // 增加登录失败次数
-            user.incrementFailedLoginAttempts();
-            userMapper.updateFailedLoginAttempts(user.getId(), 
-                user.getFailedLoginAttempts(), user.getLockedUntil());
-            
-            logger.warn("用户登录失败: {} (失败次数: {})", user.getUsername(), user.getFailedLoginAttempts());
+            LoginAttemptTracker.Failure failure = loginAttemptTracker.recordFailure(user);
+            if (failure.getLockedUntil() != null) {
+                // 锁定立即写入并递增令牌版本，吊销该用户已签发的令牌
+                userMapper.lockUser(user.getId(), failure.getFailures(), failure.getLockedUntil());
+                Integer tokenVersion = userMapper.findTokenVersion(user.getId());
+                publishUserChanged(user, "USER_LOCKED", tokenVersion);
+            }
+
+            logger.warn("用户登录失败: {} (失败次数: {})", user.getUsername(), failure.getFailures());
             throw new AuthenticationException("用户名或密码错误");
         }
 
-        // 登录成功，重置失败次数并更新最后登录时间
+        // 登录成功，一条语句重置失败次数并更新最后登录时间
+        loginAttemptTracker.recordSuccess(user.getUsername());
+        Integer failedAttempts = user.getFailedLoginAttempts();
+        if ((failedAttempts != null && failedAttempts > 0) || user.getLockedUntil() != null) {
+            publishUserChanged(user, "LOGIN_ATTEMPTS_RESET", null);
+        }
         user.resetFailedLoginAttempts();
         user.setLastLoginAt(LocalDateTime.now());
-        userMapper.resetFailedLoginAttempts(user.getId());
-        userMapper.updateLastLoginTime(user.getId());
+        userMapper.recordLoginSuccess(user.getId());
 
         // 生成JWT令牌
-        String token = jwtService.generateToken(user.getUsername());
+        String token = jwtService.generateToken(user);
 
         logger.info("用户登录成功: {}", user.getUsername());
         return new LoginResponse(token, convertToUserResponse(user));
@@ -138,6 +176,13 @@ public class UserService {
         return convertToUserResponse(user);
     }
 
+    /**
+     * 发布用户变更事件，用户主体缓存在提交后失效
+     */
+    private void publishUserChanged(User user, String reason, Integer tokenVersion) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getUsername(), reason, tokenVersion));
+    }
+
     /**
      * 转换为用户响应DTO
      */
@@ -0,0 +1,216 @@
+package com.yiqi.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.AIMessage;
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.dto.ai.QiniuAIResponse;
+import com.yiqi.service.QiniuAIService;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阿里云DashScope文本生成适配器
+ * 将OpenAI兼容请求转换为DashScope原生格式（input.messages / parameters），
+ * 并把响应与增量输出转换回OpenAI兼容格式
+ */
+public class DashScopeProvider implements LlmProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashScopeProvider.class);
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final AIServiceProperties.AliyunConfig config;
+    private final Set<String> models = new HashSet<>();
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DashScopeProvider(AIServiceProperties.AliyunConfig config) {
+        this.config = config;
+        if (config.getChatModels() != null) {
+            this.models.addAll(Arrays.asList(config.getChatModels()));
+        }
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(config.getMaxConcurrent(), dispatcher.getMaxRequests()));
+        dispatcher.setMaxRequestsPerHost(config.getMaxConcurrent());
+
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), 5, TimeUnit.MINUTES))
+                .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+
+        logger.info("DashScope提供方初始化完成: endpoint={}, models={}", config.getChatEndpoint(), models);
+    }
+
+    @Override
+    public String getName() {
+        return "dashscope";
+    }
+
+    @Override
+    public String getDefaultModel() {
+        return config.getChatModels() != null && config.getChatModels().length > 0
+                ? config.getChatModels()[0] : null;
+    }
+
+    @Override
+    public boolean supportsModel(String model) {
+        return models.contains(model);
+    }
+
+    @Override
+    public int getMaxConcurrent() {
+        return config.getMaxConcurrent();
+    }
+
+    @Override
+    public QiniuAIResponse complete(QiniuAIRequest request) throws IOException {
+        Request httpRequest = buildHttpRequest(request, false);
+        try (Response response = httpClient.newCall(httpRequest).execute()) {
+            String body = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("DashScope请求失败: " + response.code() + ", 响应体: " + body);
+            }
+            JsonNode root = objectMapper.readTree(body);
+            String content = root.path("output").path("choices").path(0).path("message").path("content").asText(null);
+            if (content == null) {
+                // 未使用message格式时内容位于output.text
+                content = root.path("output").path("text").asText(null);
+            }
+            if (content == null) {
+                throw new IOException("DashScope响应格式错误：缺少输出内容");
+            }
+            return toOpenAIResponse(root, request.getModel(), content);
+        }
+    }
+
+    @Override
+    public void stream(QiniuAIRequest request, QiniuAIService.StreamingResponseHandler handler) {
+        Request httpRequest;
+        try {
+            httpRequest = buildHttpRequest(request, true);
+        } catch (IOException e) {
+            handler.onError(e);
+            return;
+        }
+
+        httpClient.newCall(httpRequest).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                handler.onError(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        String errorBody = body != null ? body.string() : "无响应体";
+                        handler.onError(new IOException("DashScope流式请求失败: " + response.code() + ", 响应体: " + errorBody));
+                        return;
+                    }
+                    BufferedReader reader = new BufferedReader(body.charStream());
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        // DashScope的SSE数据行为"data:"，不带空格
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        JsonNode chunk = objectMapper.readTree(line.substring(5).trim());
+                        JsonNode choice = chunk.path("output").path("choices").path(0);
+                        String delta = choice.path("message").path("content").asText("");
+                        String finishReason = choice.path("finish_reason").asText("null");
+                        handler.onData(toOpenAIChunk(delta, "null".equals(finishReason) ? null : finishReason));
+                        if ("stop".equals(finishReason) || "length".equals(finishReason)) {
+                            break;
+                        }
+                    }
+                    handler.onComplete();
+                } catch (Exception e) {
+                    handler.onError(e);
+                }
+            }
+        });
+    }
+
+    private Request buildHttpRequest(QiniuAIRequest request, boolean stream) throws IOException {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("model", request.getModel());
+        ArrayNode messages = payload.putObject("input").putArray("messages");
+        for (AIMessage message : request.getMessages()) {
+            messages.addObject().put("role", message.getRole()).put("content", message.getContent());
+        }
+        ObjectNode parameters = payload.putObject("parameters");
+        parameters.put("result_format", "message");
+        if (request.getTemperature() != null) {
+            parameters.put("temperature", request.getTemperature());
+        }
+        if (request.getMaxTokens() != null) {
+            parameters.put("max_tokens", request.getMaxTokens());
+        }
+        if (stream) {
+            parameters.put("incremental_output", true);
+        }
+
+        Request.Builder builder = new Request.Builder()
+                .url(config.getChatEndpoint())
+                .post(RequestBody.create(objectMapper.writeValueAsString(payload), JSON))
+                .addHeader("Authorization", "Bearer " + config.getApiKey())
+                .addHeader("Content-Type", "application/json");
+        if (stream) {
+            builder.addHeader("X-DashScope-SSE", "enable");
+        }
+        return builder.build();
+    }
+
+    private QiniuAIResponse toOpenAIResponse(JsonNode root, String model, String content) {
+        QiniuAIResponse response = new QiniuAIResponse();
+        response.setId(root.path("request_id").asText(null));
+        response.setObject("chat.completion");
+        response.setModel(model);
+
+        QiniuAIResponse.Choice choice = new QiniuAIResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(new AIMessage("assistant", content));
+        choice.setFinishReason(root.path("output").path("choices").path(0).path("finish_reason").asText("stop"));
+        response.setChoices(Collections.singletonList(choice));
+
+        JsonNode usageNode = root.path("usage");
+        if (!usageNode.isMissingNode()) {
+            QiniuAIResponse.Usage usage = new QiniuAIResponse.Usage();
+            usage.setPromptTokens(usageNode.path("input_tokens").asInt());
+            usage.setCompletionTokens(usageNode.path("output_tokens").asInt());
+            usage.setTotalTokens(usageNode.path("input_tokens").asInt() + usageNode.path("output_tokens").asInt());
+            response.setUsage(usage);
+        }
+        return response;
+    }
+
+    private String toOpenAIChunk(String delta, String finishReason) throws IOException {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("object", "chat.completion.chunk");
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("delta").put("content", delta);
+        if (finishReason != null) {
+            choice.put("finish_reason", finishReason);
+        } else {
+            choice.putNull("finish_reason");
+        }
+        return objectMapper.writeValueAsString(chunk);
+    }
+}
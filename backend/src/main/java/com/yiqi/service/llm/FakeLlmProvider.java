@@ -0,0 +1,184 @@
+package com.yiqi.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.AIMessage;
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.dto.ai.QiniuAIResponse;
+import com.yiqi.service.QiniuAIService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内模拟提供方
+ * 按配置的延迟与失败率返回确定性的文本，用于本地联调与测试
+ */
+public class FakeLlmProvider implements LlmProvider {
+
+    private final AIServiceProperties.FakeConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService streamExecutor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "yiqi-fake-llm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FakeLlmProvider(AIServiceProperties.FakeConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getName() {
+        return "fake";
+    }
+
+    @Override
+    public String getDefaultModel() {
+        return "fake-model";
+    }
+
+    @Override
+    public boolean supportsModel(String model) {
+        // 只认领显式的fake模型；作为默认提供方时由路由器兜底承接其余模型
+        return model != null && model.startsWith("fake");
+    }
+
+    @Override
+    public int getMaxConcurrent() {
+        return config.getMaxConcurrent();
+    }
+
+    @Override
+    public QiniuAIResponse complete(QiniuAIRequest request) throws IOException {
+        try {
+            Thread.sleep(config.getLatencyMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("模拟请求被中断", e);
+        }
+        if (shouldFail()) {
+            throw new IOException("模拟上游错误");
+        }
+
+        String content = generateContent(request);
+        QiniuAIResponse response = new QiniuAIResponse();
+        response.setObject("chat.completion");
+        response.setModel(request.getModel());
+        QiniuAIResponse.Choice choice = new QiniuAIResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(new AIMessage("assistant", content));
+        choice.setFinishReason("stop");
+        response.setChoices(Collections.singletonList(choice));
+
+        QiniuAIResponse.Usage usage = new QiniuAIResponse.Usage();
+        usage.setPromptTokens(estimatePromptTokens(request));
+        usage.setCompletionTokens(content.length() / 4 + 1);
+        usage.setTotalTokens(usage.getPromptTokens() + usage.getCompletionTokens());
+        response.setUsage(usage);
+        return response;
+    }
+
+    @Override
+    public void stream(QiniuAIRequest request, QiniuAIService.StreamingResponseHandler handler) {
+        if (shouldFail()) {
+            streamExecutor.schedule(() -> handler.onError(new IOException("模拟上游错误")),
+                    config.getLatencyMs(), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        String content = generateContent(request);
+        List<String> pieces = split(content, 8);
+        boolean includeUsage = request.getStreamOptions() != null && request.getStreamOptions().isIncludeUsage();
+        AtomicInteger index = new AtomicInteger();
+        Runnable emitNext = new Runnable() {
+            @Override
+            public void run() {
+                int i = index.getAndIncrement();
+                if (i >= pieces.size()) {
+                    if (includeUsage) {
+                        try {
+                            handler.onData(toUsageChunk(request, content));
+                        } catch (Exception e) {
+                            handler.onError(e);
+                            return;
+                        }
+                    }
+                    handler.onComplete();
+                    return;
+                }
+                try {
+                    handler.onData(toChunk(pieces.get(i)));
+                } catch (Exception e) {
+                    handler.onError(e);
+                    return;
+                }
+                streamExecutor.schedule(this, config.getChunkDelayMs(), TimeUnit.MILLISECONDS);
+            }
+        };
+        // 首个片段在配置的延迟后到达，模拟首token时间
+        streamExecutor.schedule(emitNext, config.getLatencyMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private boolean shouldFail() {
+        return config.getFailureRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getFailureRate();
+    }
+
+    private String generateContent(QiniuAIRequest request) {
+        String userContent = "";
+        for (AIMessage message : request.getMessages()) {
+            if ("user".equals(message.getRole())) {
+                userContent = message.getContent();
+            }
+        }
+        String excerpt = userContent.length() > 60 ? userContent.substring(0, 60) + "..." : userContent;
+        return "[" + request.getModel() + "] 针对输入“" + excerpt + "”的模拟回答：" +
+               "1. 明确目标用户与核心场景；2. 评估实现成本与风险；3. 给出可落地的下一步行动。";
+    }
+
+    private int estimatePromptTokens(QiniuAIRequest request) {
+        int chars = 0;
+        for (AIMessage message : request.getMessages()) {
+            chars += message.getContent() != null ? message.getContent().length() : 0;
+        }
+        return chars / 4 + 1;
+    }
+
+    private List<String> split(String content, int size) {
+        List<String> pieces = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += size) {
+            pieces.add(content.substring(i, Math.min(content.length(), i + size)));
+        }
+        return pieces;
+    }
+
+    private String toUsageChunk(QiniuAIRequest request, String content) throws IOException {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("object", "chat.completion.chunk");
+        chunk.putArray("choices");
+        int promptTokens = estimatePromptTokens(request);
+        int completionTokens = content.length() / 4 + 1;
+        ObjectNode usage = chunk.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return objectMapper.writeValueAsString(chunk);
+    }
+
+    private String toChunk(String delta) throws IOException {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("object", "chat.completion.chunk");
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("delta").put("content", delta);
+        return objectMapper.writeValueAsString(chunk);
+    }
+}
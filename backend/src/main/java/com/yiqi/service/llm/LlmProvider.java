@@ -0,0 +1,53 @@
+package com.yiqi.service.llm;
+
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.dto.ai.QiniuAIResponse;
+import com.yiqi.service.QiniuAIService;
+
+import java.io.IOException;
+
+/**
+ * 大模型提供方SPI
+ * 请求与响应统一使用OpenAI兼容格式，非兼容的提供方由适配器自行转换；
+ * 流式回调的数据片段同样为OpenAI兼容的chunk JSON
+ */
+public interface LlmProvider {
+
+    /**
+     * 提供方名称，用于路由配置中的"提供方:模型"目标
+     */
+    String getName();
+
+    /**
+     * 未指定模型时使用的默认模型
+     */
+    String getDefaultModel();
+
+    /**
+     * 是否提供指定模型
+     */
+    boolean supportsModel(String model);
+
+    /**
+     * 该提供方允许的最大并发请求数
+     */
+    int getMaxConcurrent();
+
+    /**
+     * 发送非流式请求
+     *
+     * @param request 已设置模型的请求
+     * @return 响应
+     * @throws IOException 网络或协议错误
+     */
+    QiniuAIResponse complete(QiniuAIRequest request) throws IOException;
+
+    /**
+     * 发送流式请求
+     * 实现必须保证onComplete与onError二者恰好回调其一
+     *
+     * @param request 已设置模型的请求
+     * @param handler 响应处理回调
+     */
+    void stream(QiniuAIRequest request, QiniuAIService.StreamingResponseHandler handler);
+}
@@ -0,0 +1,381 @@
+package com.yiqi.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.dto.ai.QiniuAIResponse;
+import com.yiqi.service.InferenceMetrics;
+import com.yiqi.service.QiniuAIService;
+import com.yiqi.service.timeline.TimelineSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型路由器
+ * 按代理的aiModel（或角色覆盖的模型）解析出一组等价的"提供方:模型"目标，
+ * 在提供方并发上限内按延迟EWMA与在途请求数选择负载最低的目标
+ */
+@Service
+public class ModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private List<LlmProvider> providers;
+
+    @Autowired
+    private InferenceMetrics inferenceMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, LlmProvider> providersByName = new HashMap<>();
+    private final Map<String, Semaphore> providerPermits = new HashMap<>();
+    private final Map<String, RouteTarget> targets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (LlmProvider provider : providers) {
+            providersByName.put(provider.getName(), provider);
+            providerPermits.put(provider.getName(), new Semaphore(Math.max(1, provider.getMaxConcurrent())));
+        }
+        if (!providersByName.containsKey(aiServiceProperties.getRouter().getDefaultProvider())) {
+            throw new IllegalStateException("默认模型提供方未启用: " + aiServiceProperties.getRouter().getDefaultProvider());
+        }
+        logger.info("模型路由器初始化完成: providers={}, defaultProvider={}",
+                   providersByName.keySet(), aiServiceProperties.getRouter().getDefaultProvider());
+    }
+
+    /**
+     * 解析候选目标
+     *
+     * @param requestedModel 代理配置的模型，可为空
+     * @param roleType 代理角色，可为空
+     * @return 至少包含一个目标的候选列表
+     */
+    public List<RouteTarget> resolve(String requestedModel, String roleType) {
+        AIServiceProperties.RouterConfig config = aiServiceProperties.getRouter();
+        String model = requestedModel;
+        if (roleType != null && config.getRoleModels().containsKey(roleType)) {
+            model = config.getRoleModels().get(roleType);
+        }
+
+        List<RouteTarget> candidates = new ArrayList<>();
+        if (model != null && config.getModelGroups().containsKey(model)) {
+            for (String spec : config.getModelGroups().get(model)) {
+                int separator = spec.indexOf(':');
+                if (separator > 0 && providersByName.containsKey(spec.substring(0, separator))) {
+                    candidates.add(target(spec.substring(0, separator), spec.substring(separator + 1)));
+                }
+            }
+        } else if (model != null) {
+            for (LlmProvider provider : providers) {
+                if (provider.supportsModel(model)) {
+                    candidates.add(target(provider.getName(), model));
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            // 未知模型或所在提供方未启用时退回默认提供方，保持原有行为
+            LlmProvider fallback = providersByName.get(config.getDefaultProvider());
+            String fallbackModel = model != null && fallback.supportsModel(model) ? model : fallback.getDefaultModel();
+            candidates.add(target(fallback.getName(), fallbackModel));
+        }
+        return candidates;
+    }
+
+    /**
+     * 发送非流式请求
+     */
+    public QiniuAIResponse complete(QiniuAIRequest request, InferenceContext context) throws IOException {
+        Lease lease = acquire(resolve(context.getModel(), context.getRoleType()), context.getSpan());
+        RouteTarget target = lease.target;
+        request.setModel(target.getModel());
+        TimelineSpan upstreamSpan = context.getSpan().start("upstream")
+                .attr("provider", target.getProvider()).attr("model", target.getModel());
+        long start = System.nanoTime();
+        try (TimelineSpan.Scope ignored = upstreamSpan.bind()) {
+            QiniuAIResponse response = providersByName.get(target.getProvider()).complete(request);
+            long elapsed = System.nanoTime() - start;
+            upstreamSpan.attr("outcome", InferenceMetrics.SUCCESS);
+            target.recordSuccess(TimeUnit.NANOSECONDS.toMillis(elapsed), alpha());
+            inferenceMetrics.recordUpstream(target.getProvider(), target.getModel(), "blocking", InferenceMetrics.SUCCESS, elapsed);
+            QiniuAIResponse.Usage usage = response.getUsage();
+            if (usage != null) {
+                recordUsage(target, context, value(usage.getPromptTokens()), value(usage.getCompletionTokens()));
+                inferenceMetrics.recordTokensPerSecond(target.getProvider(), target.getModel(), "blocking",
+                        value(usage.getCompletionTokens()), elapsed);
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            target.recordFailure(failurePenaltyMs(), alpha());
+            inferenceMetrics.recordUpstream(target.getProvider(), target.getModel(), "blocking", InferenceMetrics.FAILURE,
+                    System.nanoTime() - start);
+            upstreamSpan.attr("outcome", InferenceMetrics.FAILURE);
+            throw e;
+        } finally {
+            upstreamSpan.end();
+            lease.release();
+        }
+    }
+
+    /**
+     * 发送流式请求，提供方许可在流结束时归还
+     */
+    public void stream(QiniuAIRequest request, InferenceContext context, QiniuAIService.StreamingResponseHandler handler) {
+        Lease lease;
+        try {
+            lease = acquire(resolve(context.getModel(), context.getRoleType()), context.getSpan());
+        } catch (IOException e) {
+            handler.onError(e);
+            return;
+        }
+        RouteTarget target = lease.target;
+        request.setModel(target.getModel());
+        TimelineSpan upstreamSpan = context.getSpan().start("upstream")
+                .attr("provider", target.getProvider()).attr("model", target.getModel());
+        long start = System.nanoTime();
+        QiniuAIService.StreamingResponseHandler releasingHandler = new QiniuAIService.StreamingResponseHandler() {
+            // 片段数近似为生成的token数，上游返回用量时以用量为准
+            private final AtomicLong chunks = new AtomicLong();
+            private volatile long firstChunkAt;
+            private volatile long completionTokens;
+
+            @Override
+            public void onData(String data) {
+                if (data.contains("\"usage\"") && consumeUsage(data)) {
+                    return;
+                }
+                if (chunks.getAndIncrement() == 0) {
+                    firstChunkAt = System.nanoTime();
+                    inferenceMetrics.recordTimeToFirstToken(target.getProvider(), target.getModel(), firstChunkAt - start);
+                    upstreamSpan.record("ttfb", start, firstChunkAt);
+                }
+                handler.onData(data);
+            }
+
+            @Override
+            public void onComplete() {
+                long end = System.nanoTime();
+                inferenceMetrics.recordUpstream(target.getProvider(), target.getModel(), "streaming", InferenceMetrics.SUCCESS,
+                        end - start);
+                if (completionTokens > 0 && chunks.get() > 0) {
+                    inferenceMetrics.recordTokensPerSecond(target.getProvider(), target.getModel(), "streaming",
+                            completionTokens, end - firstChunkAt);
+                } else if (chunks.get() > 1) {
+                    inferenceMetrics.recordTokensPerSecond(target.getProvider(), target.getModel(), "streaming",
+                            chunks.get() - 1, end - firstChunkAt);
+                }
+                if (chunks.get() > 0) {
+                    upstreamSpan.record("completion", firstChunkAt, end).attr("chunks", chunks.get());
+                }
+                upstreamSpan.attr("outcome", InferenceMetrics.SUCCESS).endAt(end);
+                lease.release();
+                handler.onComplete();
+            }
+
+            /**
+             * 记录片段中的用量；只含用量的片段（choices为空）不转发给调用方
+             *
+             * @return 是否已消费该片段
+             */
+            private boolean consumeUsage(String data) {
+                try {
+                    JsonNode chunk = objectMapper.readTree(data);
+                    JsonNode usage = chunk.path("usage");
+                    if (!usage.isObject()) {
+                        return false;
+                    }
+                    completionTokens = usage.path("completion_tokens").asLong();
+                    recordUsage(target, context, usage.path("prompt_tokens").asLong(), completionTokens);
+                    return chunk.path("choices").size() == 0;
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                target.recordFailure(failurePenaltyMs(), alpha());
+                inferenceMetrics.recordUpstream(target.getProvider(), target.getModel(), "streaming", InferenceMetrics.FAILURE,
+                        System.nanoTime() - start);
+                upstreamSpan.attr("outcome", InferenceMetrics.FAILURE).attr("error", throwable.getMessage()).end();
+                lease.release();
+                handler.onError(throwable);
+            }
+        };
+        try {
+            providersByName.get(target.getProvider()).stream(request, releasingHandler);
+        } catch (RuntimeException e) {
+            releasingHandler.onError(e);
+        }
+    }
+
+    /**
+     * 获取各路由目标的统计信息
+     */
+    public List<RouteTarget> getTargets() {
+        List<RouteTarget> list = new ArrayList<>(targets.values());
+        list.sort(Comparator.comparing(RouteTarget::getKey));
+        return list;
+    }
+
+    /**
+     * 按得分从低到高尝试获取许可，全部繁忙时在得分最低的目标上等待（等待过程记为permit区间）
+     */
+    private Lease acquire(List<RouteTarget> candidates, TimelineSpan span) throws IOException {
+        List<RouteTarget> ordered = new ArrayList<>(candidates);
+        ordered.sort(Comparator.comparingDouble(RouteTarget::score));
+        for (RouteTarget target : ordered) {
+            if (providerPermits.get(target.getProvider()).tryAcquire()) {
+                return new Lease(target, providerPermits.get(target.getProvider()));
+            }
+        }
+
+        RouteTarget best = ordered.get(0);
+        Semaphore permits = providerPermits.get(best.getProvider());
+        TimelineSpan permitSpan = span.start("permit").attr("provider", best.getProvider());
+        try {
+            if (permits.tryAcquire(aiServiceProperties.getQiniu().getTimeout(), TimeUnit.MILLISECONDS)) {
+                return new Lease(best, permits);
+            }
+            permitSpan.attr("outcome", "timeout");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            permitSpan.end();
+        }
+        throw new IOException("模型提供方并发已满: " + best.getProvider());
+    }
+
+    private void recordUsage(RouteTarget target, InferenceContext context, long promptTokens, long completionTokens) {
+        inferenceMetrics.recordTokens(target.getProvider(), target.getModel(), context.getTrafficClass().name(),
+                promptTokens, completionTokens);
+        if (context.getUsage() != null) {
+            context.getUsage().add(target.getModel(), promptTokens, completionTokens);
+        }
+    }
+
+    private static long value(Integer tokens) {
+        return tokens != null ? tokens : 0L;
+    }
+
+    private RouteTarget target(String provider, String model) {
+        return targets.computeIfAbsent(provider + ":" + model, key -> new RouteTarget(provider, model));
+    }
+
+    private double alpha() {
+        return aiServiceProperties.getRouter().getEwmaAlpha();
+    }
+
+    private long failurePenaltyMs() {
+        return aiServiceProperties.getQiniu().getTimeout();
+    }
+
+    /**
+     * 已获取的提供方许可
+     */
+    private static class Lease {
+        private final RouteTarget target;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Lease(RouteTarget target, Semaphore permits) {
+            this.target = target;
+            this.permits = permits;
+            target.inFlight.incrementAndGet();
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                target.inFlight.decrementAndGet();
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * 路由目标（提供方 + 模型）及其负载状态
+     */
+    public static class RouteTarget {
+        private final String provider;
+        private final String model;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile double ewmaLatencyMs;
+
+        RouteTarget(String provider, String model) {
+            this.provider = provider;
+            this.model = model;
+        }
+
+        /**
+         * 负载得分：延迟EWMA乘以在途请求数，尚无样本的目标得分最低以便被探索
+         */
+        double score() {
+            return (ewmaLatencyMs + 1) * (inFlight.get() + 1);
+        }
+
+        synchronized void recordSuccess(long latencyMs, double alpha) {
+            requests.incrementAndGet();
+            ewmaLatencyMs = ewmaLatencyMs == 0 ? latencyMs : alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+        }
+
+        synchronized void recordFailure(long penaltyMs, double alpha) {
+            requests.incrementAndGet();
+            failures.incrementAndGet();
+            ewmaLatencyMs = alpha * penaltyMs + (1 - alpha) * ewmaLatencyMs;
+        }
+
+        public String getKey() {
+            return provider + ":" + model;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public double getEwmaLatencyMs() {
+            return ewmaLatencyMs;
+        }
+    }
+}
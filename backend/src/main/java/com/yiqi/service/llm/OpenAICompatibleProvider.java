@@ -0,0 +1,261 @@
+package com.yiqi.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.dto.ai.QiniuAIResponse;
+import com.yiqi.service.QiniuAIService;
+import com.yiqi.service.timeline.TimelineSpan;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenAI兼容协议的提供方适配器（七牛云等）
+ * 先请求主地址，失败后切换备用地址
+ */
+public class OpenAICompatibleProvider implements LlmProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAICompatibleProvider.class);
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final String name;
+    private final AIServiceProperties.QiniuConfig config;
+    private final Set<String> models = new HashSet<>();
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OpenAICompatibleProvider(String name, AIServiceProperties.QiniuConfig config) {
+        this.name = name;
+        this.config = config;
+        this.models.add(config.getModel());
+        if (config.getModels() != null) {
+            this.models.addAll(Arrays.asList(config.getModels()));
+        }
+
+        // 每个提供方独立的连接池与并发上限，互不影响
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(config.getMaxConcurrent(), dispatcher.getMaxRequests()));
+        dispatcher.setMaxRequestsPerHost(config.getMaxConcurrent());
+
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), 5, TimeUnit.MINUTES))
+                .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+
+        logger.info("OpenAI兼容提供方初始化完成: name={}, baseUrl={}, models={}", name, config.getBaseUrl(), models);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDefaultModel() {
+        return config.getModel();
+    }
+
+    @Override
+    public boolean supportsModel(String model) {
+        return models.contains(model);
+    }
+
+    @Override
+    public int getMaxConcurrent() {
+        return config.getMaxConcurrent();
+    }
+
+    @Override
+    public QiniuAIResponse complete(QiniuAIRequest request) throws IOException {
+        // 首先尝试主URL
+        try {
+            return sendSingleRequest(request, config.getBaseUrl() + "/chat/completions", "primary");
+        } catch (IOException e) {
+            if (config.getBackupUrl() == null) {
+                throw e;
+            }
+            logger.warn("主URL请求失败，尝试备用URL: {}", e.getMessage());
+            return sendSingleRequest(request, config.getBackupUrl() + "/chat/completions", "backup");
+        }
+    }
+
+    /**
+     * 流式请求：连接失败或HTTP错误在回调中异步返回，尚未收到任何数据时切换备用地址；
+     * 已开始输出后出错不再切换，避免向调用方重复输出
+     */
+    @Override
+    public void stream(QiniuAIRequest request, QiniuAIService.StreamingResponseHandler handler) {
+        QiniuAIService.StreamingResponseHandler primaryHandler = handler;
+        if (config.getBackupUrl() != null) {
+            primaryHandler = new BackupFallbackHandler(handler, () ->
+                send(request, config.getBackupUrl() + "/chat/completions", handler));
+        }
+        send(request, config.getBaseUrl() + "/chat/completions", primaryHandler);
+    }
+
+    private void send(QiniuAIRequest request, String url, QiniuAIService.StreamingResponseHandler handler) {
+        try {
+            sendStreamingRequest(request, url, handler);
+        } catch (Exception e) {
+            handler.onError(e);
+        }
+    }
+
+    /**
+     * 发送单次请求，首字节与响应体读取分别记录到当前线程绑定的时间线区间
+     *
+     * @param endpoint primary或backup
+     */
+    private QiniuAIResponse sendSingleRequest(QiniuAIRequest request, String url, String endpoint) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(request);
+        logger.debug("发送AI推理请求到: {}", url);
+
+        TimelineSpan httpSpan = TimelineSpan.current().start("http").attr("endpoint", endpoint);
+        long start = System.nanoTime();
+        try (Response response = httpClient.newCall(buildHttpRequest(url, requestBody)).execute()) {
+            long headersAt = System.nanoTime();
+            httpSpan.record("ttfb", start, headersAt);
+            httpSpan.attr("status", response.code());
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "无响应体";
+                throw new IOException("HTTP请求失败: " + response.code() + " " + response.message() +
+                                    ", 响应体: " + errorBody);
+            }
+
+            String responseBody = response.body().string();
+            httpSpan.record("completion", headersAt, System.nanoTime()).attr("bytes", responseBody.length());
+            logger.debug("收到AI推理响应，长度: {}", responseBody.length());
+
+            QiniuAIResponse aiResponse = objectMapper.readValue(responseBody, QiniuAIResponse.class);
+            if (aiResponse.getChoices() == null || aiResponse.getChoices().isEmpty()) {
+                throw new IOException("AI响应格式错误：缺少choices字段");
+            }
+            return aiResponse;
+        } catch (IOException e) {
+            httpSpan.attr("error", e.getMessage());
+            throw e;
+        } finally {
+            httpSpan.end();
+        }
+    }
+
+    /**
+     * 发送流式请求
+     */
+    private void sendStreamingRequest(QiniuAIRequest request, String url,
+                                      QiniuAIService.StreamingResponseHandler handler) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(request);
+        logger.debug("发送流式AI推理请求到: {}", url);
+
+        httpClient.newCall(buildHttpRequest(url, requestBody)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                handler.onError(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!response.isSuccessful()) {
+                    String errorBody;
+                    try {
+                        errorBody = response.body() != null ? response.body().string() : "无响应体";
+                    } catch (IOException e) {
+                        errorBody = "无响应体";
+                    } finally {
+                        response.close();
+                    }
+                    handler.onError(new IOException("HTTP请求失败: " + response.code() + " " + response.message() +
+                                    ", 响应体: " + errorBody));
+                    return;
+                }
+
+                try (ResponseBody responseBody = response.body()) {
+                    if (responseBody == null) {
+                        handler.onError(new IOException("响应体为空"));
+                        return;
+                    }
+                    processStreamingResponse(responseBody, handler);
+                } catch (Exception e) {
+                    // 读取中断时也必须通知处理器，否则调用方无法感知流结束
+                    handler.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 处理流式响应
+     * SSE格式，每行以"data: "开头，结束时发送"[DONE]"（包可见，供基准测试调用）
+     */
+    static void processStreamingResponse(ResponseBody responseBody,
+                                         QiniuAIService.StreamingResponseHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(responseBody.charStream());
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data: ")) {
+                String data = line.substring(6);
+                if ("[DONE]".equals(data)) {
+                    break;
+                }
+                handler.onData(data);
+            }
+        }
+        // 收到[DONE]或上游直接关闭连接均视为完成
+        handler.onComplete();
+    }
+
+    /**
+     * 主地址的流式处理器：尚未转发任何数据时出错则改为请求备用地址，否则原样转发
+     */
+    private static class BackupFallbackHandler implements QiniuAIService.StreamingResponseHandler {
+        private final QiniuAIService.StreamingResponseHandler delegate;
+        private final Runnable fallback;
+        private volatile boolean received;
+
+        BackupFallbackHandler(QiniuAIService.StreamingResponseHandler delegate, Runnable fallback) {
+            this.delegate = delegate;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void onData(String data) {
+            received = true;
+            delegate.onData(data);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (received) {
+                delegate.onError(throwable);
+                return;
+            }
+            logger.warn("主URL流式请求失败，尝试备用URL: {}", throwable.getMessage());
+            fallback.run();
+        }
+    }
+
+    private Request buildHttpRequest(String url, String requestBody) {
+        return new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(requestBody, JSON))
+                .addHeader("Authorization", "Bearer " + config.getApiKey())
+                .addHeader("Content-Type", "application/json")
+                .build();
+    }
+}
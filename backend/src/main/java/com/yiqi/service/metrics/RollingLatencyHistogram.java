@@ -0,0 +1,179 @@
+package com.yiqi.service.metrics;
+
+import com.yiqi.dto.parallel.LatencyWindowStats;
+import com.yiqi.enums.StatisticsTimeRange;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁的滚动窗口耗时直方图
+ * 每个统计窗口对应一个时间槽环，槽内按对数-线性分桶计数（每个2的幂区间16个子桶，微秒精度，
+ * 上限约71分钟）。写入只做原子自增；槽过期时以CAS整体替换，内存只与窗口和槽数有关
+ */
+public class RollingLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 32) - 1;
+    private static final int BUCKET_COUNT = bucket(MAX_MICROS) + 1;
+
+    private final Map<StatisticsTimeRange, Ring> rings = new EnumMap<>(StatisticsTimeRange.class);
+
+    public RollingLatencyHistogram() {
+        for (StatisticsTimeRange range : StatisticsTimeRange.values()) {
+            rings.put(range, new Ring(range));
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param success 是否成功，失败计入errors
+     */
+    public void record(long nanos, boolean success) {
+        long micros = Math.min(MAX_MICROS, Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        int bucket = bucket(micros);
+        long now = System.currentTimeMillis();
+        for (Ring ring : rings.values()) {
+            ring.slot(now).record(bucket, micros, success);
+        }
+    }
+
+    /**
+     * 汇总指定窗口内的分布
+     */
+    public LatencyWindowStats snapshot(StatisticsTimeRange range) {
+        Ring ring = rings.get(range);
+        long current = System.currentTimeMillis() / ring.slotMillis;
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long errors = 0;
+        long sum = 0;
+        long max = 0;
+        for (int i = 0; i < ring.slots.length(); i++) {
+            Slot slot = ring.slots.get(i);
+            if (slot == null || slot.epoch > current || slot.epoch <= current - ring.slots.length()) {
+                continue;
+            }
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                counts[b] += slot.counts.get(b);
+            }
+            count += slot.count.get();
+            errors += slot.errors.get();
+            sum += slot.sumMicros.get();
+            max = Math.max(max, slot.maxMicros.get());
+        }
+
+        LatencyWindowStats stats = new LatencyWindowStats();
+        stats.setCount(count);
+        stats.setErrors(errors);
+        stats.setThroughputPerSecond(round(count * 1000.0 / range.getWindowMillis()));
+        if (count > 0) {
+            stats.setMeanMs(millis(sum / (double) count));
+            stats.setP50Ms(millis(Math.min(max, percentile(counts, count, 0.50))));
+            stats.setP90Ms(millis(Math.min(max, percentile(counts, count, 0.90))));
+            stats.setP99Ms(millis(Math.min(max, percentile(counts, count, 0.99))));
+            stats.setMaxMs(millis(max));
+        }
+        return stats;
+    }
+
+    /**
+     * 桶编号：小于16的值一值一桶，其余按最高位所在的2的幂区间再均分为16个子桶
+     */
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * 按排名找到所在桶，返回桶的中点
+     */
+    private static long percentile(long[] counts, long total, double quantile) {
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                if (b < SUB_BUCKETS) {
+                    return b;
+                }
+                int shift = b / SUB_BUCKETS - 1;
+                long lower = (long) (SUB_BUCKETS + b % SUB_BUCKETS) << shift;
+                return lower + ((1L << shift) - 1) / 2;
+            }
+        }
+        return MAX_MICROS;
+    }
+
+    private static double millis(double micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * 单个窗口的时间槽环
+     */
+    private static final class Ring {
+        private final long slotMillis;
+        private final AtomicReferenceArray<Slot> slots;
+
+        Ring(StatisticsTimeRange range) {
+            this.slotMillis = range.getSlotMillis();
+            this.slots = new AtomicReferenceArray<>(range.getSlotCount());
+        }
+
+        Slot slot(long nowMillis) {
+            long epoch = nowMillis / slotMillis;
+            int index = (int) (epoch % slots.length());
+            while (true) {
+                Slot slot = slots.get(index);
+                // 时钟回拨时写入更新的槽，不回退
+                if (slot != null && slot.epoch >= epoch) {
+                    return slot;
+                }
+                Slot fresh = new Slot(epoch);
+                if (slots.compareAndSet(index, slot, fresh)) {
+                    return fresh;
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个时间槽内的计数
+     */
+    private static final class Slot {
+        private final long epoch;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        Slot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void record(int bucket, long micros, boolean success) {
+            counts.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sumMicros.addAndGet(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.yiqi.service.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可续传的事件流
+ * 每个事件分配单调递增的ID；最近memoryEvents个事件保存在内存环中，更早的事件顺序追加到溢出文件。
+ * 订阅方按Last-Event-ID补发缺失的事件后接入实时推送，订阅方断开不影响事件的产生与缓存。
+ * 对象锁只保护缓冲与订阅方的待发送队列，写入连接在锁外进行：每个订阅方同一时刻只有一个线程在发送，
+ * 慢订阅方不阻塞事件的追加与其他订阅方；待发送事件积压超过两倍内存事件数的订阅方被断开，由客户端重连补发
+ */
+public class ReplayableStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayableStream.class);
+
+    private final String key;
+    private final String userKey;
+    private final int memoryEvents;
+    private final Path spillFile;
+    private final EventSender sender;
+    private final ArrayDeque<StreamEvent> ring = new ArrayDeque<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private long lastId;
+    private long spilledCount;
+    private DataOutputStream spill;
+    private boolean discarded;
+    private boolean retired;
+    private volatile long finishedAtMillis = -1L;
+
+    public ReplayableStream(String key, String userKey, int memoryEvents, Path spillFile, EventSender sender) {
+        this.key = key;
+        this.userKey = userKey;
+        this.memoryEvents = Math.max(1, memoryEvents);
+        this.spillFile = spillFile;
+        this.sender = sender;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getUserKey() {
+        return userKey;
+    }
+
+    public boolean isFinished() {
+        return finishedAtMillis >= 0;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    /**
+     * 追加事件并推送给当前的订阅方，流结束后的追加被忽略
+     */
+    public void append(String name, String data) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            targets = enqueue(name, data);
+        }
+        drainAll(targets);
+    }
+
+    /**
+     * 追加最后一个事件并结束流，订阅方发送完已排队的事件后关闭
+     */
+    public void finish(String name, String data) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            if (isFinished() || discarded) {
+                return;
+            }
+            targets = enqueue(name, data);
+            finishedAtMillis = System.currentTimeMillis();
+            closeSpill();
+            for (Subscriber subscriber : subscribers) {
+                subscriber.closing = true;
+            }
+            subscribers.clear();
+            if (retired) {
+                discard();
+            }
+        }
+        drainAll(targets);
+    }
+
+    /**
+     * 流被新的执行替换后不再可重连：已结束时立即丢弃，否则结束时丢弃
+     */
+    public synchronized void retire() {
+        retired = true;
+        if (isFinished()) {
+            discard();
+        }
+    }
+
+    /**
+     * 补发ID大于lastEventId的事件，然后接入实时推送；流已结束时补发后关闭
+     * 补发在锁外进行，期间新追加的事件排在补发的内存事件之后，不阻塞事件的追加
+     */
+    public void attach(SseEmitter emitter, long lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter);
+        long spilled;
+        synchronized (this) {
+            if (discarded) {
+                emitter.complete();
+                return;
+            }
+            flushSpill();
+            spilled = spilledCount;
+            for (StreamEvent event : ring) {
+                if (event.id > lastEventId) {
+                    subscriber.pending.addLast(event);
+                }
+            }
+            // 补发期间由本线程独占发送，新事件只进入待发送队列
+            subscriber.draining = true;
+            if (isFinished()) {
+                subscriber.closing = true;
+            } else {
+                subscribers.add(subscriber);
+            }
+        }
+        try {
+            replaySpill(emitter, lastEventId, spilled);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("补发流事件失败: key={}, 错误: {}", key, e.getMessage());
+            synchronized (this) {
+                drop(subscriber);
+            }
+            emitter.completeWithError(e);
+            return;
+        }
+        drain(subscriber);
+    }
+
+    public synchronized void detach(SseEmitter emitter) {
+        subscribers.removeIf(subscriber -> {
+            if (subscriber.emitter != emitter) {
+                return false;
+            }
+            subscriber.closed = true;
+            subscriber.pending.clear();
+            return true;
+        });
+    }
+
+    /**
+     * 丢弃流：关闭订阅方并删除溢出文件
+     */
+    public synchronized void discard() {
+        discarded = true;
+        closeSpill();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.closed = true;
+            subscriber.pending.clear();
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        ring.clear();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                logger.warn("删除流溢出文件失败: key={}, 错误: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入缓冲并放入各订阅方的待发送队列（调用方持有本对象锁）
+     *
+     * @return 需要发送的订阅方快照
+     */
+    private List<Subscriber> enqueue(String name, String data) {
+        if (isFinished() || discarded) {
+            return new ArrayList<>();
+        }
+        StreamEvent event = new StreamEvent(++lastId, name, data);
+        ring.addLast(event);
+        if (ring.size() > memoryEvents) {
+            spill(ring.pollFirst());
+        }
+        List<Subscriber> targets = new ArrayList<>(subscribers);
+        for (Subscriber subscriber : targets) {
+            subscriber.pending.addLast(event);
+            if (subscriber.pending.size() > memoryEvents * 2) {
+                // 积压过多的慢订阅方直接断开，事件仍保留在缓冲中供重连补发
+                logger.debug("流订阅方积压过多，断开连接: key={}, pending={}", key, subscriber.pending.size());
+                drop(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+        return targets;
+    }
+
+    private void drainAll(List<Subscriber> targets) {
+        for (Subscriber subscriber : targets) {
+            boolean acquired;
+            synchronized (this) {
+                acquired = !subscriber.draining && !subscriber.closed;
+                if (acquired) {
+                    subscriber.draining = true;
+                }
+            }
+            if (acquired) {
+                drain(subscriber);
+            }
+        }
+    }
+
+    /**
+     * 在锁外按顺序发送订阅方的待发送事件，直到队列为空（调用方已取得该订阅方的发送权）
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            StreamEvent event;
+            boolean complete = false;
+            synchronized (this) {
+                event = subscriber.closed ? null : subscriber.pending.pollFirst();
+                if (event == null) {
+                    subscriber.draining = false;
+                    if (subscriber.closing && !subscriber.closed) {
+                        subscriber.closed = true;
+                        complete = true;
+                    }
+                }
+            }
+            if (event == null) {
+                if (complete) {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            try {
+                sender.send(subscriber.emitter, event.toSse());
+            } catch (IOException | IllegalStateException e) {
+                // 订阅方已断开，事件仍保留在缓冲中供重连补发
+                synchronized (this) {
+                    drop(subscriber);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 移除订阅方并清空其待发送队列（调用方持有本对象锁）
+     */
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.closed = true;
+        subscriber.draining = false;
+        subscriber.pending.clear();
+    }
+
+    /**
+     * 写入溢出文件（调用方持有本对象锁），写入失败时该事件不再可补发
+     */
+    private void spill(StreamEvent event) {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                Files.createDirectories(spillFile.getParent());
+                spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+            }
+            byte[] bytes = event.data.getBytes(StandardCharsets.UTF_8);
+            spill.writeLong(event.id);
+            spill.writeUTF(event.name != null ? event.name : "");
+            spill.writeInt(bytes.length);
+            spill.write(bytes);
+            spilledCount++;
+        } catch (IOException e) {
+            logger.warn("写入流溢出文件失败: key={}, eventId={}, 错误: {}", key, event.id, e.getMessage());
+        }
+    }
+
+    /**
+     * 按顺序读取溢出文件的前count个事件，补发ID大于afterId的事件
+     *
+     * @return 已补发的最大事件ID
+     */
+    private long replaySpill(SseEmitter emitter, long afterId, long count) throws IOException {
+        if (count == 0 || spillFile == null || !Files.isRegularFile(spillFile)) {
+            return afterId;
+        }
+        long sent = afterId;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+            for (long i = 0; i < count; i++) {
+                long id = in.readLong();
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if (id > sent) {
+                    StreamEvent event = new StreamEvent(id, name.isEmpty() ? null : name,
+                                                        new String(bytes, StandardCharsets.UTF_8));
+                    emitter.send(event.toSse());
+                    sent = id;
+                }
+            }
+        } catch (EOFException e) {
+            logger.warn("流溢出文件不完整: key={}", key);
+        }
+        return sent;
+    }
+
+    private void flushSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.flush();
+        } catch (IOException e) {
+            logger.warn("刷新流溢出文件失败: key={}, 错误: {}", key, e.getMessage());
+        }
+    }
+
+    private void closeSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            logger.warn("关闭流溢出文件失败: key={}, 错误: {}", key, e.getMessage());
+        }
+        spill = null;
+    }
+
+    /**
+     * 订阅方及其待发送队列，字段由流的对象锁保护
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<StreamEvent> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closing;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * 带ID的事件
+     */
+    private static final class StreamEvent {
+        private final long id;
+        private final String name;
+        private final String data;
+
+        StreamEvent(long id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().id(String.valueOf(id)).data(data);
+            return name != null ? builder.name(name) : builder;
+        }
+    }
+
+    /**
+     * 订阅方订阅后的写入方式（溢出文件的补发不经过此接口）
+     */
+    @FunctionalInterface
+    public interface EventSender {
+        void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) throws IOException;
+    }
+}
@@ -0,0 +1,119 @@
+package com.yiqi.service.timeline;
+
+import com.yiqi.dto.parallel.PhaseTimelineView;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+
+/**
+ * 单次阶段执行的区间树
+ * 根区间覆盖整个阶段推理，其下为各代理、阶段总结与持久化区间；
+ * 区间数超过上限后新的子区间不再记录
+ */
+public class PhaseTimeline {
+
+    private final String sessionId;
+    private final String phaseType;
+    private final String executionId;
+    private final String ownerId;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final int maxSpans;
+    private final TimelineSpan root;
+    private int spanCount;
+    private boolean truncated;
+
+    public PhaseTimeline(String sessionId, String phaseType, String executionId, String ownerId, int maxSpans) {
+        this.sessionId = sessionId;
+        this.phaseType = phaseType;
+        this.executionId = executionId;
+        this.ownerId = ownerId;
+        this.maxSpans = Math.max(1, maxSpans);
+        this.root = new TimelineSpan(this, 0, null, "phase", System.nanoTime());
+        this.spanCount = 1;
+    }
+
+    public TimelineSpan getRoot() {
+        return root;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getPhaseType() {
+        return phaseType;
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    /**
+     * 发起执行的用户
+     */
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * 分配区间编号，超过上限时返回-1（调用方持有本对象锁）
+     */
+    int nextSpanId() {
+        if (spanCount >= maxSpans) {
+            truncated = true;
+            return -1;
+        }
+        return spanCount++;
+    }
+
+    /**
+     * 生成瀑布图视图
+     */
+    public synchronized PhaseTimelineView toView() {
+        PhaseTimelineView view = new PhaseTimelineView();
+        view.setSessionId(sessionId);
+        view.setPhaseType(phaseType);
+        view.setExecutionId(executionId);
+        view.setOwnerId(ownerId);
+        view.setStartedAt(startedAt);
+        view.setCompleted(root.getEndNanos() >= 0);
+        view.setTruncated(truncated);
+
+        long origin = root.getStartNanos();
+        long latestEnd = origin;
+        Deque<TimelineSpan> stack = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        stack.push(root);
+        depths.push(0);
+        while (!stack.isEmpty()) {
+            TimelineSpan span = stack.pop();
+            int depth = depths.pop();
+
+            PhaseTimelineView.Span item = new PhaseTimelineView.Span();
+            item.setId(span.getId());
+            item.setParentId(span.getParent() != null ? span.getParent().getId() : null);
+            item.setDepth(depth);
+            item.setName(span.getName());
+            item.setStartMs(millis(span.getStartNanos() - origin));
+            if (span.getEndNanos() >= 0) {
+                item.setDurationMs(millis(span.getEndNanos() - span.getStartNanos()));
+                latestEnd = Math.max(latestEnd, span.getEndNanos());
+            }
+            item.setAttributes(new LinkedHashMap<>(span.getAttributes()));
+            view.getSpans().add(item);
+
+            for (int i = span.getChildren().size() - 1; i >= 0; i--) {
+                stack.push(span.getChildren().get(i));
+                depths.push(depth + 1);
+            }
+        }
+        view.setDurationMs(millis(latestEnd - origin));
+        return view;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
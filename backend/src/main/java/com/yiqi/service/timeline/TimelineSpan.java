@@ -0,0 +1,164 @@
+package com.yiqi.service.timeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行时间线中的一个区间
+ * 子区间与属性可由多个线程并发写入；区间只结束一次，重复结束以首次为准。
+ * 未开启时间线的调用使用{@link #NOOP}，调用方无需判空
+ */
+public class TimelineSpan {
+
+    /**
+     * 不记录任何内容的空区间
+     */
+    public static final TimelineSpan NOOP = new TimelineSpan(null, 0, null, "noop", 0L);
+
+    private static final ThreadLocal<TimelineSpan> CURRENT = new ThreadLocal<>();
+
+    private final PhaseTimeline timeline;
+    private final int id;
+    private final TimelineSpan parent;
+    private final String name;
+    private final long startNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final List<TimelineSpan> children = new ArrayList<>();
+    private long endNanos = -1L;
+
+    TimelineSpan(PhaseTimeline timeline, int id, TimelineSpan parent, String name, long startNanos) {
+        this.timeline = timeline;
+        this.id = id;
+        this.parent = parent;
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 获取当前线程绑定的区间，未绑定时返回空区间
+     */
+    public static TimelineSpan current() {
+        TimelineSpan span = CURRENT.get();
+        return span != null ? span : NOOP;
+    }
+
+    /**
+     * 将区间绑定到当前线程，供无法传递上下文的下层调用（如提供方的HTTP调用）记录子区间
+     *
+     * @return 关闭时恢复之前绑定的区间
+     */
+    public Scope bind() {
+        TimelineSpan previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * 从当前时刻开始一个子区间
+     */
+    public TimelineSpan start(String childName) {
+        return child(childName, System.nanoTime());
+    }
+
+    /**
+     * 记录一个已结束的子区间
+     */
+    public TimelineSpan record(String childName, long childStartNanos, long childEndNanos) {
+        TimelineSpan child = child(childName, childStartNanos);
+        child.endAt(childEndNanos);
+        return child;
+    }
+
+    /**
+     * 设置属性
+     */
+    public TimelineSpan attr(String key, Object value) {
+        if (timeline != null && value != null) {
+            synchronized (timeline) {
+                attributes.put(key, value);
+            }
+        }
+        return this;
+    }
+
+    public void end() {
+        endAt(System.nanoTime());
+    }
+
+    public void endAt(long nanos) {
+        if (timeline != null) {
+            synchronized (timeline) {
+                if (endNanos < 0) {
+                    endNanos = nanos;
+                }
+            }
+        }
+    }
+
+    public boolean isRecording() {
+        return timeline != null;
+    }
+
+    private TimelineSpan child(String childName, long childStartNanos) {
+        if (timeline == null) {
+            return NOOP;
+        }
+        synchronized (timeline) {
+            int childId = timeline.nextSpanId();
+            if (childId < 0) {
+                return NOOP;
+            }
+            TimelineSpan child = new TimelineSpan(timeline, childId, this, childName, childStartNanos);
+            children.add(child);
+            return child;
+        }
+    }
+
+    // 以下访问方法仅在持有时间线锁时调用
+
+    int getId() {
+        return id;
+    }
+
+    TimelineSpan getParent() {
+        return parent;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+
+    Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    List<TimelineSpan> getChildren() {
+        return children;
+    }
+
+    /**
+     * 线程绑定作用域
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
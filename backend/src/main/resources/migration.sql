@@ -56,6 +56,33 @@ UPDATE agent_responses
 SET updated_at = created_at 
 WHERE updated_at IS NULL;
 
+-- 7. 给 agent_responses 表添加 token 用量字段
+ALTER TABLE agent_responses 
+ADD COLUMN model VARCHAR(100) COMMENT '实际提供服务的模型' AFTER response_time_ms,
+ADD COLUMN prompt_tokens BIGINT COMMENT '输入token数' AFTER model,
+ADD COLUMN completion_tokens BIGINT COMMENT '输出token数' AFTER prompt_tokens,
+ADD COLUMN total_tokens BIGINT COMMENT 'token总数' AFTER completion_tokens;
+
+-- 8. 会话列表按创建时间键集分页的索引
+ALTER TABLE brainstorm_sessions 
+ADD INDEX idx_user_created (user_id, created_at, id);
+
+-- 9. 用户令牌版本，低于该版本的已签发令牌视为吊销
+ALTER TABLE users 
+ADD COLUMN token_version INT NOT NULL DEFAULT 0 COMMENT '令牌版本，锁定等操作递增以吊销已签发的令牌' AFTER locked_until;
+
+-- 10. 阶段执行权，条件更新保证同一阶段同时只有一个执行
+ALTER TABLE phases 
+ADD COLUMN execution_id VARCHAR(64) NULL COMMENT '持有执行权的执行ID' AFTER completed_at,
+ADD COLUMN execution_claimed_at TIMESTAMP NULL COMMENT '获得执行权的时间' AFTER execution_id;
+
+-- 11. 乐观锁版本号，阶段与会话的状态迁移按状态与版本号条件更新
+ALTER TABLE brainstorm_sessions 
+ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号' AFTER current_phase;
+
+ALTER TABLE phases 
+ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号' AFTER execution_claimed_at;
+
 -- 验证迁移结果
 SELECT 'Migration completed successfully' as status;
 
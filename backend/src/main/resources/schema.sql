@@ -20,6 +20,7 @@ CREATE TABLE users (
     last_login_at TIMESTAMP NULL COMMENT '最后登录时间',
     failed_login_attempts INT DEFAULT 0 COMMENT '登录失败次数',
     locked_until TIMESTAMP NULL COMMENT '账户锁定到期时间',
+    token_version INT NOT NULL DEFAULT 0 COMMENT '令牌版本，锁定等操作递增以吊销已签发的令牌',
     INDEX idx_username (username),
     INDEX idx_last_login (last_login_at),
     INDEX idx_created_at (created_at)
@@ -52,13 +53,15 @@ CREATE TABLE brainstorm_sessions (
     topic TEXT COMMENT '讨论主题',
     status VARCHAR(20) NOT NULL DEFAULT 'CREATED' COMMENT '会话状态(CREATED/IN_PROGRESS/PAUSED/COMPLETED/CANCELLED)',
     current_phase VARCHAR(30) COMMENT '当前阶段(IDEA_GENERATION/FEASIBILITY_ANALYSIS/DRAWBACK_DISCUSSION)',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     INDEX idx_user_id (user_id),
     INDEX idx_status (status),
     INDEX idx_current_phase (current_phase),
-    INDEX idx_created_at (created_at)
+    INDEX idx_created_at (created_at),
+    INDEX idx_user_created (user_id, created_at, id)
 ) ENGINE=InnoDB COMMENT='头脑风暴会话表';
 
 -- 4. 会话代理关联表
@@ -86,6 +89,9 @@ CREATE TABLE phases (
     summary TEXT COMMENT '阶段总结',
     started_at TIMESTAMP NULL COMMENT '开始时间',
     completed_at TIMESTAMP NULL COMMENT '完成时间',
+    execution_id VARCHAR(64) NULL COMMENT '持有执行权的执行ID',
+    execution_claimed_at TIMESTAMP NULL COMMENT '获得执行权的时间',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (session_id) REFERENCES brainstorm_sessions(id) ON DELETE CASCADE,
@@ -105,6 +111,10 @@ CREATE TABLE agent_responses (
     status VARCHAR(20) NOT NULL DEFAULT 'PROCESSING' COMMENT '响应状态(PROCESSING/SUCCESS/FAILED/TIMEOUT)',
     error_message TEXT COMMENT '错误信息',
     response_time_ms BIGINT COMMENT '响应时间(毫秒)',
+    model VARCHAR(100) COMMENT '实际提供服务的模型',
+    prompt_tokens BIGINT COMMENT '输入token数',
+    completion_tokens BIGINT COMMENT '输出token数',
+    total_tokens BIGINT COMMENT 'token总数',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (phase_id) REFERENCES phases(id) ON DELETE CASCADE,
@@ -0,0 +1,136 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.ai.AgentInferenceRequest;
+import com.yiqi.dto.ai.AgentInferenceResponse;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.entity.Agent;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.TrafficClass;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AI推理服务的测试：等待上游结果不占用推理线程池
+ */
+@ExtendWith(MockitoExtension.class)
+class AIInferenceServiceTest {
+
+    @Mock
+    private QiniuAIService qiniuAIService;
+
+    @Mock
+    private InferenceStatusService inferenceStatusService;
+
+    @Mock
+    private InferenceMetrics inferenceMetrics;
+
+    @Mock
+    private PhaseTimelineService phaseTimelineService;
+
+    @Mock
+    private InferenceScheduler inferenceScheduler;
+
+    @InjectMocks
+    private AIInferenceService aiInferenceService;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @BeforeEach
+    void setUp() {
+        // 与生产配置形状一致：少量核心线程加有界队列，队列满前不会扩容
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.initialize();
+        ReflectionTestUtils.setField(aiInferenceService, "aiInferenceExecutor", executor);
+        when(inferenceScheduler.getDeadlineSeconds(any())).thenReturn(600L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void saturatedBatchLoadDoesNotDelayInteractiveAgent() throws Exception {
+        // 批量请求一直在调度队列中排队，交互式请求立即返回
+        when(qiniuAIService.sendInferenceRequest(anyString(), anyString(), any(InferenceContext.class)))
+            .thenAnswer(invocation -> {
+                InferenceContext context = invocation.getArgument(2);
+                return context.getTrafficClass() == TrafficClass.BATCH
+                    ? new CompletableFuture<String>()
+                    : CompletableFuture.completedFuture("交互式结果");
+            });
+
+        List<CompletableFuture<AgentInferenceResponse>> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(aiInferenceService.processAgentInference(request("批量" + i),
+                                                               InferenceContext.of(TrafficClass.BATCH, "batch-user")));
+        }
+
+        AgentInferenceResponse interactive = aiInferenceService
+            .processAgentInference(request("交互式"), InferenceContext.interactive("user"))
+            .get(5, TimeUnit.SECONDS);
+
+        assertTrue(interactive.isSuccess());
+        assertEquals("交互式结果", interactive.getContent());
+        assertTrue(batch.stream().noneMatch(CompletableFuture::isDone));
+        // 排队中的批量请求不占用推理线程
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    void parallelInferenceCompletesWithoutHoldingThreads() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(qiniuAIService.sendInferenceRequest(anyString(), anyString(), any(InferenceContext.class)))
+            .thenReturn(upstream, CompletableFuture.completedFuture("阶段总结"));
+
+        CompletableFuture<ParallelInferenceResult> phase = aiInferenceService.processParallelInferenceAsync(
+            Collections.singletonList(agent()), "主题", "上下文", "7", PhaseType.IDEA_GENERATION,
+            InferenceContext.of(TrafficClass.BATCH, "batch-user"), true);
+
+        // 代理请求仍在排队时，调用方已拿到future，没有线程在等待
+        assertFalse(phase.isDone());
+        assertEquals(0, executor.getActiveCount());
+
+        upstream.complete("创意");
+        ParallelInferenceResult result = phase.get(5, TimeUnit.SECONDS);
+        assertTrue(result.isAllSuccess());
+        assertEquals("阶段总结", result.getPhaseSummary());
+        verify(phaseTimelineService).finish(any());
+    }
+
+    private static Agent agent() {
+        Agent agent = new Agent(1L, "设计师", "DESIGNER", "提示词", null);
+        agent.setId(21L);
+        return agent;
+    }
+
+    private static AgentInferenceRequest request(String prompt) {
+        AgentInferenceRequest request = new AgentInferenceRequest(21L, "设计师", "DESIGNER", "系统提示词", prompt, null);
+        request.setAiModel("model");
+        return request;
+    }
+}
@@ -0,0 +1,170 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.InferenceRun;
+import com.yiqi.dto.ai.TokenUsage;
+import com.yiqi.enums.TrafficClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 推理请求合并器的测试
+ */
+class InferenceCoalescerTest {
+
+    private final InferenceCoalescer coalescer = new InferenceCoalescer();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+        coalescer.init();
+    }
+
+    @Test
+    void concurrentIdenticalCallsShareOneUpstream() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        InferenceContext leaderContext = interactive(new TokenUsage());
+        InferenceContext joinerContext = interactive(new TokenUsage());
+        String key = coalescer.key(leaderContext, "系统提示词", "用户输入");
+
+        CompletableFuture<String> leader = coalescer.execute(key, leaderContext, shared -> {
+            upstreamCalls.incrementAndGet();
+            shared.getUsage().add("model", 10, 5);
+            return upstream;
+        });
+        CompletableFuture<String> joiner = coalescer.execute(key, joinerContext, shared -> {
+            upstreamCalls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        upstream.complete("结果");
+
+        assertEquals("结果", leader.get());
+        assertEquals("结果", joiner.get());
+        assertEquals(1, upstreamCalls.get());
+        // 共享调用的用量只计入发起方，合计等于一次上游调用
+        assertEquals(15, leaderContext.getUsage().getTotalTokens());
+        assertEquals(0, joinerContext.getUsage().getTotalTokens());
+        assertEquals(15, leaderContext.getUsage().getTotalTokens() + joinerContext.getUsage().getTotalTokens());
+        InferenceCoalescer.CoalescingStatistics statistics = coalescer.getStatistics();
+        assertEquals(1, statistics.getUpstreamRequests());
+        assertEquals(1, statistics.getJoinedRequests());
+        assertEquals(0, statistics.getInflightCalls());
+    }
+
+    @Test
+    void coalescedUsageIsCountedOncePerUpstreamCall() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        InferenceRun leaderRun = new InferenceRun();
+        InferenceRun joinerRun = new InferenceRun();
+        List<TokenUsage> callers = new ArrayList<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        TokenUsage[] shared = new TokenUsage[1];
+        for (InferenceRun run : Arrays.asList(leaderRun, joinerRun, joinerRun)) {
+            TokenUsage usage = new TokenUsage();
+            callers.add(usage);
+            InferenceContext context = interactive(usage).withRun(run);
+            futures.add(coalescer.execute(coalescer.key(context, "系统提示词", "用户输入"), context, sharedContext -> {
+                shared[0] = sharedContext.getUsage();
+                return upstream;
+            }));
+        }
+        // 用量在调用方加入之后才返回，同样只转发给发起方
+        shared[0].add("model", 100, 20);
+        upstream.complete("结果");
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        long total = callers.stream().mapToLong(TokenUsage::getTotalTokens).sum();
+        assertEquals(120, total);
+        assertEquals(120, leaderRun.getUsage().getTotalTokens());
+        assertEquals(0, joinerRun.getUsage().getTotalTokens());
+    }
+
+    @Test
+    void trafficClassIsPartOfKey() {
+        String interactive = coalescer.key(InferenceContext.of(TrafficClass.INTERACTIVE, "1"), "系统提示词", "用户输入");
+        String batch = coalescer.key(InferenceContext.of(TrafficClass.BATCH, "1"), "系统提示词", "用户输入");
+        String otherUser = coalescer.key(InferenceContext.of(TrafficClass.INTERACTIVE, "2"), "系统提示词", "用户输入");
+
+        assertNotEquals(interactive, batch);
+        assertEquals(interactive, otherUser);
+    }
+
+    @Test
+    void upstreamIsCancelledOnlyAfterAllCallersCancel() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        InferenceContext context = interactive(null);
+        String key = coalescer.key(context, "系统提示词", "用户输入");
+
+        CompletableFuture<String> first = coalescer.execute(key, context, shared -> upstream);
+        CompletableFuture<String> second = coalescer.execute(key, context, shared -> upstream);
+
+        first.cancel(false);
+        assertFalse(upstream.isCancelled());
+        second.cancel(false);
+        assertTrue(upstream.isCancelled());
+    }
+
+    @Test
+    void lateStreamSubscriberReceivesEarlierChunks() {
+        InferenceContext context = interactive(null);
+        String key = coalescer.key(context, "系统提示词", "用户输入");
+        RecordingHandler first = new RecordingHandler();
+        RecordingHandler late = new RecordingHandler();
+        QiniuAIService.StreamingResponseHandler[] upstream = new QiniuAIService.StreamingResponseHandler[1];
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        coalescer.stream(key, context, first, (shared, broadcast) -> {
+            upstreamCalls.incrementAndGet();
+            upstream[0] = broadcast;
+        });
+        upstream[0].onData("你");
+        coalescer.stream(key, context, late, (shared, broadcast) -> upstreamCalls.incrementAndGet());
+        upstream[0].onData("好");
+        upstream[0].onComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(Arrays.asList("你", "好"), first.chunks);
+        assertEquals(Arrays.asList("你", "好"), late.chunks);
+        assertTrue(first.completed);
+        assertTrue(late.completed);
+        assertEquals(0, coalescer.getStatistics().getInflightStreams());
+    }
+
+    private static InferenceContext interactive(TokenUsage usage) {
+        InferenceContext context = InferenceContext.interactive("1").forAgent("model", "DESIGNER");
+        return usage != null ? context.withUsage(usage) : context;
+    }
+
+    private static class RecordingHandler implements QiniuAIService.StreamingResponseHandler {
+        private final List<String> chunks = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void onData(String data) {
+            chunks.add(data);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+    }
+}
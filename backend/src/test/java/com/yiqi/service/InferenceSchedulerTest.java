@@ -0,0 +1,139 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.enums.TrafficClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 推理调度器的测试：单个上游槽位下验证类别间的步长顺序、类别内的用户轮转，以及排队任务的移出
+ */
+class InferenceSchedulerTest {
+
+    private final AIServiceProperties properties = new AIServiceProperties();
+    private final InferenceScheduler scheduler = new InferenceScheduler();
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blockerGate = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        AIServiceProperties.SchedulerConfig config = properties.getScheduler();
+        config.setMaxConcurrent(1);
+        config.getWeights().put(TrafficClass.INTERACTIVE, 3);
+        config.getWeights().put(TrafficClass.BATCH, 1);
+        config.getQueueTimeoutSeconds().put(TrafficClass.REPORT, 1);
+        ReflectionTestUtils.setField(scheduler, "aiServiceProperties", properties);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        blockerGate.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void classesShareSlotsByWeight() throws Exception {
+        CompletableFuture<String> blocker = occupySlot();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            futures.add(record(TrafficClass.BATCH, "batch-user", "B" + i));
+        }
+        for (int i = 1; i <= 6; i++) {
+            futures.add(record(TrafficClass.INTERACTIVE, "user", "I" + i));
+        }
+
+        blockerGate.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        // 权重3:1，前8次派发中交互式占6次，批量类别不会被饿死
+        assertEquals(Arrays.asList("I1", "B1", "I2", "I3", "I4", "B2", "I5", "I6", "B3", "B4"), order);
+    }
+
+    @Test
+    void usersRotateWithinClass() throws Exception {
+        CompletableFuture<String> blocker = occupySlot();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        futures.add(record(TrafficClass.INTERACTIVE, "heavy", "H1"));
+        futures.add(record(TrafficClass.INTERACTIVE, "heavy", "H2"));
+        futures.add(record(TrafficClass.INTERACTIVE, "heavy", "H3"));
+        futures.add(record(TrafficClass.INTERACTIVE, "light", "L1"));
+
+        blockerGate.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("H1", "L1", "H2", "H3"), order);
+    }
+
+    @Test
+    void cancelledTaskLeavesQueueWithoutRunning() throws Exception {
+        CompletableFuture<String> blocker = occupySlot();
+        CompletableFuture<String> cancelled = record(TrafficClass.INTERACTIVE, "user", "cancelled");
+        assertEquals(1, scheduler.getStatistics().getClasses().get(TrafficClass.INTERACTIVE).getQueued());
+
+        cancelled.cancel(false);
+        assertEquals(0, scheduler.getStatistics().getClasses().get(TrafficClass.INTERACTIVE).getQueued());
+
+        CompletableFuture<String> next = record(TrafficClass.INTERACTIVE, "user", "next");
+        blockerGate.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        next.get(5, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("next"), order);
+    }
+
+    @Test
+    void queuedTaskExpiresAfterClassQueueTimeout() throws Exception {
+        occupySlot();
+        CompletableFuture<String> report = record(TrafficClass.REPORT, "user", "report");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> report.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        InferenceScheduler.ClassStatistics statistics = scheduler.getStatistics().getClasses().get(TrafficClass.REPORT);
+        assertEquals(1, statistics.getExpired());
+        assertEquals(0, statistics.getQueued());
+        assertTrue(order.isEmpty());
+    }
+
+    /**
+     * 以探测类别的任务占住唯一的槽位，直到blockerGate打开
+     */
+    private CompletableFuture<String> occupySlot() {
+        return scheduler.submit(InferenceContext.of(TrafficClass.PROBE, "blocker"), () -> {
+            try {
+                blockerGate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocker";
+        });
+    }
+
+    private CompletableFuture<String> record(TrafficClass trafficClass, String userKey, String label) {
+        return scheduler.submit(InferenceContext.of(trafficClass, userKey), () -> {
+            order.add(label);
+            return label;
+        });
+    }
+}
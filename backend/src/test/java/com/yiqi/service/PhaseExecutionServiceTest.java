@@ -0,0 +1,178 @@
+package com.yiqi.service;
+
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.PhaseExecutionResponse;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.entity.Agent;
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.enums.PhaseExecutionStatus;
+import com.yiqi.enums.PhaseType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 阶段执行去重的测试：重复请求返回已有的执行，执行权被持有时不发起推理
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PhaseExecutionServiceTest {
+
+    private static final Long SESSION_ID = 7L;
+    private static final Long PHASE_ID = 11L;
+
+    @Mock
+    private PhaseService phaseService;
+
+    @Mock
+    private InferenceStatusService inferenceStatusService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private AIServiceProperties aiServiceProperties = new AIServiceProperties();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private PhaseExecutionService phaseExecutionService;
+
+    private final CountDownLatch inferenceGate = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        phaseExecutionService.init();
+        when(phaseService.preparePhaseExecution(eq(SESSION_ID), eq(PhaseType.IDEA_GENERATION), any()))
+            .thenReturn(plan());
+        when(phaseService.executePhaseInference(any())).thenAnswer(invocation -> {
+            inferenceGate.await(10, TimeUnit.SECONDS);
+            return new ParallelInferenceResult(new ArrayList<>());
+        });
+        when(phaseService.completePhaseExecution(any(), anyString(), any(), anyBoolean())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inferenceGate.countDown();
+        phaseExecutionService.shutdown();
+    }
+
+    @Test
+    void sameIdempotencyKeyReturnsExistingExecution() throws InterruptedException {
+        when(phaseService.claimExecution(eq(PHASE_ID), anyString(), anyLong())).thenReturn(true);
+
+        PhaseExecutionResponse first = submit("key-1");
+        PhaseExecutionResponse second = submit("key-1");
+
+        assertEquals(first.getExecutionId(), second.getExecutionId());
+        verify(phaseService, times(1)).preparePhaseExecution(any(), any(), any());
+        verify(phaseService, times(1)).claimExecution(any(), anyString(), anyLong());
+
+        // 执行结束后同一幂等键仍返回原执行，不再发起推理
+        inferenceGate.countDown();
+        verify(phaseService, timeout(5000)).completePhaseExecution(any(), eq(first.getExecutionId()), any(), eq(false));
+        awaitFinished(first.getExecutionId());
+        PhaseExecutionResponse replay = submit("key-1");
+        assertEquals(first.getExecutionId(), replay.getExecutionId());
+        assertEquals(PhaseExecutionStatus.SUCCEEDED, replay.getStatus());
+        verify(phaseService, times(1)).executePhaseInference(any());
+    }
+
+    @Test
+    void requestWithoutKeyJoinsRunningExecution() {
+        when(phaseService.claimExecution(eq(PHASE_ID), anyString(), anyLong())).thenReturn(true);
+
+        PhaseExecutionResponse first = submit(null);
+        PhaseExecutionResponse second = submit("key-2");
+
+        assertEquals(first.getExecutionId(), second.getExecutionId());
+        verify(phaseService, times(1)).claimExecution(any(), anyString(), anyLong());
+    }
+
+    @Test
+    void claimHeldElsewhereReturnsHolderWithoutInference() {
+        when(phaseService.claimExecution(eq(PHASE_ID), anyString(), anyLong())).thenReturn(false);
+        when(phaseService.findExecutionHolder(PHASE_ID)).thenReturn("remote-execution");
+
+        PhaseExecutionResponse response = submit("key-3");
+
+        assertEquals("remote-execution", response.getExecutionId());
+        assertEquals(PhaseExecutionStatus.RUNNING, response.getStatus());
+        verify(phaseService, never()).executePhaseInference(any());
+    }
+
+    @Test
+    void lostClaimWithoutHolderIsRejected() {
+        // 条件更新失败且没有持有者：阶段已不在进行中
+        when(phaseService.claimExecution(eq(PHASE_ID), anyString(), anyLong())).thenReturn(false);
+        when(phaseService.findExecutionHolder(PHASE_ID)).thenReturn(null);
+
+        assertThrows(IllegalStateException.class, () -> submit(null));
+        verify(phaseService, never()).executePhaseInference(any());
+
+        // 被拒绝的请求不占用去重记录，之后的请求重新获取执行权
+        when(phaseService.claimExecution(eq(PHASE_ID), anyString(), anyLong())).thenReturn(true);
+        PhaseExecutionResponse retried = submit(null);
+        assertNotNull(retried.getExecutionId());
+        verify(phaseService, times(2)).claimExecution(any(), anyString(), anyLong());
+    }
+
+    private PhaseExecutionResponse submit(String idempotencyKey) {
+        return phaseExecutionService.submit(SESSION_ID, PhaseType.IDEA_GENERATION, "主题", false, idempotencyKey);
+    }
+
+    private void awaitFinished(String executionId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            PhaseExecutionResponse response = phaseExecutionService.getExecution(SESSION_ID, executionId);
+            if (response != null && response.getStatus().isFinished()) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("执行未在期限内结束");
+    }
+
+    private static PhaseService.PhaseExecutionPlan plan() {
+        BrainstormSession session = new BrainstormSession(1L, "会话", null);
+        session.setId(SESSION_ID);
+        Agent agent = new Agent(1L, "设计师", "DESIGNER", "提示词", null);
+        agent.setId(21L);
+        List<Agent> agents = Collections.singletonList(agent);
+        return new PhaseService.PhaseExecutionPlan(session, PHASE_ID, PhaseType.IDEA_GENERATION, "主题",
+                                                   agents, agents, Collections.emptyList(), "上下文");
+    }
+}
@@ -0,0 +1,240 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.ai.AgentInferenceResponse;
+import com.yiqi.dto.ai.InferenceContext;
+import com.yiqi.dto.ai.ParallelInferenceResult;
+import com.yiqi.entity.Agent;
+import com.yiqi.entity.AgentResponse;
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.entity.Phase;
+import com.yiqi.entity.SessionAgent;
+import com.yiqi.enums.PhaseRetryMode;
+import com.yiqi.enums.PhaseStatus;
+import com.yiqi.enums.PhaseTransition;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.mapper.AgentResponseMapper;
+import com.yiqi.mapper.BrainstormSessionMapper;
+import com.yiqi.mapper.PhaseMapper;
+import com.yiqi.mapper.SessionAgentMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 阶段服务的测试
+ */
+@ExtendWith(MockitoExtension.class)
+class PhaseServiceTest {
+
+    private static final Long SESSION_ID = 7L;
+    private static final Long PHASE_ID = 11L;
+
+    @Mock
+    private PhaseMapper phaseMapper;
+
+    @Mock
+    private AgentResponseMapper agentResponseMapper;
+
+    @Mock
+    private BrainstormSessionMapper sessionMapper;
+
+    @Mock
+    private SessionAgentMapper sessionAgentMapper;
+
+    @Mock
+    private AgentService agentService;
+
+    @Mock
+    private AIInferenceService aiInferenceService;
+
+    @Mock
+    private SpeculativeExecutionService speculativeExecutionService;
+
+    @Mock
+    private StateTransitionService stateTransitionService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private PhaseService phaseService;
+
+    @Test
+    void claimTakesOverOnlyLeasesOlderThanLeaseDuration() {
+        ArgumentCaptor<LocalDateTime> claimedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> staleBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(phaseMapper.claimExecution(eq(PHASE_ID), eq("execution-1"), claimedAt.capture(), staleBefore.capture()))
+            .thenReturn(1);
+
+        assertTrue(phaseService.claimExecution(PHASE_ID, "execution-1", 10));
+        assertEquals(Duration.ofMinutes(10), Duration.between(staleBefore.getValue(), claimedAt.getValue()));
+    }
+
+    @Test
+    void claimHeldByLiveExecutionFails() {
+        when(phaseMapper.claimExecution(eq(PHASE_ID), eq("execution-2"), any(), any())).thenReturn(0);
+
+        assertFalse(phaseService.claimExecution(PHASE_ID, "execution-2", 10));
+    }
+
+    @Test
+    void staleExecutionDoesNotSaveAfterClaimTakenOver() {
+        // 租约过期后执行权已被execution-2接管，原执行结束时不得写入结果
+        when(phaseMapper.selectById(PHASE_ID)).thenReturn(phase(PhaseStatus.IN_PROGRESS, "execution-2"));
+
+        assertThrows(IllegalStateException.class,
+                     () -> phaseService.completePhaseExecution(plan(), "execution-1", successfulResult(), false));
+        verifyNoInteractions(agentResponseMapper);
+        verify(phaseMapper, never()).releaseExecution(any(), anyString());
+    }
+
+    @Test
+    void executionDoesNotSaveAfterPhaseLeftInProgress() {
+        when(phaseMapper.selectById(PHASE_ID)).thenReturn(phase(PhaseStatus.WAITING_APPROVAL, null));
+
+        assertThrows(IllegalStateException.class,
+                     () -> phaseService.completePhaseExecution(plan(), "execution-1", successfulResult(), false));
+        verifyNoInteractions(agentResponseMapper);
+    }
+
+    @Test
+    void retryFailedOnlyKeepsSuccessfulResponsesAndSummary() {
+        Phase phase = phase(PhaseStatus.REJECTED, null);
+        when(sessionMapper.selectById(SESSION_ID)).thenReturn(session());
+        when(phaseMapper.findBySessionIdAndPhaseType(SESSION_ID, PhaseType.IDEA_GENERATION)).thenReturn(phase);
+
+        phaseService.retryPhase(SESSION_ID, PhaseType.IDEA_GENERATION, PhaseRetryMode.FAILED_ONLY);
+
+        verify(agentResponseMapper).resetUnsuccessfulByPhaseId(eq(PHASE_ID), any());
+        verify(agentResponseMapper, never()).deleteByPhaseId(any());
+        verify(stateTransitionService).transition(phase, PhaseTransition.RETRY_FAILED, null);
+        verify(speculativeExecutionService).discard(SESSION_ID, PhaseType.IDEA_GENERATION.getNext());
+    }
+
+    @Test
+    void retryAllClearsResponses() {
+        Phase phase = phase(PhaseStatus.REJECTED, null);
+        when(sessionMapper.selectById(SESSION_ID)).thenReturn(session());
+        when(phaseMapper.findBySessionIdAndPhaseType(SESSION_ID, PhaseType.IDEA_GENERATION)).thenReturn(phase);
+
+        phaseService.retryPhase(SESSION_ID, PhaseType.IDEA_GENERATION, PhaseRetryMode.ALL);
+
+        verify(agentResponseMapper).deleteByPhaseId(PHASE_ID);
+        verify(agentResponseMapper, never()).resetUnsuccessfulByPhaseId(any(), any());
+        verify(stateTransitionService).transition(phase, PhaseTransition.RETRY, null);
+    }
+
+    @Test
+    void preparedPlanSkipsAgentsThatAlreadySucceeded() {
+        mockSessionWithTwoAgents();
+
+        PhaseService.PhaseExecutionPlan plan = phaseService.preparePhaseExecution(SESSION_ID, PhaseType.IDEA_GENERATION, "主题");
+
+        assertTrue(plan.isPartial());
+        assertEquals(2, plan.getActiveAgents().size());
+        assertEquals(1, plan.getAgents().size());
+        assertEquals(22L, plan.getAgents().get(0).getId());
+        assertEquals(1, plan.getKeptResponses().size());
+        assertEquals("保留的创意", plan.getKeptResponses().get(0).getContent());
+    }
+
+    @Test
+    void partialExecutionInfersOnlyFailedAgentsAndSummarizesAllSuccesses() {
+        mockSessionWithTwoAgents();
+        PhaseService.PhaseExecutionPlan plan = phaseService.preparePhaseExecution(SESSION_ID, PhaseType.IDEA_GENERATION, "主题");
+
+        AgentInferenceResponse retried = new AgentInferenceResponse(22L, "工程师", "ENGINEER");
+        retried.setStatus(AgentResponse.STATUS_SUCCESS);
+        retried.setContent("新的创意");
+        when(aiInferenceService.processParallelInference(eq(plan.getAgents()), eq("主题"), anyString(),
+                eq(SESSION_ID.toString()), eq(PhaseType.IDEA_GENERATION), any(InferenceContext.class), eq(false)))
+            .thenReturn(new ParallelInferenceResult(new ArrayList<>(Collections.singletonList(retried))));
+        ArgumentCaptor<List<AgentInferenceResponse>> summarized = ArgumentCaptor.forClass(List.class);
+        when(aiInferenceService.generatePhaseSummary(summarized.capture(), eq(PhaseType.IDEA_GENERATION),
+                any(InferenceContext.class)))
+            .thenReturn(CompletableFuture.completedFuture("总结"));
+
+        ParallelInferenceResult result = phaseService.executePhaseInference(plan);
+
+        assertEquals(1, result.getAgentResponses().size());
+        assertEquals("总结", result.getPhaseSummary());
+        assertEquals(2, summarized.getValue().size());
+        verify(aiInferenceService, never()).processParallelInference(any(), any(), any(), any(), any(), any(),
+                                                                      eq(true));
+    }
+
+    private void mockSessionWithTwoAgents() {
+        Agent designer = agent(21L, "设计师", "DESIGNER");
+        Agent engineer = agent(22L, "工程师", "ENGINEER");
+        when(sessionMapper.selectById(SESSION_ID)).thenReturn(session());
+        when(phaseMapper.findBySessionIdAndPhaseType(SESSION_ID, PhaseType.IDEA_GENERATION))
+            .thenReturn(phase(PhaseStatus.IN_PROGRESS, null));
+        when(sessionAgentMapper.findActiveAgentsBySessionId(SESSION_ID))
+            .thenReturn(Arrays.asList(new SessionAgent(SESSION_ID, 21L), new SessionAgent(SESSION_ID, 22L)));
+        when(agentService.getAgentById(21L)).thenReturn(designer);
+        when(agentService.getAgentById(22L)).thenReturn(engineer);
+        // 设计师上次执行成功，工程师失败
+        AgentResponse kept = new AgentResponse(PHASE_ID, 21L, "保留的创意");
+        kept.setStatus(AgentResponse.STATUS_SUCCESS);
+        when(agentResponseMapper.findSuccessfulResponsesByPhaseId(PHASE_ID)).thenReturn(Collections.singletonList(kept));
+    }
+
+    private static BrainstormSession session() {
+        BrainstormSession session = new BrainstormSession(1L, "会话", null);
+        session.setId(SESSION_ID);
+        return session;
+    }
+
+    private static Agent agent(Long id, String name, String roleType) {
+        Agent agent = new Agent(1L, name, roleType, "提示词", null);
+        agent.setId(id);
+        return agent;
+    }
+
+    private static Phase phase(PhaseStatus status, String executionId) {
+        Phase phase = new Phase(SESSION_ID, PhaseType.IDEA_GENERATION);
+        phase.setId(PHASE_ID);
+        phase.setStatus(status);
+        phase.setExecutionId(executionId);
+        return phase;
+    }
+
+    private static PhaseService.PhaseExecutionPlan plan() {
+        List<Agent> agents = Collections.singletonList(agent(21L, "设计师", "DESIGNER"));
+        return new PhaseService.PhaseExecutionPlan(session(), PHASE_ID, PhaseType.IDEA_GENERATION, "主题",
+                                                   agents, agents, Collections.emptyList(), "上下文");
+    }
+
+    private static ParallelInferenceResult successfulResult() {
+        AgentInferenceResponse response = new AgentInferenceResponse(21L, "设计师", "DESIGNER");
+        response.setStatus("SUCCESS");
+        response.setContent("创意");
+        List<AgentInferenceResponse> responses = new ArrayList<>();
+        responses.add(response);
+        return new ParallelInferenceResult(responses);
+    }
+}
@@ -0,0 +1,84 @@
+package com.yiqi.service;
+
+import com.yiqi.dto.SessionPage;
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.mapper.BrainstormSessionMapper;
+import com.yiqi.mapper.SessionAgentMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 会话列表分页的测试：游标按创建时间与会话ID定位，不随会话更新变化
+ */
+@ExtendWith(MockitoExtension.class)
+class SessionServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 15, 10, 0);
+
+    @Mock
+    private BrainstormSessionMapper sessionMapper;
+
+    @Mock
+    private SessionAgentMapper sessionAgentMapper;
+
+    @InjectMocks
+    private SessionService sessionService;
+
+    @Test
+    void nextCursorPointsAtCreatedAtOfLastSessionOnPage() {
+        // 第二条会话刚被更新，更新时间晚于第一条，不影响游标
+        BrainstormSession newest = session(30L, CREATED.plusMinutes(2), CREATED.plusMinutes(2));
+        BrainstormSession updated = session(20L, CREATED.plusMinutes(1), CREATED.plusHours(1));
+        BrainstormSession oldest = session(10L, CREATED, CREATED);
+        when(sessionMapper.findPageByUserId(USER_ID, false, null, null, 3))
+            .thenReturn(Arrays.asList(newest, updated, oldest));
+        when(sessionAgentMapper.findAgentInfosBySessionIds(anyList())).thenReturn(Collections.emptyList());
+
+        SessionPage first = sessionService.getUserSessions(USER_ID, null, 2);
+        assertEquals(2, first.getItems().size());
+
+        when(sessionMapper.findPageByUserId(USER_ID, false, CREATED.plusMinutes(1), 20L, 3))
+            .thenReturn(Collections.singletonList(oldest));
+        SessionPage second = sessionService.getUserSessions(USER_ID, first.getNextCursor(), 2);
+
+        assertEquals(1, second.getItems().size());
+        assertEquals(10L, second.getItems().get(0).getId());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void requestWithoutCursorAndLimitReturnsAllSessions() {
+        when(sessionMapper.findPageByUserId(eq(USER_ID), eq(true), isNull(), isNull(), isNull()))
+            .thenReturn(Collections.emptyList());
+
+        SessionPage page = sessionService.getUserActiveSessions(USER_ID, null, null);
+
+        assertEquals(0, page.getItems().size());
+        assertNull(page.getNextCursor());
+        verify(sessionMapper).findPageByUserId(eq(USER_ID), eq(true), isNull(), isNull(), isNull());
+    }
+
+    private static BrainstormSession session(Long id, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        BrainstormSession session = new BrainstormSession(USER_ID, "会话" + id, null);
+        session.setId(id);
+        session.setCreatedAt(createdAt);
+        session.setUpdatedAt(updatedAt);
+        return session;
+    }
+}
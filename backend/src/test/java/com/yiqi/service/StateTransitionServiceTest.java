@@ -0,0 +1,115 @@
+package com.yiqi.service;
+
+import com.yiqi.entity.BrainstormSession;
+import com.yiqi.entity.Phase;
+import com.yiqi.enums.PhaseStatus;
+import com.yiqi.enums.PhaseTransition;
+import com.yiqi.enums.PhaseType;
+import com.yiqi.enums.SessionStatus;
+import com.yiqi.enums.SessionTransition;
+import com.yiqi.exception.GlobalExceptionHandler;
+import com.yiqi.exception.StateConflictException;
+import com.yiqi.mapper.BrainstormSessionMapper;
+import com.yiqi.mapper.PhaseMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 状态机比较并设置的测试：并发修改与不允许的迁移均以409返回
+ */
+@ExtendWith(MockitoExtension.class)
+class StateTransitionServiceTest {
+
+    @Mock
+    private PhaseMapper phaseMapper;
+
+    @Mock
+    private BrainstormSessionMapper sessionMapper;
+
+    @InjectMocks
+    private StateTransitionService stateTransitionService;
+
+    @Test
+    void phaseTransitionUpdatesStatusAndVersion() {
+        Phase phase = phase(PhaseStatus.IN_PROGRESS, 3);
+        when(phaseMapper.transition(eq(1L), eq(PhaseStatus.IN_PROGRESS), eq(3), eq(PhaseTransition.SUBMIT),
+                                    eq("总结"), any())).thenReturn(1);
+
+        stateTransitionService.transition(phase, PhaseTransition.SUBMIT, "总结");
+
+        assertEquals(PhaseStatus.WAITING_APPROVAL, phase.getStatus());
+        assertEquals(4, phase.getVersion());
+        assertEquals("总结", phase.getSummary());
+        assertNotNull(phase.getCompletedAt());
+    }
+
+    @Test
+    void concurrentPhaseUpdateIsConflict() {
+        Phase phase = phase(PhaseStatus.WAITING_APPROVAL, 5);
+        // 其他请求先完成了审核，按读取时的状态与版本号更新不到任何行
+        when(phaseMapper.transition(eq(1L), eq(PhaseStatus.WAITING_APPROVAL), eq(5), eq(PhaseTransition.APPROVE),
+                                    isNull(), any())).thenReturn(0);
+
+        assertThrows(StateConflictException.class,
+                     () -> stateTransitionService.transition(phase, PhaseTransition.APPROVE, null));
+        assertEquals(PhaseStatus.WAITING_APPROVAL, phase.getStatus());
+        assertEquals(5, phase.getVersion());
+    }
+
+    @Test
+    void disallowedPhaseTransitionIsConflictWithoutUpdate() {
+        Phase phase = phase(PhaseStatus.COMPLETED, 2);
+
+        assertThrows(StateConflictException.class,
+                     () -> stateTransitionService.transition(phase, PhaseTransition.REJECT, null));
+        verifyNoInteractions(phaseMapper);
+    }
+
+    @Test
+    void concurrentSessionUpdateIsConflict() {
+        BrainstormSession session = new BrainstormSession();
+        session.setId(7L);
+        session.setStatus(SessionStatus.IN_PROGRESS);
+        when(sessionMapper.transition(eq(7L), eq(SessionStatus.IN_PROGRESS), anyInt(), eq(SessionTransition.PAUSE),
+                                      isNull(), any())).thenReturn(0);
+
+        assertThrows(StateConflictException.class,
+                     () -> stateTransitionService.transition(session, SessionTransition.PAUSE, null));
+        assertEquals(SessionStatus.IN_PROGRESS, session.getStatus());
+    }
+
+    @Test
+    void conflictIsMappedTo409() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/sessions/7/phases/IDEA_GENERATION/approve");
+
+        ResponseEntity<GlobalExceptionHandler.ErrorResponse> response = new GlobalExceptionHandler()
+            .handleStateConflictException(new StateConflictException("阶段已被其他请求修改"), request);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("STATE_CONFLICT", response.getBody().getErrorCode());
+    }
+
+    private static Phase phase(PhaseStatus status, int version) {
+        Phase phase = new Phase(1L, PhaseType.IDEA_GENERATION);
+        phase.setId(1L);
+        phase.setStatus(status);
+        phase.setVersion(version);
+        return phase;
+    }
+}
@@ -0,0 +1,156 @@
+package com.yiqi.service.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yiqi.config.AIServiceProperties;
+import com.yiqi.dto.ai.QiniuAIRequest;
+import com.yiqi.service.QiniuAIService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OpenAI兼容提供方流式请求的测试：主地址在输出前失败时切换备用地址
+ */
+class OpenAICompatibleProviderTest {
+
+    private HttpServer server;
+    private final AtomicInteger primaryCalls = new AtomicInteger();
+    private final AtomicInteger backupCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/primary/chat/completions", exchange -> {
+            primaryCalls.incrementAndGet();
+            byte[] body = "服务不可用".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(503, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/backup/chat/completions", exchange -> {
+            backupCalls.incrementAndGet();
+            byte[] body = "data: 你\n\ndata: 好\n\ndata: [DONE]\n\n".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void httpErrorBeforeAnyDataFallsBackToBackup() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        provider(url("/primary"), url("/backup")).stream(request(), handler);
+
+        assertTrue(handler.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, primaryCalls.get());
+        assertEquals(1, backupCalls.get());
+        assertEquals(Arrays.asList("你", "好"), handler.chunks);
+        assertTrue(handler.completed);
+        assertNull(handler.error);
+    }
+
+    @Test
+    void connectionFailureFallsBackToBackup() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        provider("http://127.0.0.1:" + unusedPort(), url("/backup")).stream(request(), handler);
+
+        assertTrue(handler.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, backupCalls.get());
+        assertEquals(Arrays.asList("你", "好"), handler.chunks);
+        assertTrue(handler.completed);
+    }
+
+    @Test
+    void missingBackupReportsPrimaryError() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        provider(url("/primary"), null).stream(request(), handler);
+
+        assertTrue(handler.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, primaryCalls.get());
+        assertEquals(0, backupCalls.get());
+        assertNotNull(handler.error);
+        assertTrue(handler.chunks.isEmpty());
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static OpenAICompatibleProvider provider(String baseUrl, String backupUrl) {
+        AIServiceProperties.QiniuConfig config = new AIServiceProperties.QiniuConfig();
+        config.setBaseUrl(baseUrl);
+        config.setBackupUrl(backupUrl);
+        config.setApiKey("test-key");
+        config.setModel("model");
+        config.setTimeout(5000);
+        return new OpenAICompatibleProvider("test", config);
+    }
+
+    private static QiniuAIRequest request() {
+        QiniuAIRequest request = new QiniuAIRequest();
+        request.setModel("model");
+        request.setStream(true);
+        request.setMessages(Collections.emptyList());
+        return request;
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class RecordingHandler implements QiniuAIService.StreamingResponseHandler {
+        private final List<String> chunks = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        @Override
+        public void onData(String data) {
+            chunks.add(data);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.yiqi.service.stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 可续传事件流的测试：按Last-Event-ID补发内存与溢出文件中的事件，慢订阅方不阻塞追加
+ */
+class ReplayableStreamTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void attachReplaysEventsAfterLastEventIdThenStreamsLive() {
+        ReplayableStream stream = stream(100);
+        for (int i = 1; i <= 5; i++) {
+            stream.append("message", "事件" + i);
+        }
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        stream.attach(emitter, 2);
+        stream.append("message", "事件6");
+        stream.finish("done", "结束");
+
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L, 7L), emitter.ids);
+        assertTrue(emitter.completed);
+    }
+
+    @Test
+    void attachReplaysSpilledEventsInOrder() {
+        ReplayableStream stream = stream(2);
+        for (int i = 1; i <= 10; i++) {
+            stream.append("message", "事件" + i);
+        }
+        // 超出内存环的8个事件已写入溢出文件
+        assertTrue(Files.exists(spillDir.resolve("stream.spill")));
+
+        RecordingEmitter fromStart = new RecordingEmitter();
+        stream.attach(fromStart, 0);
+        RecordingEmitter fromMiddle = new RecordingEmitter();
+        stream.attach(fromMiddle, 7);
+
+        assertEquals(range(1, 10), fromStart.ids);
+        assertEquals(range(8, 10), fromMiddle.ids);
+    }
+
+    @Test
+    void finishedStreamReplaysAndCloses() {
+        ReplayableStream stream = stream(2);
+        for (int i = 1; i <= 4; i++) {
+            stream.append("message", "事件" + i);
+        }
+        stream.finish("done", "结束");
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.attach(emitter, 1);
+
+        assertEquals(range(2, 5), emitter.ids);
+        assertTrue(emitter.completed);
+    }
+
+    @Test
+    void slowSubscriberDoesNotBlockAppendOrOtherSubscribers() throws Exception {
+        ReplayableStream stream = stream(100);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(sending, unblock);
+        stream.attach(slow, 0);
+
+        // 第一个事件的追加线程卡在慢订阅方的发送上
+        CompletableFuture<Void> stuck = CompletableFuture.runAsync(() -> stream.append("message", "事件1"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        RecordingEmitter fast = new RecordingEmitter();
+        CompletableFuture.runAsync(() -> {
+            stream.attach(fast, 0);
+            stream.append("message", "事件2");
+            stream.append("message", "事件3");
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(range(1, 3), fast.ids);
+        assertFalse(stuck.isDone());
+
+        unblock.countDown();
+        stuck.get(5, TimeUnit.SECONDS);
+        // 慢订阅方发送完积压的事件，顺序不变
+        assertEquals(range(1, 3), slow.ids);
+    }
+
+    @Test
+    void subscriberWithTooLargeBacklogIsClosed() throws Exception {
+        ReplayableStream stream = stream(2);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(sending, unblock);
+        stream.attach(slow, 0);
+
+        CompletableFuture<Void> stuck = CompletableFuture.runAsync(() -> stream.append("message", "事件1"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 6; i++) {
+            stream.append("message", "事件" + i);
+        }
+
+        assertTrue(slow.completed);
+        unblock.countDown();
+        stuck.get(5, TimeUnit.SECONDS);
+
+        // 被断开的订阅方重连后补发全部事件
+        RecordingEmitter reconnected = new RecordingEmitter();
+        stream.attach(reconnected, 1);
+        assertEquals(range(2, 6), reconnected.ids);
+    }
+
+    private ReplayableStream stream(int memoryEvents) {
+        return new ReplayableStream("1:IDEA_GENERATION", "1", memoryEvents, spillDir.resolve("stream.spill"),
+                                    (emitter, event) -> emitter.send(event));
+    }
+
+    private static List<Long> range(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * 记录收到的事件ID；可选地在发送第一个事件时阻塞，模拟接收缓慢的客户端
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private static final Pattern ID = Pattern.compile("id:(\\d+)");
+
+        private final List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch sending;
+        private final CountDownLatch unblock;
+        private volatile boolean completed;
+
+        RecordingEmitter() {
+            this(null, null);
+        }
+
+        RecordingEmitter(CountDownLatch sending, CountDownLatch unblock) {
+            this.sending = sending;
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (sending != null && sending.getCount() > 0) {
+                sending.countDown();
+                try {
+                    unblock.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                text.append(part.getData());
+            }
+            Matcher matcher = ID.matcher(text);
+            if (matcher.find()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+
+        @Override
+        public void send(Object object, MediaType mediaType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}